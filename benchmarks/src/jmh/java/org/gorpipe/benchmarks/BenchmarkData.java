@@ -0,0 +1,220 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.benchmarks;
+
+import gorsat.process.GenericSessionFactory;
+import gorsat.process.PipeInstance;
+import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.session.GorSession;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generated data for the benchmarks.
+ * <p>
+ * The data is generated with a fixed seed, so all runs and all commits are benchmarked over the same data.  It is
+ * written once to the folder given by {@link #DIR_KEY}, or a folder in the temp folder, and reused by later runs.
+ */
+public final class BenchmarkData {
+    public static final String DIR_KEY = "gor.benchmark.dir";
+
+    /** Changed when the generated data changes, so data from older versions is not reused. */
+    private static final String VERSION = "v1";
+    private static final long SEED = 4711;
+
+    static final String VARIANTS_HEADER = "Chrom\tPos\tReference\tCall\trsid\tAF\tDepth";
+    static final String[] VARIANTS_TYPES = {"S", "I", "S", "S", "S", "D", "I"};
+    static final int VARIANTS_PER_CHROMOSOME = 10000;
+    static final int SEGMENTS_PER_CHROMOSOME = 1000;
+    static final int MERGE_FILES = 16;
+    /** Generated positions are below this on all chromosomes. */
+    static final int MAX_POS = 100 * VARIANTS_PER_CHROMOSOME;
+
+    /** The chromosomes in gor order. */
+    static final String[] CHROMOSOMES;
+
+    static {
+        CHROMOSOMES = new String[22];
+        for (int i = 0; i < CHROMOSOMES.length; i++) {
+            CHROMOSOMES[i] = "chr" + (i + 1);
+        }
+        Arrays.sort(CHROMOSOMES);
+    }
+
+    private static Path directory;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return the data folder, the data is generated on first use.
+     */
+    public static synchronized Path directory() {
+        if (directory == null) {
+            Path dir = Paths.get(System.getProperty(DIR_KEY, Paths.get(System.getProperty("java.io.tmpdir"), "gor-benchmark-data").toString()))
+                    .resolve(VERSION).toAbsolutePath();
+            try {
+                if (!Files.exists(dir.resolve("done"))) {
+                    generate(dir);
+                    Files.createFile(dir.resolve("done"));
+                }
+            } catch (IOException e) {
+                throw new GorSystemException("Could not generate benchmark data in " + dir, e);
+            }
+            directory = dir;
+        }
+        return directory;
+    }
+
+    /** Variants, with columns {@link #VARIANTS_HEADER}. */
+    public static Path variants() {
+        return directory().resolve("variants.gor");
+    }
+
+    /** The variants as column compressed gorz. */
+    public static Path variantsGorz() {
+        return directory().resolve("variants.gorz");
+    }
+
+    /** Segments, with columns Chrom, bpStart, bpStop and gene. */
+    public static Path segments() {
+        return directory().resolve("segments.gor");
+    }
+
+    /** Map from rsid to an annotation, as a tsv file. */
+    public static Path rsidMap() {
+        return directory().resolve("rsids.tsv");
+    }
+
+    /** The variants, dealt row by row into {@link #MERGE_FILES} files. */
+    public static Path mergeFile(int i) {
+        return directory().resolve("merge").resolve("part" + i + ".gor");
+    }
+
+    /**
+     * @return the first lines of the variants, without the header.
+     */
+    public static List<String> variantLines(int count) throws IOException {
+        List<String> lines = new ArrayList<>(count);
+        try (java.io.BufferedReader reader = Files.newBufferedReader(variants())) {
+            reader.readLine();
+            String line;
+            while (lines.size() < count && (line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Run the query with the data folder as project root.
+     *
+     * @return the number of rows returned.
+     */
+    public static long runQuery(String query) {
+        return runQuery(directory(), query);
+    }
+
+    private static long runQuery(Path root, String query) {
+        GorSession session = new GenericSessionFactory(root.toString(), System.getProperty("java.io.tmpdir")).create();
+        try (PipeInstance pipe = PipeInstance.createGorIterator(session.getGorContext())) {
+            pipe.init(query, null);
+            long count = 0;
+            while (pipe.hasNext()) {
+                pipe.next();
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private static void generate(Path dir) throws IOException {
+        Files.createDirectories(dir.resolve("merge"));
+        Random random = new Random(SEED);
+
+        String bases = "ACGT";
+        Writer[] mergeWriters = new Writer[MERGE_FILES];
+        try (Writer variants = newWriter(dir.resolve("variants.gor"));
+             Writer rsids = newWriter(dir.resolve("rsids.tsv"))) {
+            variants.write(VARIANTS_HEADER + "\n");
+            rsids.write("#rsid\tannotation\n");
+            for (int i = 0; i < MERGE_FILES; i++) {
+                mergeWriters[i] = newWriter(dir.resolve("merge").resolve("part" + i + ".gor"));
+                mergeWriters[i].write(VARIANTS_HEADER + "\n");
+            }
+            int row = 0;
+            for (String chrom : CHROMOSOMES) {
+                int pos = 0;
+                for (int i = 0; i < VARIANTS_PER_CHROMOSOME; i++) {
+                    pos += 1 + random.nextInt(199);
+                    char ref = bases.charAt(random.nextInt(4));
+                    char alt = bases.charAt((bases.indexOf(ref) + 1 + random.nextInt(3)) % 4);
+                    String line = String.format(Locale.ROOT, "%s\t%d\t%c\t%c\trs%d\t%.4f\t%d\n", chrom, pos, ref, alt,
+                            row, random.nextInt(10000) / 10000.0, random.nextInt(100));
+                    variants.write(line);
+                    mergeWriters[row % MERGE_FILES].write(line);
+                    if (random.nextInt(4) == 0) {
+                        rsids.write("rs" + row + "\tannotation" + random.nextInt(1000) + "\n");
+                    }
+                    row++;
+                }
+            }
+        } finally {
+            for (Writer writer : mergeWriters) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+
+        try (Writer segments = newWriter(dir.resolve("segments.gor"))) {
+            segments.write("Chrom\tbpStart\tbpStop\tgene\n");
+            int gene = 0;
+            for (String chrom : CHROMOSOMES) {
+                int start = 0;
+                for (int i = 0; i < SEGMENTS_PER_CHROMOSOME; i++) {
+                    start += random.nextInt(2000);
+                    int stop = start + 1 + random.nextInt(5000);
+                    segments.write(chrom + "\t" + start + "\t" + stop + "\tGENE" + gene++ + "\n");
+                }
+            }
+        }
+
+        runQuery(dir, "gor " + dir.resolve("variants.gor") + " | write -c " + dir.resolve("variants.gorz"));
+    }
+
+    private static Writer newWriter(Path path) throws IOException {
+        return new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), 64 * 1024);
+    }
+}
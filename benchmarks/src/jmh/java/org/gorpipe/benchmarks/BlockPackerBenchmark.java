@@ -0,0 +1,74 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.benchmarks;
+
+import org.gorpipe.gor.binsearch.BlockPacker;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Column encoding and decoding of a gorz block with {@link BlockPacker}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlockPackerBenchmark {
+    @Param({"100", "1000"})
+    public int rows;
+
+    private byte[] block;
+    private byte[] encoded;
+    private byte[] decoded;
+    private boolean[] projection;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        block = (String.join("\n", BenchmarkData.variantLines(rows)) + "\n").getBytes(StandardCharsets.UTF_8);
+        encoded = new byte[1024 + block.length];
+        BlockPacker.encode(block, encoded);
+        decoded = new byte[2 * block.length];
+        projection = new boolean[]{true, true, false, false, false, true, false};
+    }
+
+    @Benchmark
+    public int encode() {
+        return BlockPacker.encode(block, block.length, encoded, new HashMap<>(), false, 0);
+    }
+
+    @Benchmark
+    public int decode() {
+        return BlockPacker.decode(encoded, 0, decoded, 0);
+    }
+
+    @Benchmark
+    public int decodeProjected() {
+        return BlockPacker.decode(encoded, 0, decoded, 0, new HashMap<>(), projection);
+    }
+}
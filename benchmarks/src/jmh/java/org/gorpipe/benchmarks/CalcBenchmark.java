@@ -0,0 +1,80 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.benchmarks;
+
+import gorsat.parser.ParseArith;
+import gorsat.process.GenericSessionFactory;
+import org.gorpipe.gor.model.Row;
+import org.gorpipe.gor.model.RowBase;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of compiled calc expressions, as done by CALC and WHERE, over the variant rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CalcBenchmark {
+    private static final int ROWS = 1000;
+
+    @Param({
+            "AF * 2 + Depth",
+            "if(AF > 0.5, 'common', 'rare')",
+            "substr(rsid, 2, 5)",
+            "Reference + '>' + Call",
+            "listnumsum('0.5,' + str(AF) + ',' + str(Depth))",
+            "listhasany(Reference + ',' + Call, 'A,T')"
+    })
+    public String expression;
+
+    private Row[] rows;
+    private ParseArith filter;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        List<String> lines = BenchmarkData.variantLines(ROWS);
+        rows = new Row[lines.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new RowBase(lines.get(i));
+        }
+        filter = new ParseArith(null);
+        filter.setContext(new GenericSessionFactory().create().getGorContext(), false);
+        filter.setColumnNamesAndTypes(BenchmarkData.VARIANTS_HEADER.split("\t"), BenchmarkData.VARIANTS_TYPES);
+        filter.compileCalculation(expression);
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        for (Row row : rows) {
+            blackhole.consume(filter.evalFunction(row));
+        }
+    }
+}
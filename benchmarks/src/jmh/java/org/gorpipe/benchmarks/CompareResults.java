@@ -0,0 +1,96 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two jmh json result files, typically from two commits, and lists the change of each benchmark score.
+ * <p>
+ * Usage: CompareResults &lt;baseline.json&gt; &lt;current.json&gt;
+ */
+public class CompareResults {
+    /** Changes larger than this fraction, outside the score errors, are marked. */
+    private static final double THRESHOLD = 0.05;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <current.json>");
+            System.exit(1);
+        }
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        System.out.println(String.format(Locale.ROOT, "%-80s %14s %14s %9s  %s", "Benchmark", "Baseline", "Current", "Change", "Unit"));
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode currentMetric = entry.getValue().get("primaryMetric");
+            JsonNode baselineResult = baseline.get(entry.getKey());
+            double score = currentMetric.get("score").asDouble();
+            String unit = currentMetric.get("scoreUnit").asText();
+            if (baselineResult == null) {
+                System.out.println(String.format(Locale.ROOT, "%-80s %14s %14.3f %9s  %s", entry.getKey(), "-", score, "new", unit));
+                continue;
+            }
+            JsonNode baselineMetric = baselineResult.get("primaryMetric");
+            double baselineScore = baselineMetric.get("score").asDouble();
+            double change = (score - baselineScore) / baselineScore;
+            double error = baselineMetric.get("scoreError").asDouble(0) + currentMetric.get("scoreError").asDouble(0);
+            boolean significant = Math.abs(change) > THRESHOLD && Math.abs(score - baselineScore) > error;
+            System.out.println(String.format(Locale.ROOT, "%-80s %14.3f %14.3f %+8.1f%%  %s%s", entry.getKey(),
+                    baselineScore, score, 100 * change, unit, significant ? "  *" : ""));
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.println(String.format(Locale.ROOT, "%-80s %14s %14s %9s", key, "", "-", "removed"));
+            }
+        }
+    }
+
+    /**
+     * @return the results by benchmark name and parameters.
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText());
+            JsonNode params = result.get("params");
+            if (params != null) {
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> param = fields.next();
+                    key.append(':').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
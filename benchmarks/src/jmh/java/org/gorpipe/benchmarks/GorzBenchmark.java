@@ -0,0 +1,89 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.benchmarks;
+
+import org.gorpipe.gor.binsearch.GorzSeekableIterator;
+import org.gorpipe.gor.driver.adapters.StreamSourceSeekableFile;
+import org.gorpipe.gor.driver.meta.SourceReference;
+import org.gorpipe.gor.driver.providers.stream.sources.file.FileSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and seeking in a column compressed gorz file with {@link GorzSeekableIterator}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GorzBenchmark {
+    private static final int SEEKS = 1000;
+    private static final int ROWS_PER_SEEK = 10;
+
+    private String path;
+    private final String[] seekChromosomes = new String[SEEKS];
+    private final int[] seekPositions = new int[SEEKS];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        path = BenchmarkData.variantsGorz().toString();
+        Random random = new Random(17);
+        for (int i = 0; i < SEEKS; i++) {
+            seekChromosomes[i] = BenchmarkData.CHROMOSOMES[random.nextInt(BenchmarkData.CHROMOSOMES.length)];
+            seekPositions[i] = random.nextInt(BenchmarkData.MAX_POS);
+        }
+    }
+
+    private GorzSeekableIterator open() {
+        return new GorzSeekableIterator(new StreamSourceSeekableFile(new FileSource(new SourceReference(path))));
+    }
+
+    @Benchmark
+    public long readAll() {
+        try (GorzSeekableIterator iterator = open()) {
+            long rows = 0;
+            while (iterator.hasNext()) {
+                iterator.next();
+                rows++;
+            }
+            return rows;
+        }
+    }
+
+    @Benchmark
+    public void seekAndRead(Blackhole blackhole) {
+        try (GorzSeekableIterator iterator = open()) {
+            for (int i = 0; i < SEEKS; i++) {
+                iterator.seek(seekChromosomes[i], seekPositions[i]);
+                for (int j = 0; j < ROWS_PER_SEEK && iterator.hasNext(); j++) {
+                    blackhole.consume(iterator.next());
+                }
+            }
+        }
+    }
+}
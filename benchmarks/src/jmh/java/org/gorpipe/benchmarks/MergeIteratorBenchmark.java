@@ -0,0 +1,71 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.benchmarks;
+
+import org.gorpipe.gor.binsearch.GorSeekableIterator;
+import org.gorpipe.gor.driver.adapters.StreamSourceSeekableFile;
+import org.gorpipe.gor.driver.meta.SourceReference;
+import org.gorpipe.gor.driver.providers.stream.sources.file.FileSource;
+import org.gorpipe.gor.model.GenomicIterator;
+import org.gorpipe.gor.model.MergeIterator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging of sorted gor files with {@link MergeIterator}, the rows are spread evenly over the files.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MergeIteratorBenchmark {
+    @Param({"2", "16"})
+    public int sources;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkData.directory();
+    }
+
+    @Benchmark
+    public long merge() {
+        List<GenomicIterator> iterators = new ArrayList<>(sources);
+        for (int i = 0; i < sources; i++) {
+            String path = BenchmarkData.mergeFile(i).toString();
+            iterators.add(new GorSeekableIterator(new StreamSourceSeekableFile(new FileSource(new SourceReference(path)))));
+        }
+        try (MergeIterator iterator = new MergeIterator(iterators, false, null, null)) {
+            long rows = 0;
+            while (iterator.hasNext()) {
+                iterator.next();
+                rows++;
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole queries over the generated data, for the pipe steps that are measured through the query engine: the join
+ * variants of JOIN and VARJOIN, SORT GENOME, MAP and WRITE.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryBenchmark {
+    @Param({"join_snpsnp", "join_snpseg", "join_segseg", "varjoin", "sort_genome", "map", "write_gor", "write_gorz"})
+    public String step;
+
+    private String query;
+    private Path outputDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        outputDir = Files.createTempDirectory("gorbenchmark");
+        String variants = BenchmarkData.variants().toString();
+        String variantsGorz = BenchmarkData.variantsGorz().toString();
+        String segments = BenchmarkData.segments().toString();
+        switch (step) {
+            case "join_snpsnp":
+                query = "gor " + variantsGorz + " | join -snpsnp " + variants;
+                break;
+            case "join_snpseg":
+                query = "gor " + variantsGorz + " | join -snpseg " + segments;
+                break;
+            case "join_segseg":
+                query = "gor " + segments + " | join -segseg " + segments;
+                break;
+            case "varjoin":
+                query = "gor " + variantsGorz + " | varjoin -r " + variants;
+                break;
+            case "sort_genome":
+                query = "gor " + variantsGorz + " | sort genome -c AF:r";
+                break;
+            case "map":
+                query = "gor " + variantsGorz + " | map -c rsid -m missing " + BenchmarkData.rsidMap();
+                break;
+            case "write_gor":
+                query = "gor " + variantsGorz + " | write " + outputDir.resolve("out.gor");
+                break;
+            case "write_gorz":
+                query = "gor " + variantsGorz + " | write " + outputDir.resolve("out.gorz");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown step " + step);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.deleteQuietly(outputDir.toFile());
+    }
+
+    @Benchmark
+    public long run() {
+        return BenchmarkData.runQuery(query);
+    }
+}
@@ -27,6 +27,7 @@ import org.gorpipe.exceptions.GorException;
 import org.gorpipe.exceptions.GorSystemException;
 import org.gorpipe.gor.model.GenomicIterator;
 import org.gorpipe.gor.model.Row;
+import org.gorpipe.gor.stats.QueryProfile;
 import org.gorpipe.model.gor.RowObj;
 import org.gorpipe.model.gor.iterators.RowSource;
 import org.slf4j.Logger;
@@ -34,8 +35,6 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -51,7 +50,8 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
     private final Analysis pipeStep;
     private RowBuffer rowBuffer = null;
     private final Row endRow = RowObj.StoR("chrN\t-1");
-    private final Duration timeTriggerBufferFlush;
+    private final int ringSize;
+    private final Duration targetLatency;
     private final Duration batchOfferTimeout;
     private final Duration timeout;
     private final Duration logInterval;
@@ -73,11 +73,19 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
 
     private final BatchedReadSourceConfig brsConfig;
     private final boolean autoclose;
+    private QueryProfile profile;
 
     public void setCurrentChrom(String chrom) {
         this.currentChrom = chrom;
     }
 
+    /**
+     * Record the time the reader and the consumer wait for each other in the given profile, if not null.
+     */
+    public void setProfile(QueryProfile profile) {
+        this.profile = profile;
+    }
+
     static {
         String[] chroms = {"chr1","chr10","chr11","chr12","chr13","chr14","chr15","chr16","chr17","chr18","chr19","chr20","chr21","chr22","chrM","chrX","chrY"};
         IntStream.range(0,chroms.length-1).forEach(i -> nextChromMap.put(chroms[i],chroms[i+1]));
@@ -191,49 +199,6 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
         return ORDERED | SORTED | NONNULL | IMMUTABLE;
     }
 
-    private class TimeoutBufferAdaptor extends BufferAdaptor {
-        long timeTriggerBufferFlushNs;
-
-        public TimeoutBufferAdaptor(ReaderThread readerThread) {
-            super(readerThread);
-            timeTriggerBufferFlushNs = timeTriggerBufferFlush.getNano();
-        }
-
-        @Override
-        public void process(Row r) {
-            try {
-                if (!this.wantsNoMore()) {
-                    current.add(r);
-                    if (current.isFull()) {
-                        long nt = System.nanoTime();
-                        if (nt - t > timeTriggerBufferFlushNs) {
-                            if (readerThread.offer(current)) {
-                                updateTimeMeasurement(nt - t, current);
-                                current = current.nextRowBuffer();
-                                current.reduce(current.size() / 2);
-                                t = System.nanoTime();
-                            } else if (!current.enlarge(current.size() * 2)) {
-                                updateTimeMeasurement(nt - t, current);
-                                readerThread.offerBatch(current);
-                                current = current.nextRowBuffer();
-                                t = System.nanoTime();
-                            }
-                        } else if (!current.enlarge(current.size() * 8)) {
-                            updateTimeMeasurement(nt - t, current);
-                            readerThread.offerBatch(current);
-                            current = current.nextRowBuffer();
-                            t = System.nanoTime();
-                        }
-                    }
-                } else {
-                    readerThread.stopProcessing("Stop processing adaptor wantsNoMore");
-                }
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-            }
-        }
-    }
-
     private class SpliteratorAdaptor extends Analysis implements Consumer<Row> {
         Consumer<? super Row> cns;
 
@@ -265,26 +230,38 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
 
         public BufferAdaptor(ReaderThread readerThread) {
             setReaderThread(readerThread);
-            current = readerThread.rowBuffer1;
-            t = System.nanoTime();
         }
 
+        /**
+         * Hand off rows to the given reader thread, rows not yet handed off to the previous one are dropped.
+         */
         public void setReaderThread(ReaderThread rt) {
             readerThread = rt;
+            current = null;
+        }
+
+        private void publish() throws InterruptedException {
+            updateTimeMeasurement(System.nanoTime() - t, current);
+            readerThread.ring.publish(avgRowsPerMilliSecond);
+            claim();
+        }
+
+        private void claim() throws InterruptedException {
+            current = readerThread.claimBatch();
+            t = System.nanoTime();
         }
 
         @Override
         public void process(Row r) {
             try {
                 if (!this.wantsNoMore()) {
-                    current.add(r);
-                    if (current.isFull()) {
-                        if (readerThread.offer(current)) {
-                            current = current.nextRowBuffer();
-                            current.reduce(current.size() / 2);
-                        } else if (!current.enlarge(current.size() * 8)) {
-                            readerThread.offerBatch(current);
-                            current = current.nextRowBuffer();
+                    if (current == null) {
+                        claim();
+                    }
+                    if (current != null) {
+                        current.add(r);
+                        if (readerThread.ring.shouldPublish(current)) {
+                            publish();
                         }
                     }
                 } else {
@@ -299,12 +276,17 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
         public void finish() {
             try {
                 if( !isInErrorState() ) {
-                    if (current.isFull()) {
-                        readerThread.offerBatch(current);
-                        current = current.nextRowBuffer();
+                    if (current == null) {
+                        claim();
+                    }
+                    if (current != null && current.isFull()) {
+                        publish();
+                    }
+                    if (current != null) {
+                        current.add(endRow);
+                        readerThread.ring.publish(avgRowsPerMilliSecond);
+                        current = null;
                     }
-                    current.add(endRow);
-                    readerThread.offerBatch(current);
                 }
             } catch (InterruptedException ie) {
                 Thread.currentThread().interrupt();
@@ -316,9 +298,7 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
      * Reads from the sourceIterator into a buffer
      */
     private class ReaderThread extends Thread {
-        private final SynchronousQueue<RowBuffer> rowQueue = new SynchronousQueue<>();
-        private final RowBuffer rowBuffer1 = new RowBuffer();
-        private final RowBuffer rowBuffer2 = new RowBuffer(rowBuffer1);
+        private final RowBufferRing ring = new RowBufferRing(ringSize, targetLatency.toNanos());
         private Analysis bufferedPipeStep;
         private BufferAdaptor bufferAdaptor;
         private boolean stopProcessing = false;
@@ -342,17 +322,12 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
 
         private void init() {
             this.setName(Thread.currentThread().getName() + "::ReaderThread");
-            rowBuffer1.setNextRowBuffer(rowBuffer2);
             numberOfPollsBeforeLog = logInterval.toMillis() / batchOfferTimeout.toMillis();
             numberOfPollsBeforeTimeout = timeout.toMillis() / batchOfferTimeout.toMillis();
         }
 
         private void initPipeStep() {
-            if (timeTriggerBufferFlush.getNano() < 0) {
-                bufferAdaptor = new BufferAdaptor(this);
-            } else {
-                bufferAdaptor = new TimeoutBufferAdaptor(this);
-            }
+            bufferAdaptor = new BufferAdaptor(this);
             bufferedPipeStep = pipeStep != null ? pipeStep.$bar(bufferAdaptor) : bufferAdaptor;
             bufferedPipeStep.securedSetup(null);
         }
@@ -360,6 +335,7 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
         public void stopProcessing( String message ) {
             log.debug(message);
             stopProcessing = true;
+            ring.stop();
             if (bufferedPipeStep != null) bufferedPipeStep.wantsNoMore_$eq(true);
         }
 
@@ -390,36 +366,35 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
             }
         }
 
-        public boolean offer(RowBuffer rowBuffer) {
-            return rowQueue.offer(rowBuffer);
-        }
-
-        public RowBuffer poll() {
-            return rowQueue.poll();
-        }
-
-        public void offerBatch(RowBuffer current) throws InterruptedException {
+        public RowBuffer claimBatch() throws InterruptedException {
+            long start = profile != null ? System.nanoTime() : 0;
             int count = 0;
-            while (didStart && !stopProcessing && !rowQueue.offer(current, batchOfferTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            RowBuffer current = ring.claim(batchOfferTimeout.toNanos());
+            while (current == null && !ring.isStopped()) {
                 if (count > numberOfPollsBeforeTimeout) {
                     throw new GorSystemException("BatchedIteratorAdaptor polling for too long " + timeout.getSeconds(), null);
                 }
                 if (count++ % numberOfPollsBeforeLog == 0)
-                    log.debug("Offering batch for {}, batch size {}, query {}", numberOfPollsBeforeLog * count, current.size(), BatchedPipeStepIteratorAdaptor.this);
+                    log.debug("Waiting for batch to be taken for {}, query {}", numberOfPollsBeforeLog * count, BatchedPipeStepIteratorAdaptor.this);
+                current = ring.claim(batchOfferTimeout.toNanos());
             }
+            if (profile != null) profile.addWait("BatchedPipeStepIteratorAdaptor reader", System.nanoTime() - start);
+            return current;
         }
 
         public RowBuffer pollBatch() throws InterruptedException {
-            RowBuffer ret = rowQueue.poll(batchOfferTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            long start = profile != null ? System.nanoTime() : 0;
+            RowBuffer ret = ring.take(batchOfferTimeout.toNanos());
             int count = 0;
-            while (!stopProcessing && ret == null) {
-                ret = rowQueue.poll(batchOfferTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            while (!ring.isStopped() && ret == null) {
+                ret = ring.take(batchOfferTimeout.toNanos());
                 if (count > numberOfPollsBeforeTimeout) {
                     throw new GorSystemException("BatchedIteratorAdaptor polling for too long " + timeout.getSeconds(), null);
                 }
                 if (count++ % numberOfPollsBeforeLog == 0)
                     log.debug("Polling batch for {} time {}, query {}", numberOfPollsBeforeLog * count, Thread.currentThread().getId(), BatchedPipeStepIteratorAdaptor.this);
             }
+            if (profile != null) profile.addWait("BatchedPipeStepIteratorAdaptor consumer", System.nanoTime() - start);
             return ret;
         }
     }
@@ -440,7 +415,8 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
         this.autoclose = autoclose;
         setHeader(theHeader);
 
-        timeTriggerBufferFlush = brsConfig.getBufferFlushTimout();
+        ringSize = brsConfig.getBatchRingSize();
+        targetLatency = brsConfig.getBatchTargetLatency();
         batchOfferTimeout = brsConfig.getBatchOfferTimeout();
 
         timeout = Duration.ofSeconds(Long.parseLong(System.getProperty("gor.timeout.rowsource", "1800000")));
@@ -516,7 +492,6 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
         try {
             if (readerThread != null) {
                 readerThread.stopProcessing( "Stop processing seeking to " + seekChr + " " + seekPos );
-                readerThread.poll();
                 readerThread.join();
                 if (sourceIterator instanceof RowSource) {
                     ((RowSource) sourceIterator).setPosition(seekChr, seekPos);
@@ -528,11 +503,11 @@ public class BatchedPipeStepIteratorAdaptor extends RowSource implements Spliter
                 readerThread.setUncaughtExceptionHandler((tt, e) -> {
                     // THis is just so that the default handler does not write to std.err
                 });
-                rowBuffer = readerThread.rowBuffer1;
+                rowBuffer = RowBufferRing.EMPTY;
                 readerThread.start();
             }
         } catch (InterruptedException e) {
-            throw new GorSystemException("rowQueue take interrupted on setPosition", e);
+            throw new GorSystemException("Row batch take interrupted on setPosition", e);
         }
         avgSeekTimeMilliSecond = ((seekCount * avgSeekTimeMilliSecond + (System.nanoTime() - t) / 1000000.0) / (seekCount + 1));
         seekCount++;
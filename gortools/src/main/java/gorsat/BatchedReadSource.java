@@ -27,6 +27,7 @@ import org.gorpipe.exceptions.GorSystemException;
 import org.gorpipe.gor.model.GenomicIterator;
 import org.gorpipe.gor.monitor.GorMonitor;
 import org.gorpipe.gor.model.Row;
+import org.gorpipe.gor.stats.QueryProfile;
 import org.gorpipe.model.gor.RowObj;
 import org.gorpipe.model.gor.iterators.RowSource;
 import org.slf4j.Logger;
@@ -34,12 +35,12 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.util.Iterator;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.TimeUnit;
 
 /**
  * A wrapper rowSource reading the child rowSource in a thread into a buffer and offering to the main thread in batches
  * <p>
+ * The batches are handed off through a {@link RowBufferRing}, sized by the rate rows are read at.
+ * <p>
  * Created by sigmar on 21/11/2016.
  */
 public class BatchedReadSource extends RowSource {
@@ -48,7 +49,8 @@ public class BatchedReadSource extends RowSource {
     private final Row endRow = RowObj.StoR("chrN\t-1");
     private final Iterator<? extends Row> sourceIterator;
     private PollingThread readerThread;
-    private final Duration timeTriggerBufferFlush;
+    private final int ringSize;
+    private final Duration targetLatency;
     private final Duration batchOfferTimeout;
     private final Duration timeout;
     private final Duration logInterval;
@@ -63,6 +65,14 @@ public class BatchedReadSource extends RowSource {
     private int bavgCount = 0;
 
     private final GorMonitor gorMonitor;
+    private QueryProfile profile;
+
+    /**
+     * Record the time the reader and the consumer wait for each other in the given profile, if not null.
+     */
+    public void setProfile(QueryProfile profile) {
+        this.profile = profile;
+    }
 
     public void updateTimeMeasurement(long deltaTimeNs, RowBuffer current) {
         ++avgCount;
@@ -80,9 +90,7 @@ public class BatchedReadSource extends RowSource {
     }
 
     private class PollingThread extends Thread {
-        SynchronousQueue<RowBuffer> rowQueue = new SynchronousQueue<>();
-        RowBuffer rowBuffer1 = new RowBuffer();
-        RowBuffer rowBuffer2 = new RowBuffer(rowBuffer1);
+        final RowBufferRing ring = new RowBufferRing(ringSize, targetLatency.toNanos());
         boolean stopProcessingThread = false;
         boolean didStart = false;
 
@@ -90,48 +98,50 @@ public class BatchedReadSource extends RowSource {
         long numberOfPollsBeforeTimeout;
 
         PollingThread() {
-            rowBuffer1.setNextRowBuffer(rowBuffer2);
-
             numberOfPollsBeforeLog = logInterval.toMillis() / batchOfferTimeout.toMillis();
             numberOfPollsBeforeTimeout = timeout.toMillis() / batchOfferTimeout.toMillis();
         }
 
         void stopProcessing() {
             stopProcessingThread = true;
-        }
-
-        RowBuffer poll() {
-            return rowQueue.poll();
+            ring.stop();
         }
 
         public void run() {
             didStart = true;
         }
 
-        void offerBatch(RowBuffer current, Duration batchOfferTimeout) throws InterruptedException {
+        RowBuffer claimBatch() throws InterruptedException {
+            long start = profile != null ? System.nanoTime() : 0;
             int count = 0;
-            while (!stopProcessingThread && !rowQueue.offer(current, batchOfferTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            RowBuffer current = ring.claim(batchOfferTimeout.toNanos());
+            while (current == null && !ring.isStopped()) {
                 if (count++ % numberOfPollsBeforeLog == 0) {
-                    log.debug("Offering batch for for" + batchOfferTimeout.getSeconds() * count + ", batchsize " + current.size() + " threadid: " + Thread.currentThread().getId());
+                    log.debug("Waiting for batch to be taken for " + batchOfferTimeout.toMillis() * count + "ms, threadid: " + Thread.currentThread().getId());
                 }
+                current = ring.claim(batchOfferTimeout.toNanos());
             }
+            if (profile != null) profile.addWait("BatchedReadSource reader", System.nanoTime() - start);
+            return current;
         }
 
         int lastCount = 0;
         int pollCount = 0;
         RowBuffer pollBatch() throws InterruptedException {
-            RowBuffer rowBuffer = rowQueue.poll(batchOfferTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            long start = profile != null ? System.nanoTime() : 0;
+            RowBuffer rowBuffer = ring.take(batchOfferTimeout.toNanos());
             int count = 0;
-            while (!stopProcessingThread && rowBuffer == null) {
+            while (!ring.isStopped() && rowBuffer == null) {
                 if (count > numberOfPollsBeforeTimeout) {
                     throw new RuntimeException("BatchedReadSource polling for too long " + timeout.getSeconds());
                 }
                 if (count++ % numberOfPollsBeforeLog == 0) {
-                    log.debug("BatchedReadSource polling for" + batchOfferTimeout.getSeconds() * count + ", threadid: " + Thread.currentThread().getId());
+                    log.debug("BatchedReadSource polling for " + batchOfferTimeout.toMillis() * count + "ms, threadid: " + Thread.currentThread().getId());
                 }
-                rowBuffer = rowQueue.poll(batchOfferTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                rowBuffer = ring.take(batchOfferTimeout.toNanos());
             }
             pollCount += count+1;
+            if (profile != null) profile.addWait("BatchedReadSource consumer", System.nanoTime() - start);
 
             if( gorMonitor != null && rowBuffer != null && pollCount-lastCount > 200 ) {
                 if (isCancelled()) {
@@ -149,62 +159,35 @@ public class BatchedReadSource extends RowSource {
             super();
         }
 
+        private RowBuffer publish(RowBuffer current, long deltaTimeNs) throws InterruptedException {
+            updateTimeMeasurement(deltaTimeNs, current);
+            ring.publish(avgRowsPerMilliSecond);
+            return claimBatch();
+        }
+
         @Override
         public void run() {
             super.run();
             try {
-                RowBuffer current = rowBuffer1;
-                if (timeTriggerBufferFlush.getNano() < 0) {
-                    while (!stopProcessingThread && sourceIterator.hasNext()) {
-                        Row next = sourceIterator.next();
-                        current.add(next);
-                        if (current.isFull()) {
-                            if (rowQueue.offer(current)) {
-                                current = current.nextRowBuffer();
-                                current.reduce(current.getCapacity() / 2);
-                            } else if (!current.enlarge(current.getCapacity() * 8)) {
-                                offerBatch(current, batchOfferTimeout);
-                                current = current.nextRowBuffer();
-                            }
-                        }
-                    }
-                } else {
-                    long t = System.nanoTime();
-                    long timeTriggerBufferFlushNs = timeTriggerBufferFlush.getNano();
-                    while (!stopProcessingThread && sourceIterator.hasNext()) {
-                        Row next = sourceIterator.next();
-                        current.add(next);
-                        if (current.isFull()) {
-                            long nt = System.nanoTime();
-                            if (nt - t > timeTriggerBufferFlushNs) {
-                                if (rowQueue.offer(current)) {
-                                    updateTimeMeasurement(nt - t, current);
-                                    current = current.nextRowBuffer();
-                                    current.reduce(current.getCapacity() / 2);
-                                    t = System.nanoTime();
-                                } else if (!current.enlarge(current.getCapacity() * 2)) {
-                                    updateTimeMeasurement(nt - t, current);
-                                    offerBatch(current, batchOfferTimeout);
-                                    current = current.nextRowBuffer();
-                                    t = System.nanoTime();
-                                }
-                            } else if (!current.enlarge(current.getCapacity() * 8)) {
-                                updateTimeMeasurement(nt - t, current);
-                                offerBatch(current, batchOfferTimeout);
-                                current = current.nextRowBuffer();
-                                t = System.nanoTime();
-                            }
-                        }
+                RowBuffer current = claimBatch();
+                long t = System.nanoTime();
+                while (current != null && !stopProcessingThread && sourceIterator.hasNext()) {
+                    Row next = sourceIterator.next();
+                    current.add(next);
+                    if (ring.shouldPublish(current)) {
+                        current = publish(current, System.nanoTime() - t);
+                        t = System.nanoTime();
                     }
                 }
-                if (current.isFull()) {
-                    offerBatch(current, batchOfferTimeout);
-                    current = current.nextRowBuffer();
+                if (current != null && current.isFull()) {
+                    current = publish(current, System.nanoTime() - t);
+                }
+                if (current != null) {
+                    current.add(endRow);
+                    ring.publish(avgRowsPerMilliSecond);
                 }
-                current.add(endRow);
-                offerBatch(current, batchOfferTimeout);
             } catch (InterruptedException e) {
-                log.error("rowQueue put interrupted", e);
+                log.error("Row batch handoff interrupted", e);
                 setEx(e);
             } catch (Throwable e) {
                 setEx(e);
@@ -223,7 +206,8 @@ public class BatchedReadSource extends RowSource {
         this.sourceIterator = sourceIterator;
         this.gorMonitor = gorMonitor;
         this.setHeader(header);
-        timeTriggerBufferFlush = brsConfig.getBufferFlushTimout();
+        ringSize = brsConfig.getBatchRingSize();
+        targetLatency = brsConfig.getBatchTargetLatency();
         batchOfferTimeout = brsConfig.getBatchOfferTimeout();
         timeout = Duration.ofSeconds(Long.parseLong(System.getProperty("gor.timeout.rowsource", "1800000")));
         logInterval = brsConfig.getLogInterval();
@@ -273,7 +257,6 @@ public class BatchedReadSource extends RowSource {
         try {
             if (rowBuffer == null) {
                 readerThread = new ReaderThread();
-                rowBuffer = readerThread.rowBuffer1;
                 readerThread.start();
                 rowBuffer = readerThread.pollBatch();
             } else if (!rowBuffer.available()) {
@@ -289,7 +272,7 @@ public class BatchedReadSource extends RowSource {
             }
             return rowBuffer != null && rowBuffer.hasNext();
         } catch (InterruptedException e) {
-            throw new GorSystemException("rowQueue take interrupted", e);
+            throw new GorSystemException("Row batch take interrupted", e);
         }
     }
 
@@ -312,12 +295,12 @@ public class BatchedReadSource extends RowSource {
             if( sourceIterator instanceof RowSource ) ((RowSource)sourceIterator).setPosition(seekChr, seekPos);
             if (readerThread != null) {
                 readerThread.stopProcessing();
-                readerThread.poll();
                 readerThread.join();
                 readerThread = null;
+                rowBuffer = null;
             }
         } catch (InterruptedException e) {
-            throw new GorSystemException("rowQueue take interrupted on setPosition", e);
+            throw new GorSystemException("Row batch take interrupted on setPosition", e);
         }
         avgSeekTimeMilliSecond = ((seekCount * avgSeekTimeMilliSecond + (System.nanoTime() - t) / 1000000.0) / (seekCount + 1));
         seekCount++;
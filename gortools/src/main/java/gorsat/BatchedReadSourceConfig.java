@@ -32,7 +32,6 @@ import java.time.Duration;
  * Created by sigmar on 26/04/2017.
  */
 public interface BatchedReadSourceConfig extends Config {
-    String BATCHEDREADSOURCETIMETRIGGERMS_KEY = "gor.bufferflush.timetrigger";
     String BATCHOFFERTIMEOUTMS_KEY = "gor.batch.offer.timeout";
     String BATCHLOGINTERVALMS_KEY = "gor.batch.log.interval";
     String BATCHMAXGORLINES_KEY = "gor.batch.max.gorlines";
@@ -41,6 +40,8 @@ public interface BatchedReadSourceConfig extends Config {
     String CONNECTIONRETRIES_KEY = "gor.cmd.connection.retries";
     String CONNECTIONRETRYTIME_KEY = "gor.cmd.connection.retry.time";
     String CONNECTIONRETRYEXPONENT_KEY = "gor.cmd.connection.retry.exponent";
+    String BATCHTARGETLATENCY_KEY = "gor.batch.target.latency";
+    String BATCHRINGSIZE_KEY = "gor.batch.ring.size";
 
     @Config.Key(CONNECTIONRETRIES_KEY)
     @Config.DefaultValue("10")
@@ -74,11 +75,16 @@ public interface BatchedReadSourceConfig extends Config {
     @Documentation("Max milliseconds until read buffer is flushed")
     Duration getBufferFillTime();
 
-    @Config.Key(BATCHEDREADSOURCETIMETRIGGERMS_KEY)
-    @Config.DefaultValue("100ms")
+    @Config.Key(BATCHTARGETLATENCY_KEY)
+    @Config.DefaultValue("1ms")
     @ConverterClass(DurationConverter.class)
-    @Documentation("Minimum milliseconds until read buffer is flushed")
-    Duration getBufferFlushTimout();
+    @Documentation("Rows the reader makes in this time are handed off as a batch when the consumer is waiting")
+    Duration getBatchTargetLatency();
+
+    @Config.Key(BATCHRINGSIZE_KEY)
+    @Config.DefaultValue("4")
+    @Documentation("Number of row batches buffered between the reader and the consumer")
+    Integer getBatchRingSize();
 
     @Config.Key(BATCHOFFERTIMEOUTMS_KEY)
     @Config.DefaultValue("100ms")
@@ -0,0 +1,241 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.Regression;
+
+import java.util.Arrays;
+
+import static gorsat.Regression.LinearAlgebra.*;
+import static gorsat.Regression.RegressionUtilities.computePValues;
+
+/**
+ * Fits the linear model y = b_0 + b_1 * g + b_2 * z_1 + ... + b_n * z_(n-1) for a block of genotype vectors g which
+ * all share the same phenotype y and covariates z_1,...,z_(n-1).
+ *
+ * The covariate part of the design matrix is QR decomposed once, when the object is created. The genotype vectors are
+ * then projected onto the orthogonal complement of the covariates, so a whole block of variants costs one
+ * multiplication with Q instead of one decomposition of the full design matrix per variant. The results are the same
+ * as those of {@link LinearRegression}, up to rounding.
+ *
+ * The output arrays are indexed by the position of the variant in the block, and within each variant in the same
+ * order as in {@link LinearRegression}, i.e. intercept, genotype and then the covariates.
+ */
+public class BatchedLinearRegression {
+    //A genotype vector whose residual norm is below this fraction of its norm is considered to lie in the covariate space.
+    private final static double COLLINEARITY_THRESHOLD = 1e-10;
+
+    final private int numberOfSamples;
+    final private int p;
+    final private int n;
+    final private double[][] Q;
+    final private double[][] Rinv;
+    final private double[] zzInvDiag;
+    final private double[] y;
+    final private double[] qy;
+    final private double[] zy;
+    final private double yResidual2;
+
+    final private double[] a;
+
+    final public double[][] beta;
+    final public double[][] betaError;
+    final public double[][] tStats;
+    final public double[][] pValues;
+    final public boolean[] valid;
+
+    /**
+     * @param covariates       The covariates, column by column. Only the first {@code numberOfSamples} entries are read.
+     * @param y                The phenotype. Only the first {@code numberOfSamples} entries are read.
+     * @param numberOfSamples  The number of samples.
+     * @param maxBlockSize     The maximum number of variants which will be passed to {@link #runRegressions}.
+     * @throws IllegalArgumentException if there are too few samples or the covariates are linearly dependent.
+     */
+    public BatchedLinearRegression(double[][] covariates, double[] y, int numberOfSamples, int maxBlockSize) {
+        this.p = covariates.length + 1;
+        this.n = this.p + 1;
+        if (numberOfSamples <= this.n) {
+            throw new IllegalArgumentException("Number of samples must be greater than the number of covariates.");
+        }
+        this.numberOfSamples = numberOfSamples;
+
+        final double[][] R = new double[this.p][this.p];
+        this.Q = new double[this.p][];
+        this.Q[0] = new double[numberOfSamples];
+        Arrays.fill(this.Q[0], 1);
+        for (int j = 1; j < this.p; ++j) {
+            this.Q[j] = Arrays.copyOf(covariates[j - 1], numberOfSamples);
+        }
+        orthonormalize(this.Q, R, numberOfSamples);
+        this.Rinv = new double[this.p][this.p];
+        invertUpper(R, this.Rinv, this.p);
+
+        this.zzInvDiag = new double[this.p];
+        for (int i = 0; i < this.p; ++i) {
+            double s = 0;
+            for (int j = i; j < this.p; ++j) {
+                s += this.Rinv[i][j] * this.Rinv[i][j];
+            }
+            this.zzInvDiag[i] = s;
+        }
+
+        this.y = Arrays.copyOf(y, numberOfSamples);
+        this.qy = new double[this.p];
+        double qy2 = 0;
+        for (int j = 0; j < this.p; ++j) {
+            this.qy[j] = dotProd(this.Q[j], this.y, numberOfSamples);
+            qy2 += this.qy[j] * this.qy[j];
+        }
+        this.zy = new double[this.p];
+        multiplyUpper(this.Rinv, this.qy, this.zy, this.p);
+        this.yResidual2 = dotProd(this.y, this.y, numberOfSamples) - qy2;
+
+        this.a = new double[this.p];
+        this.beta = new double[maxBlockSize][this.n];
+        this.betaError = new double[maxBlockSize][this.n];
+        this.tStats = new double[maxBlockSize][this.n];
+        this.pValues = new double[maxBlockSize][this.n];
+        this.valid = new boolean[maxBlockSize];
+    }
+
+    public int getNumberOfSamples() {
+        return numberOfSamples;
+    }
+
+    /**
+     * Runs the regression for the genotype vectors {@code genotypes[i]} with {@code i < count} and {@code include[i]}
+     * true. Each genotype vector must be given for the same samples, in the same order, as the phenotype. After the
+     * call {@code valid[i]} tells whether the results for variant {@code i} were computed. Variants which were not
+     * included, or whose genotypes are collinear with the covariates, are left for the caller to handle.
+     */
+    public void runRegressions(double[][] genotypes, boolean[] include, int count) {
+        final int m = this.numberOfSamples;
+        //The projections Q^T * g for the whole block are computed as one matrix product, Q row by row for locality.
+        final double[][] qgs = new double[count][this.p];
+        for (int j = 0; j < this.p; ++j) {
+            final double[] Q_j = this.Q[j];
+            for (int i = 0; i < count; ++i) {
+                if (include[i]) {
+                    qgs[i][j] = dotProd(Q_j, genotypes[i], m);
+                }
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            this.valid[i] = include[i] && regress(genotypes[i], qgs[i], i);
+        }
+    }
+
+    private boolean regress(double[] g, double[] qg, int idx) {
+        final int m = this.numberOfSamples;
+        final double gg = dotProd(g, g, m);
+        final double gy = dotProd(g, this.y, m);
+        double qg2 = 0, qgqy = 0;
+        for (int j = 0; j < this.p; ++j) {
+            qg2 += qg[j] * qg[j];
+            qgqy += qg[j] * this.qy[j];
+        }
+        final double s = gg - qg2;
+        if (!(s > COLLINEARITY_THRESHOLD * gg)) {
+            return false;
+        }
+        final double bg = (gy - qgqy) / s;
+        final double error2 = this.yResidual2 - bg * bg * s;
+        final double errorVar = error2 / (m - this.n);
+
+        //a = (Z^TZ)^{-1}Z^Tg = R^{-1}Q^Tg.
+        multiplyUpper(this.Rinv, qg, this.a, this.p);
+
+        final double[] beta = this.beta[idx];
+        final double[] betaError = this.betaError[idx];
+        final double[] tStats = this.tStats[idx];
+
+        beta[0] = this.zy[0] - this.a[0] * bg;
+        betaError[0] = Math.sqrt(errorVar * (this.zzInvDiag[0] + this.a[0] * this.a[0] / s));
+        beta[1] = bg;
+        betaError[1] = Math.sqrt(errorVar / s);
+        for (int j = 1; j < this.p; ++j) {
+            beta[j + 1] = this.zy[j] - this.a[j] * bg;
+            betaError[j + 1] = Math.sqrt(errorVar * (this.zzInvDiag[j] + this.a[j] * this.a[j] / s));
+        }
+        for (int j = 0; j < this.n; ++j) {
+            tStats[j] = beta[j] / betaError[j];
+        }
+        computePValues(tStats, this.pValues[idx]);
+        return true;
+    }
+
+    /**
+     * Orthonormalizes the columns X[0],...,X[k-1] in place with the modified Gram-Schmidt process, applied twice for
+     * stability, and writes the upper triangular matrix R s.t. X = QR to R, indexed (row, column).
+     */
+    private static void orthonormalize(double[][] X, double[][] R, int m) {
+        for (int j = 0; j < X.length; ++j) {
+            final double[] X_j = X[j];
+            final double originalNorm = Math.sqrt(dotProd(X_j, X_j, m));
+            for (int pass = 0; pass < 2; ++pass) {
+                for (int i = 0; i < j; ++i) {
+                    final double r = dotProd(X[i], X_j, m);
+                    R[i][j] += r;
+                    addMultipleOf(X_j, -r, X[i], 0, m);
+                }
+            }
+            final double norm = Math.sqrt(dotProd(X_j, X_j, m));
+            if (!(norm > Math.sqrt(COLLINEARITY_THRESHOLD) * originalNorm)) {
+                throw new IllegalArgumentException("Covariates are linearly dependent.");
+            }
+            R[j][j] = norm;
+            final double invNorm = 1 / norm;
+            for (int i = 0; i < m; ++i) {
+                X_j[i] *= invNorm;
+            }
+        }
+    }
+
+    /**
+     * Inverts the upper triangular k x k matrix U, indexed (row, column), and writes the result to X.
+     */
+    private static void invertUpper(double[][] U, double[][] X, int k) {
+        for (int col = 0; col < k; ++col) {
+            X[col][col] = 1 / U[col][col];
+            for (int row = col - 1; row != -1; --row) {
+                double s = 0;
+                for (int l = row + 1; l <= col; ++l) {
+                    s += U[row][l] * X[l][col];
+                }
+                X[row][col] = -s / U[row][row];
+            }
+        }
+    }
+
+    /**
+     * Computes y = Ux for the upper triangular k x k matrix U, indexed (row, column).
+     */
+    private static void multiplyUpper(double[][] U, double[] x, double[] y, int k) {
+        for (int i = 0; i < k; ++i) {
+            final double[] U_i = U[i];
+            double s = 0;
+            for (int j = i; j < k; ++j) {
+                s += U_i[j] * x[j];
+            }
+            y[i] = s;
+        }
+    }
+}
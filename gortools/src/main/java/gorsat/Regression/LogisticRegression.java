@@ -83,13 +83,31 @@ abstract public class LogisticRegression {
     }
 
     public boolean runRegression(double[][] x, boolean[] y, int numberOfSamples, double tol, int maxIter) {
-        this.numberOfSamples = numberOfSamples;
-        boolean converged;
         if (!betaClean) {
             Arrays.fill(beta, 0);
         }
+        return fit(x, y, numberOfSamples, tol, maxIter, true);
+    }
+
+    /**
+     * Fits the model as {@link #runRegression(double[][], boolean[], int, double, int)} but starts Newton's method at
+     * {@code initialBeta} instead of at zero. When fitting many variants against the same phenotype, the fit of the
+     * model without the genotype is a good starting point and saves iterations.
+     */
+    public boolean runRegression(double[][] x, boolean[] y, int numberOfSamples, double tol, int maxIter, double[] initialBeta) {
+        System.arraycopy(initialBeta, 0, beta, 0, dim);
+        return fit(x, y, numberOfSamples, tol, maxIter, false);
+    }
+
+    private boolean fit(double[][] x, boolean[] y, int numberOfSamples, double tol, int maxIter, boolean fromZero) {
+        this.numberOfSamples = numberOfSamples;
+        boolean converged;
         try {
-            updateGradientAndHessianFirstRun(x, y);
+            if (fromZero) {
+                updateGradientAndHessianFirstRun(x, y);
+            } else {
+                updateGradientAndHessian(x, y);
+            }
             updateBeta();
             converged = error < tol;
             numberOfIterations = 1;
@@ -99,6 +117,12 @@ abstract public class LogisticRegression {
                 converged = error < tol;
                 numberOfIterations++;
             }
+            if (converged && !fromZero) {
+                //One more step so a warm started fit ends closer to the estimates, and hessian, of a fit from zero.
+                //They agree within the tolerance, not exactly. Fits from zero are left as they always were.
+                updateGradientAndHessian(x, y);
+                updateBeta();
+            }
             betaClean = false;
         } catch (IllegalArgumentException e) {
             //The hessian is not positive definite. Just want to keep on.
@@ -0,0 +1,135 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat;
+
+import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.model.Row;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring of row batches between one producer thread and one consumer thread.
+ * <p>
+ * The producer only writes the tail and the consumer only writes the head, so no locks are needed, a thread waiting for
+ * room or for a batch spins shortly and then parks.  The producer closes the ring after the last batch, the consumer
+ * cancels it when it will not take more batches, after which puts are dropped.
+ */
+public class RowBatchRing {
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private final Row[][] batches;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();  // Next batch to take, written by the consumer.
+    private final AtomicLong tail = new AtomicLong();  // Next batch to put, written by the producer.
+    private volatile boolean closed = false;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Constructor
+     * @param capacity number of batches the ring holds, rounded up to a power of two.
+     */
+    public RowBatchRing(int capacity) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        batches = new Row[size][];
+        mask = size - 1;
+    }
+
+    /**
+     * Put a batch into the ring, waits while the ring is full.
+     *
+     * @param batch the rows, the array is owned by the ring after the call.
+     * @return false if the ring has been cancelled and the batch was dropped.
+     */
+    public boolean put(Row[] batch) {
+        final long t = tail.get();
+        int idle = 0;
+        while (t - head.get() == batches.length) {
+            if (cancelled) {
+                return false;
+            }
+            idle = idle(idle);
+        }
+        if (cancelled) {
+            return false;
+        }
+        batches[(int) t & mask] = batch;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Take the next batch from the ring, waits while the ring is empty.
+     *
+     * @return the batch, or null if the ring has been closed and all the batches taken, or it has been cancelled.
+     */
+    public Row[] take() {
+        final long h = head.get();
+        int idle = 0;
+        while (h == tail.get()) {
+            if (cancelled || closed && h == tail.get()) {
+                return null;
+            }
+            idle = idle(idle);
+        }
+        final int index = (int) h & mask;
+        final Row[] batch = batches[index];
+        batches[index] = null;
+        head.lazySet(h + 1);
+        return batch;
+    }
+
+    /**
+     * Called by the producer after the last batch has been put.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Called by the consumer when it will not take more batches.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private static int idle(int idle) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new GorSystemException("Interrupted while waiting for row batches", null);
+        }
+        if (idle < SPINS) {
+            // Busy wait, the other thread is usually about to catch up
+        } else if (idle < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return idle + 1;
+    }
+}
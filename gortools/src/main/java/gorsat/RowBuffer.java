@@ -105,6 +105,13 @@ public class RowBuffer implements Iterator<Row> {
         capacity = Math.max(newsize, 1);
     }
 
+    /**
+     * Set the number of rows the buffer is full at, at least one and at most {@code MAX_NUMBER_OF_ROWS}.
+     */
+    public void setCapacity(int newsize) {
+        capacity = Math.max(1, Math.min(newsize, rowArray.length));
+    }
+
     public Row get(int i) {
         return rowArray[i];
     }
@@ -0,0 +1,221 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+package gorsat;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring of row buffers handing batches of rows from one producer thread to one consumer thread.
+ * <p>
+ * The buffers are owned by the ring and reused.  The producer fills the buffer at the tail and publishes it, the
+ * consumer reads the buffer at the head and releases it when it takes the next one.  The producer only writes the
+ * tail and the consumer only writes the head, so no locks are needed.  A thread that has to wait for the other parks,
+ * and is unparked as soon as a buffer is published or released.
+ * <p>
+ * The size of the batches adapts to the rate of the producer and to whether the consumer keeps up.  While the consumer
+ * is waiting, a batch is handed off once it holds the rows the producer makes in the target latency, or has been
+ * filling for longer than that, so rows from sparse reads reach the consumer without delay.  While the producer finds
+ * the ring full the batches grow, up to the capacity of the buffers, so bulk reads are handed off in large batches.
+ */
+public class RowBufferRing {
+    private static final int SPINS = 64;
+    private static final int MAX_SCALE = 1 << 16;
+
+    /** Consumer buffer before the first batch has been taken. */
+    static final RowBuffer EMPTY = new RowBuffer(1);
+
+    private final RowBuffer[] buffers;
+    private final int mask;
+    private final long targetLatencyNs;
+    private final AtomicLong head = new AtomicLong();  // Buffer read by the consumer, written by the consumer.
+    private final AtomicLong tail = new AtomicLong();  // Buffer filled by the producer, written by the producer.
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+    private volatile boolean stopped = false;
+
+    // Consumer state
+    private boolean holding = false;
+
+    // Producer state
+    private int targetRows = 1;
+    private int scale = 1;
+    private long batchStart;
+
+    /**
+     * Constructor
+     * @param capacity        number of buffers in the ring, rounded up to a power of two, at least two.
+     * @param targetLatencyNs time the rows of a batch should wait for a consumer that is waiting for them.
+     */
+    public RowBufferRing(int capacity, long targetLatencyNs) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        buffers = new RowBuffer[size];
+        for (int i = 0; i < size; i++) {
+            buffers[i] = new RowBuffer(1);
+        }
+        mask = size - 1;
+        this.targetLatencyNs = targetLatencyNs;
+    }
+
+    /**
+     * Claim the buffer at the tail for the producer to fill, waits while the ring is full.
+     *
+     * @param timeoutNs maximum time to wait.
+     * @return the empty buffer, or null if the wait timed out or the ring has been stopped.
+     */
+    public RowBuffer claim(long timeoutNs) throws InterruptedException {
+        final long t = tail.get();
+        if (t - head.get() == buffers.length) {
+            // The consumer is behind, larger batches are cheaper for it
+            scale = Math.min(scale * 2, MAX_SCALE);
+            waitingProducer = Thread.currentThread();
+            try {
+                if (!await(() -> t - head.get() < buffers.length, timeoutNs)) {
+                    return null;
+                }
+            } finally {
+                waitingProducer = null;
+            }
+        }
+        if (stopped) {
+            return null;
+        }
+        final RowBuffer buffer = buffers[(int) t & mask];
+        buffer.clear();
+        buffer.setCapacity((int) Math.min((long) targetRows * scale, RowBuffer.MAX_NUMBER_OF_ROWS));
+        batchStart = System.nanoTime();
+        return buffer;
+    }
+
+    /**
+     * Called by the producer after adding a row to the claimed buffer.
+     *
+     * @return true if the buffer should be published now.
+     */
+    public boolean shouldPublish(RowBuffer current) {
+        if (current.isFull()) {
+            return true;
+        }
+        return waitingConsumer != null
+                && (current.size() >= targetRows || System.nanoTime() - batchStart >= targetLatencyNs);
+    }
+
+    /**
+     * Publish the claimed buffer to the consumer.
+     *
+     * @param rowsPerMilliSecond rate the producer makes rows at, to size the next batches by.
+     */
+    public void publish(double rowsPerMilliSecond) {
+        if (waitingConsumer != null && scale > 1) {
+            // The consumer keeps up, smaller batches reach it sooner
+            scale /= 2;
+        }
+        targetRows = (int) Math.max(1, Math.min(RowBuffer.MAX_NUMBER_OF_ROWS, rowsPerMilliSecond * targetLatencyNs / 1000000.0));
+        tail.set(tail.get() + 1);
+        final Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Release the buffer the consumer has read and take the next one, waits while the ring is empty.
+     *
+     * @param timeoutNs maximum time to wait.
+     * @return the buffer, or null if the wait timed out or the ring has been stopped.
+     */
+    public RowBuffer take(long timeoutNs) throws InterruptedException {
+        long h = head.get();
+        if (holding) {
+            holding = false;
+            head.set(++h);
+            final Thread producer = waitingProducer;
+            if (producer != null) {
+                LockSupport.unpark(producer);
+            }
+        }
+        final long next = h;
+        if (next == tail.get()) {
+            waitingConsumer = Thread.currentThread();
+            try {
+                if (!await(() -> next < tail.get(), timeoutNs)) {
+                    return null;
+                }
+            } finally {
+                waitingConsumer = null;
+            }
+        }
+        holding = true;
+        return buffers[(int) next & mask];
+    }
+
+    /**
+     * Stop the ring, the threads waiting on it return.
+     */
+    public void stop() {
+        stopped = true;
+        final Thread producer = waitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+        final Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    /**
+     * Wait for the condition, spinning shortly before parking.  The waiting thread is published before the condition
+     * is checked, and the other thread changes the state before it checks for a waiting thread, so wakeups are not lost.
+     */
+    private boolean await(Condition condition, long timeoutNs) throws InterruptedException {
+        for (int i = 0; i < SPINS; i++) {
+            if (condition.holds()) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+        final long deadline = System.nanoTime() + timeoutNs;
+        while (!condition.holds()) {
+            if (stopped) {
+                return false;
+            }
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+}
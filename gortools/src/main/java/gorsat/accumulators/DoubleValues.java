@@ -0,0 +1,165 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.accumulators;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive doubles, with the exact order statistics used by the aggregation commands.  Values are
+ * kept in the order they are added, the sorted values are computed once and kept until the next value is added.
+ */
+public final class DoubleValues {
+    private static final double[] EMPTY_ARRAY = new double[0];
+
+    private double[] values = EMPTY_ARRAY;
+    private int size = 0;
+    private double[] sorted = null;
+
+    public void add(double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(8, size + (size >> 1)));
+        }
+        values[size++] = value;
+        sorted = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double get(int i) {
+        return values[i];
+    }
+
+    public void clear() {
+        values = EMPTY_ARRAY;
+        size = 0;
+        sorted = null;
+    }
+
+    /**
+     * @return copy of the values in the order they were added.
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * @return the values in ascending order, the array must not be modified.
+     */
+    public double[] sorted() {
+        if (sorted == null) {
+            sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+        }
+        return sorted;
+    }
+
+    /**
+     * Positions of the values in value order.  The sort is stable, values that compare equal are in the order they
+     * were added.
+     *
+     * @param ascending true for ascending order, false for descending.
+     * @return positions of the values, ordered by value.
+     */
+    public int[] order(boolean ascending) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        int[] work = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int lo = 0; lo < size; lo += 2 * width) {
+                final int mid = Math.min(lo + width, size);
+                final int hi = Math.min(lo + 2 * width, size);
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while (i < mid && j < hi) {
+                    final int c = Double.compare(values[order[j]], values[order[i]]);
+                    work[k++] = (ascending ? c < 0 : c > 0) ? order[j++] : order[i++];
+                }
+                while (i < mid) work[k++] = order[i++];
+                while (j < hi) work[k++] = order[j++];
+            }
+            final int[] swap = order;
+            order = work;
+            work = swap;
+        }
+        return order;
+    }
+
+    /**
+     * @return the value at position size / 2 of the sorted values, the upper median.
+     */
+    public double upperMedian() {
+        return sorted()[size / 2];
+    }
+
+    /**
+     * @return the median, the mean of the two middle values if there is an even number of values.
+     */
+    public double median() {
+        final double[] s = sorted();
+        return size % 2 == 0 ? (s[size / 2 - 1] + s[size / 2]) / 2.0 : s[size / 2];
+    }
+
+    /**
+     * @return number of distinct values, as compared by {@link Double#compare}.
+     */
+    public int distinctCount() {
+        final double[] s = sorted();
+        int count = size > 0 ? 1 : 0;
+        for (int i = 1; i < size; i++) {
+            if (Double.compare(s[i - 1], s[i]) != 0) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the distinct values in ascending order.
+     */
+    public double[] sortedDistinct() {
+        final double[] s = sorted();
+        final double[] distinct = new double[distinctCount()];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || Double.compare(s[i - 1], s[i]) != 0) distinct[n++] = s[i];
+        }
+        return distinct;
+    }
+
+    /**
+     * @return the distinct values truncated to longs, in ascending order.
+     */
+    public long[] sortedDistinctLongs() {
+        final double[] s = sorted();
+        final long[] distinct = new long[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            final long value = (long) s[i];
+            if (n == 0 || distinct[n - 1] != value) distinct[n++] = value;
+        }
+        return Arrays.copyOf(distinct, n);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.accumulators;
+
+import java.util.Arrays;
+
+/**
+ * Merging t-digest sketch of a distribution, for approximate quantiles in bounded memory.
+ *
+ * Values are buffered and merged into a sorted list of centroids (mean and weight) when the buffer is full.  Centroids
+ * near the median can hold many values while centroids near the tails are kept small, so the tails are accurate.  The
+ * size of the sketch is bounded by about {@code compression} centroids.  As long as no values have been merged into
+ * one centroid the quantiles are exact.
+ */
+public final class TDigest {
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private double[] means;
+    private long[] weights;
+    private int centroids = 0;
+    private final double[] buffer;
+    private int buffered = 0;
+    private long count = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public TDigest(double compression) {
+        this.compression = compression;
+        final int capacity = (int) Math.ceil(2 * compression) + 10;
+        this.means = new double[capacity];
+        this.weights = new long[capacity];
+        this.buffer = new double[(int) Math.ceil(5 * compression)];
+    }
+
+    public void add(double value) {
+        if (buffered == buffer.length) {
+            compress();
+        }
+        buffer[buffered++] = value;
+        count++;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * @return estimated bytes used by the sketch.
+     */
+    public int sizeInBytes() {
+        return 16 * means.length + 8 * buffer.length + 64;
+    }
+
+    /**
+     * Merge the buffered values into the centroids.
+     */
+    public void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        Arrays.sort(buffer, 0, buffered);
+        final int total = centroids + buffered;
+        final double[] allMeans = new double[total];
+        final long[] allWeights = new long[total];
+        // Merge the sorted centroids and the sorted buffer
+        int c = 0;
+        int b = 0;
+        for (int i = 0; i < total; i++) {
+            if (b == buffered || (c < centroids && means[c] <= buffer[b])) {
+                allMeans[i] = means[c];
+                allWeights[i] = weights[c++];
+            } else {
+                allMeans[i] = buffer[b++];
+                allWeights[i] = 1;
+            }
+        }
+        buffered = 0;
+
+        // Merge neighbouring centroids while they stay within the size limit for their quantile
+        int n = 0;
+        long cumulative = 0;
+        double mean = allMeans[0];
+        long weight = allWeights[0];
+        for (int i = 1; i < total; i++) {
+            final long proposed = weight + allWeights[i];
+            final double q = (cumulative + proposed / 2.0) / count;
+            final double limit = Math.max(1, 4 * count * q * (1 - q) / compression);
+            if (proposed <= limit) {
+                mean += (allMeans[i] - mean) * allWeights[i] / proposed;
+                weight = proposed;
+            } else {
+                n = store(n, mean, weight);
+                cumulative += weight;
+                mean = allMeans[i];
+                weight = allWeights[i];
+            }
+        }
+        centroids = store(n, mean, weight);
+    }
+
+    private int store(int n, double mean, long weight) {
+        if (n == means.length) {
+            means = Arrays.copyOf(means, 2 * n);
+            weights = Arrays.copyOf(weights, 2 * n);
+        }
+        means[n] = mean;
+        weights[n] = weight;
+        return n + 1;
+    }
+
+    /**
+     * Estimate the value at the quantile.  The value at rank {@code q * (size - 1)} in the sorted values is
+     * interpolated between the centroids, each centroid placed at the rank of its middle value, so the median of an
+     * even number of values is the mean of the two middle ones.
+     *
+     * @param q quantile between 0 and 1.
+     * @return the estimated value, NaN if no values have been added.
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        compress();
+        final double rank = q * (count - 1);
+        double previousRank = 0;
+        double previousMean = min;
+        long cumulative = 0;
+        for (int i = 0; i < centroids; i++) {
+            final double centerRank = cumulative + (weights[i] - 1) / 2.0;
+            if (rank <= centerRank) {
+                if (centerRank == previousRank) {
+                    return means[i];
+                }
+                return previousMean + (means[i] - previousMean) * (rank - previousRank) / (centerRank - previousRank);
+            }
+            previousRank = centerRank;
+            previousMean = means[i];
+            cumulative += weights[i];
+        }
+        final double lastRank = count - 1;
+        if (lastRank == previousRank) {
+            return max;
+        }
+        return previousMean + (max - previousMean) * (rank - previousRank) / (lastRank - previousRank);
+    }
+
+    public double median() {
+        return quantile(0.5);
+    }
+}
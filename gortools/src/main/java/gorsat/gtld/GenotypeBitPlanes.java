@@ -0,0 +1,105 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.gtld;
+
+/**
+ * The genotypes of a variant, given as a string of the characters '0', '1' and '2' with one character per sample,
+ * stored as three bitplanes. Bit i of plane g is set if sample i has genotype g; samples with any other character
+ * are in no plane and are not counted.
+ *
+ * The contingency table of two variants is then computed a word of 64 samples at a time with AND and popcount.
+ */
+public class GenotypeBitPlanes {
+    private final long[] zero;
+    private final long[] one;
+    private final long[] two;
+
+    private GenotypeBitPlanes(long[] zero, long[] one, long[] two) {
+        this.zero = zero;
+        this.one = one;
+        this.two = two;
+    }
+
+    public static GenotypeBitPlanes of(CharSequence values) {
+        final int len = values.length();
+        final int numberOfWords = (len + 63) >>> 6;
+        final long[] zero = new long[numberOfWords];
+        final long[] one = new long[numberOfWords];
+        final long[] two = new long[numberOfWords];
+        for (int i = 0; i < len; ++i) {
+            final long bit = 1L << i;
+            switch (values.charAt(i)) {
+                case '0':
+                    zero[i >>> 6] |= bit;
+                    break;
+                case '1':
+                    one[i >>> 6] |= bit;
+                    break;
+                case '2':
+                    two[i >>> 6] |= bit;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new GenotypeBitPlanes(zero, one, two);
+    }
+
+    public int numberOfWords() {
+        return this.zero.length;
+    }
+
+    /**
+     * Writes the number of samples with genotype i in this variant and genotype j in {@code other} to
+     * {@code counts[offset + 3 * j + i]}, i.e. in the order g00, g10, g20, g01, g11, g21, g02, g12, g22. Samples beyond
+     * the end of the shorter variant are not counted.
+     */
+    public void contingency(GenotypeBitPlanes other, int[] counts, int offset) {
+        final int numberOfWords = Math.min(this.zero.length, other.zero.length);
+        int g00 = 0, g10 = 0, g20 = 0;
+        int g01 = 0, g11 = 0, g21 = 0;
+        int g02 = 0, g12 = 0, g22 = 0;
+        for (int w = 0; w < numberOfWords; ++w) {
+            final long a0 = this.zero[w], a1 = this.one[w], a2 = this.two[w];
+            final long b0 = other.zero[w], b1 = other.one[w], b2 = other.two[w];
+            g00 += Long.bitCount(a0 & b0);
+            g10 += Long.bitCount(a1 & b0);
+            g20 += Long.bitCount(a2 & b0);
+            g01 += Long.bitCount(a0 & b1);
+            g11 += Long.bitCount(a1 & b1);
+            g21 += Long.bitCount(a2 & b1);
+            g02 += Long.bitCount(a0 & b2);
+            g12 += Long.bitCount(a1 & b2);
+            g22 += Long.bitCount(a2 & b2);
+        }
+        counts[offset] = g00;
+        counts[offset + 1] = g10;
+        counts[offset + 2] = g20;
+        counts[offset + 3] = g01;
+        counts[offset + 4] = g11;
+        counts[offset + 5] = g21;
+        counts[offset + 6] = g02;
+        counts[offset + 7] = g12;
+        counts[offset + 8] = g22;
+    }
+}
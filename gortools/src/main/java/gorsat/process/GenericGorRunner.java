@@ -22,6 +22,7 @@
 
 package gorsat.process;
 
+import gorsat.Analysis.ProfileStep;
 import gorsat.BatchedReadSource;
 import gorsat.Commands.Processor;
 import org.gorpipe.gor.model.GenomicIterator;
@@ -46,6 +47,9 @@ public class GenericGorRunner extends GorRunner {
 
     private void runProcessorHelper(GenomicIterator iterator, Processor processor) {
         GenomicIterator brs = iterator.isBuffered() ? iterator : new BatchedReadSource(iterator, GorPipe.brsConfig());
+        if (brs instanceof BatchedReadSource && processor instanceof ProfileStep) {
+            ((BatchedReadSource) brs).setProfile(((ProfileStep) processor).profile());
+        }
         try {
             processor.rs_$eq(iterator);
             processor.securedSetup(null);
@@ -22,6 +22,7 @@
 
 package gorsat.process;
 
+import org.gorpipe.exceptions.GorParsingException;
 import org.gorpipe.exceptions.GorSystemException;
 import org.gorpipe.gor.session.GorSession;
 import org.gorpipe.gor.driver.providers.db.DbScope;
@@ -373,6 +374,22 @@ public class GorJavaUtilities {
         public boolean allowError() {
             return Arrays.stream(cmdParams).skip(1).anyMatch(e -> e.equals("-e"));
         }
+
+        /**
+         * @return number of process instances the input is sharded across, given as -j&lt;n&gt;, 1 if not sharded.
+         * Larger counts than {@link ShardedProcessIteratorAdaptor#maxShards()} are lowered to it.
+         */
+        public int shards() {
+            return Arrays.stream(cmdParams).skip(1).filter(p -> p.startsWith("-j")).findFirst()
+                    .map(p -> {
+                        String value = p.substring(2);
+                        if (!value.matches("[0-9]{1,9}")) {
+                            throw new GorParsingException(String.format("Invalid shard count in whitelist entry %s: %s",
+                                    getAliasName(), p), p);
+                        }
+                        return Math.max(1, Math.min(Integer.parseInt(value), ShardedProcessIteratorAdaptor.maxShards()));
+                    }).orElse(1);
+        }
     }
 
     public static Map<String, CmdParams> readWhiteList(Path cmdConfigPath) {
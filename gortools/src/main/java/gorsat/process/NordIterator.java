@@ -27,6 +27,7 @@ import org.gorpipe.exceptions.GorDataException;
 import org.gorpipe.exceptions.GorParsingException;
 import org.gorpipe.exceptions.GorResourceException;
 import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.jfr.GorEvent;
 import org.gorpipe.gor.session.GorSession;
 import org.gorpipe.gor.table.Dictionary;
 import org.gorpipe.gor.model.FileReader;
@@ -39,6 +40,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -68,9 +70,23 @@ import java.util.stream.Stream;
  *
  * <p>Nor dictionaries do not support bucketization as there only one file open at a time.
  *
+ * <p>The files can be prefetched: the next entries are opened, their headers read and their first rows buffered on a
+ * bounded pool while the current entry is read.  By default the rows are returned in dictionary order, but with
+ * unordered consumption the entries are returned in the order their prefetch completes.  The rows of each entry are
+ * always returned together.
+ *
  */
 public class NordIterator extends RowSource {
 
+    /**
+     * Number of entries to prefetch by default, 0 opens one entry at a time when the previous one is exhausted.
+     */
+    public static final int DEFAULT_PREFETCH_ENTRIES = Integer.parseInt(System.getProperty("gor.nord.prefetch.entries", "0"));
+    /**
+     * Maximum number of rows buffered for each prefetched entry.
+     */
+    public static final int PREFETCH_ROWS = Integer.parseInt(System.getProperty("gor.nord.prefetch.rows", "10000"));
+
     private final Map<String,String> properties = new HashMap<>();
     private final boolean useFilter;
     private final Set<String> filterEntries;
@@ -80,13 +96,19 @@ public class NordIterator extends RowSource {
     private FileReader fileReader;
     private final boolean ignoreMissingEntries;
     private final boolean forceReadOfHeader;
+    private final int prefetchEntries;
+    private final boolean unordered;
     private boolean addSourceColumn;
     private boolean showSourceColumn = true;
-    private NorInputSource activeIterator;
+    private OpenedEntry activeIterator;
     private Iterator<NordIteratorEntry> nordEntriesIterator;
     private NordIteratorEntry activeEntry = null;
     private int headerSize = 0;
     private String nordRoot;
+    private Dictionary.FileReference dictionaryReference;
+    private ExecutorService prefetchExecutor;
+    private CompletionService<OpenedEntry> prefetchCompletion;
+    private final Deque<OpenedEntry> prefetched = new ArrayDeque<>();
 
     private static final String DEFAULT_SOURCE_COLUMN_NAME = "Source";
     private static final String SOURCE_PROPERTY_NAME = "Source";
@@ -107,19 +129,51 @@ public class NordIterator extends RowSource {
                         String sourceColumnName,
                         boolean ignoreMissingEntries,
                         boolean forceReadOfHeader) {
+        this(nordFile, useFilter, filterEntries, sourceColumnName, ignoreMissingEntries, forceReadOfHeader,
+                DEFAULT_PREFETCH_ENTRIES, false);
+    }
+
+    /**
+     * Nor dictionary constructor with prefetching. Creates an instance of nor dictionary iterator, see class description.
+     *
+     * @param nordFile              Nor dictionary file path
+     * @param filterEntries         Array of tags to be inclusively filtered.
+     * @param sourceColumnName      Name of the ouput source column
+     * @param ignoreMissingEntries  Indicates if missing entries should be ignored or not. Not ignoring missing entries
+     *                              will throw a parsing exception.
+     * @param forceReadOfHeader     Force the read of headers in the source files.
+     * @param prefetchEntries       Number of entries to open and read ahead concurrently, 0 for no prefetching.
+     * @param unordered             Return the entries in the order their prefetch completes instead of dictionary order.
+     */
+    public NordIterator(String nordFile,
+                        boolean useFilter,
+                        String[] filterEntries,
+                        String sourceColumnName,
+                        boolean ignoreMissingEntries,
+                        boolean forceReadOfHeader,
+                        int prefetchEntries,
+                        boolean unordered) {
         this.nordFile = nordFile;
         this.useFilter = useFilter;
         this.filterEntries = new HashSet<>(Arrays.asList(filterEntries));
         this.ignoreMissingEntries = ignoreMissingEntries;
         this.forceReadOfHeader = forceReadOfHeader;
         this.sourceColumnName = sourceColumnName;
+        this.prefetchEntries = Math.max(0, prefetchEntries);
+        this.unordered = unordered && this.prefetchEntries > 0;
     }
 
     @Override
     public void close() {
-        if (activeIterator != null) {
-            activeIterator.close();
-            activeIterator = null;
+        closeActiveIterator();
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+            prefetchExecutor = null;
+            for (OpenedEntry opened : prefetched) {
+                opened.future.cancel(true);
+                opened.close();
+            }
+            prefetched.clear();
         }
     }
 
@@ -141,12 +195,11 @@ public class NordIterator extends RowSource {
              String extraColumn = "";
              if (showSourceColumn && addSourceColumn) extraColumn = "\t" + activeEntry.getTag();
 
-             return RowObj.StoR(activeIterator.next() + extraColumn);
+             return RowObj.StoR("chrN\t0\t" + activeIterator.nextLine() + extraColumn);
         }
 
         return null;
     }
-
     @Override
     public void setPosition(String seekChr, int seekPos) {
         throw new GorSystemException("Nor dictionary iterator does not support seek", null);
@@ -228,45 +281,119 @@ public class NordIterator extends RowSource {
 
     private boolean prepareNextIterator() {
         // Close the active file iterator
-        close();
-
-        if (nordEntriesIterator.hasNext()) {
+        closeActiveIterator();
+
+        OpenedEntry next;
+        if (prefetchEntries > 0) {
+            next = nextPrefetchedEntry();
+        } else if (nordEntriesIterator.hasNext()) {
+            next = new OpenedEntry(nordEntriesIterator.next());
+            next.open(resolveFileName(next.entry), 0);
+        } else {
+            next = null;
+        }
+        if (next == null) {
+            return false;
+        }
 
-            // Read the next nord entry
-            activeEntry = nordEntriesIterator.next();
+        this.activeEntry = next.entry;
+        this.activeIterator = next;
 
-            // Get the file path from entry
-            String fileName = activeEntry.getFilePath();
-            Path entryPath = Paths.get(fileName);
+        // Test header
+        try {
+            getHeaderFromIterator(next.header);
+        } catch (Exception e) {
+            close();
+            throw e;
+        }
+        return true;
+    }
 
-            if (!entryPath.isAbsolute()) {
-                Dictionary.FileReference reference = Dictionary.getDictionaryFileParent(Paths.get(this.projectRoot, this.nordFile), this.projectRoot);
-                Dictionary.DictionaryLine line = Dictionary.parseDictionaryLine(activeEntry.toString(), reference, this.nordFile);
+    /**
+     * Take the next prefetched entry, in dictionary order or in order of completion, and fill up the prefetch window.
+     *
+     * @return the opened entry, or null if there are no more entries.
+     */
+    private OpenedEntry nextPrefetchedEntry() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newFixedThreadPool(prefetchEntries, r -> {
+                Thread thread = new Thread(r, "nord-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+            prefetchCompletion = new ExecutorCompletionService<>(prefetchExecutor);
+        }
+        fillPrefetchWindow();
+        if (prefetched.isEmpty()) {
+            return null;
+        }
 
-                if (reference.logical != null)
-                    fileName = line.fileRef.logical;
-                else
-                    fileName = Paths.get(this.nordRoot, fileName).toString();
+        try {
+            OpenedEntry next;
+            if (unordered) {
+                Future<OpenedEntry> future = prefetchCompletion.take();
+                next = future.get();
+                prefetched.remove(next);
+            } else {
+                next = prefetched.poll();
+                next.future.get();
             }
+            fillPrefetchWindow();
+            return next;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new GorSystemException("Interrupted while prefetching nor dictionary entries: " + this.nordFile, e);
+        } catch (ExecutionException e) {
+            close();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new GorSystemException("Failed to prefetch nor dictionary entry: " + this.nordFile, e.getCause());
+        }
+    }
 
-            // Create the nor iterator
-            this.activeIterator = new NorInputSource(fileName, this.fileReader, false, this.forceReadOfHeader, 0, false, false);
+    private void fillPrefetchWindow() {
+        while (prefetched.size() < prefetchEntries && nordEntriesIterator.hasNext()) {
+            OpenedEntry opened = new OpenedEntry(nordEntriesIterator.next());
+            String fileName = resolveFileName(opened.entry);
+            Callable<OpenedEntry> task = GorEvent.withQueryId(() -> opened.open(fileName, PREFETCH_ROWS));
+            opened.future = unordered ? prefetchCompletion.submit(task) : prefetchExecutor.submit(task);
+            prefetched.add(opened);
+        }
+    }
 
-            // Test header
-            try {
-                getHeaderFromIterator(this.activeIterator);
-            } catch (Exception e) {
-                close();
-                throw e;
+    private void closeActiveIterator() {
+        if (activeIterator != null) {
+            activeIterator.close();
+            activeIterator = null;
+        }
+    }
+
+    private String resolveFileName(NordIteratorEntry entry) {
+        // Get the file path from entry
+        String fileName = entry.getFilePath();
+        Path entryPath = Paths.get(fileName);
+
+        if (!entryPath.isAbsolute()) {
+            if (dictionaryReference == null) {
+                dictionaryReference = Dictionary.getDictionaryFileParent(Paths.get(this.projectRoot, this.nordFile), this.projectRoot);
             }
-            return true;
-        } else {
-            return false;
+            Dictionary.DictionaryLine line = Dictionary.parseDictionaryLine(entry.toString(), dictionaryReference, this.nordFile);
+
+            if (dictionaryReference.logical != null)
+                fileName = line.fileRef.logical;
+            else
+                fileName = Paths.get(this.nordRoot, fileName).toString();
         }
+        return fileName;
     }
 
     private void getHeaderFromIterator(NorInputSource inputSource) {
-        String iteratorHeader = inputSource.getHeader();
+        getHeaderFromIterator(inputSource.getHeader());
+    }
+
+    private void getHeaderFromIterator(String iteratorHeader) {
         if(iteratorHeader.isEmpty()) {
             throw new GorDataException("Missing header for: " + activeEntry.getTag());
         }
@@ -295,4 +422,63 @@ public class NordIterator extends RowSource {
         missingEntries.removeAll(nordEntries.stream().map(NordIteratorEntry::getTag).collect(Collectors.toList()));
         return String.join(",", missingEntries);
     }
+
+    /**
+     * Nor source of a dictionary entry, with its header and the first rows read ahead.  An entry is opened on a
+     * prefetch thread and then read by the thread consuming the iterator.
+     */
+    private class OpenedEntry {
+        final NordIteratorEntry entry;
+        final ArrayDeque<String> lines = new ArrayDeque<>();
+        Future<OpenedEntry> future;
+        NorInputSource source;
+        String header;
+        boolean drained;
+
+        OpenedEntry(NordIteratorEntry entry) {
+            this.entry = entry;
+        }
+
+        OpenedEntry open(String fileName, int maxRows) {
+            NorInputSource opened = new NorInputSource(fileName, fileReader, false, forceReadOfHeader, 0, false, false);
+            synchronized (this) {
+                if (drained) {
+                    // Closed while opening, the iterator has been closed
+                    opened.close();
+                    throw new CancellationException();
+                }
+                source = opened;
+            }
+            try {
+                header = source.getHeader();
+                while (lines.size() < maxRows && source.hasNext()) {
+                    lines.add(source.nextLine());
+                }
+                if (maxRows > 0 && !source.hasNext()) {
+                    close();
+                }
+            } catch (Exception e) {
+                close();
+                throw e;
+            }
+            return this;
+        }
+
+        boolean hasNext() {
+            return !lines.isEmpty() || (!drained && source.hasNext());
+        }
+
+        String nextLine() {
+            return lines.isEmpty() ? source.nextLine() : lines.poll();
+        }
+
+        synchronized void close() {
+            if (!drained) {
+                drained = true;
+                if (source != null) {
+                    source.close();
+                }
+            }
+        }
+    }
 }
@@ -22,10 +22,12 @@
 
 package gorsat.process;
 
+import org.gorpipe.gor.jfr.GorEvent;
+import org.gorpipe.gor.jfr.ParallelTaskEvent;
+import org.gorpipe.gor.stats.QueryProfile;
 import scala.Function0;
 import scala.Unit;
 
-import java.util.Arrays;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
@@ -37,6 +39,7 @@ public class ParallelExecutor {
     private Throwable firstException;
     private final Thread[] threads;
     private final Function0<Unit>[] commands;
+    private QueryProfile profile;
 
     public ParallelExecutor(int workers, Function0<Unit>[] commands) {
         this.commands = commands;
@@ -44,15 +47,36 @@ public class ParallelExecutor {
         this.firstException = null;
     }
 
+    /**
+     * Record the time the commands wait for a worker, and the time waited for the workers to finish, in the given
+     * profile, if not null.
+     */
+    public void setProfile(QueryProfile profile) {
+        this.profile = profile;
+    }
+
     @SuppressWarnings("squid:S00112") // We need to handle Throwable here, sorry
     public void parallelExecute() throws Throwable {
-        ConcurrentLinkedQueue<Function0<Unit>> clq = new ConcurrentLinkedQueue<>(Arrays.asList(commands));
+        ConcurrentLinkedQueue<Integer> clq = new ConcurrentLinkedQueue<>();
+        for( int i = 0; i < commands.length; i++ ) {
+            clq.add(i);
+        }
+        long start = System.nanoTime();
+        String queryId = GorEvent.getQueryId();
         for( int i = 0; i < threads.length; i++ ) {
             Thread t = new Thread(() -> {
-                Function0<Unit> func = clq.poll();
-                while( func != null ) {
-                    func.apply();
-                    func = clq.poll();
+                GorEvent.swapQueryId(queryId);
+                Integer task = clq.poll();
+                while( task != null ) {
+                    if (profile != null) profile.addWait("ParallelExecutor queued", System.nanoTime() - start);
+                    ParallelTaskEvent event = new ParallelTaskEvent();
+                    event.begin();
+                    commands[task].apply();
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.commit(task, commands.length);
+                    }
+                    task = clq.poll();
                 }
             }, "ParallelExecutorThread-" + i);
             t.setUncaughtExceptionHandler(this::parallelExcecuteUncaughtExceptionHandler);
@@ -65,6 +89,7 @@ public class ParallelExecutor {
                 throw firstException;
             }
         }
+        if (profile != null) profile.addWait("ParallelExecutor workers", System.nanoTime() - start);
     }
 
     private synchronized void parallelExcecuteUncaughtExceptionHandler(Thread thread, Throwable throwable) {
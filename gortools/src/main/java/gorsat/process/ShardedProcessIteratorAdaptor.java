@@ -0,0 +1,337 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.process;
+
+import gorsat.Commands.Analysis;
+import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.jfr.GorEvent;
+import org.gorpipe.gor.model.Row;
+import org.gorpipe.gor.session.GorContext;
+import org.gorpipe.model.gor.iterators.RowSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Runs an external command on blocks of the input rows, with several process instances running at the same time.
+ * <p>
+ * The input, after the pipe steps before the command, is cut into blocks of {@link #SHARD_ROWS_KEY} rows.  For gor
+ * input a block is only cut between positions, so rows with the same position go to the same process, for nor input
+ * the blocks are plain row blocks.  Each block is piped through its own instance of the command, as a
+ * {@link ProcessIteratorAdaptor}, and the output of the blocks is returned in input order, so the result is the same
+ * as running the command on each block and concatenating the outputs.  This is only correct for commands that process
+ * each row independently, such as annotators.
+ * <p>
+ * At most {@code shards} processes run at the same time and at most twice that many blocks are held in memory, the
+ * input is not read further until the oldest block has been returned.  The number of shards is limited by
+ * {@link #MAX_SHARDS_KEY}.  An error in any block, including a non zero
+ * exit code unless errors are allowed, is thrown when that block is reached.
+ */
+public class ShardedProcessIteratorAdaptor extends RowSource {
+    private static final Logger log = LoggerFactory.getLogger(ShardedProcessIteratorAdaptor.class);
+
+    public static final String SHARD_ROWS_KEY = "gor.cmd.shard.rows";
+    public static final String MAX_SHARDS_KEY = "gor.cmd.shard.max";
+
+    private static final BlockResult END = new BlockResult(null, Collections.emptyList());
+
+    private final GorContext context;
+    private final String cmd;
+    private final String alias;
+    private final String inputHeader;
+    private final boolean skipheader;
+    private final Optional<String> skip;
+    private final boolean allowerror;
+    private final boolean nor;
+    private final int blockRows;
+
+    private final ExecutorService executor;
+    private final BlockingQueue<Future<BlockResult>> blocks;
+    private final Set<ProcessIteratorAdaptor> running = ConcurrentHashMap.newKeySet();
+    private final Thread dispatchThread;
+    private volatile boolean closed = false;
+
+    private List<Row> currentRows;
+    private int currentIndex = 0;
+    private boolean done = false;
+
+    private static class BlockResult {
+        final String header;
+        final List<Row> rows;
+
+        BlockResult(String header, List<Row> rows) {
+            this.header = header;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Collects the rows into blocks and submits a process run for each block.
+     */
+    private class BlockCollector extends Analysis {
+        private List<Row> block = new ArrayList<>();
+        private int blockCount = 0;
+
+        @Override
+        public void process(Row row) {
+            if (closed) {
+                reportWantsNoMore();
+                return;
+            }
+            if (block.size() >= blockRows && (nor || !sameLocus(block.get(block.size() - 1), row))) {
+                submit();
+            }
+            block.add(row);
+        }
+
+        @Override
+        public void finish() {
+            // The first block is always run, also when there is no input, to get the header of the command output
+            if (!isInErrorState() && !closed && (!block.isEmpty() || blockCount == 0)) {
+                submit();
+            }
+        }
+
+        private void submit() {
+            final List<Row> input = block;
+            final int blockIndex = blockCount++;
+            block = new ArrayList<>(blockRows);
+            if (!putBlock(executor.submit(GorEvent.withQueryId(() -> runBlock(input, blockIndex))))) {
+                reportWantsNoMore();
+            }
+        }
+    }
+
+    /**
+     * @return the largest number of shards a command can run in, four per processor unless {@link #MAX_SHARDS_KEY}
+     * is set.
+     */
+    public static int maxShards() {
+        return Math.max(1, Integer.getInteger(MAX_SHARDS_KEY, 4 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    private static boolean sameLocus(Row a, Row b) {
+        return a.pos == b.pos && a.chr.equals(b.chr);
+    }
+
+    public ShardedProcessIteratorAdaptor(GorContext context, String cmd, String alias, Iterator<Row> rs, Analysis an,
+                                         String header, boolean skipheader, Optional<String> skip, boolean allowerror,
+                                         boolean nor, int shards) {
+        this.context = context;
+        this.cmd = cmd;
+        this.alias = alias;
+        this.inputHeader = header;
+        this.skipheader = skipheader;
+        this.skip = skip;
+        this.allowerror = allowerror;
+        this.nor = nor;
+        this.blockRows = Math.max(1, Integer.getInteger(SHARD_ROWS_KEY, 10000));
+
+        this.executor = Executors.newFixedThreadPool(shards, r -> {
+            Thread thread = new Thread(r, alias + " shard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.blocks = new ArrayBlockingQueue<>(2 * shards);
+
+        BlockCollector collector = new BlockCollector();
+        Analysis pipeStep;
+        if (an != null) {
+            an = PipeInstance.injectTypeInferral(an, false);
+            pipeStep = an.$bar(collector);
+        } else {
+            pipeStep = collector;
+        }
+        pipeStep.securedSetup(null);
+
+        dispatchThread = new Thread(() -> dispatch(rs, pipeStep), alias + " dispatch");
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
+
+        BlockResult first = takeBlock();
+        if (first == END) {
+            close();
+            throw new GorSystemException("No output from external process " + alias, null);
+        }
+        setHeader(first.header);
+        currentRows = first.rows;
+    }
+
+    private void dispatch(Iterator<Row> rs, Analysis pipeStep) {
+        Throwable th = null;
+        try {
+            while (!closed && rs.hasNext() && !pipeStep.wantsNoMore()) {
+                pipeStep.process(rs.next());
+            }
+        } catch (Throwable e) {
+            th = e;
+        }
+        try {
+            pipeStep.securedFinish(th);
+        } catch (Throwable e) {
+            th = e;
+        } finally {
+            if (rs instanceof RowSource) {
+                ((RowSource) rs).close();
+            }
+        }
+        if (closed) {
+            return;
+        }
+        if (th != null) {
+            CompletableFuture<BlockResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(th);
+            putBlock(failed);
+        } else {
+            putBlock(CompletableFuture.completedFuture(END));
+        }
+    }
+
+    /**
+     * Queue the block for output, waits while the queue is full.
+     *
+     * @return false if interrupted by close, the blocks are not read anymore.
+     */
+    private boolean putBlock(Future<BlockResult> future) {
+        try {
+            blocks.put(future);
+            return true;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private BlockResult runBlock(List<Row> input, int blockIndex) throws IOException {
+        if (closed) {
+            return END;
+        }
+        ProcessIteratorAdaptor pia = new ProcessIteratorAdaptor(context, cmd, alias, input.iterator(), null,
+                inputHeader, skipheader, skip, allowerror, nor);
+        running.add(pia);
+        if (closed) {
+            closeQuietly(pia);
+        }
+        try {
+            List<Row> rows = new ArrayList<>();
+            while (pia.hasNext()) {
+                rows.add(pia.next());
+            }
+            pia.close();
+            log.debug("Block {} of {}: {} rows in, {} rows out", blockIndex, alias, input.size(), rows.size());
+            return new BlockResult(pia.getHeader(), rows);
+        } catch (RuntimeException e) {
+            closeQuietly(pia);
+            throw e;
+        } finally {
+            running.remove(pia);
+        }
+    }
+
+    private BlockResult takeBlock() {
+        try {
+            return blocks.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GorSystemException("Interrupted while reading from external process " + alias, e);
+        } catch (CancellationException e) {
+            return END;
+        } catch (ExecutionException e) {
+            close();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new GorSystemException("External process " + alias + " failed", e.getCause());
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (currentIndex >= currentRows.size()) {
+            if (done) {
+                return false;
+            }
+            BlockResult result = takeBlock();
+            if (result == END) {
+                done = true;
+                return false;
+            }
+            currentRows = result.rows;
+            currentIndex = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public Row next() {
+        if (hasNext()) {
+            return currentRows.get(currentIndex++);
+        }
+        return null;
+    }
+
+    @Override
+    public void setPosition(String seekChr, int seekPos) {
+        throw new GorSystemException("Seek is not supported for sharded external process " + alias, null);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        done = true;
+        dispatchThread.interrupt();
+        Future<BlockResult> future;
+        while ((future = blocks.poll()) != null) {
+            future.cancel(true);
+        }
+        executor.shutdownNow();
+        for (ProcessIteratorAdaptor pia : running) {
+            closeQuietly(pia);
+        }
+    }
+
+    private void closeQuietly(ProcessIteratorAdaptor pia) {
+        try {
+            pia.close();
+        } catch (RuntimeException e) {
+            log.debug("Error closing external process " + alias, e);
+        }
+    }
+
+    @Override
+    public boolean isBuffered() {
+        return true;
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.clients;
+
+import io.prometheus.client.Counter;
+import org.gorpipe.client.FileCache;
+import org.gorpipe.exceptions.GorCancelledException;
+import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.monitor.GorMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight production of results stored in a file cache.
+ * <p>
+ * When several queries need the result for the same fingerprint at the same time, only one of them produces it and the
+ * others wait for it to be stored in the cache.  Producers in the same process are coordinated through a map of
+ * futures, and producers in different processes sharing the cache folder through a lock file next to the cache file.
+ * The lock file holds the time the producer spent, so waiters in other processes can report the time saved.  A waiter
+ * that finds no result when the producer is done, because it failed, produces the result itself.
+ */
+public class SingleFlightCache {
+    private static final Logger log = LoggerFactory.getLogger(SingleFlightCache.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    private static final Counter requests = Counter.build()
+            .name("gor_result_cache_requests_total")
+            .help("Result cache requests, by whether the result was found, waited for or produced.")
+            .labelNames("result")
+            .register();
+    private static final Counter savedSeconds = Counter.build()
+            .name("gor_result_cache_saved_seconds_total")
+            .help("Time saved by waiting for results produced by other queries instead of producing them.")
+            .register();
+
+    private static final ConcurrentHashMap<Path, CompletableFuture<Produced>> inFlight = new ConcurrentHashMap<>();
+
+    private static class Produced {
+        final String file;
+        final long millis;
+
+        Produced(String file, long millis) {
+            this.file = file;
+            this.millis = millis;
+        }
+    }
+
+    private SingleFlightCache() {
+    }
+
+    /**
+     * Look up the result for the fingerprint, producing it if no other producer is running.
+     *
+     * @param fileCache   the file cache.
+     * @param fingerprint fingerprint of the result.
+     * @param cacheFile   the location the result is written to, from {@link FileCache#tempLocation}.
+     * @param monitor     monitor to check for cancellation while waiting, can be null.
+     * @param producer    produces the result and stores it in the cache, returns the cached file.
+     * @return the cached file.
+     */
+    public static String lookupOrProduce(FileCache fileCache, String fingerprint, String cacheFile, GorMonitor monitor,
+                                         Supplier<String> producer) {
+        String found = fileCache.lookupFile(fingerprint);
+        if (found != null) {
+            requests.labels("hit").inc();
+            return found;
+        }
+
+        final Path lockFile = lockPath(cacheFile, fingerprint);
+        while (true) {
+            final CompletableFuture<Produced> own = new CompletableFuture<>();
+            final CompletableFuture<Produced> running = inFlight.putIfAbsent(lockFile, own);
+            if (running != null) {
+                final long waitStart = System.currentTimeMillis();
+                final Produced produced = await(running, monitor);
+                if (produced != null && produced.file != null) {
+                    recordWait(produced.millis, System.currentTimeMillis() - waitStart);
+                    return produced.file;
+                }
+                // The producer failed or could not store the result, produce the result here unless it has been stored since
+                found = fileCache.lookupFile(fingerprint);
+                if (found != null) {
+                    requests.labels("hit").inc();
+                    return found;
+                }
+                continue;
+            }
+
+            try {
+                final Produced produced = produceLocked(fileCache, fingerprint, lockFile, monitor, producer);
+                own.complete(produced);
+                return produced.file;
+            } finally {
+                own.complete(null);
+                inFlight.remove(lockFile, own);
+            }
+        }
+    }
+
+    /**
+     * Produce the result while holding the lock file, unless another process produced it while waiting for the lock.
+     */
+    private static Produced produceLocked(FileCache fileCache, String fingerprint, Path lockFile, GorMonitor monitor,
+                                          Supplier<String> producer) {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Could not create cache lock file {}, producing without it", lockFile, e);
+            return produce(producer);
+        }
+
+        try {
+            final long waitStart = System.currentTimeMillis();
+            FileLock lock = tryLock(channel);
+            while (lock == null) {
+                checkCancelled(monitor);
+                sleep();
+                lock = tryLock(channel);
+            }
+            try {
+                final String found = fileCache.lookupFile(fingerprint);
+                if (found != null) {
+                    final long producerMillis = readMillis(channel);
+                    recordWait(producerMillis, System.currentTimeMillis() - waitStart);
+                    return new Produced(found, producerMillis);
+                }
+                final Produced produced = produce(producer);
+                writeMillis(channel, produced.millis);
+                // Processes waiting on the lock have the file open, new ones create a new file and find the result
+                Files.deleteIfExists(lockFile);
+                return produced;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new GorSystemException("Error using cache lock file " + lockFile, e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Could not close cache lock file {}", lockFile, e);
+            }
+        }
+    }
+
+    private static Produced produce(Supplier<String> producer) {
+        final long start = System.currentTimeMillis();
+        final String file = producer.get();
+        requests.labels("miss").inc();
+        return new Produced(file, System.currentTimeMillis() - start);
+    }
+
+    private static Produced await(CompletableFuture<Produced> running, GorMonitor monitor) {
+        while (true) {
+            try {
+                return running.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                checkCancelled(monitor);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GorSystemException("Interrupted while waiting for cache file", e);
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another cache instance in this process
+            return null;
+        }
+    }
+
+    private static long readMillis(FileChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(32);
+        final int length = channel.read(buffer, 0);
+        try {
+            return length > 0 ? Long.parseLong(new String(buffer.array(), 0, length, StandardCharsets.UTF_8).trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void writeMillis(FileChannel channel, long millis) throws IOException {
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap(Long.toString(millis).getBytes(StandardCharsets.UTF_8)), 0);
+    }
+
+    private static void recordWait(long producerMillis, long waitedMillis) {
+        requests.labels("wait").inc();
+        savedSeconds.inc(Math.max(0, producerMillis - waitedMillis) / 1000.0);
+    }
+
+    private static void checkCancelled(GorMonitor monitor) {
+        if (monitor != null && monitor.isCancelled()) {
+            throw new GorCancelledException("Query cancelled while waiting for cache file", null);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GorSystemException("Interrupted while waiting for cache file", e);
+        }
+    }
+
+    /**
+     * @return path of the lock file for the fingerprint, hidden next to the cache file so it is not found by lookups.
+     */
+    static Path lockPath(String cacheFile, String fingerprint) {
+        return Paths.get(cacheFile).toAbsolutePath().resolveSibling("." + fingerprint + ".lock");
+    }
+}
@@ -52,6 +52,9 @@ public class BucketCreatorGorPipe<T extends BucketableTableEntry> implements Buc
 
     public static final int DEFAULT_NUMBER_WORKERS = 4;
 
+    // The engine output is redirected through System.out, so only one engine can run at a time.
+    private static final Object OUTPUT_LOCK = new Object();
+
     private final int workers;
 
     public BucketCreatorGorPipe() {
@@ -76,21 +79,21 @@ public class BucketCreatorGorPipe<T extends BucketableTableEntry> implements Buc
                 "-workers", String.valueOf(workers)};
         log.trace("Calling bucketize with command args: {} \"{}\" {} {} {} {}", args);
 
-        PrintStream oldOut = System.out;
-
         PipeOptions options = new PipeOptions();
         options.parseOptions(args);
         CLIGorExecutionEngine engine = new CLIGorExecutionEngine(options, null, table.getSecurityContext());
 
-        try (PrintStream newPrintStream = new PrintStream(new NullOutputStream())){
-            System.setOut(newPrintStream);
-            engine.execute();
-        } catch (Exception e) {
-            log.error("Calling bucketize failed.  Command args: {} \"{}\" {} {} {} {} failed", args);
-            throw e;
-        } finally {
-
-            System.setOut(oldOut);
+        synchronized (OUTPUT_LOCK) {
+            PrintStream oldOut = System.out;
+            try (PrintStream newPrintStream = new PrintStream(new NullOutputStream())) {
+                System.setOut(newPrintStream);
+                engine.execute();
+            } catch (Exception e) {
+                log.error("Calling bucketize failed.  Command args: {} \"{}\" {} {} {} {} failed", args);
+                throw e;
+            } finally {
+                System.setOut(oldOut);
+            }
         }
 
         // Move the bucket files from temp to the bucket folder
@@ -147,7 +150,7 @@ public class BucketCreatorGorPipe<T extends BucketableTableEntry> implements Buc
      * @return the temp folder created.
      * @throws IOException if there is an error creating the temp folder.
      */
-    private Path createTempfoldersForCreateBucketFiles(BaseTable<T> table, Set<Path> buckets, Path workBaseDir)
+    static Path createTempfoldersForCreateBucketFiles(BaseTable<? extends BucketableTableEntry> table, Set<Path> buckets, Path workBaseDir)
             throws IOException {
         // Create temp root.
         Path tempRootDir = Files.createDirectory(workBaseDir.resolve(getBucketizingFolderPrefix(table)));
@@ -0,0 +1,165 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.manager;
+
+import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.binsearch.GorIndexType;
+import org.gorpipe.gor.binsearch.GorZipLexOutputStream;
+import org.gorpipe.gor.driver.meta.DataType;
+import org.gorpipe.gor.model.GenomicIterator;
+import org.gorpipe.gor.model.GorOptions;
+import org.gorpipe.gor.model.SourceRef;
+import org.gorpipe.gor.table.BaseTable;
+import org.gorpipe.gor.table.BucketableTableEntry;
+import org.gorpipe.gor.table.GenomicRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+import static org.gorpipe.gor.table.PathUtils.resolve;
+
+/**
+ * Helper class to create bucket files by merging the files of the bucket directly.
+ * <p>
+ * Each bucket is created by a merge iterator over the files in it, with the source column inserted, written as
+ * column compressed gorz with chromosome index.  The buckets are created in parallel, using the given number of workers.
+ */
+public class BucketCreatorMerge<T extends BucketableTableEntry> implements BucketCreator<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(BucketCreatorMerge.class);
+
+    private final int workers;
+
+    public BucketCreatorMerge() {
+        this(BucketCreatorGorPipe.DEFAULT_NUMBER_WORKERS);
+    }
+
+    public BucketCreatorMerge(int workers) {
+        this.workers = Math.max(1, workers);
+    }
+
+    @Override
+    public void createBuckets(BaseTable<T> table, Map<Path, List<T>> bucketsToCreate, Path absBucketDir)
+            throws IOException {
+        if (bucketsToCreate.isEmpty()) {
+            return;
+        }
+
+        Path workTempDir = BucketCreatorGorPipe.createTempfoldersForCreateBucketFiles(table, bucketsToCreate.keySet(), absBucketDir);
+
+        int bucketCount = bucketsToCreate.size();
+        AtomicInteger created = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, bucketCount));
+        try {
+            List<Future<Path>> futures = new ArrayList<>();
+            for (Map.Entry<Path, List<T>> b2c : bucketsToCreate.entrySet()) {
+                futures.add(executor.submit(() -> {
+                    long rows = createBucketFile(table, b2c.getValue(), workTempDir.resolve(b2c.getKey()));
+                    log.info("Bucketize - Created bucket {} with {} files and {} rows ({} of {})", b2c.getKey(),
+                            b2c.getValue().size(), rows, created.incrementAndGet(), bucketCount);
+                    return b2c.getKey();
+                }));
+            }
+            for (Future<Path> future : futures) {
+                waitFor(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Move the bucket files from temp to the bucket folder
+        for (Path bucket : bucketsToCreate.keySet()) {
+            Path targetBucketPath = resolve(table.getRootPath(), bucket);
+            Files.move(workTempDir.resolve(bucket), targetBucketPath);
+            Files.move(indexPath(workTempDir.resolve(bucket)), indexPath(targetBucketPath));
+        }
+
+        BucketCreatorGorPipe.deleteIfTempBucketizingFolder(workTempDir, table);
+    }
+
+    /**
+     * Merge the files of the given entries into one bucket file.
+     *
+     * @param table      table the entries belong to.
+     * @param entries    entries in the bucket.
+     * @param bucketFile the bucket file to write.
+     * @return number of rows written.
+     */
+    long createBucketFile(BaseTable<T> table, List<T> entries, Path bucketFile) throws IOException {
+        List<SourceRef> sources = new ArrayList<>(entries.size());
+        for (T entry : entries) {
+            GenomicRange range = entry.getRange();
+            boolean hasRange = range != null && !range.getStartChr().isEmpty();
+            sources.add(new SourceRef(entry.getLogical(null), null, null, entry.getAliasTag(),
+                    hasRange ? range.getStartChr() : null, hasRange ? range.getStartPos() : -1,
+                    hasRange ? range.getStopChr() : null, hasRange ? range.getStopPos() : -1,
+                    null, false, table.getSecurityContext(), null));
+        }
+
+        GorOptions options = new GorOptions(-1, 0, Integer.MAX_VALUE, true, 0, null, false, false,
+                table.getSourceColumn(), sources, null, null);
+        long rows = 0;
+        try (GenomicIterator iterator = options.getIterator();
+             GorZipLexOutputStream out = new GorZipLexOutputStream(bucketFile.toString(), false, true, false, false,
+                     GorIndexType.CHROMINDEX, Deflater.BEST_SPEED)) {
+            out.setHeader(iterator.getHeader());
+            while (iterator.hasNext()) {
+                out.write(iterator.next());
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static Path indexPath(Path bucketFile) {
+        return bucketFile.resolveSibling(bucketFile.getFileName() + DataType.GORI.suffix);
+    }
+
+    private static void waitFor(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GorSystemException("Bucketize interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new GorSystemException("Creating bucket failed", e.getCause());
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.RandomStringUtils;
 import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.driver.meta.DataType;
 import org.gorpipe.gor.table.BaseTable;
 import org.gorpipe.gor.table.BucketableTableEntry;
 import org.gorpipe.gor.table.dictionary.DictionaryTable;
@@ -43,6 +44,10 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -96,7 +101,7 @@ public class BucketManager<T extends BucketableTableEntry> {
      */
     public BucketManager(BaseTable<T> table) {
         this.table = table;
-        this.bucketCreator = new BucketCreatorGorPipe<>();
+        this.bucketCreator = new BucketCreatorMerge<>();
 
         setBucketSize(Integer.parseInt(table.getConfigTableProperty(HEADER_BUCKET_SIZE_KEY, Integer.toString(DEFAULT_BUCKET_SIZE))));
         setMinBucketSize(Integer.parseInt(table.getConfigTableProperty(HEADER_MIN_BUCKET_SIZE_KEY, Integer.toString(DEFAULT_MIN_BUCKET_SIZE))));
@@ -375,11 +380,45 @@ public class BucketManager<T extends BucketableTableEntry> {
             tempTable = createTempTable(trans.getLock());
         }
 
-        // Run separate bucketization run for each bucket dir (for space and for fast move of the results).
-        // TODO:  This can be run in parallel if running on cluster, if local it might be better do just run sequeneally
-        //        Reason to run this per bucket dir is having tmp files on that dir so the move is fast.
-        for (Path bucketDir : getBucketDirs()) {
-            doBucketizeForBucketDir(tempTable, bucketDir, newBucketsMap);
+        // Run separate bucketization run for each bucket dir (for space and for fast move of the results).  The runs
+        // are independent so they are run in parallel, but the table is updated from this thread only.
+        List<Path> bucketDirsToCreate = getBucketDirs().stream()
+                .filter(d -> newBucketsMap.keySet().stream().anyMatch(p -> p.getParent().equals(d)))
+                .collect(Collectors.toList());
+        Map<Path, Future<?>> bucketDirRuns = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, bucketDirsToCreate.size()));
+        try {
+            for (Path bucketDir : bucketDirsToCreate) {
+                bucketDirRuns.put(bucketDir, executor.submit(() -> {
+                    doBucketizeForBucketDir(tempTable, bucketDir, newBucketsMap);
+                    return null;
+                }));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Exception failure = null;
+        for (Map.Entry<Path, Future<?>> run : bucketDirRuns.entrySet()) {
+            try {
+                run.getValue().get();
+                updateTableWithNewBuckets(run.getKey(), newBucketsMap);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GorSystemException("Bucketize interrupted", e);
+            } catch (ExecutionException e) {
+                log.error("Bucketize - Creating buckets in " + run.getKey() + " failed", e.getCause());
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new GorSystemException(failure);
         }
 
         // Clean up
@@ -400,21 +439,25 @@ public class BucketManager<T extends BucketableTableEntry> {
     }
 
     private void doBucketizeForBucketDir(BaseTable tempTable, Path bucketDir, Map<Path, List<T>> newBucketsMap) throws IOException {
-        Map<Path, List<T>> newBucketsMapForBucketDir =
-                newBucketsMap.keySet().stream()
-                        .filter(p -> p.getParent().equals(bucketDir))
-                        .collect(Collectors.toMap(Function.identity(), newBucketsMap::get));
-
         //  Create the bucket files
-        createBucketFiles(tempTable, newBucketsMapForBucketDir, resolve(table.getRootPath(), bucketDir));
+        createBucketFiles(tempTable, getNewBucketsForBucketDir(bucketDir, newBucketsMap), resolve(table.getRootPath(), bucketDir));
+    }
 
-        // Move files and update dictionary.
+    private void updateTableWithNewBuckets(Path bucketDir, Map<Path, List<T>> newBucketsMap) {
+        // Update dictionary.
+        Map<Path, List<T>> newBucketsMapForBucketDir = getNewBucketsForBucketDir(bucketDir, newBucketsMap);
         for (Path bucket : newBucketsMapForBucketDir.keySet()) {
             List<T> bucketEntries = newBucketsMapForBucketDir.get(bucket);
             updateTableWithNewBucket(table, bucket, bucketEntries);
         }
     }
 
+    private Map<Path, List<T>> getNewBucketsForBucketDir(Path bucketDir, Map<Path, List<T>> newBucketsMap) {
+        return newBucketsMap.keySet().stream()
+                .filter(p -> p.getParent().equals(bucketDir))
+                .collect(Collectors.toMap(Function.identity(), newBucketsMap::get));
+    }
+
     private void updateTableWithNewBucket(BaseTable table, Path bucket, List<T> bucketEntries) {
         try (TableTransaction trans = TableTransaction.openWriteTransaction(this.lockType, table, table.getName(), this.lockTimeout)) {
             // Update the lines we bucketized.
@@ -494,6 +537,7 @@ public class BucketManager<T extends BucketableTableEntry> {
                 if (force || System.currentTimeMillis() - lastAccessTime > gracePeriodForDeletingBuckets.toMillis()) {
                     log.debug("Deleting bucket file {}", bucketFile);
                     Files.delete(bucketFile);
+                    Files.deleteIfExists(bucketFile.resolveSibling(bucketFile.getFileName() + DataType.GORI.suffix));
                 }
             }
         }
@@ -289,7 +289,7 @@ public class TableManager {
                 .bucketSize(this.bucketSize)
                 .minBucketSize(this.minBucketSize)
                 .lockType(this.lockType)
-                .bucketCreator(new BucketCreatorGorPipe(workers))
+                .bucketCreator(new BucketCreatorMerge(workers))
                 .build()
                 .bucketize(packLevel, maxBucketCount, bucketDirs, false);
     }
@@ -41,8 +41,8 @@ case class AddFlankingSeqs(session: GorSession, l : Int, rCols : Array[Int], out
 
   object GenomeLookup {
     val refSeq: RefSeq = session.getProjectContext.createRefSeq()
-    def theBase(chr : String, pos : Int): Char = {
-      refSeq.getBase(chr,pos)
+    def theBases(chr : String, pos1 : Int, pos2 : Int): String = {
+      refSeq.getBases(chr,pos1,pos2)
     }
 
     def close(): Unit = {
@@ -55,15 +55,11 @@ case class AddFlankingSeqs(session: GorSession, l : Int, rCols : Array[Int], out
     val chr = r.chr
     val seqStart = if (pos - l > 0) pos-l else 1
     val seqEnd = if (pos + l < buildSize.get(chr)) pos + l else buildSize.get(chr)-1
-    val theSeq = new StringBuilder(100)
-    var i = seqStart
-    while (i <= seqEnd) {
-      if (i == pos) {
-        theSeq.append("(")
-        theSeq.append(GenomeLookup.theBase(chr,pos))
-        theSeq.append(")")
-      } else theSeq.append(GenomeLookup.theBase(chr,i))
-      i += 1
+    val theSeq = new StringBuilder(2 * l + 3)
+    theSeq.append(GenomeLookup.theBases(chr,seqStart,seqEnd))
+    if (pos >= seqStart && pos <= seqEnd) {
+      theSeq.insert(pos - seqStart + 1, ')')
+      theSeq.insert(pos - seqStart, '(')
     }
     theSeq.toString()
   }
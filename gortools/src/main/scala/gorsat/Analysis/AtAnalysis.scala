@@ -28,6 +28,7 @@ import org.gorpipe.exceptions.GorParsingException
 import org.gorpipe.gor.model.Row
 import org.gorpipe.gor.session.GorSession
 
+import scala.collection.mutable
 
 object AtAnalysis {
 
@@ -44,7 +45,7 @@ object AtAnalysis {
   case class AtState(binSize: Int, testColumn: Int, groupColumns: Array[Int], parameters: Parameters) extends BinState {
 
     val useGroup: Boolean = if (groupColumns.nonEmpty) true else false
-    var groupMap = Map.empty[String, GroupStatHolder]
+    var groupMap = mutable.HashMap.empty[String, GroupStatHolder]
     var comparison: (Double, Double) => Boolean = _
     val groupColumnsArray: Array[Int] = groupColumns
 
@@ -57,7 +58,7 @@ object AtAnalysis {
 
     override def initialize(binInfo: BinInfo): Unit = {
       // Here we need to select the comparison method used to compare the row
-      groupMap = Map.empty[String, GroupStatHolder]
+      groupMap = mutable.HashMap.empty[String, GroupStatHolder]
     }
 
     override def process(r: Row): Unit = {
@@ -23,7 +23,9 @@
 package gorsat.Analysis
 
 import gorsat.Commands.Analysis
+import htsjdk.samtools.CigarOperator
 import org.gorpipe.exceptions.GorDataException
+import org.gorpipe.gor.driver.providers.stream.datatypes.bam.BamIterator
 import org.gorpipe.gor.model.Row
 import org.gorpipe.model.gor.RowObj
 
@@ -32,6 +34,8 @@ case class CigarSegsAnalysis(cigarCol: Int, grCols: Array[Int]) extends Analysis
   val grColsArray = grCols
   var id: Long = 0
   val useGroup = if (grColsArray.length > 0) true else false
+  var readShift = 0
+  var refShift = 0
 
   def parseCigar(s: CharSequence, p: Int) = {
     var num = 0
@@ -50,43 +54,59 @@ case class CigarSegsAnalysis(cigarCol: Int, grCols: Array[Int]) extends Analysis
   }
 
   override def process(r: Row) {
-    var readShift = 0
-    var refShift = 0
-    var ci = 0
+    readShift = 0
+    refShift = 0
     val gccolumns = if (useGroup) r.selectedColumns(grColsArray) else ""
-    val cigar = r.colAsString(cigarCol)
-    while (ci < cigar.length) {
-      val (numBases, cigarControl, nextCi) = parseCigar(cigar, ci)
-      ci = nextCi
-      id += 1
-      cigarControl match {
-        case 'M' | '=' | 'X' => {
-          if (useGroup) super.process(RowObj(r.chr, r.pos - 1 + refShift, (r.pos + refShift + numBases - 1) + "\t" + id + "\t" + gccolumns))
-          else super.process(RowObj(r.chr, r.pos - 1 + refShift, (r.pos + refShift + numBases - 1) + "\t" + id))
-          refShift += numBases
-          readShift += numBases
+    r match {
+      case sr: BamIterator#SAMRecordRow if sr.hasSourceColumn(cigarCol, BamIterator.CIGAR_COLUMN) =>
+        // Read the cigar operations from the decoded record instead of parsing the cigar text
+        val elements = sr.record.getCigar.getCigarElements
+        var ei = 0
+        while (ei < elements.size) {
+          val element = elements.get(ei)
+          processCigarElement(r, element.getLength, CigarOperator.enumToCharacter(element.getOperator).toChar, gccolumns, sr.record.getCigarString)
+          ei += 1
         }
-        case 'N' => {
-          refShift += numBases
-        }
-        case 'S' => {
-          readShift += numBases
-        }
-        case 'H' => {
-          /* do nothing */
-        }
-        case 'D' => {
-          refShift += numBases
-        }
-        case 'I' => {
-          readShift += numBases
-        }
-        case 'P' => {
-          /* do nothing */
-        }
-        case _ => {
-          throw new GorDataException("Unknown symbol in cigar string " + cigar, cigarCol, getHeader(), r.toString)
+      case _ =>
+        val cigar = r.colAsString(cigarCol)
+        var ci = 0
+        while (ci < cigar.length) {
+          val (numBases, cigarControl, nextCi) = parseCigar(cigar, ci)
+          ci = nextCi
+          processCigarElement(r, numBases, cigarControl, gccolumns, cigar)
         }
+    }
+  }
+
+  def processCigarElement(r: Row, numBases: Int, cigarControl: Char, gccolumns: String, cigar: => CharSequence): Unit = {
+    id += 1
+    cigarControl match {
+      case 'M' | '=' | 'X' => {
+        if (useGroup) super.process(RowObj(r.chr, r.pos - 1 + refShift, (r.pos + refShift + numBases - 1) + "\t" + id + "\t" + gccolumns))
+        else super.process(RowObj(r.chr, r.pos - 1 + refShift, (r.pos + refShift + numBases - 1) + "\t" + id))
+        refShift += numBases
+        readShift += numBases
+      }
+      case 'N' => {
+        refShift += numBases
+      }
+      case 'S' => {
+        readShift += numBases
+      }
+      case 'H' => {
+        /* do nothing */
+      }
+      case 'D' => {
+        refShift += numBases
+      }
+      case 'I' => {
+        readShift += numBases
+      }
+      case 'P' => {
+        /* do nothing */
+      }
+      case _ => {
+        throw new GorDataException("Unknown symbol in cigar string " + cigar, cigarCol, getHeader(), r.toString)
       }
     }
   }
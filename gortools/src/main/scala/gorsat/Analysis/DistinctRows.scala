@@ -25,28 +25,60 @@ package gorsat.Analysis
 import gorsat.Commands.Analysis
 import org.gorpipe.gor.model.Row
 
-import scala.collection.mutable
+object DistinctRows {
+
+  class FirstRow(val ordinal: Long) {
+    var row: Row = _
+  }
+
+  /**
+   * The distinct rows at a position, keyed by the columns after the position and ordered by first occurrence.
+   */
+  class DistinctAggregation(groupBudget: SpillableAggregation.GroupBudget, level: Int) extends SpillableAggregation[FirstRow](groupBudget, level) {
+    override def keyOf(r: Row): String = r.otherCols
+
+    override def createGroup(key: String, ordinal: Long): FirstRow = new FirstRow(ordinal)
+
+    override def groupOverhead(key: String): Long = 100L + 2L * key.length
+
+    override def update(group: FirstRow, r: Row): Long = {
+      if (group.row == null) {
+        group.row = r
+        100L + 2L * r.length
+      } else {
+        0
+      }
+    }
+
+    override def orderKey(key: String, group: FirstRow): String = SpillableAggregation.ordinalKey(group.ordinal)
+
+    override def result(key: String, group: FirstRow): Row = group.row
+
+    override def createPartitionAggregation(groupBudget: SpillableAggregation.GroupBudget, level: Int): SpillableAggregation[FirstRow] =
+      new DistinctAggregation(groupBudget, level)
+  }
+}
 
 case class DistinctRows() extends Analysis {
   var lastChr: String = ""
   var lastPos: Int = -1
-  var allRows = new mutable.LinkedHashSet[Row]
+  val allRows = new DistinctRows.DistinctAggregation(SpillableAggregation.groupBudget(), 0)
 
   override def isTypeInformationMaintained: Boolean = true
 
   override def process(r: Row) {
     if (r.pos == lastPos && r.chr.equals(lastChr)) {
-      allRows += r
+      allRows.add(r)
     } else {
-      allRows.foreach(x => super.process(x))
+      allRows.results(x => super.process(x))
       lastPos = r.pos
       lastChr = r.chr
-      allRows = mutable.LinkedHashSet(r)
+      allRows.add(r)
     }
   }
 
   override def finish {
-    allRows.foreach(x => super.process(x))
-    allRows = null
+    allRows.results(x => super.process(x))
+    allRows.close()
   }
 }
@@ -46,7 +46,9 @@ case class OutputOptions(remove: Boolean = false,
                             compressionLevel: Int = Deflater.BEST_SPEED,
                             useFolder: Boolean = false,
                             skipHeader: Boolean = false,
-                            cardCol: String = null
+                            cardCol: String = null,
+                            zoneMap: Boolean = false,
+                            bloomColumns: Array[String] = Array.empty
                            )
 
 case class ForkWrite(forkCol: Int,
@@ -168,10 +168,27 @@ object GorCsvSel {
       pbt = session.getCache.getObjectHashMap.get(lookupSignature).asInstanceOf[PnBucketTable]
       if (pbt == null) throw new GorDataException("Non existing bucket info for lookupSignature " + lookupSignature)
       maxUsedBuckets = pbt.numberOfBuckets
+      lastGroupID = null
+      lastHolder = null
       if (useGroup) groupMap = scala.collection.mutable.HashMap.empty[String, ColHolder]
       else initColHolder(singleColHolder)
     }
 
+    def holderOf(groupID: String): ColHolder = groupMap.get(groupID) match {
+      case Some(x) => x
+      case None =>
+        val sh = ColHolder()
+        initColHolder(sh)
+        groupMap += (groupID -> sh)
+        sh
+    }
+
+    // Rows of the same group usually follow each other, the group is only looked up when it changes
+    var lastGroupID: String = _
+    var lastHolder: ColHolder = _
+
+    override def flushesInParallel: Boolean = true
+
     def process(r: Row) {
       var useLineObject = false
       if (r.isInstanceOf[Line]){
@@ -183,17 +200,17 @@ object GorCsvSel {
 
       pbt.buckNameToIdx.get(r.colAsString(buckCol).toString) match {
         case Some(buckNo) =>
-          var sh: ColHolder = null
+          var sh: ColHolder = singleColHolder
           if (useGroup) {
             val groupID = r.selectedColumns(grColsArray)
-            groupMap.get(groupID) match {
-              case Some(x) => sh = x
-              case None =>
-                sh = ColHolder()
-                initColHolder(sh)
-                groupMap += (groupID -> sh)
+            if (groupID == lastGroupID) {
+              sh = lastHolder
+            } else {
+              sh = holderOf(groupID)
+              lastGroupID = groupID
+              lastHolder = sh
             }
-          } else sh = singleColHolder
+          }
 
           sh.buckRows(buckNo) = line
           val offset = if (useLineObject) 0 else r.sa(valCol - 1) + 1
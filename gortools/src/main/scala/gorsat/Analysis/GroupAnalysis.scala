@@ -23,6 +23,7 @@
 package gorsat.Analysis
 
 import gorsat.Commands._
+import gorsat.accumulators.{DoubleValues, HyperLogLog, TDigest}
 import org.gorpipe.exceptions.GorDataException
 import org.gorpipe.gor.model.Row
 import org.gorpipe.gor.session.GorSession
@@ -32,12 +33,16 @@ import scala.collection.mutable
 
 object GroupAnalysis {
 
+  /** Precision of the HyperLogLog sketches used for approximate distinct counts. */
+  val APPROX_DISTINCT_PRECISION: Int = Integer.getInteger("gor.group.approx.precision", 12)
+
   // Aggregate the columns per bin in the stream
   case class AggregateState(binSize: Int, useSegment: Boolean, useCount: Boolean, useCdist: Boolean, useMax: Boolean,
                             useMin: Boolean, useMed: Boolean, useDis: Boolean, useSet: Boolean, useLis: Boolean,
                             useAvg: Boolean, useStd: Boolean, useSum: Boolean,
                             acCols: List[Int], icCols: List[Int], fcCols: List[Int], grCols: List[Int], setLen: Int,
-                            truncate: Boolean, sepVal: String) extends BinState {
+                            truncate: Boolean, sepVal: String, approximate: Boolean,
+                            groupBudget: SpillableAggregation.GroupBudget) extends BinState {
 
     case class StatHolder(numCols: Int) {
       val sums = new Array[Double](numCols)
@@ -47,12 +52,11 @@ object GroupAnalysis {
       val aMax = new Array[String](numCols)
       val aMin = new Array[String](numCols)
       val ns = new Array[Int](numCols)
-      val aList = new Array[List[String]](numCols)
-      val fList = new Array[List[Double]](numCols)
-      val sbuff = new Array[mutable.StringBuilder](numCols)
-      sbuff.indices.foreach(i => {
-        sbuff(i) = new mutable.StringBuilder(100)
-      })
+      val aList: Array[List[String]] = if (collectStrings) new Array[List[String]](numCols) else null
+      val fValues: Array[DoubleValues] = if (collectNumbers) Array.fill(numCols)(new DoubleValues) else null
+      val fDigest: Array[TDigest] = if (useDigest) new Array[TDigest](numCols) else null
+      val distinct: Array[HyperLogLog] = if (useSketch) new Array[HyperLogLog](numCols) else null
+      val sbuff: Array[mutable.StringBuilder] = if (useLis) Array.fill(numCols)(new mutable.StringBuilder(100)) else null
       var gList = List.empty[String]
       var allCount: Long = 0
     }
@@ -73,11 +77,46 @@ object GroupAnalysis {
     val anyCols: List[(Int, Char)] = (acCols.map((_, 'a')) ::: icCols.map((_, 'i')) ::: fcCols.map((_, 'f')))
       .sortWith((x, y) => x._1 < y._1)
     val numCols: Int = anyCols.size
-    val collectLists: Boolean = useDis || useMed || useSet
+    // Exact medians, distinct counts and sets need all the values, approximate ones are kept in sketches
+    val collectNumbers: Boolean = useSet || (!approximate && (useDis || useMed))
+    val collectStrings: Boolean = useSet || useMed || (!approximate && useDis)
+    val useDigest: Boolean = approximate && useMed
+    val useSketch: Boolean = approximate && useDis
     val useGroup: Boolean = if (grCols.nonEmpty) true else false
 
-    var groupMap = scala.collection.mutable.HashMap.empty[String, StatHolder]
     val grColsArray: Array[Int] = grCols.toArray
+    // Estimated bytes of a StatHolder without its lists
+    val statHolderSize: Long = 200L + numCols * 100L + (if (useLis) numCols * 250L else 0L) +
+      (if (useDigest) numCols * new TDigest().sizeInBytes else 0L) +
+      (if (useSketch) numCols * (1L << APPROX_DISTINCT_PRECISION) else 0L)
+    val sepLength: Int = sepVal.length
+
+    /**
+     * The groups of the bin, spilled to disk when they use more than the aggregation memory budget.
+     */
+    class GroupAggregation(groupBudget: SpillableAggregation.GroupBudget, level: Int) extends SpillableAggregation[StatHolder](groupBudget, level) {
+      override def keyOf(r: Row): String = if (useGroup) r.selectedColumns(grColsArray) else ""
+
+      override def createGroup(key: String, ordinal: Long): StatHolder = {
+        val sh = StatHolder(numCols)
+        initStatHolder(sh)
+        sh
+      }
+
+      override def groupOverhead(key: String): Long = statHolderSize + 2L * key.length
+
+      override def update(sh: StatHolder, r: Row): Long = updateStatHolder(sh, r)
+
+      override def orderKey(key: String, sh: StatHolder): String = key
+
+      override def result(key: String, sh: StatHolder): Row = RowObj(formatLine(resultBinInfo, key, sh))
+
+      override def createPartitionAggregation(groupBudget: SpillableAggregation.GroupBudget, level: Int): SpillableAggregation[StatHolder] =
+        new GroupAggregation(groupBudget, level)
+    }
+
+    val groupMap = new GroupAggregation(groupBudget, 0)
+    var resultBinInfo: BinInfo = _
 
     def formatDouble(d: Double): String = (d formatted "%1.1f").replace(',', '.')
 
@@ -87,9 +126,11 @@ object GroupAnalysis {
         sh.sums(i) = 0.0
         sh.sq_sums(i) = 0.0
         sh.ns(i) = 0
-        sh.aList(i) = Nil
-        sh.fList(i) = Nil
-        sh.sbuff(i).setLength(0)
+        if (collectStrings) sh.aList(i) = Nil
+        if (collectNumbers) sh.fValues(i).clear()
+        if (useLis) sh.sbuff(i).setLength(0)
+        if (useDigest && anyCols(i)._2 != 'a') sh.fDigest(i) = new TDigest()
+        if (useSketch) sh.distinct(i) = new HyperLogLog(APPROX_DISTINCT_PRECISION)
         i += 1
       }
       sh.allCount = 0
@@ -97,23 +138,25 @@ object GroupAnalysis {
     }
 
     def initialize(binInfo: BinInfo): Unit = {
-      groupMap = scala.collection.mutable.HashMap.empty[String, StatHolder]
+      groupMap.close()
     }
 
     def process(r: Row) {
-      var sh: StatHolder = null
-      val groupID = if (useGroup) r.selectedColumns(grColsArray) else ""
-
-      groupMap.get(groupID) match {
-        case Some(x) => sh = x
-        case None =>
-          sh = StatHolder(numCols)
-          initStatHolder(sh)
-          groupMap += (groupID -> sh)
-      }
+      groupMap.add(r)
+    }
 
+    /**
+     * Add the row to the group.
+     *
+     * @return estimated bytes added to the group.
+     */
+    def updateStatHolder(sh: StatHolder, r: Row): Long = {
+      var added = 0L
       sh.allCount += 1
-      if (useCdist) sh.gList ::= r.toString
+      if (useCdist) {
+        sh.gList ::= r.toString
+        added += 56 + 2 * r.length
+      }
       var i = 0
       while (i < anyCols.size) {
         val j = anyCols(i)._1
@@ -122,10 +165,17 @@ object GroupAnalysis {
           try {
             val v = r.colAsDouble(j)
             if (!v.isNaN) {
-              if (collectLists) sh.fList(i) ::= v
+              if (collectNumbers) {
+                sh.fValues(i).add(v)
+                added += 12
+              }
+              if (useDigest) sh.fDigest(i).add(v)
+              if (useSketch) sh.distinct(i).add(v)
               if (useLis) {
                 if (sh.ns(i) > 0) sh.sbuff(i).append(sepVal)
-                sh.sbuff(i).append(r.colAsString(j))
+                val s = r.colAsString(j)
+                sh.sbuff(i).append(s)
+                added += 2 * (s.length + sepLength)
               }
               sh.sums(i) += v
               sh.sq_sums(i) += v * v
@@ -145,10 +195,15 @@ object GroupAnalysis {
         else if (cType == 'a') {
           try {
             val v = r.colAsString(j).toString
-            if (collectLists) sh.aList(i) ::= v
+            if (collectStrings) {
+              sh.aList(i) ::= v
+              added += 56 + 2 * v.length
+            }
+            if (useSketch) sh.distinct(i).add(v)
             if (useLis) {
               if (sh.ns(i) > 0) sh.sbuff(i).append(sepVal)
-              sh.sbuff(i).append(r.colAsString(j))
+              sh.sbuff(i).append(v)
+              added += 2 * (v.length + sepLength)
             }
             if (sh.ns(i) == 0) {
               sh.aMin(i) = v
@@ -164,163 +219,163 @@ object GroupAnalysis {
         }
         i += 1
       }
+      added
     }
 
     def sendToNextProcessor(bi: BinInfo, nextProcessor: Processor): Unit = {
-      for (key <- groupMap.keys.toList.sorted) {
-        val sh = groupMap(key)
-        val lineBuilder = new mutable.StringBuilder
-        lineBuilder.append(bi.chr)
+      resultBinInfo = bi
+      groupMap.results(r => nextProcessor.process(r))
+    }
+
+    override def close(): Unit = {
+      groupMap.close()
+    }
+
+    def formatLine(bi: BinInfo, key: String, sh: StatHolder): String = {
+      val lineBuilder = new mutable.StringBuilder
+      lineBuilder.append(bi.chr)
+      lineBuilder.append('\t')
+      if (useSegment) {
+        lineBuilder.append(bi.sta)
         lineBuilder.append('\t')
-        if (useSegment) {
-          lineBuilder.append(bi.sta)
-          lineBuilder.append('\t')
-          lineBuilder.append(bi.sto)
-        }
-        else {
-          lineBuilder.append(bi.sto)
-        }
-        if (useGroup) {
-          lineBuilder.append('\t')
-          lineBuilder.append(key)
-        }
-        if (useCount) {
-          lineBuilder.append('\t')
-          lineBuilder.append(sh.allCount)
-        }
-        if (useCdist) {
-          lineBuilder.append('\t')
-          lineBuilder.append(sh.gList.distinct.size)
-        }
-        var i = 0
-        while (i < anyCols.size) {
-          val cType = anyCols(i)._2
-          if (sh.ns(i) > 0) {
-            if (cType == 'i' || cType == 'f') {
-              val mean = sh.sums(i) / sh.ns(i)
-              val variance = (sh.sq_sums(i) / sh.ns(i) - mean * mean).abs
-              if (cType == 'i') {
-                if (useMin) {
-                  lineBuilder.append('\t')
-                  lineBuilder.append(sh.fMin(i).toLong)
-                }
-                if (useMed) {
-                  val fArr = sh.fList(i).sorted.toArray
-                  lineBuilder.append('\t')
-                  lineBuilder.append(fArr(fArr.length / 2).toLong)
-                }
-                if (useMax) {
-                  lineBuilder.append('\t')
-                  lineBuilder.append(sh.fMax(i).toLong)
-                }
-                if (useSet) {
-                  val y = sh.fList(i).map(_.toLong).distinct.sorted
-                  lineBuilder.append('\t')
-                  lineBuilder.append(maxLen(y.mkString(sepVal), setLen))
-                }
-                if (useLis) {
-                  lineBuilder.append('\t')
-                  lineBuilder.append(maxLen(sh.sbuff(i).toString, setLen))
-                }
-              } else {
-                if (useMin) {
-                  lineBuilder.append('\t')
-                  lineBuilder.append(sh.fMin(i))
-                }
-                if (useMed) {
-                  val fArr = sh.fList(i).sorted.toArray
-                  var median = 0.0
-                  if (fArr.length % 2 == 0) {
-                    val idx = fArr.length / 2
-                    median = (fArr(idx - 1) + fArr(idx)) / 2.0
-                  } else {
-                    median = fArr(fArr.length / 2)
-                  }
-                  lineBuilder.append('\t')
-                  lineBuilder.append(median)
-                }
-                if (useMax) {
-                  lineBuilder.append('\t')
-                  lineBuilder.append(sh.fMax(i))
-                }
-                if (useSet) {
-                  val y = sh.fList(i).distinct.sorted
-                  lineBuilder.append('\t')
-                  lineBuilder.append(maxLen(y.mkString(sepVal), setLen))
-                }
-                if (useLis) {
-                  lineBuilder.append('\t')
-                  lineBuilder.append(maxLen(sh.sbuff(i).toString, setLen))
-                }
+        lineBuilder.append(bi.sto)
+      }
+      else {
+        lineBuilder.append(bi.sto)
+      }
+      if (useGroup) {
+        lineBuilder.append('\t')
+        lineBuilder.append(key)
+      }
+      if (useCount) {
+        lineBuilder.append('\t')
+        lineBuilder.append(sh.allCount)
+      }
+      if (useCdist) {
+        lineBuilder.append('\t')
+        lineBuilder.append(sh.gList.distinct.size)
+      }
+      var i = 0
+      while (i < anyCols.size) {
+        val cType = anyCols(i)._2
+        if (sh.ns(i) > 0) {
+          if (cType == 'i' || cType == 'f') {
+            val mean = sh.sums(i) / sh.ns(i)
+            val variance = (sh.sq_sums(i) / sh.ns(i) - mean * mean).abs
+            if (cType == 'i') {
+              if (useMin) {
+                lineBuilder.append('\t')
+                lineBuilder.append(sh.fMin(i).toLong)
               }
-              if (useDis) {
+              if (useMed) {
                 lineBuilder.append('\t')
-                lineBuilder.append(sh.fList(i).distinct.length)
+                if (useDigest) {
+                  lineBuilder.append(Math.round(sh.fDigest(i).median()))
+                } else {
+                  lineBuilder.append(sh.fValues(i).upperMedian().toLong)
+                }
               }
-              if (useAvg) {
+              if (useMax) {
                 lineBuilder.append('\t')
-                lineBuilder.append(mean)
+                lineBuilder.append(sh.fMax(i).toLong)
               }
-              if (useStd) {
+              if (useSet) {
+                val y = sh.fValues(i).sortedDistinctLongs()
                 lineBuilder.append('\t')
-                lineBuilder.append(scala.math.sqrt(variance))
+                lineBuilder.append(maxLen(y.mkString(sepVal), setLen))
               }
-              if (useSum) {
-                if (cType == 'i') {
-                  lineBuilder.append('\t')
-                  lineBuilder.append(sh.sums(i).toLong)
-                } else {
-                  lineBuilder.append('\t')
-                  lineBuilder.append(sh.sums(i))
-                }
+              if (useLis) {
+                lineBuilder.append('\t')
+                lineBuilder.append(maxLen(sh.sbuff(i).toString, setLen))
               }
-            } else { // the 'a' case
+            } else {
               if (useMin) {
                 lineBuilder.append('\t')
-                lineBuilder.append(sh.aMin(i))
+                lineBuilder.append(sh.fMin(i))
               }
               if (useMed) {
-                val aArr: Array[String] = sh.aList(i).sorted.toArray
                 lineBuilder.append('\t')
-                lineBuilder.append(aArr(aArr.length / 2))
+                lineBuilder.append(if (useDigest) sh.fDigest(i).median() else sh.fValues(i).median())
               }
               if (useMax) {
                 lineBuilder.append('\t')
-                lineBuilder.append(sh.aMax(i))
+                lineBuilder.append(sh.fMax(i))
               }
               if (useSet) {
-                val sortedDistinctList = sh.aList(i).distinct.sorted
+                val y = sh.fValues(i).sortedDistinct()
                 lineBuilder.append('\t')
-                lineBuilder.append(maxLen(sortedDistinctList.mkString(sepVal), setLen))
+                lineBuilder.append(maxLen(y.mkString(sepVal), setLen))
               }
               if (useLis) {
                 lineBuilder.append('\t')
                 lineBuilder.append(maxLen(sh.sbuff(i).toString, setLen))
               }
-              if (useDis) {
+            }
+            if (useDis) {
+              lineBuilder.append('\t')
+              lineBuilder.append(if (useSketch) sh.distinct(i).estimate() else sh.fValues(i).distinctCount().toLong)
+            }
+            if (useAvg) {
+              lineBuilder.append('\t')
+              lineBuilder.append(mean)
+            }
+            if (useStd) {
+              lineBuilder.append('\t')
+              lineBuilder.append(scala.math.sqrt(variance))
+            }
+            if (useSum) {
+              if (cType == 'i') {
+                lineBuilder.append('\t')
+                lineBuilder.append(sh.sums(i).toLong)
+              } else {
                 lineBuilder.append('\t')
-                lineBuilder.append(sh.aList(i).distinct.length)
+                lineBuilder.append(sh.sums(i))
               }
             }
-          } else {
-            if (useMin) lineBuilder.append('\t')
-            if (useMed) lineBuilder.append('\t')
-            if (useMax) lineBuilder.append('\t')
-            if (useSet) lineBuilder.append('\t')
-            if (useLis) lineBuilder.append('\t')
-            if (useDis) lineBuilder.append('\t')
-            if (cType == 'i' || cType == 'f') {
-              if (useAvg) lineBuilder.append('\t')
-              if (useStd) lineBuilder.append('\t')
-              if (useSum) lineBuilder.append('\t')
+          } else { // the 'a' case
+            if (useMin) {
+              lineBuilder.append('\t')
+              lineBuilder.append(sh.aMin(i))
+            }
+            if (useMed) {
+              val aArr: Array[String] = sh.aList(i).sorted.toArray
+              lineBuilder.append('\t')
+              lineBuilder.append(aArr(aArr.length / 2))
+            }
+            if (useMax) {
+              lineBuilder.append('\t')
+              lineBuilder.append(sh.aMax(i))
+            }
+            if (useSet) {
+              val sortedDistinctList = sh.aList(i).distinct.sorted
+              lineBuilder.append('\t')
+              lineBuilder.append(maxLen(sortedDistinctList.mkString(sepVal), setLen))
+            }
+            if (useLis) {
+              lineBuilder.append('\t')
+              lineBuilder.append(maxLen(sh.sbuff(i).toString, setLen))
+            }
+            if (useDis) {
+              lineBuilder.append('\t')
+              lineBuilder.append(if (useSketch) sh.distinct(i).estimate() else sh.aList(i).distinct.length.toLong)
             }
           }
-          i += 1
+        } else {
+          if (useMin) lineBuilder.append('\t')
+          if (useMed) lineBuilder.append('\t')
+          if (useMax) lineBuilder.append('\t')
+          if (useSet) lineBuilder.append('\t')
+          if (useLis) lineBuilder.append('\t')
+          if (useDis) lineBuilder.append('\t')
+          if (cType == 'i' || cType == 'f') {
+            if (useAvg) lineBuilder.append('\t')
+            if (useStd) lineBuilder.append('\t')
+            if (useSum) lineBuilder.append('\t')
+          }
         }
-        nextProcessor.process(RowObj(lineBuilder.toString))
+        i += 1
       }
-
-      groupMap = null
+      lineBuilder.toString
     }
   }
 
@@ -356,20 +411,24 @@ object GroupAnalysis {
                               useMin: Boolean, useMed: Boolean, useDis: Boolean, useSet: Boolean, useLis: Boolean,
                               useAvg: Boolean, useStd: Boolean, useSum: Boolean,
                               acCols: List[Int], icCols: List[Int], fcCols: List[Int], grCols: List[Int],
-                              setLen: Int, truncate: Boolean, sepVal: String) extends BinFactory {
+                              setLen: Int, truncate: Boolean, sepVal: String, approximate: Boolean = false) extends BinFactory {
+    // The bin states share the memory budget of the command
+    val groupBudget: SpillableAggregation.GroupBudget = SpillableAggregation.groupBudget()
+
     def create: BinState =
       AggregateState(binSize, useSegment, useCount, useCdist, useMax, useMin, useMed, useDis, useSet, useLis, useAvg,
-        useStd, useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal)
+        useStd, useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal, approximate, groupBudget)
   }
 
   case class Aggregate(binSize: Int, useCount: Boolean, useCdist: Boolean, useMax: Boolean, useMin: Boolean,
                        useMed: Boolean, useDis: Boolean, useSet: Boolean, useLis: Boolean, useAvg: Boolean,
                        useStd: Boolean, useSum: Boolean,
                        acCols: List[Int], icCols: List[Int], fcCols: List[Int], grCols: List[Int], setLen: Int,
-                       truncate: Boolean, sepVal: String, outgoingHeader: RowHeader) extends
+                       truncate: Boolean, sepVal: String, outgoingHeader: RowHeader,
+                       approximate: Boolean = false) extends
     BinAnalysis(RegularRowHandler(binSize), BinAggregator(
       AggregateFactory(binSize, binSize > 1, useCount, useCdist, useMax, useMin, useMed, useDis, useSet, useLis, useAvg,
-        useStd, useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal), 2, 1)) {
+        useStd, useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal, approximate), 2, 1)) {
 
 
     override def isTypeInformationMaintained: Boolean = outgoingHeader != null
@@ -386,10 +445,11 @@ object GroupAnalysis {
                        useMed: Boolean, useDis: Boolean, useSet: Boolean, useLis: Boolean, useAvg: Boolean,
                        useStd: Boolean, useSum: Boolean,
                        acCols: List[Int], icCols: List[Int], fcCols: List[Int], grCols: List[Int], setLen: Int,
-                       truncate: Boolean, sepVal: String, outgoingHeader: RowHeader) extends
+                       truncate: Boolean, sepVal: String, outgoingHeader: RowHeader,
+                       approximate: Boolean = false) extends
     BinAnalysis(GroupingColumnRowHandler(binSize, grCols.toArray), BinAggregator(
       AggregateFactory(binSize, binSize > 1, useCount, useCdist, useMax, useMin, useMed, useDis, useSet, useLis, useAvg,
-        useStd, useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal), 2, 1)) {
+        useStd, useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal, approximate), 2, 1)) {
 
 
     override def isTypeInformationMaintained: Boolean = outgoingHeader != null
@@ -406,10 +466,11 @@ object GroupAnalysis {
                             useMin: Boolean, useMed: Boolean, useDis: Boolean, useSet: Boolean, useLis: Boolean,
                             useAvg: Boolean, useStd: Boolean, useSum: Boolean,
                             acCols: List[Int], icCols: List[Int], fcCols: List[Int], grCols: List[Int], setLen: Int,
-                            truncate: Boolean, sepVal: String, outgoingHeader: RowHeader) extends
+                            truncate: Boolean, sepVal: String, outgoingHeader: RowHeader,
+                            approximate: Boolean = false) extends
     BinAnalysis(SlidingRowHandler(binSize, slideSteps), BinAggregator(
       AggregateFactory(binSize, binSize > 1, useCount, useCdist, useMax, useMin, useMed, useDis, useSet, useLis, useAvg,
-        useStd, useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal), 2 * 2 * slideSteps, 2 * 1 * slideSteps)) {
+        useStd, useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal, approximate), 2 * 2 * slideSteps, 2 * 1 * slideSteps)) {
 
     override def isTypeInformationMaintained: Boolean = outgoingHeader != null
 
@@ -425,10 +486,11 @@ object GroupAnalysis {
                             useMin: Boolean, useMed: Boolean, useDis: Boolean, useSet: Boolean, useLis: Boolean,
                             useAvg: Boolean, useStd: Boolean, useSum: Boolean,
                             acCols: List[Int], icCols: List[Int], fcCols: List[Int], grCols: List[Int], setLen: Int,
-                            truncate: Boolean, sepVal: String, outgoingHeader: RowHeader) extends
+                            truncate: Boolean, sepVal: String, outgoingHeader: RowHeader,
+                            approximate: Boolean = false) extends
     BinAnalysis(ChromRowHandler(session), BinAggregator(
       AggregateFactory(1, true, useCount, useCdist, useMax, useMin, useMed, useDis, useSet, useLis, useAvg, useStd,
-        useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal), 2, 1)) {
+        useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal, approximate), 2, 1)) {
 
     override def isTypeInformationMaintained: Boolean = outgoingHeader != null
 
@@ -444,10 +506,11 @@ object GroupAnalysis {
                              useMed: Boolean, useDis: Boolean, useSet: Boolean, useLis: Boolean, useAvg: Boolean,
                              useStd: Boolean, useSum: Boolean,
                              acCols: List[Int], icCols: List[Int], fcCols: List[Int], grCols: List[Int], setLen: Int,
-                             truncate: Boolean, sepVal: String, outgoingHeader: RowHeader) extends
+                             truncate: Boolean, sepVal: String, outgoingHeader: RowHeader,
+                             approximate: Boolean = false) extends
     BinAnalysis(GenomeRowHandler(), BinAggregator(
       AggregateFactory(1, true, useCount, useCdist, useMax, useMin, useMed, useDis, useSet, useLis, useAvg, useStd,
-        useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal), 2, 1, useKeyForChrom = true)) {
+        useSum, acCols, icCols, fcCols, grCols, setLen, truncate, sepVal, approximate), 2, 1, useKeyForChrom = true)) {
 
     override def isTypeInformationMaintained: Boolean = outgoingHeader != null
 
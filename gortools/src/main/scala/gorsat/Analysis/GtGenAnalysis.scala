@@ -75,19 +75,45 @@ object GtGenAnalysis {
       else initColHolder(singleColHolder)
     }
 
+    def holderOf(groupID: String): ColHolder = groupMap.get(groupID) match {
+      case Some(x) => x
+      case None =>
+        val sh = ColHolder()
+        initColHolder(sh)
+        groupMap += (groupID -> sh)
+        sh
+    }
+
     def process(r: Row) {
-      var sh: ColHolder = null
-      if (useGroup) {
-        val groupID = r.selectedColumns(grColsArray)
-        groupMap.get(groupID) match {
-          case Some(x) => sh = x
-          case None =>
-            sh = ColHolder()
-            initColHolder(sh)
-            groupMap += (groupID -> sh)
+      setGenotype(if (useGroup) holderOf(r.selectedColumns(grColsArray)) else singleColHolder, r)
+    }
+
+    /**
+     * Rows of the same group usually follow each other, the group is only looked up when it changes.
+     */
+    override def processBatch(rows: Array[Row], count: Int) {
+      var groupID: String = null
+      var sh: ColHolder = singleColHolder
+      var i = 0
+      while (i < count) {
+        val r = rows(i)
+        if (useGroup) {
+          val rowGroupID = r.selectedColumns(grColsArray)
+          if (rowGroupID != groupID) {
+            groupID = rowGroupID
+            sh = holderOf(groupID)
+          }
         }
-      } else sh = singleColHolder
+        setGenotype(sh, r)
+        i += 1
+      }
+    }
+
+    override def acceptsBatches: Boolean = true
+
+    override def flushesInParallel: Boolean = true
 
+    def setGenotype(sh: ColHolder, r: Row) {
       val PNtag = r.colAsString(PNCol).toString
 
       pbt.pnToIdx.get(PNtag) match {
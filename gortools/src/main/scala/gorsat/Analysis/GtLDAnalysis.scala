@@ -22,306 +22,52 @@
 
 package gorsat.Analysis
 
-import gorsat.Utilities.AnalysisUtilities.{ParameterHolder, SEGinfo}
 import gorsat.Commands._
-import gorsat.Iterators.{ChromBoundedIteratorSource, RowListIterator}
-import gorsat.process.GenericGorRunner
+import gorsat.gtld.GenotypeBitPlanes
 import org.gorpipe.exceptions.GorDataException
 import org.gorpipe.gor.model.Row
 import org.gorpipe.model.gor.RowObj
 import org.gorpipe.model.gor.RowObj.BinaryHolder
-import org.gorpipe.model.gor.iterators.RowSource
 
-object GtLDAnalysis {
-
-
-  case class LDSegOverlap(ph: ParameterHolder, inRightSource: RowSource, missingSeg: String, leftJoin: Boolean, fuzzFactor: Int, iJoinType: String,
-                        lstop: Int, rstop: Int, lleq: List[Int], lreq: List[Int], otherCols : Array[Int], valuesCol : Int, maxSegSize: Int, plain: Boolean, inclusOnly: Boolean = false) extends Analysis {
-
-    var rightSource = new ChromBoundedIteratorSource(inRightSource)
-
-    type myRowBufferType = scala.collection.mutable.ArrayBuffer[SEGinfo]
-    var lastRightChr = "chr"
-    var lastRightPos = 0
-    var maxLeftStop = -1
-    var lastLeftChr = "chr"
-    var lastSeekChr = "chr"
-
-    var joinType = iJoinType
-
-    var elimCols = 0
-    if (plain) {
-      if (joinType == "snpseg" || joinType == "segseg") elimCols = 1 else elimCols = 0
-    }
-    val nothingFromRight = if (missingSeg == "") true else false
-
-    var varsegleft = false
-    var varsegright = false
-    var lref = 3
-    var rref = 3
-    if (ph != null) {
-      if (ph.varsegleft) joinType = "seg" + joinType.slice(3, 6)
-      if (ph.varsegright) joinType = joinType.slice(0, 3) + "seg"
-      varsegleft = ph.varsegleft
-      varsegright = ph.varsegright
-      lref = ph.lref
-      rref = ph.rref
-      if (plain && varsegright) elimCols = -1
-    }
-
-    var segseg = if (joinType == "segseg") true else false
-    var snpsnp = if (joinType == "snpsnp") true else false
-    var segsnp = if (joinType == "segsnp") true else false
-
-    var leftStart = 0
-    var leftStop = 0
-    val noDistance = if (plain || fuzzFactor == 0 && joinType == "snpsnp") true else false
-    var groupClean = 0
-    val leq = lleq.toArray
-    val req = lreq.toArray
-
-    case class GroupHolder() {
-      val rowBuffer = new Array[myRowBufferType](2)
-      rowBuffer(0) = new myRowBufferType
-      rowBuffer(1) = new myRowBufferType
-      var buffer = 0
-      var bufferSize = 0
-    }
-
-    var singleGroupHolder = GroupHolder()
-    var groupMap = new scala.collection.mutable.HashMap[String, GroupHolder]
-    val useGroup = if (lleq == Nil) false else true
-    var gr: GroupHolder = _
-    if (!useGroup) groupMap += ("#GR0#" -> singleGroupHolder)
-
-    override def process(lr: Row) {
-      if (useGroup && lr.chr != lastLeftChr) {
-        groupMap = new scala.collection.mutable.HashMap[String, GroupHolder]
-      }
-      if (segseg || segsnp) {
-        try {
-          if (varsegleft) {
-            leftStart = lr.pos
-            leftStop = leftStart - 1 + lr.colAsString(lref).length
-          } else {
-            leftStart = lr.pos
-            leftStop = lr.colAsInt(lstop)
-          }
-        } catch {
-          case e: Exception => throw new GorDataException("Illegal stop position in column #" + (lstop + 1) +
-            " in the JOIN left-source.", lstop + 1, "", lr.toString(), e)
-        }
-      } else {
-        if (varsegleft) {
-          leftStart = lr.pos - 1
-          leftStop = leftStart + lr.colAsString(lref).length
-        } else {
-          leftStart = lr.pos - 1
-          leftStop = lr.pos
-        }
-      }
-      // Check if we need to fetch more segments from the right-source, i.e. have we moved upwards with the left-source
-      if (((maxLeftStop < leftStop && lastLeftChr == lr.chr) || lastLeftChr < lr.chr) &&
-        (lastRightChr < lr.chr || (lastRightChr == lr.chr && lastRightPos <= leftStop + fuzzFactor))) {
-        if (lr.chr == lastSeekChr && !rightSource.hasNext) {
-          /* do nothing */
-        } else if (lr.chr > lastRightChr) {
-          if (snpsnp || segsnp) rightSource.setPosition(lr.chr, (lr.pos - fuzzFactor).max(0))
-          else rightSource.setPosition(lr.chr, (lr.pos - fuzzFactor - maxSegSize).max(0))
-          lastSeekChr = lr.chr
-        } else if (lr.chr == lastRightChr && lr.pos - fuzzFactor - maxSegSize > lastRightPos) {
-          if (snpsnp || segsnp) rightSource.moveToPosition(lr.chr, (lr.pos - fuzzFactor).max(0))
-          else rightSource.moveToPosition(lr.chr, lr.pos - fuzzFactor - maxSegSize)
-          lastSeekChr = lr.chr
-        }
-        var keepOn = true
-        while (keepOn && rightSource.hasNext) {
-          // Read segments from the right-source
-          val rr = rightSource.next
-          var rightStart = 0
-          var rightStop = 0
-
-          if (snpsnp || segsnp) {
-            if (varsegright) {
-              rightStart = rr.pos - 1
-              rightStop = rr.pos + rr.colAsString(rref).length
-            } else {
-              rightStart = rr.pos - 1
-              rightStop = rr.pos
-            }
-          } else {
-            rightStart = rr.pos
-            try {
-              if (varsegright) {
-                rightStop = rightStart - 1 + rr.colAsString(rref).length
-              } else {
-                rightStop = rr.colAsInt(rstop)
-              }
-            } catch {
-              case e: Exception => throw new GorDataException("Illegal stop position in column #" + (rstop + 1) + " in the JOIN right-source.", rstop + 1, "", rr.toString(), e);
-            }
-          }
-          val rSeg = SEGinfo(rightStart, rightStop, rr)
-
-          if (useGroup) {
-            val groupKeyRight = rr.selectedColumns(req)
-            groupMap.get(groupKeyRight) match {
-              case Some(x) => gr = x
-              case None => {
-                gr = GroupHolder()
-                groupMap += (groupKeyRight -> gr)
-              }
-            }
-          } else gr = singleGroupHolder
-
-          if (rr.chr == lr.chr && rightStop >= leftStart - fuzzFactor) {
-            if (gr.rowBuffer(gr.buffer).size <= gr.bufferSize) gr.rowBuffer(gr.buffer) += rSeg else gr.rowBuffer(gr.buffer)(gr.bufferSize) = rSeg
-            gr.bufferSize += 1
-            lastRightChr = rr.chr
-            lastRightPos = rightStart // rr.pos
-          }
-          if (rr.chr > lr.chr || (rr.chr == lr.chr && rightStart > leftStop + fuzzFactor)) keepOn = false // Continue until there is no overlap with the left-seg
-        }
+import scala.collection.mutable.ArrayBuffer
 
-      }
-      val lSeg = SEGinfo(leftStart, leftStop, lr)
-
-      if (useGroup) {
-        val groupKeyLeft = lr.selectedColumns(leq)
-        groupMap.get(groupKeyLeft) match {
-          case Some(x) => gr = x
-          case None => {
-            gr = GroupHolder()
-            groupMap += (groupKeyLeft -> gr)
-          }
-        }
-      } else gr = singleGroupHolder
-
-      val nextBuffer = (gr.buffer + 1) % 2
-      var nextBufferSize = 0
-      var i = 0
-      while (i < gr.bufferSize && !wantsNoMore) {
-        val rSeg = gr.rowBuffer(gr.buffer)(i)
-        val rr = rSeg.r
-        if (lr.chr == rr.chr && lSeg.start - fuzzFactor < rSeg.stop && lSeg.stop + fuzzFactor > rSeg.start) {
-            val LDs = LDstatCalc(lr.colAsString(valuesCol).toString, rr.colAsString(valuesCol).toString)
-            nextProcessor.process(RowObj(lr.chr + "\t" + lr.pos + "\t" + lr.selectedColumns(otherCols) + "\t" + ((rr.pos - lr.pos) /* - (if (rr.pos - lr.pos > 0) 1 else 0) */ + "\t"
-              + rr.pos + "\t" + rr.selectedColumns(otherCols)) + "\t"
-              + LDs.g00+"\t"+LDs.g10+"\t"+LDs.g20+"\t"+LDs.g01+"\t"+LDs.g11+"\t"+LDs.g21+"\t"+LDs.g02+"\t"+LDs.g12+"\t"+LDs.g22))
-
-        }
-        if (!((rr.chr == lr.chr && rSeg.stop + fuzzFactor < lSeg.start) || rr.chr < lr.chr)) {
-          if (gr.rowBuffer(nextBuffer).size <= nextBufferSize) gr.rowBuffer(nextBuffer) += gr.rowBuffer(gr.buffer)(i)
-          else gr.rowBuffer(nextBuffer)(nextBufferSize) = gr.rowBuffer(gr.buffer)(i)
-          gr.rowBuffer(gr.buffer)(i) = null
-          nextBufferSize += 1
-        }
-        i += 1
-      }
-
-      gr.buffer = nextBuffer
-      gr.bufferSize = nextBufferSize
-      if ((lr.chr == lastLeftChr && maxLeftStop < leftStop) || lr.chr != lastLeftChr) maxLeftStop = leftStop
-      lastLeftChr = lr.chr
-      groupClean += 1
-      if (groupClean == 100000 && useGroup && groupMap.size > 1) {
-        groupMap.keys.foreach(k => {
-          val gr = groupMap(k)
-          val nextBuffer = (gr.buffer + 1) % 2
-          var nextBufferSize = 0
-          var i = 0
-          while (i < gr.bufferSize) {
-            val rSeg = gr.rowBuffer(gr.buffer)(i)
-            val rr = rSeg.r
-            if (!((rr.chr == lr.chr && rSeg.stop + fuzzFactor < lSeg.start) || rr.chr < lr.chr)) {
-              if (gr.rowBuffer(nextBuffer).size <= nextBufferSize) gr.rowBuffer(nextBuffer) += gr.rowBuffer(gr.buffer)(i)
-              else gr.rowBuffer(nextBuffer)(nextBufferSize) = gr.rowBuffer(gr.buffer)(i)
-              gr.rowBuffer(gr.buffer)(i) = null
-              nextBufferSize += 1
-            }
-            i += 1
-          }
-          gr.buffer = nextBuffer
-          gr.bufferSize = nextBufferSize
-          if (nextBufferSize == 0) {
-            groupMap.remove(k)
-          }
-        })
-        groupClean = 0
-      }
-    }
-
-    override def finish {
-      rightSource.close
-    }
-  }
+object GtLDAnalysis {
 
-  case class LDSnpJoinSnpOverlap(ph: ParameterHolder, rightSource: RowSource, missingB: String, leftJoin: Boolean, fuzz: Int,
-                               leq: List[Int], req: List[Int], otherCols : Array[Int], valuesCol : Int, plain: Boolean) extends Analysis {
-    this | LDSegOverlap(ph, rightSource, missingB, leftJoin, fuzz, "snpsnp", 2, 2, leq, req, otherCols, valuesCol, 1, plain)
-  }
 
   case class LDstats(g00 : Int, g10 : Int, g20 : Int, g01 : Int, g11 :Int, g21 : Int, g02 : Int, g12 : Int, g22 : Int)
 
   def LDstatCalc(a : String, b : String) : LDstats = {
-    var i = 0
-    var g00 = 0; var g10 = 0; var g20 = 0;
-    var g01 = 0; var g11 = 0; var g21 = 0;
-    var g02 = 0; var g12 = 0; var g22 = 0;
-
-    while (i < a.length) {
-      if (a(i) == '0') {
-        if (b(i) == '0') {
-          g00 += 1
-        } else if (b(i)=='1') {
-          g01 += 1
-        } else if (b(i)=='2') {
-          g02 += 1
-        }
-      } else if (a(i)=='1') {
-        if (b(i) == '0') {
-          g10 += 1
-        } else if (b(i)=='1') {
-          g11 += 1
-        } else if (b(i)=='2') {
-          g12 += 1
-        }
-      } else if (a(i)=='2') {
-        if (b(i) == '0') {
-          g20 += 1
-        } else if (b(i)=='1') {
-          g21 += 1
-        } else if (b(i)=='2') {
-          g22 += 1
-        }
-      }
-      i += 1
-    }
-    LDstats(g00,g10,g20,g01,g11,g21,g02,g12,g22)
+    val g = new Array[Int](9)
+    GenotypeBitPlanes.of(a).contingency(GenotypeBitPlanes.of(b), g, 0)
+    LDstats(g(0),g(1),g(2),g(3),g(4),g(5),g(6),g(7),g(8))
   }
 
+  // The number of pairs whose contingency tables are computed before they are sent on
+  val pairBlockSize = 16384
+  // The number of pairs times words of genotypes above which a block is computed in parallel
+  val parallelWork = 65536
 
-  case class typeHolder(var rowType: Char) extends BinaryHolder
+  case class LDRowHolder(var rowType: Char, genotypes: GenotypeBitPlanes) extends BinaryHolder
 
   case class LDSelfJoinFactory(missingSEG: String, fuzz: Int, req: List[Int], otherCols: List[Int], valuesCol : Int, useOnlyAsLeftVar: Int) extends BinFactory {
     def create: BinState = LDSelfJoinState(missingSEG, fuzz, req, otherCols, valuesCol, useOnlyAsLeftVar)
   }
 
-  case class LDSelfJoinRowHandler(binsize: Int, fuzz: Int, binN: Int) extends RowHandler {
+  case class LDSelfJoinRowHandler(binsize: Int, fuzz: Int, binN: Int, valuesCol: Int) extends RowHandler {
     val binIDgen = RegularBinIDgen(binsize)
-    val leftType = typeHolder('L') // This object is used to denote left-row when it is received in SelfJoinState
-    val rightType = typeHolder('R') // This object is used to denote right-row
 
     def process(r: Row, BA: BinAggregator) {
       val chr = r.chr
       val pos = r.pos
 
+      // The genotypes are packed once per row, the row is used as a right-row in several bins
+      val holder = LDRowHolder('L', GenotypeBitPlanes.of(r.colAsString(valuesCol)))
       var binID = binIDgen.ID(pos)
       val (sta, sto) = binIDgen.StartAndStop(binID)
-      r.bH = leftType
+      r.bH = holder
       BA.update(r, binID, chr, sta, sto)
 
-      r.bH = rightType
+      holder.rowType = 'R'
       val start = if (pos > fuzz) pos - fuzz else 0
       val stop = pos + fuzz
       val binIDstart = binIDgen.ID(start)
@@ -338,56 +84,158 @@ object GtLDAnalysis {
     }
   }
 
-
+  /**
+    * Pairs each left-row of a bin with the right-rows within distance fuzz of it. The rows arrive in position order,
+    * so the right-rows of a left-row form a window which slides forward with the left-rows. The contingency tables
+    * are computed for a block of pairs at a time, in parallel when the block is large, and then sent on in order.
+    */
   case class LDSelfJoinState(missingSEG: String, fuzz: Int, lreq: List[Int], iotherCols: List[Int], valuesCol : Int, useOnlyAsLeftVar: Int) extends BinState {
-    var lRows: List[Row] = _
-    var rRows: List[Row] = _
-    val empty = missingSEG.split("\t", -1)(0)
+    val lRows = new ArrayBuffer[Row]
+    val rRows = new ArrayBuffer[Row]
+    val lGenotypes = new ArrayBuffer[GenotypeBitPlanes]
+    val rGenotypes = new ArrayBuffer[GenotypeBitPlanes]
     val req = lreq.toArray
     val otherCols = iotherCols.toArray
     val noEquijoin = if (lreq == Nil) true else false
 
     def initialize(bi: BinInfo): Unit = {
-      lRows = Nil
-      rRows = Nil
+      clear()
     }
 
     def process(r: Row) {
-      val leftOrRight = r.bH.asInstanceOf[typeHolder]
-      if (leftOrRight.rowType == 'L' && (useOnlyAsLeftVar == -1 || r.colAsInt(useOnlyAsLeftVar) > 0)) lRows ::= r
-      if (leftOrRight.rowType == 'R') rRows ::= r
+      val holder = r.bH.asInstanceOf[LDRowHolder]
+      if (holder.rowType == 'L' && (useOnlyAsLeftVar == -1 || r.colAsInt(useOnlyAsLeftVar) > 0)) {
+        lRows += r
+        lGenotypes += holder.genotypes
+      }
+      if (holder.rowType == 'R') {
+        rRows += r
+        rGenotypes += holder.genotypes
+      }
     }
 
     def sendToNextProcessor(bi: BinInfo, nextProcessor: Processor) {
-      if (nextProcessor.wantsNoMore) return
-      if (rRows.nonEmpty && lRows.length * rRows.length < 400) {
-        for (lr <- lRows.reverse;
-             rr <- rRows.reverse) {
-          if (nextProcessor.wantsNoMore) return
-          if (rr.pos - fuzz - 1 < lr.pos && lr.pos <= rr.pos + fuzz && (noEquijoin || rr.selectedColumns(req) == lr.selectedColumns(req))) {
-              val LDs = LDstatCalc(lr.colAsString(valuesCol).toString, rr.colAsString(valuesCol).toString)
-              val r = RowObj(lr.chr + "\t" + lr.pos + "\t" + lr.selectedColumns(otherCols) + "\t" + ((rr.pos - lr.pos) /* - (if (rr.pos - lr.pos > 0) 1 else 0) */ + "\t"
-                + rr.pos + "\t" + rr.selectedColumns(otherCols)) + "\t"
-                + LDs.g00+"\t"+LDs.g10+"\t"+LDs.g20+"\t"+LDs.g01+"\t"+LDs.g11+"\t"+LDs.g21+"\t"+LDs.g02+"\t"+LDs.g12+"\t"+LDs.g22)
-              nextProcessor.process(r)
+      if (!nextProcessor.wantsNoMore && lRows.nonEmpty && rRows.nonEmpty) {
+        sendPairs(nextProcessor)
+      }
+      clear()
+    }
+
+    private def clear(): Unit = {
+      lRows.clear()
+      rRows.clear()
+      lGenotypes.clear()
+      rGenotypes.clear()
+    }
+
+    private def sendPairs(nextProcessor: Processor): Unit = {
+      val nLeft = lRows.length
+      val nRight = rRows.length
+      // The keys are computed up front as the windows may be computed in parallel
+      val lKeys = if (noEquijoin) null else lRows.map(_.selectedColumns(req)).toArray
+      val rKeys = if (noEquijoin) null else rRows.map(_.selectedColumns(req)).toArray
+      val rOther = new Array[String](nRight)
+
+      // The window of right-rows for each left-row, from windowStart until windowEnd
+      val windowStart = new Array[Int](nLeft)
+      val windowEnd = new Array[Int](nLeft)
+      val rightSorted = (1 until nRight).forall(j => rRows(j - 1).pos <= rRows(j).pos)
+      var lo = 0
+      var hi = 0
+      var i = 0
+      while (i < nLeft) {
+        val pos = lRows(i).pos
+        if (!rightSorted) {
+          lo = 0
+          hi = nRight
+        } else {
+          if (i > 0 && pos < lRows(i - 1).pos) {
+            lo = 0
+            hi = 0
+          }
+          while (lo < nRight && rRows(lo).pos < pos - fuzz) lo += 1
+          if (hi < lo) hi = lo
+          while (hi < nRight && rRows(hi).pos <= pos + fuzz) hi += 1
+        }
+        windowStart(i) = lo
+        windowEnd(i) = hi
+        i += 1
+      }
+
+      val counts = new Array[Int](9 * pairBlockSize)
+      val paired = new Array[Boolean](pairBlockSize)
+      var blockStart = 0
+      while (blockStart < nLeft && !nextProcessor.wantsNoMore) {
+        // A block holds whole windows, at least one
+        val pairOffset = new ArrayBuffer[Int]
+        pairOffset += 0
+        var blockEnd = blockStart
+        var numPairs = 0
+        while (blockEnd < nLeft && (blockEnd == blockStart || numPairs + windowEnd(blockEnd) - windowStart(blockEnd) <= pairBlockSize)) {
+          numPairs += windowEnd(blockEnd) - windowStart(blockEnd)
+          pairOffset += numPairs
+          blockEnd += 1
+        }
+        val blockCounts = if (numPairs <= pairBlockSize) counts else new Array[Int](9 * numPairs)
+        val blockPaired = if (numPairs <= pairBlockSize) paired else new Array[Boolean](numPairs)
+
+        def computeWindow(i: Int): Unit = {
+          val lr = lRows(i)
+          val genotypes = lGenotypes(i)
+          var idx = pairOffset(i - blockStart)
+          var j = windowStart(i)
+          while (j < windowEnd(i)) {
+            val rr = rRows(j)
+            val isPair = rr.pos - fuzz - 1 < lr.pos && lr.pos <= rr.pos + fuzz && (noEquijoin || rKeys(j) == lKeys(i))
+            blockPaired(idx) = isPair
+            if (isPair) genotypes.contingency(rGenotypes(j), blockCounts, 9 * idx)
+            idx += 1
+            j += 1
+          }
+        }
+
+        val work = numPairs.toLong * lGenotypes(blockStart).numberOfWords()
+        if (work >= parallelWork && blockEnd - blockStart > 1) {
+          (blockStart until blockEnd).par.foreach(computeWindow)
+        } else {
+          var w = blockStart
+          while (w < blockEnd) {
+            computeWindow(w)
+            w += 1
+          }
+        }
+
+        var l = blockStart
+        while (l < blockEnd && !nextProcessor.wantsNoMore) {
+          val lr = lRows(l)
+          val leftPrefix = lr.chr + "\t" + lr.pos + "\t" + lr.selectedColumns(otherCols) + "\t"
+          var idx = pairOffset(l - blockStart)
+          var j = windowStart(l)
+          while (j < windowEnd(l) && !nextProcessor.wantsNoMore) {
+            if (blockPaired(idx)) {
+              val rr = rRows(j)
+              if (rOther(j) == null) rOther(j) = rr.selectedColumns(otherCols)
+              val sb = new java.lang.StringBuilder(leftPrefix)
+              sb.append(rr.pos - lr.pos).append('\t').append(rr.pos).append('\t').append(rOther(j))
+              var c = 9 * idx
+              while (c < 9 * idx + 9) {
+                sb.append('\t').append(blockCounts(c))
+                c += 1
+              }
+              nextProcessor.process(RowObj(sb))
+            }
+            idx += 1
+            j += 1
           }
+          l += 1
         }
-      } else if (lRows.nonEmpty && rRows.nonEmpty) {
-        val itLeft = RowListIterator(lRows.reverse)
-        val itRight = RowListIterator(rRows.reverse)
-        val runner = new GenericGorRunner()
-        val params = ParameterHolder(varsegleft = false, varsegright = false, 2, 2)
-        val pipe = LDSnpJoinSnpOverlap(params, itRight, missingSEG, leftJoin = false, fuzz, lreq, lreq, otherCols, valuesCol, plain = false) |
-          Forwarder(nextProcessor)
-        runner.run(itLeft, pipe)
+        blockStart = blockEnd
       }
-      lRows = Nil
-      rRows = Nil
     }
   }
 
   case class LDSelfJoinAnalysis(binSize: Int, missingSEG: String, fuzz: Int, req: List[Int], otherCols : List[Int], valuesCol : Int, useOnlyAsLeftVar: Int, binN: Int) extends
-    BinAnalysis(LDSelfJoinRowHandler(binSize, fuzz, binN), BinAggregator(LDSelfJoinFactory(missingSEG, fuzz, req, otherCols, valuesCol, useOnlyAsLeftVar), binN + 10, binN)) {
+    BinAnalysis(LDSelfJoinRowHandler(binSize, fuzz, binN, valuesCol), BinAggregator(LDSelfJoinFactory(missingSEG, fuzz, req, otherCols, valuesCol, useOnlyAsLeftVar), binN + 10, binN)) {
   }
 
   def fd(d: Double): String = (d formatted "%6.4f").replace(',', '.')
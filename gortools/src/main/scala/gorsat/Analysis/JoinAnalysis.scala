@@ -30,10 +30,11 @@ import gorsat.Utilities.IteratorUtilities
 import gorsat.gorsatGorIterator.MemoryMonitorUtil
 import gorsat.process.SourceProvider
 import gorsat.Analysis
+import org.gorpipe.exceptions.custom.GorLowMemoryException
 import org.gorpipe.exceptions.{GorDataException, GorParsingException}
 import org.gorpipe.gor.GorConstants
 import org.gorpipe.gor.model.Row
-import org.gorpipe.gor.session.GorContext
+import org.gorpipe.gor.session.{GorContext, MemoryReservation}
 import org.gorpipe.model.gor.iterators.RowSource
 import org.gorpipe.model.gor.RowObj
 import org.slf4j.LoggerFactory
@@ -51,6 +52,8 @@ object  JoinAnalysis {
 
     var rightSource = new ChromBoundedIteratorSource(inRightSource)
     var rightSourceMonitorUtil: MemoryMonitorUtil = if (MemoryMonitorUtil.memoryMonitorActive) new MemoryMonitorUtil(MemoryMonitorUtil.basicOutOfMemoryHandler) else null
+    // Right rows held in the buffers are reserved from the memory budget of the query, they can not be spilled
+    val memory = new MemoryReservation()
     type myRowBufferType = scala.collection.mutable.ArrayBuffer[SEGinfo]
     var lastRightChr: String = GorConstants.FIRST_POSSIBLE_CHROMOSOME_VALUE
     var lastRightPos = 0
@@ -203,6 +206,8 @@ object  JoinAnalysis {
           }
           gr.rowBuffer(gr.buffer)(i) = null
           nextBufferSize += 1
+        } else {
+          releaseRightRow(rr)
         }
         i += 1
       }
@@ -294,6 +299,7 @@ object  JoinAnalysis {
 
           if (use_row_again && (next_lr != null && ((rr.chr == next_lr.chr && rightStop >= next_leftStart - fuzzFactor) || rr.chr >= next_lr.chr))) {
             // Only insert row to buffer if overlap with next row
+            reserveRightRow(rr)
             if (gr.rowBuffer(gr.buffer).size <= gr.bufferSize) gr.rowBuffer(gr.buffer) += rSeg else gr.rowBuffer(gr.buffer)(gr.bufferSize) = rSeg
             gr.bufferSize += 1
           }
@@ -335,6 +341,8 @@ object  JoinAnalysis {
               }
               gr.rowBuffer(gr.buffer)(i) = null
               nextBufferSize += 1
+            } else {
+              releaseRightRow(rr)
             }
             i += 1
           }
@@ -348,6 +356,17 @@ object  JoinAnalysis {
       }
     }
 
+    def reserveRightRow(rr: Row): Unit = {
+      if (!memory.tryReserve(MemoryReservation.stringBytes(rr.length))) {
+        throw new GorLowMemoryException("JOIN: Not enough memory left in the query memory budget to buffer overlapping right-source rows, " +
+          (memory.getUsed >> 20) + " MB buffered at " + rr.chr + ":" + rr.pos)
+      }
+    }
+
+    def releaseRightRow(rr: Row): Unit = {
+      memory.release(MemoryReservation.stringBytes(rr.length))
+    }
+
     var prev_row: Row = _
 
     override def process(lr: Row) {
@@ -366,6 +385,7 @@ object  JoinAnalysis {
         }
       } finally {
         rightSource.close()
+        memory.close()
       }
     }
   }
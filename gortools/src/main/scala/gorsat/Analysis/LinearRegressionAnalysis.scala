@@ -22,57 +22,95 @@
 
 package gorsat.Analysis
 
-import gorsat.Regression.LinearRegression
+import gorsat.Regression.{BatchedLinearRegression, LinearRegression}
 import org.gorpipe.gor.model.Row
 import org.gorpipe.gor.session.GorSession
 import org.gorpipe.model.gor.RowObj
 
-class LinearRegressionAnalysis(lookUpSignature: String, session: GorSession, valCol: Int, sepVal: Option[String], imputed: Boolean, phenoFile: String, covarFile: Option[String])
-  extends RegressionAnalysis[Double](lookUpSignature, session, valCol, sepVal, imputed, phenoFile, covarFile) {
+class LinearRegressionAnalysis(lookUpSignature: String, session: GorSession, valCol: Int, sepVal: Option[String], imputed: Boolean, phenoFile: String, covarFile: Option[String], requestedBlockSize: Option[Int] = None)
+  extends RegressionAnalysis[Double](lookUpSignature, session, valCol, sepVal, imputed, phenoFile, covarFile, requestedBlockSize) {
 
   var linRegObjects: Array[LinearRegression] =_
+  var batchedLinRegObjects: Array[Option[BatchedLinearRegression]] =_
+
+  /** Per thread buffers for the genotypes of a block, restricted to the samples with a phenotype. */
+  lazy val genoBlockBuffers: ThreadLocal[Array[Array[Double]]] = ThreadLocal.withInitial(() => Array.ofDim[Double](blockSize, ri.size))
 
   override def setup(): Unit = {
     super.setup()
     linRegObjects = Array.tabulate(ri.phenoNames.length)(_ => new LinearRegression(ri.size, ri.betaLength - 1))
+    batchedLinRegObjects = Array.tabulate(ri.phenoNames.length)(createBatchedRegression)
   }
 
-  override def process(r: Row) {
-    val values = r.colAsString(valCol).toString
-    r.removeColumn(valCol)
-    val baseColumnsAsString = r.toString
-
-    val genoType = ri.genos
-    val filter = ri.genoFilter
-
-    setGenotypesAndFilter(values, genoType, filter)
-
-    ri.phenoTable.zipWithIndex.par.map({ case (phenos, idx) =>
-      val (x, y, numberOfSamples) = setupRegressionData(genoType, filter, phenos, idx)
+  /**
+    * Decomposes the covariates of the samples which have phenotype idx. The result is shared by all variants which
+    * have no missing genotypes for those samples. Returns None if the covariates can not be decomposed, in which case
+    * every variant falls back to a full regression.
+    */
+  private def createBatchedRegression(idx: Int): Option[BatchedLinearRegression] = {
+    val phenoFilter = ri.phenoFilter(idx)
+    val all = Array.fill(ri.size)(true)
+    val y = Array.ofDim[Double](ri.size)
+    val numberOfSamples = doubleFilter(ri.phenoTable(idx), all, phenoFilter, y)
+    val covars = ri.covars.map(cc => {
+      val xc = Array.ofDim[Double](ri.size)
+      doubleFilter(cc, all, phenoFilter, xc)
+      xc
+    })
+    try {
+      Some(new BatchedLinearRegression(covars, y, numberOfSamples, blockSize))
+    } catch {
+      case _: IllegalArgumentException => None
+    }
+  }
 
-      val linRegObj = linRegObjects(idx)
-      linRegObj.setData(x, numberOfSamples)
-      linRegObj.runRegression(y)
+  override protected def processBlock(count: Int): Array[Array[Traversable[Row]]] = {
+    ri.phenoTable.indices.par.map(idx => {
+      val phenos = ri.phenoTable(idx)
+      val phenoFilter = ri.phenoFilter(idx)
+      val include = Array.ofDim[Boolean](count)
+      batchedLinRegObjects(idx) match {
+        case Some(batched) =>
+          val genoBlock = genoBlockBuffers.get
+          var v = 0
+          while (v < count) {
+            include(v) = doubleFilter(blockGenos(v), blockFilters(v), phenoFilter, genoBlock(v)) == batched.getNumberOfSamples
+            v += 1
+          }
+          batched.runRegressions(genoBlock, include, count)
+        case None =>
+      }
 
-      val baseAndPhenoColumns = baseColumnsAsString + "\t" + ri.phenoNames(idx)
-      writeOut(baseAndPhenoColumns, linRegObj)
-    }).seq.foreach(outRows => outRows.foreach(outRow => nextProcessor.process(outRow)))
+      Array.tabulate[Traversable[Row]](count)(v => {
+        val baseAndPhenoColumns = blockBaseColumns(v) + "\t" + ri.phenoNames(idx)
+        batchedLinRegObjects(idx) match {
+          case Some(batched) if batched.valid(v) =>
+            writeOut(baseAndPhenoColumns, batched.beta(v), batched.betaError(v), batched.tStats(v), batched.pValues(v))
+          case _ =>
+            val (x, y, numberOfSamples) = setupRegressionData(blockGenos(v), blockFilters(v), phenos, idx)
+            val linRegObj = linRegObjects(idx)
+            linRegObj.setData(x, numberOfSamples)
+            linRegObj.runRegression(y)
+            writeOut(baseAndPhenoColumns, linRegObj.beta, linRegObj.betaError, linRegObj.tStats, linRegObj.pValues)
+        }
+      })
+    }).toArray
   }
 
-  private def writeOut(baseAndPhenoColumns: String, linRegObj: LinearRegression): Traversable[Row] = {
+  private def writeOut(baseAndPhenoColumns: String, beta: Array[Double], betaError: Array[Double], tStats: Array[Double], pValues: Array[Double]): Traversable[Row] = {
     ri.betaNames.zipWithIndex.map({
       case (name, idx) =>
         val lineBuilder = new StringBuilder(baseAndPhenoColumns)
         lineBuilder.append('\t')
         lineBuilder.append(name)
         lineBuilder.append('\t')
-        lineBuilder.append("%.5g".format(linRegObj.beta(idx)))
+        lineBuilder.append("%.5g".format(beta(idx)))
         lineBuilder.append('\t')
-        lineBuilder.append("%.5g".format(linRegObj.betaError(idx)))
+        lineBuilder.append("%.5g".format(betaError(idx)))
         lineBuilder.append('\t')
-        lineBuilder.append("%.5g".format(linRegObj.tStats(idx)))
+        lineBuilder.append("%.5g".format(tStats(idx)))
         lineBuilder.append('\t')
-        lineBuilder.append("%.5g".format(linRegObj.pValues(idx)))
+        lineBuilder.append("%.5g".format(pValues(idx)))
         RowObj.apply(lineBuilder)
     })
   }
@@ -27,36 +27,66 @@ import org.gorpipe.gor.model.Row
 import org.gorpipe.gor.session.GorSession
 import org.gorpipe.model.gor.RowObj
 
-class LogisticRegressionAnalysis(lookUpSignature: String, session: GorSession, valCol: Int, sepVal: Option[String], imputed: Boolean, phenoFile: String, covarFile: Option[String])
-  extends RegressionAnalysis[Boolean](lookUpSignature, session, valCol, sepVal, imputed, phenoFile, covarFile) {
+class LogisticRegressionAnalysis(lookUpSignature: String, session: GorSession, valCol: Int, sepVal: Option[String], imputed: Boolean, phenoFile: String, covarFile: Option[String], requestedBlockSize: Option[Int] = None)
+  extends RegressionAnalysis[Boolean](lookUpSignature, session, valCol, sepVal, imputed, phenoFile, covarFile, requestedBlockSize) {
   val maxIter = 20
   val tol = 1e-5
-  var logRegObjects: Array[LogisticRegression] =_
+  var nullModelBetas: Array[Option[Array[Double]]] =_
+
+  /** Per thread regression objects, as the variants of a block are fitted in parallel. */
+  lazy val logRegObjects: ThreadLocal[LogisticRegression] =
+    ThreadLocal.withInitial(() => LogisticRegression.getGorLogisticRegressionObject(ri.betaLength - 1, ri.size))
 
   override def setup(): Unit = {
     super.setup()
-    logRegObjects = Array.tabulate(ri.phenoNames.length)(_ => LogisticRegression.getGorLogisticRegressionObject(ri.betaLength - 1, ri.size))
+    nullModelBetas = Array.tabulate(ri.phenoNames.length)(fitNullModel)
   }
 
-  override def process(r: Row) {
-    val values = r.colAsString(valCol).toString
-    r.removeColumn(valCol)
-    val baseColumnsAsString = r.toString
-
-    val genoType = ri.genos
-    val filter = ri.genoFilter
-
-    setGenotypesAndFilter(values, genoType, filter)
+  /**
+    * Fits the model without the genotype for the samples which have phenotype idx. The result, with zero inserted
+    * for the genotype coefficient, is used as the starting point for every variant. Returns None if the null model
+    * does not converge, in which case the variants are fitted from zero.
+    */
+  private def fitNullModel(idx: Int): Option[Array[Double]] = {
+    val phenoFilter = ri.phenoFilter(idx)
+    val all = Array.fill(ri.size)(true)
+    val y = Array.ofDim[Boolean](ri.size)
+    val numberOfSamples = doubleFilter(ri.phenoTable(idx), all, phenoFilter, y)
+    val cases = y.take(numberOfSamples).count(b => b)
+    if (cases == 0 || cases == numberOfSamples) {
+      None
+    } else if (ri.covars.isEmpty) {
+      Some(Array(Math.log(cases.toDouble / (numberOfSamples - cases)), 0.0))
+    } else {
+      val x = ri.covars.map(cc => {
+        val xc = Array.ofDim[Double](ri.size)
+        doubleFilter(cc, all, phenoFilter, xc)
+        xc
+      })
+      val nullModel = LogisticRegression.getGorLogisticRegressionObject(ri.covars.length, ri.size)
+      if (nullModel.runRegression(x, y, numberOfSamples, tol, maxIter)) {
+        Some(nullModel.beta.head +: 0.0 +: nullModel.beta.tail)
+      } else None
+    }
+  }
 
-    ri.phenoTable.zipWithIndex.par.map({ case (phenos, idx) =>
-      val (x, y, numberOfSamples) = setupRegressionData(genoType, filter, phenos, idx)
+  override protected def processBlock(count: Int): Array[Array[Traversable[Row]]] = {
+    val numberOfPhenos = ri.phenoNames.length
+    val results = (0 until count * numberOfPhenos).par.map(task => {
+      val v = task / numberOfPhenos
+      val idx = task % numberOfPhenos
+      val (x, y, numberOfSamples) = setupRegressionData(blockGenos(v), blockFilters(v), ri.phenoTable(idx), idx)
 
-      val logRegObj = logRegObjects(idx)
-      val converged = logRegObj.runRegression(x, y, numberOfSamples, tol, maxIter)
+      val logRegObj = logRegObjects.get
+      val converged = nullModelBetas(idx) match {
+        case Some(initialBeta) => logRegObj.runRegression(x, y, numberOfSamples, tol, maxIter, initialBeta)
+        case None => logRegObj.runRegression(x, y, numberOfSamples, tol, maxIter)
+      }
 
-      val baseAndPhenoColumns = baseColumnsAsString + "\t" + ri.phenoNames(idx)
+      val baseAndPhenoColumns = blockBaseColumns(v) + "\t" + ri.phenoNames(idx)
       writeOut(baseAndPhenoColumns, logRegObj, converged)
-    }).seq.foreach(outRows => outRows.foreach(outRow => nextProcessor.process(outRow)))
+    }).toArray
+    Array.tabulate(numberOfPhenos)(idx => Array.tabulate(count)(v => results(v * numberOfPhenos + idx)))
   }
 
   private def writeOut(baseAndPhenoColumns: String, logRegObj: LogisticRegression, converged: Boolean): Traversable[Row] = {
@@ -23,7 +23,9 @@
 package gorsat.Analysis
 
 import gorsat.Commands.{Analysis, BinAggregator, BinAnalysis, BinFactory, BinInfo, BinState, Processor, RegularBinIDgen, RowHandler}
+import htsjdk.samtools.{CigarOperator, SAMRecord}
 import org.gorpipe.exceptions.GorDataException
+import org.gorpipe.gor.driver.providers.stream.datatypes.bam.BamIterator
 import org.gorpipe.gor.model.Row
 import org.gorpipe.gor.session.GorSession
 import org.gorpipe.model.gor.RowObj
@@ -337,13 +339,35 @@ object GorPileup {
 
     def abs(x: Int): Int = if (x < 0) -x else x
 
+    // The read being processed. For rows read directly from bam and cram files the bases and qualities are taken from
+    // the decoded record, otherwise from the text of the columns.
+    var seqBytes: Array[Byte] = _
+    var qualBytes: Array[Byte] = _
+    var seqBases: CharSequence = ""
+    var readShift = 0
+    var refShift = 0
+
+    def sourceRecord(r: Row): SAMRecord = r match {
+      case sr: BamIterator#SAMRecordRow if sr.hasSourceColumn(columns.cigarCol, BamIterator.CIGAR_COLUMN) &&
+        sr.hasSourceColumn(columns.seqBasesCol, BamIterator.SEQ_COLUMN) &&
+        sr.hasSourceColumn(columns.baseQualCol, BamIterator.QUAL_COLUMN) => sr.record
+      case _ => null
+    }
+
+    def baseAt(i: Int): Char = if (seqBytes ne null) seqBytes(i).toChar else seqBases.charAt(i)
+
+    def qualAt(i: Int): Int = {
+      if (qualBytes ne null) {
+        if (i < qualBytes.length) qualBytes(i) + 33 else minBaseQualChar
+      } else {
+        if (i < baseQualSeq.length) baseQualSeq.charAt(i) else minBaseQualChar
+      }
+    }
+
     def process(r: Row, BA: BinAggregator) {
       val iSize = scala.math.abs(r.colAsInt(columns.iSizeCol))
-      val seqBases = r.colAsString(columns.seqBasesCol)
       val flag = r.colAsInt(columns.flagCol)
       val quality = r.colAsInt(columns.qualityCol)
-      val cigar = r.colAsString(columns.cigarCol)
-      baseQualSeq = r.colAsString(columns.baseQualCol)
 
       r1.bH = base
       r1.chr = r.chr
@@ -366,63 +390,84 @@ object GorPileup {
           base.groupID = "theOnlyGroup"
         }
 
-        var readShift = 0
-        var refShift = 0
-        var ci = 0
-        while (ci < cigar.length) {
-          val (numBases, cigarControl, nextCi) = parseCigar(cigar, ci)
-          ci = nextCi
-
-          cigarControl match {
-            case 'M' | 'X' | '=' =>
-              var i = 0
-              var binID = binIDgen.ID(r.pos + refShift + i)
-              var (sta, sto) = binIDgen.StartAndStop(binID)
-              while (i < numBases) {
-                base.code = seqBases.charAt(readShift + i)
-                r1.pos = r.pos + refShift + i
-                base.qual = if (readShift + i < baseQualSeq.length) baseQualSeq.charAt(readShift + i) else minBaseQualChar
-                if (base.qual >= minBaseQualChar) BA.update(r1, binID, r.chr, sta, sto)
-                binID += 1
-                sta += 1
-                sto += 1
-                i += 1
-              }
-              refShift += numBases
-              readShift += numBases
-            case 'S' =>
-              readShift += numBases
-            case 'H' =>
-              // TODO: Do nothing here?
-              /* readShift += numBases; refShift += numBases */
-            case 'D' =>
-              var i = 0
-              while (i < numBases) {
-                val binID = binIDgen.ID(r.pos + refShift + i)
-                val (sta, sto) = binIDgen.StartAndStop(binID)
-                base.code = 'D'
-                r1.pos = r.pos + refShift + i
-                BA.update(r1, binID, r.chr, sta, sto)
-                i += 1
-              }
-              refShift += numBases
-            case 'N' =>
-              refShift += numBases
-            case 'I' =>
-              val binID = binIDgen.ID(r.pos + refShift)
-              val (sta, sto) = binIDgen.StartAndStop(binID)
-              base.code = 'I'
-              r1.pos = r.pos + refShift
-              BA.update(r1, binID, r.chr, sta, sto)
-              readShift += numBases
-            case 'P' =>
-              /* do nothing */
-            case _ =>
-              throw new GorDataException("unknown symbol in cigar string " + cigar)
+        readShift = 0
+        refShift = 0
+        val record = sourceRecord(r)
+        if (record != null) {
+          seqBytes = record.getReadBases
+          qualBytes = record.getBaseQualities
+          val elements = record.getCigar.getCigarElements
+          var ei = 0
+          while (ei < elements.size) {
+            val element = elements.get(ei)
+            processCigarElement(r, element.getLength, CigarOperator.enumToCharacter(element.getOperator).toChar, BA, record.getCigarString)
+            ei += 1
+          }
+        } else {
+          seqBytes = null
+          qualBytes = null
+          seqBases = r.colAsString(columns.seqBasesCol)
+          baseQualSeq = r.colAsString(columns.baseQualCol)
+          val cigar = r.colAsString(columns.cigarCol)
+          var ci = 0
+          while (ci < cigar.length) {
+            val (numBases, cigarControl, nextCi) = parseCigar(cigar, ci)
+            ci = nextCi
+            processCigarElement(r, numBases, cigarControl, BA, cigar)
           }
         }
       }
     }
+
+    def processCigarElement(r: Row, numBases: Int, cigarControl: Char, BA: BinAggregator, cigar: => CharSequence): Unit = {
+      cigarControl match {
+        case 'M' | 'X' | '=' =>
+          var i = 0
+          var binID = binIDgen.ID(r.pos + refShift + i)
+          var (sta, sto) = binIDgen.StartAndStop(binID)
+          while (i < numBases) {
+            base.code = baseAt(readShift + i)
+            r1.pos = r.pos + refShift + i
+            base.qual = qualAt(readShift + i)
+            if (base.qual >= minBaseQualChar) BA.update(r1, binID, r.chr, sta, sto)
+            binID += 1
+            sta += 1
+            sto += 1
+            i += 1
+          }
+          refShift += numBases
+          readShift += numBases
+        case 'S' =>
+          readShift += numBases
+        case 'H' =>
+          // TODO: Do nothing here?
+          /* readShift += numBases; refShift += numBases */
+        case 'D' =>
+          var i = 0
+          while (i < numBases) {
+            val binID = binIDgen.ID(r.pos + refShift + i)
+            val (sta, sto) = binIDgen.StartAndStop(binID)
+            base.code = 'D'
+            r1.pos = r.pos + refShift + i
+            BA.update(r1, binID, r.chr, sta, sto)
+            i += 1
+          }
+          refShift += numBases
+        case 'N' =>
+          refShift += numBases
+        case 'I' =>
+          val binID = binIDgen.ID(r.pos + refShift)
+          val (sta, sto) = binIDgen.StartAndStop(binID)
+          base.code = 'I'
+          r1.pos = r.pos + refShift
+          BA.update(r1, binID, r.chr, sta, sto)
+          readShift += numBases
+        case 'P' =>
+          /* do nothing */
+        case _ =>
+          throw new GorDataException("unknown symbol in cigar string " + cigar)
+      }
+    }
   }
 
 
@@ -0,0 +1,136 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.Analysis
+
+import gorsat.Commands.Analysis
+import gorsat.RowBatchRing
+import org.gorpipe.exceptions.GorSystemException
+import org.gorpipe.gor.model.Row
+
+object PipelineStage {
+  /** Maximum number of stage boundaries added to a pipeline, 0 runs all the steps on the same thread. */
+  val MAX_STAGES_KEY = "gor.pipe.stages"
+  val BATCH_SIZE: Int = Integer.getInteger("gor.pipe.stage.batch.size", 256)
+  val RING_SIZE: Int = Integer.getInteger("gor.pipe.stage.ring.size", 16)
+
+  /** Commands that start a new stage, when stages are enabled. */
+  val STAGE_COMMANDS = Set("JOIN", "LEFTJOIN", "VARJOIN", "MAP", "MULTIMAP", "CALC", "WRITE")
+
+  def maxStages: Int = Math.max(0, Integer.getInteger(MAX_STAGES_KEY, 0).intValue)
+}
+
+/**
+ * Boundary between two stages of a pipeline.  The rows are handed in batches through a ring buffer to a thread that
+ * runs the steps after the boundary, so the steps before and after it run in parallel.  Rows keep their order.
+ *
+ * Rows are passed on without being copied, so the steps before the boundary must not change a row after passing it on.
+ * When the steps after the boundary want no more rows, the rows in the ring are dropped and the steps before the
+ * boundary are told on their next row.  Errors in the steps after the boundary are thrown on the next row or at finish,
+ * and finish waits for the steps after the boundary to process all the rows before they are finished.
+ */
+case class PipelineStage(batchSize: Int = PipelineStage.BATCH_SIZE, ringSize: Int = PipelineStage.RING_SIZE) extends Analysis {
+  private val ring = new RowBatchRing(ringSize)
+  private var batch = new Array[Row](batchSize)
+  private var count = 0
+  private var consumer: Thread = _
+  @volatile private var failure: Throwable = _
+  @volatile private var downstreamWantsNoMore = false
+
+  override def isTypeInformationMaintained: Boolean = true
+
+  override def process(r: Row): Unit = {
+    if (downstreamWantsNoMore && !wantsNoMore) super.reportWantsNoMore()
+    checkFailure()
+    if (!wantsNoMore) {
+      batch(count) = r
+      count += 1
+      if (count == batchSize) putBatch()
+    }
+  }
+
+  override def reportWantsNoMore(): Unit = {
+    // Called from the stage thread, the steps before the boundary are told on the next row
+    downstreamWantsNoMore = true
+    ring.cancel()
+  }
+
+  override def finish(): Unit = {
+    if (isInErrorState) {
+      ring.cancel()
+    } else if (count > 0) {
+      batch = java.util.Arrays.copyOf(batch, count)
+      putBatch()
+    }
+    ring.close()
+    if (consumer != null) {
+      try {
+        consumer.join()
+      } catch {
+        case e: InterruptedException =>
+          ring.cancel()
+          Thread.currentThread().interrupt()
+          throw new GorSystemException("Interrupted while waiting for pipeline stage", e)
+      }
+    }
+    if (!isInErrorState) checkFailure()
+  }
+
+  private def putBatch(): Unit = {
+    if (consumer == null) {
+      consumer = new Thread(new Runnable {
+        override def run(): Unit = drain()
+      }, "gor-pipeline-stage")
+      consumer.setDaemon(true)
+      consumer.start()
+    }
+    if (!ring.put(batch)) checkFailure()
+    batch = new Array[Row](batchSize)
+    count = 0
+  }
+
+  private def drain(): Unit = {
+    try {
+      var rows = ring.take()
+      while (rows != null) {
+        var i = 0
+        while (i < rows.length && !downstreamWantsNoMore) {
+          nextProcessor.process(rows(i))
+          i += 1
+        }
+        rows = ring.take()
+      }
+    } catch {
+      case e: Throwable =>
+        failure = e
+        ring.cancel()
+    }
+  }
+
+  private def checkFailure(): Unit = {
+    val e = failure
+    if (e != null) {
+      failure = null
+      throw e
+    }
+  }
+}
@@ -32,48 +32,59 @@ object PivotAnalysis {
                         pivotCol: Int,
                         pivotMap: scala.collection.Map[String, Int],
                         valueCols: Array[Int],
-                        emptyString: String) extends BinState {
-    var allColumns: Array[Array[(String, Boolean)]] = _
-    var groupMap = Map.empty[String, Array[Array[(String, Boolean)]]]
+                        emptyString: String,
+                        groupBudget: SpillableAggregation.GroupBudget) extends BinState {
+    var resultBinInfo: BinInfo = _
     val grColsArray: Array[Int] = groupCols.filter(x => x > 1)
+    // Estimated bytes of the pivoted values of a group
+    val pivotedSize: Long = 100L + pivotMap.size * (40L + valueCols.length * 40L)
 
-    def initialize(binInfo: BinInfo): Unit = {
-      groupMap = Map.empty[String, Array[Array[(String, Boolean)]]]
-    }
+    /**
+     * The pivoted values of the groups of the bin, spilled to disk when they use more than the aggregation memory
+     * budget.
+     */
+    class PivotAggregation(groupBudget: SpillableAggregation.GroupBudget, level: Int)
+      extends SpillableAggregation[Array[Array[(String, Boolean)]]](groupBudget, level) {
 
-    def process(r: Row) {
-      val groupID = if (grColsArray.length > 0) r.selectedColumns(grColsArray) + "\t" else ""
-
-      groupMap.get(groupID) match {
-        case Some(x) => allColumns = x
-        case None =>
-          allColumns = Array.ofDim[(String, Boolean)](pivotMap.size, valueCols.length)
-          var i = 0
-          while (i < pivotMap.size) {
-            var j = 0
-            while (j < valueCols.length) {
-              allColumns(i)(j) = ("", false)
-              j += 1
-            }
-            i += 1
-          }
-          groupMap += (groupID -> allColumns)
-      }
+      override def keyOf(r: Row): String = if (grColsArray.length > 0) r.selectedColumns(grColsArray) + "\t" else ""
 
-      pivotMap.get(r.colAsString(pivotCol).toString.trim) match {
-        case Some(index) =>
+      override def createGroup(key: String, ordinal: Long): Array[Array[(String, Boolean)]] = {
+        val allColumns = Array.ofDim[(String, Boolean)](pivotMap.size, valueCols.length)
+        var i = 0
+        while (i < pivotMap.size) {
           var j = 0
           while (j < valueCols.length) {
-            if (!allColumns(index)(j)._2) allColumns(index)(j) = (r.colAsString(valueCols(j)).toString, true)
+            allColumns(i)(j) = ("", false)
             j += 1
           }
-        case None => /* do nothing - pivot value not listed */
+          i += 1
+        }
+        allColumns
       }
-    }
 
-    def sendToNextProcessor(bi: BinInfo, nextProcessor: Processor) {
-      for (key <- groupMap.keys) {
-        allColumns = groupMap(key)
+      override def groupOverhead(key: String): Long = pivotedSize + 2L * key.length
+
+      override def update(allColumns: Array[Array[(String, Boolean)]], r: Row): Long = {
+        var added = 0L
+        pivotMap.get(r.colAsString(pivotCol).toString.trim) match {
+          case Some(index) =>
+            var j = 0
+            while (j < valueCols.length) {
+              if (!allColumns(index)(j)._2) {
+                val value = r.colAsString(valueCols(j)).toString
+                allColumns(index)(j) = (value, true)
+                added += 40L + 2L * value.length
+              }
+              j += 1
+            }
+          case None => /* do nothing - pivot value not listed */
+        }
+        added
+      }
+
+      override def orderKey(key: String, allColumns: Array[Array[(String, Boolean)]]): String = key
+
+      override def result(key: String, allColumns: Array[Array[(String, Boolean)]]): Row = {
         val theOtherCols = new StringBuilder
         theOtherCols.append(key)
         var i = 0
@@ -94,9 +105,30 @@ object PivotAnalysis {
           i += 1
           if (i < pivotMap.size) theOtherCols.append("\t")
         }
-        val outRow = RowObj(bi.chr, bi.sto, theOtherCols.toString())
-        nextProcessor.process(outRow)
+        RowObj(resultBinInfo.chr, resultBinInfo.sto, theOtherCols.toString())
       }
+
+      override def createPartitionAggregation(groupBudget: SpillableAggregation.GroupBudget, level: Int): SpillableAggregation[Array[Array[(String, Boolean)]]] =
+        new PivotAggregation(groupBudget, level)
+    }
+
+    val groupMap = new PivotAggregation(groupBudget, 0)
+
+    def initialize(binInfo: BinInfo): Unit = {
+      groupMap.close()
+    }
+
+    def process(r: Row) {
+      groupMap.add(r)
+    }
+
+    def sendToNextProcessor(bi: BinInfo, nextProcessor: Processor) {
+      resultBinInfo = bi
+      groupMap.results(r => nextProcessor.process(r))
+    }
+
+    override def close(): Unit = {
+      groupMap.close()
     }
   }
 
@@ -107,8 +139,10 @@ object PivotAnalysis {
                           emptyString: String) extends BinFactory {
     var truePivotMap = Map.empty[String, Int]
     for (i <- pivotMap.indices) truePivotMap = truePivotMap + (pivotMap(i) -> i)
+    // The bin states share the memory budget of the command
+    val groupBudget: SpillableAggregation.GroupBudget = SpillableAggregation.groupBudget()
 
-    def create: BinState = PivotState(groupCols, pivotCol, truePivotMap, valueCols, emptyString)
+    def create: BinState = PivotState(groupCols, pivotCol, truePivotMap, valueCols, emptyString, groupBudget)
   }
 
   case class PivotAnalysis(groupCols: Array[Int],
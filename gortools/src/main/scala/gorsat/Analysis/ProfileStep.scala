@@ -0,0 +1,139 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.Analysis
+
+import java.lang.management.ManagementFactory
+
+import gorsat.Commands.Analysis
+import org.gorpipe.gor.model.Row
+import org.gorpipe.gor.stats.{QueryProfile, StepProfile}
+
+object ProfileStep {
+  /** Row size and allocation are measured on every 64th row of a step, and on all rows the steps before it measure. */
+  private val SAMPLE_MASK = 63
+
+  /**
+   * Time and allocation of the steps run within the step currently processing a row on a thread, so a step can
+   * subtract them from its own.
+   */
+  private class Clock {
+    var childNanos = 0L
+    var childAllocatedBytes = 0L
+    var sampling = false
+  }
+
+  private val clocks = ThreadLocal.withInitial[Clock](() => new Clock)
+
+  private val threadBean: com.sun.management.ThreadMXBean = ManagementFactory.getThreadMXBean match {
+    case bean: com.sun.management.ThreadMXBean if bean.isThreadAllocatedMemorySupported && bean.isThreadAllocatedMemoryEnabled => bean
+    case _ => null
+  }
+
+  private def allocatedBytes(): Long = {
+    if (threadBean != null) threadBean.getThreadAllocatedBytes(Thread.currentThread().getId) else 0L
+  }
+}
+
+/**
+ * Step added before each step of a profiled pipeline, measuring the rows into the step and the self time of the step,
+ * that is the time spent in it and not in the steps after it, including the rows it sends on when it finishes.
+ *
+ * The first step of a profiled pipeline is given the profile of the source and the query profile, it measures the
+ * time between the rows the source provides and records the time waited at the buffered source of the pipeline.
+ *
+ * @param step    profile of the step after this one.
+ * @param profile query profile when this is the first step of the pipeline, otherwise null.
+ */
+case class ProfileStep(step: StepProfile, profile: QueryProfile = null) extends Analysis {
+  import ProfileStep._
+
+  private var lastExit = 0L
+  private var finishStarted = 0L
+  private var finishChildNanos = 0L
+  private var previousStep: ProfileStep = _
+
+  override def isTypeInformationMaintained: Boolean = true
+
+  override def setup(): Unit = {
+    lastExit = System.nanoTime
+  }
+
+  override def process(r: Row): Unit = {
+    val clock = clocks.get
+    val start = System.nanoTime
+    if (profile != null && lastExit != 0) step.addNanos(start - lastExit)
+    val rows = step.addRow()
+    val outerChildNanos = clock.childNanos
+    clock.childNanos = 0
+    try {
+      if (clock.sampling || (rows & SAMPLE_MASK) == 0) {
+        processSampled(r, clock)
+      } else {
+        super.process(r)
+      }
+    } finally {
+      val end = System.nanoTime
+      step.addNanos(end - start - clock.childNanos)
+      clock.childNanos = outerChildNanos + (end - start)
+      lastExit = end
+    }
+  }
+
+  private def processSampled(r: Row, clock: Clock): Unit = {
+    val outerSampling = clock.sampling
+    val outerChildAllocatedBytes = clock.childAllocatedBytes
+    clock.sampling = true
+    clock.childAllocatedBytes = 0
+    val allocatedBefore = allocatedBytes()
+    try {
+      super.process(r)
+    } finally {
+      val allocated = allocatedBytes() - allocatedBefore
+      step.addSample(r.length, allocated - clock.childAllocatedBytes)
+      clock.childAllocatedBytes = outerChildAllocatedBytes + allocated
+      clock.sampling = outerSampling
+    }
+  }
+
+  override def finish(): Unit = {
+    // The step before this one has finished, and sent the rows it held on through this step
+    val clock = clocks.get
+    val now = System.nanoTime
+    if (profile != null && lastExit != 0) step.addNanos(now - lastExit)
+    val previous = findPreviousStep()
+    if (previous != null && previous.finishStarted != 0) {
+      previous.step.addNanos(now - previous.finishStarted - (clock.childNanos - previous.finishChildNanos))
+    }
+    finishStarted = System.nanoTime
+    finishChildNanos = clock.childNanos
+  }
+
+  private def findPreviousStep(): ProfileStep = {
+    if (previousStep == null) {
+      var from = pipeFrom
+      while (from != null && !from.isInstanceOf[ProfileStep]) from = from.pipeFrom
+      previousStep = from.asInstanceOf[ProfileStep]
+    }
+    previousStep
+  }
+}
@@ -24,6 +24,7 @@ package gorsat.Analysis
 
 import gorsat.Commands._
 import gorsat.Utilities.StringUtilities
+import gorsat.accumulators.DoubleValues
 import org.gorpipe.gor.model.Row
 
 import scala.collection.mutable.ArrayBuffer
@@ -53,7 +54,7 @@ case class RangeAggregate(maxRange: Int, useCount: Boolean, useCdist: Boolean, u
     val aMin = new Array[String](numCols)
     val ns = new Array[Int](numCols)
     val aList = new Array[List[String]](numCols)
-    val fList = new Array[List[Double]](numCols)
+    val fValues: Array[DoubleValues] = Array.fill(numCols)(new DoubleValues)
     var gList = List.empty[String]
     var allCount: Long = 0
     var pos = 0
@@ -91,7 +92,7 @@ case class RangeAggregate(maxRange: Int, useCount: Boolean, useCdist: Boolean, u
       sh.sq_sums(i) = 0.0
       sh.ns(i) = 0
       sh.aList(i) = Nil
-      sh.fList(i) = Nil
+      sh.fValues(i).clear()
       i += 1
     }
     sh.allCount = 0
@@ -146,21 +147,20 @@ case class RangeAggregate(maxRange: Int, useCount: Boolean, useCdist: Boolean, u
                 lineBuilder.append(sh.fMin(i).toLong)
               }
               if (useMed) {
-                val fArr = sh.fList(i).sorted.toArray
                 lineBuilder.append('\t')
-                lineBuilder.append(fArr(fArr.length / 2).toLong)
+                lineBuilder.append(sh.fValues(i).upperMedian().toLong)
               }
               if (useMax) {
                 lineBuilder.append('\t')
                 lineBuilder.append(sh.fMax(i).toLong)
               }
               if (useSet) {
-                val y = sh.fList(i).map(_.toLong).distinct.sorted
+                val y: Seq[Long] = sh.fValues(i).sortedDistinctLongs()
                 lineBuilder.append('\t')
                 StringUtilities.addWhile(lineBuilder, lineBuilder.length + setLen, sepVal, y)
               }
               if (useLis) {
-                val y = sh.fList(i).map(_.toLong).reverse
+                val y: Seq[Long] = sh.fValues(i).toArray.map(_.toLong)
                 lineBuilder.append('\t')
                 StringUtilities.addWhile(lineBuilder, lineBuilder.length + setLen, sepVal, y)
               }
@@ -170,28 +170,27 @@ case class RangeAggregate(maxRange: Int, useCount: Boolean, useCdist: Boolean, u
                 lineBuilder.append(sh.fMin(i))
               }
               if (useMed) {
-                val fArr = sh.fList(i).sorted.toArray
                 lineBuilder.append('\t')
-                lineBuilder.append(fArr(fArr.length / 2))
+                lineBuilder.append(sh.fValues(i).upperMedian())
               }
               if (useMax) {
                 lineBuilder.append('\t')
                 lineBuilder.append(sh.fMax(i))
               }
               if (useSet) {
-                val y = sh.fList(i).distinct.sorted
+                val y: Seq[Double] = sh.fValues(i).sortedDistinct()
                 lineBuilder.append('\t')
                 StringUtilities.addWhile(lineBuilder, lineBuilder.length + setLen, sepVal, y)
               }
               if (useLis) {
-                val y = sh.fList(i).reverse
+                val y: Seq[Double] = sh.fValues(i).toArray
                 lineBuilder.append('\t')
                 StringUtilities.addWhile(lineBuilder, lineBuilder.length + setLen, sepVal, y)
               }
             }
             if (useDis) {
               lineBuilder.append('\t')
-              lineBuilder.append(sh.fList(i).distinct.length)
+              lineBuilder.append(sh.fValues(i).distinctCount())
             }
             if (useAvg) {
               lineBuilder.append('\t')
@@ -326,7 +325,7 @@ case class RangeAggregate(maxRange: Int, useCount: Boolean, useCdist: Boolean, u
         try {
           val v = r.colAsDouble(j)
           if (!v.isNaN) {
-            if (collectLists) sh.fList(i) ::= v
+            if (collectLists) sh.fValues(i).add(v)
             sh.sums(i) += v
             sh.sq_sums(i) += v * v
             if (sh.ns(i) == 0) {
@@ -388,7 +387,7 @@ case class AggregateState(binSize: Int, useCount: Boolean, useCdist: Boolean, us
     val aMin = new Array[String](numCols)
     val ns = new Array[Int](numCols)
     val aList = new Array[List[String]](numCols)
-    val fList = new Array[List[Double]](numCols)
+    val fValues: Array[DoubleValues] = Array.fill(numCols)(new DoubleValues)
     var gList = List.empty[String]
     var allCount = 0
     var lineSet = false
@@ -425,7 +424,7 @@ case class AggregateState(binSize: Int, useCount: Boolean, useCdist: Boolean, us
       sh.sq_sums(i) = 0.0
       sh.ns(i) = 0
       sh.aList(i) = Nil
-      sh.fList(i) = Nil
+      sh.fValues(i).clear()
       i += 1
     }
     sh.allCount = 0
@@ -469,7 +468,7 @@ case class AggregateState(binSize: Int, useCount: Boolean, useCdist: Boolean, us
         try {
           val v = r.colAsDouble(j)
           if (!v.isNaN) {
-            if (collectLists) sh.fList(i) ::= v
+            if (collectLists) sh.fValues(i).add(v)
             sh.sums(i) += v
             sh.sq_sums(i) += v * v
             if (sh.ns(i) == 0) {
@@ -538,21 +537,20 @@ case class AggregateState(binSize: Int, useCount: Boolean, useCdist: Boolean, us
                   lineBuilder.append(sh.fMin(i).toLong)
                 }
                 if (useMed) {
-                  val fArr = sh.fList(i).sorted.toArray
                   lineBuilder.append('\t')
-                  lineBuilder.append(fArr(fArr.length / 2).toLong)
+                  lineBuilder.append(sh.fValues(i).upperMedian().toLong)
                 }
                 if (useMax) {
                   lineBuilder.append('\t')
                   lineBuilder.append(sh.fMax(i).toLong)
                 }
                 if (useSet) {
-                  val y = sh.fList(i).map(_.toLong).distinct.sorted
+                  val y: Seq[Long] = sh.fValues(i).sortedDistinctLongs()
                   lineBuilder.append('\t')
                   StringUtilities.addWhile(lineBuilder, lineBuilder.length + setLen, sepVal, y)
                 }
                 if (useLis) {
-                  val y = sh.fList(i).map(_.toLong).reverse
+                  val y: Seq[Long] = sh.fValues(i).toArray.map(_.toLong)
                   lineBuilder.append('\t')
                   StringUtilities.addWhile(lineBuilder, lineBuilder.length + setLen, sepVal, y)
                 }
@@ -562,28 +560,27 @@ case class AggregateState(binSize: Int, useCount: Boolean, useCdist: Boolean, us
                   lineBuilder.append(sh.fMin(i))
                 }
                 if (useMed) {
-                  val fArr = sh.fList(i).sorted.toArray
                   lineBuilder.append('\t')
-                  lineBuilder.append(fArr(fArr.length / 2))
+                  lineBuilder.append(sh.fValues(i).upperMedian())
                 }
                 if (useMax) {
                   lineBuilder.append('\t')
                   lineBuilder.append(sh.fMax(i))
                 }
                 if (useSet) {
-                  val y = sh.fList(i).distinct.sorted
+                  val y: Seq[Double] = sh.fValues(i).sortedDistinct()
                   lineBuilder.append('\t')
                   StringUtilities.addWhile(lineBuilder, lineBuilder.length + setLen, sepVal, y)
                 }
                 if (useLis) {
-                  val y = sh.fList(i).reverse
+                  val y: Seq[Double] = sh.fValues(i).toArray
                   lineBuilder.append('\t')
                   StringUtilities.addWhile(lineBuilder, lineBuilder.length + setLen, sepVal, y)
                 }
               }
               if (useDis) {
                 lineBuilder.append('\t')
-                lineBuilder.append(sh.fList(i).distinct.length)
+                lineBuilder.append(sh.fValues(i).distinctCount())
               }
               if (useAvg) {
                 lineBuilder.append('\t')
@@ -23,9 +23,12 @@
 package gorsat.Analysis
 
 import gorsat.Commands._
+import gorsat.accumulators.DoubleValues
 import org.gorpipe.gor.model.Row
 import org.gorpipe.gor.session.GorSession
+import org.gorpipe.util.collection.IntArray
 
+import scala.collection.mutable
 import scala.collection.mutable.ArrayBuffer
 
 object RankAnalysis {
@@ -43,7 +46,9 @@ object RankAnalysis {
   case class RankState(binSize: Int, rankCol: Int, grCols: List[Int], pa: Parameters) extends BinState {
 
     case class StatHolder() {
-      var fList: List[(Int, Double)] = _
+      // Row numbers and rank values of the rows in the group, in row order
+      val rows = new IntArray()
+      val values = new DoubleValues()
     }
 
     case class RankInfoHolder() {
@@ -57,7 +62,7 @@ object RankAnalysis {
 
     val useGroup: Boolean = if (grCols.nonEmpty) true else false
 
-    var groupMap = Map.empty[String, StatHolder]
+    var groupMap = mutable.HashMap.empty[String, StatHolder]
     val grColsArray: Array[Int] = grCols.toArray
 
     var rownum = 0
@@ -65,12 +70,8 @@ object RankAnalysis {
 
     def formatDouble(d: Double): String = (d formatted "%1.4f").replace(',', '.')
 
-    def initStatHolder(sh: StatHolder) {
-      sh.fList = Nil
-    }
-
     def initialize(binInfo: BinInfo): Unit = {
-      groupMap = Map.empty[String, StatHolder]
+      groupMap = mutable.HashMap.empty[String, StatHolder]
       rownum = 0
       allRows = new ArrayBuffer[(Row, RankInfoHolder)]
     }
@@ -84,39 +85,42 @@ object RankAnalysis {
         case Some(x) => sh = x
         case None =>
           sh = StatHolder()
-          initStatHolder(sh)
           groupMap += (groupID -> sh)
       }
 
       val xx = (r, RankInfoHolder())
       allRows += xx
       val theValue = r.colAsDouble(rankCol)
-      sh.fList ::= (rownum, theValue)
+      sh.rows.add(rownum)
+      sh.values.add(theValue)
       rownum += 1
     }
 
     def sendToNextProcessor(bi: BinInfo, nextProcessor: Processor) {
-      for (key <- groupMap.keys.toList) {
-        val sh = groupMap(key)
-
-        val oArr = if (pa.asc) {
-          sh.fList.toArray.sortWith((x, y) => x._2 < y._2)
-        } else {
-          sh.fList.toArray.sortWith((x, y) => x._2 > y._2)
+      for (sh <- groupMap.values) {
+        val order = sh.values.order(pa.asc)
+        val n = order.length
+        val oRows = new Array[Int](n)
+        val oValues = new Array[Double](n)
+        var j = 0
+        while (j < n) {
+          oRows(j) = sh.rows.get(order(j))
+          oValues(j) = sh.values.get(order(j))
+          j += 1
         }
 
         var i = 0
         var maxRank = 1
         val rankHist = new ArrayBuffer[Int]
-        while (i < oArr.length) {
+        while (i < n) {
           if (i == 0) {
             rankHist += 0
-          } else if (i > 0 && oArr(i - 1)._2 != oArr(i)._2) {
+          } else if (i > 0 && oValues(i - 1) != oValues(i)) {
             rankHist += 0
             maxRank += 1
           }
-          allRows(oArr(i)._1)._2.rank = maxRank
-          allRows(oArr(i)._1)._2.count = oArr.length
+          allRows(oRows(i))._2.rank = maxRank
+          allRows(oRows(i))._2.count = n
           rankHist(maxRank - 1) += 1
           i += 1
         }
@@ -131,9 +135,9 @@ object RankAnalysis {
           }
 
           i = 0
-          while (i < oArr.length) {
-            allRows(oArr(i)._1)._2.cum = rankCumHist(allRows(oArr(i)._1)._2.rank - 1)
-            allRows(oArr(i)._1)._2.freq = rankHist(allRows(oArr(i)._1)._2.rank - 1)
+          while (i < n) {
+            allRows(oRows(i))._2.cum = rankCumHist(allRows(oRows(i))._2.rank - 1)
+            allRows(oRows(i))._2.freq = rankHist(allRows(oRows(i))._2.rank - 1)
             i += 1
           }
         }
@@ -142,26 +146,29 @@ object RankAnalysis {
           var r_sum = 0.0
           var allEqual = true
           var i = 0
-          while (i < oArr.length) {
-            val v = oArr(i)._2
+          while (i < n) {
+            val v = oValues(i)
             sq_sum += v * v
             r_sum += v
-            if (i > 0) if (oArr(i)._2 != oArr(i - 1)._2) allEqual = false
+            if (i > 0) if (oValues(i) != oValues(i - 1)) allEqual = false
             i += 1
           }
-          val mean = r_sum / oArr.length
-          val variance = if (oArr.length == 1) 1.0 else (sq_sum - oArr.length * mean * mean) / (oArr.length - 1)
+          val mean = r_sum / n
+          val variance = if (n == 1) 1.0 else (sq_sum - n * mean * mean) / (n - 1)
           val stdev = scala.math.sqrt(variance)
           i = 0
-          while (i < oArr.length) {
-            if (allEqual) allRows(oArr(i)._1)._2.z = 0.0 else allRows(oArr(i)._1)._2.z = (oArr(i)._2 - mean) / stdev
+          while (i < n) {
+            if (allEqual) allRows(oRows(i))._2.z = 0.0 else allRows(oRows(i))._2.z = (oValues(i) - mean) / stdev
             i += 1
           }
         }
         if (pa.useRankOne) {
+          // The last row added with the top value is the rank one row
+          var one = 0
+          while (one + 1 < n && oValues(one + 1) == oValues(0)) one += 1
           i = 0
-          while (i < oArr.length) {
-            allRows(oArr(i)._1)._2.rOne = oArr(0)._1
+          while (i < n) {
+            allRows(oRows(i))._2.rOne = oRows(one)
             i += 1
           }
         }
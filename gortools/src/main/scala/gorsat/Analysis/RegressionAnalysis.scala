@@ -26,12 +26,28 @@ import gorsat.Commands.Analysis
 import gorsat.gorsatGorIterator.MapAndListUtilities
 import gorsat.process.GorJavaUtilities
 import org.gorpipe.exceptions.GorDataException
+import org.gorpipe.gor.model.Row
 import org.gorpipe.gor.session.GorSession
 
-abstract class RegressionAnalysis[T: Manifest](lookUpSignature: String, session: GorSession, valCol: Int, sepVal: Option[String], imputed: Boolean, phenoFile: String, covarFile: Option[String]) extends Analysis {
+/**
+  * Base class for the regression analyses. The input rows are gathered into blocks of variants whose genotypes, or
+  * dosages, are parsed once into a primitive matrix. Each block is then handed to [[processBlock]] which returns
+  * the output rows for every phenotype and variant in the block.
+  */
+abstract class RegressionAnalysis[T: Manifest](lookUpSignature: String, session: GorSession, valCol: Int, sepVal: Option[String], imputed: Boolean, phenoFile: String, covarFile: Option[String], requestedBlockSize: Option[Int]) extends Analysis {
 
   var ri: RegressionInfo =_
 
+  protected var blockSize: Int = _
+  protected var blockBaseColumns: Array[String] = _
+  protected var blockGenos: Array[Array[Double]] = _
+  protected var blockFilters: Array[Array[Boolean]] = _
+  protected var blockCount = 0
+
+  /** Per thread buffers for the design matrix and phenotype of a single variant and phenotype. */
+  protected lazy val workspace: ThreadLocal[(Array[Array[Double]], Array[T])] =
+    ThreadLocal.withInitial(() => (Array.ofDim[Double](ri.betaLength - 1, ri.size), Array.ofDim[T](ri.size)))
+
   override def setup(): Unit = {
     ri = session.getCache.getObjectHashMap.computeIfAbsent(lookUpSignature, _ => {
       val phenoFileTrav = MapAndListUtilities.getStringTraversable(phenoFile, session)
@@ -43,8 +59,46 @@ abstract class RegressionAnalysis[T: Manifest](lookUpSignature: String, session:
 
       RegressionInfo(phenoValuesTable, phenoNames, phenoFilter, covarNames, covars, size)
     }).asInstanceOf[RegressionInfo]
+
+    blockSize = requestedBlockSize.getOrElse(RegressionAnalysis.defaultBlockSize(ri.size))
+    blockBaseColumns = Array.ofDim(blockSize)
+    blockGenos = Array.ofDim(blockSize, ri.size)
+    blockFilters = Array.ofDim(blockSize, ri.size)
+  }
+
+  override def process(r: Row) {
+    val values = r.colAsString(valCol).toString
+    r.removeColumn(valCol)
+    blockBaseColumns(blockCount) = r.toString
+    setGenotypesAndFilter(values, blockGenos(blockCount), blockFilters(blockCount))
+    blockCount += 1
+    if (blockCount == blockSize) flushBlock()
+  }
+
+  override def finish(): Unit = {
+    if (!isInErrorState) flushBlock()
   }
 
+  private def flushBlock(): Unit = {
+    if (blockCount > 0) {
+      val outRows = processBlock(blockCount)
+      val count = blockCount
+      blockCount = 0
+      var v = 0
+      while (v < count) {
+        outRows.foreach(phenoRows => phenoRows(v).foreach(outRow => nextProcessor.process(outRow)))
+        v += 1
+      }
+    }
+  }
+
+  /**
+    * Runs the regressions for the first count variants of the current block.
+    *
+    * @return The output rows, indexed by phenotype and then by the position of the variant in the block.
+    */
+  protected def processBlock(count: Int): Array[Array[Traversable[Row]]]
+
   private def getIdentitiesAndPhenoFileTransposed(phenoTable: Traversable[String]) = {
     phenoTable.map(_.split('\t')).map(cols => (cols.head, cols.tail)).toArray.unzip
   }
@@ -151,8 +205,7 @@ abstract class RegressionAnalysis[T: Manifest](lookUpSignature: String, session:
     }
 
   protected def setupRegressionData(genoType: Array[Double], filter: Array[Boolean], phenos: Array[T], idx: Int): (Array[Array[Double]], Array[T], Int) = {
-    val x = ri.xs(idx)
-    val y = ri.ys(idx)
+    val (x, y) = workspace.get
     val phenoFilter = ri.phenoFilter(idx)
     val numberOfSamples = doubleFilter(genoType, filter, phenoFilter, x.head)
     x.tail zip ri.covars foreach { case (xc, cc) =>
@@ -175,10 +228,15 @@ abstract class RegressionAnalysis[T: Manifest](lookUpSignature: String, session:
     betaNames(0) = "Intercept"
     betaNames(1) = "Genotype"
     if (covarNames.length > 0) System.arraycopy(covarNames, 0, betaNames, 2, covarNames.length)
+  }
+}
+
+object RegressionAnalysis {
+  /** The number of genotype values held in a block, used to choose the block size when none is given. */
+  val BLOCK_CAPACITY: Int = 1 << 20
+  val MAX_BLOCK_SIZE: Int = 256
 
-    val xs: Array[Array[Array[Double]]] = Array.ofDim(phenoNames.length, betaLength - 1, size)
-    val ys: Array[Array[T]] = Array.ofDim[T](phenoNames.length, size)
-    val genoFilter: Array[Boolean] = Array.ofDim(size)
-    val genos: Array[Double] = Array.ofDim(size)
+  def defaultBlockSize(numberOfSamples: Int): Int = {
+    Math.max(1, Math.min(MAX_BLOCK_SIZE, BLOCK_CAPACITY / Math.max(1, numberOfSamples)))
   }
 }
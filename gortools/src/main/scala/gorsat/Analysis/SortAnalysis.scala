@@ -44,6 +44,15 @@ case class SortState(sortStep: SortGenome) extends BinState {
     sortStep.process(r)
   }
 
+  override def acceptsBatches: Boolean = true
+
+  override def processBatch(rows: Array[Row], count: Int) {
+    sortStep.processBatch(rows, count)
+  }
+
+  // Rows written to disk are merged back when the bin is sent, they are not collected in memory
+  override def flushesInParallel: Boolean = !sortStep.wroteBuffer
+
   def sendToNextProcessor(bi: BinInfo, nextProcessor: Processor) {
     sortStep.nextProcessor = nextProcessor
     sortStep.finish
@@ -62,7 +71,6 @@ case class SortRowHandler(binsize: Int) extends RowHandler {
     val chr = r.chr
     val pos = r.pos
     val binID = binIDgen.ID(pos)
-    val (sta, sto) = binIDgen.StartAndStop(binID)
-    BA.update(r, binID, chr, sta, sto)
+    BA.update(r, binID, chr, binIDgen.start(binID), binIDgen.stop(binID))
   } // One ouput row per input row
 }
\ No newline at end of file
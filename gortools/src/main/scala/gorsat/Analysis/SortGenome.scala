@@ -30,7 +30,7 @@ import gorsat.Outputs.OutFile
 import gorsat.process.{GenericGorRunner, GenericSessionFactory}
 import org.gorpipe.exceptions.custom.GorWriteQuotaExceededException
 import org.gorpipe.gor.model.Row
-import org.gorpipe.gor.session.GorSession
+import org.gorpipe.gor.session.{GorSession, MemoryReservation}
 import org.gorpipe.model.gor.iterators.RowSource
 
 case class SortGenome(header: String, session: GorSession, sortInfo: Array[Row.SortInfo], div: Int = 1) extends Analysis {
@@ -46,6 +46,9 @@ case class SortGenome(header: String, session: GorSession, sortInfo: Array[Row.S
   // If no quota is set we default to 0 and do not deal with write quotas
   val writeQuota: Long = System.getProperty("gor.querylimits.writequota.mb", "0").toLong * 1024 * 1024
   var writeQuotaUsed = 0l
+  // Rows in the buffer are reserved from the memory budget of the query, the buffer is written out when it is used up
+  val memory: MemoryReservation = if (session != null) new MemoryReservation(session.getMemoryBudget) else new MemoryReservation()
+  val minSpillBytes: Long = System.getProperty("gor.sort.minSpillBytes", "16000000").toLong
 
   override def isTypeInformationMaintained: Boolean = true
 
@@ -57,6 +60,7 @@ case class SortGenome(header: String, session: GorSession, sortInfo: Array[Row.S
     alreadySorted = true
     wroteBuffer = false
     writeQuotaUsed = 0l
+    memory.close()
   }
 
   def sortBuffer(inputArray: Array[Row], length: Int) {
@@ -72,6 +76,8 @@ case class SortGenome(header: String, session: GorSession, sortInfo: Array[Row.S
     wroteBuffer = true
     val runner = new GenericGorRunner
     runner.run(RowArrayIterator(inputArray, length), OutFile(outputFile, header))
+    util.Arrays.fill(inputArray.asInstanceOf[Array[AnyRef]], 0, length, null)
+    memory.close()
   }
 
   override def process(r: Row) {
@@ -81,23 +87,70 @@ case class SortGenome(header: String, session: GorSession, sortInfo: Array[Row.S
         throw new GorWriteQuotaExceededException(s"Write quota exceeded. Write quota is set to ${writeQuota / (1024 * 1024)} MB")
       }
     }
+    val rowLength = r.getAllCols.length
+    val rowBytes = MemoryReservation.stringBytes(rowLength)
+    if (!memory.tryReserve(rowBytes)) {
+      // Buffers are not written out below a minimum size, to not end up merging a lot of small files
+      if (memory.getUsed >= minSpillBytes) sortBuffer(inputArray, lines)
+      memory.forceReserve(rowBytes)
+    }
     if (alreadySorted && lines > 0 && r.advancedCompare(inputArray(lines - 1), sortInfo) < 0) {
       alreadySorted = false
     }
     inputArray(lines) = r
-    bufferSize += r.getAllCols.length
+    bufferSize += rowLength
     lines += 1
     if (lines == batch || bufferSize > maxBufferSize) {
       sortBuffer(inputArray, lines)
     }
   }
 
+  /**
+   * Add a batch of rows.  When the batch fits in the buffer and the memory budget, it is copied into the buffer and
+   * reserved at once.
+   */
+  def processBatch(rows: Array[Row], count: Int) {
+    var added = false
+    if (writeQuota == 0 && lines + count < batch) {
+      var bytes = 0L
+      var length = 0
+      var sorted = alreadySorted
+      var previous = if (lines > 0) inputArray(lines - 1) else null
+      var i = 0
+      while (i < count) {
+        val r = rows(i)
+        val rowLength = r.getAllCols.length
+        bytes += MemoryReservation.stringBytes(rowLength)
+        length += rowLength
+        if (sorted && previous != null && r.advancedCompare(previous, sortInfo) < 0) sorted = false
+        previous = r
+        i += 1
+      }
+      if (memory.tryReserve(bytes)) {
+        System.arraycopy(rows, 0, inputArray, lines, count)
+        lines += count
+        bufferSize += length
+        alreadySorted = sorted
+        if (bufferSize > maxBufferSize) sortBuffer(inputArray, lines)
+        added = true
+      }
+    }
+    if (!added) {
+      var i = 0
+      while (i < count) {
+        process(rows(i))
+        i += 1
+      }
+    }
+  }
+
   override def finish() {
     if (wroteBuffer) {
       var rSource: RowSource = null
       try {
         if (lines > 0) sortBuffer(inputArray, lines)
         inputArray = null
+        memory.close()
         val gorString = ordFileList.mkString(" ")
         val sessionFactory = new GenericSessionFactory()
         rSource = new MultiFileSource(gorString.split(' ').toList, null, "", sortInfo, sessionFactory.create().getGorContext)
@@ -127,6 +180,7 @@ case class SortGenome(header: String, session: GorSession, sortInfo: Array[Row.S
       if (!alreadySorted) util.Arrays.parallelSort(inputArray, 0, lines, (o1: Row, o2: Row) => o1.advancedCompare(o2, sortInfo))
       inputArray.take(lines).foreach(r => super.process(r))
       inputArray = null
+      memory.close()
     }
   }
 }
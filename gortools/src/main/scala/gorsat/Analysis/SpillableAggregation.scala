@@ -0,0 +1,320 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.Analysis
+
+import java.io._
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path}
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.{ExecutionException, Executors, Future}
+
+import org.apache.commons.io.FileUtils
+import org.gorpipe.exceptions.GorSystemException
+import org.gorpipe.gor.jfr.GorEvent
+import org.gorpipe.gor.model.Row
+import org.gorpipe.gor.session.{MemoryBudget, MemoryReservation}
+import org.gorpipe.model.gor.RowObj
+
+import scala.collection.mutable
+import scala.util.hashing.MurmurHash3
+
+object SpillableAggregation {
+  val MEMORY_BUDGET_KEY = "gor.aggregate.memory.budget"
+  val PARALLELISM_KEY = "gor.aggregate.spill.parallelism"
+  /** Number of hash partitions the rows of new groups are spilled to. */
+  val PARTITIONS: Int = Integer.getInteger("gor.aggregate.spill.partitions", 16)
+
+  /** Estimated bytes of group state held in memory by the aggregations of a command before new groups are spilled to disk. */
+  def memoryBudget: Long = java.lang.Long.getLong(MEMORY_BUDGET_KEY, Runtime.getRuntime.maxMemory / 4)
+
+  /**
+   * Estimated bytes of group state held by a set of aggregations, such as the bin states of one command, that share
+   * the same limit.
+   */
+  class GroupBudget(val limit: Long) {
+    private val used = new AtomicLong()
+
+    def hasRoom: Boolean = used.get < limit
+
+    def getUsed: Long = used.get
+
+    def add(bytes: Long): Unit = used.addAndGet(bytes)
+
+    def release(bytes: Long): Unit = used.addAndGet(-bytes)
+  }
+
+  /** New budget for the aggregations of a command. */
+  def groupBudget(): GroupBudget = new GroupBudget(memoryBudget)
+
+  /** Number of spilled partitions aggregated in parallel, the memory budget is shared between them. */
+  def parallelism: Int = Math.max(1, Integer.getInteger(PARALLELISM_KEY, 1).intValue)
+  /** Partitions are spilled again at most this many times, after that all groups are kept in memory. */
+  val MAX_LEVEL = 4
+
+  /**
+   * Order key for results ordered by the ordinal of their first row.
+   */
+  def ordinalKey(ordinal: Long): String = {
+    val digits = java.lang.Long.toString(ordinal)
+    "0000000000000000000".substring(digits.length) + digits
+  }
+}
+
+/**
+ * Aggregation of rows by group key that holds the groups in memory up to a memory budget.
+ *
+ * When the estimated size of the groups exceeds the budget, or new groups can not be reserved from the memory budget
+ * of the query, rows belonging to groups already in memory are still aggregated in memory, but rows of new groups are
+ * written to hash partitions on disk.  Once rows have been spilled, all new groups are spilled, even if memory has
+ * been freed since, so no group is both in memory and on disk.  When the results are read, each partition is aggregated on its own, spilling
+ * again with a differently seeded hash if it is still too large, and the results of the partitions are merged with
+ * the results held in memory, ordered by the result order key.
+ *
+ * Each row is given an ordinal in the order it is added, which is kept when it is spilled, so results can be ordered
+ * by the first row of the group.
+ *
+ * @param groupBudget estimated bytes of group state to hold in memory, shared with the other aggregations of the command.
+ * @param level       number of times the rows have been spilled, seeds the partition hash.
+ * @tparam G type of the group state.
+ */
+abstract class SpillableAggregation[G](groupBudget: SpillableAggregation.GroupBudget, level: Int) {
+  import SpillableAggregation.{GroupBudget, MAX_LEVEL, PARTITIONS}
+
+  /** Key of the group the row belongs to. */
+  def keyOf(r: Row): String
+
+  /** New group for the key, the ordinal is of the first row in the group. */
+  def createGroup(key: String, ordinal: Long): G
+
+  /** Estimated bytes of a new group, not including its rows. */
+  def groupOverhead(key: String): Long
+
+  /** Add the row to the group, returns the estimated bytes added to the group. */
+  def update(group: G, r: Row): Long
+
+  /** Key the results are ordered by. */
+  def orderKey(key: String, group: G): String
+
+  /** Result row of the group. */
+  def result(key: String, group: G): Row
+
+  /** New empty aggregation of the same kind, for a spilled partition. */
+  def createPartitionAggregation(groupBudget: GroupBudget, level: Int): SpillableAggregation[G]
+
+  private val groups = new java.util.HashMap[String, G]()
+  private var memoryUsed = 0L
+  // Partitions may be aggregated on pooled threads, they reserve from the budget of the aggregation that spilled them
+  private var budget: MemoryBudget = MemoryBudget.current()
+  private lazy val memory = new MemoryReservation(budget)
+  private var nextOrdinal = 0L
+  private var spillDir: Path = _
+  private var spillFiles: Array[File] = _
+  private var spillWriters: Array[Writer] = _
+
+  def add(r: Row): Unit = {
+    add(r, nextOrdinal)
+    nextOrdinal += 1
+  }
+
+  private def add(r: Row, ordinal: Long): Unit = {
+    val key = keyOf(r)
+    val group = groups.get(key)
+    if (group != null) {
+      reserve(update(group, r))
+    } else if (level >= MAX_LEVEL || (spillWriters == null && groupBudget.hasRoom && memory.tryReserve(groupOverhead(key)))) {
+      val newGroup = createGroup(key, ordinal)
+      groups.put(key, newGroup)
+      if (level >= MAX_LEVEL) memory.forceReserve(groupOverhead(key))
+      memoryUsed += groupOverhead(key)
+      groupBudget.add(groupOverhead(key))
+      reserve(update(newGroup, r))
+    } else {
+      spill(key, r, ordinal)
+    }
+  }
+
+  /** Groups in memory can not be spilled, the bytes they grow by are reserved whether or not there is room. */
+  private def reserve(bytes: Long): Unit = {
+    memoryUsed += bytes
+    groupBudget.add(bytes)
+    memory.forceReserve(bytes)
+  }
+
+  private def spill(key: String, r: Row, ordinal: Long): Unit = {
+    if (spillWriters == null) {
+      spillDir = Files.createTempDirectory("goraggregate")
+      spillFiles = Array.tabulate(PARTITIONS)(i => spillDir.resolve("partition" + i).toFile)
+      spillWriters = Array.tabulate[Writer](PARTITIONS)(i => new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(spillFiles(i)), StandardCharsets.UTF_8), 64 * 1024))
+    }
+    val writer = spillWriters(Math.floorMod(MurmurHash3.stringHash(key, level), PARTITIONS))
+    writer.write(java.lang.Long.toString(ordinal))
+    writer.write('\t')
+    r.writeRow(writer)
+    writer.write('\n')
+  }
+
+  /**
+   * Send the result rows, ordered by their order key, to the consumer and clear the aggregation.
+   */
+  def results(consumer: Row => Unit): Unit = {
+    orderedResults((_, r) => consumer(r))
+  }
+
+  private def orderedResults(consumer: (String, Row) => Unit): Unit = {
+    val sortedKeys = groups.keySet().toArray(new Array[String](0))
+      .map(key => (orderKey(key, groups.get(key)), key)).sortBy(_._1)
+
+    if (spillWriters == null) {
+      sortedKeys.foreach { case (order, key) => consumer(order, result(key, groups.get(key))) }
+      groups.clear()
+      groupBudget.release(memoryUsed)
+      memoryUsed = 0
+      memory.close()
+    } else {
+      try {
+        spillWriters.foreach(_.close())
+        spillWriters = null
+        val partitionResults = aggregatePartitions()
+        val inMemoryResults = sortedKeys.iterator.map { case (order, key) => (order, result(key, groups.get(key))) }
+        merge(inMemoryResults +: partitionResults.map(readResults), consumer)
+      } finally {
+        close()
+      }
+    }
+  }
+
+  private def aggregatePartitions(): Array[File] = {
+    val resultFiles = spillFiles.map(f => new File(f.getPath + ".result"))
+    val parallelism = SpillableAggregation.parallelism
+    // The partitions aggregated at the same time share one budget of the same size
+    val partitionBudget = new GroupBudget(groupBudget.limit)
+    if (parallelism == 1) {
+      spillFiles.indices.foreach(i => aggregatePartition(spillFiles(i), resultFiles(i), partitionBudget))
+    } else {
+      val executor = Executors.newFixedThreadPool(parallelism)
+      try {
+        val futures: Array[Future[_]] = spillFiles.indices.map(i => executor.submit(GorEvent.withQueryId(new Runnable {
+          override def run(): Unit = aggregatePartition(spillFiles(i), resultFiles(i), partitionBudget)
+        }))).toArray
+        futures.foreach(waitFor)
+      } finally {
+        executor.shutdownNow()
+      }
+    }
+    resultFiles
+  }
+
+  private def waitFor(future: Future[_]): Unit = {
+    try {
+      future.get()
+    } catch {
+      case e: InterruptedException =>
+        Thread.currentThread().interrupt()
+        throw new GorSystemException("Interrupted while aggregating spilled rows", e)
+      case e: ExecutionException => e.getCause match {
+        case re: RuntimeException => throw re
+        case t => throw new GorSystemException("Failed aggregating spilled rows", t)
+      }
+    }
+  }
+
+  private def aggregatePartition(spillFile: File, resultFile: File, partitionBudget: GroupBudget): Unit = {
+    val aggregation = createPartitionAggregation(partitionBudget, level + 1)
+    aggregation.budget = budget
+    val reader = new BufferedReader(new InputStreamReader(new FileInputStream(spillFile), StandardCharsets.UTF_8), 64 * 1024)
+    try {
+      var line = reader.readLine()
+      while (line != null) {
+        val tab = line.indexOf('\t')
+        aggregation.add(RowObj(line.substring(tab + 1)), java.lang.Long.parseLong(line.substring(0, tab)))
+        line = reader.readLine()
+      }
+    } finally {
+      reader.close()
+    }
+    spillFile.delete()
+
+    val writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(resultFile), StandardCharsets.UTF_8), 64 * 1024)
+    try {
+      aggregation.orderedResults((order, r) => {
+        writer.write(order)
+        writer.write('\n')
+        r.writeRow(writer)
+        writer.write('\n')
+      })
+    } finally {
+      writer.close()
+    }
+  }
+
+  private def readResults(resultFile: File): Iterator[(String, Row)] = new Iterator[(String, Row)] {
+    private val reader = new BufferedReader(new InputStreamReader(new FileInputStream(resultFile), StandardCharsets.UTF_8), 64 * 1024)
+    private var order = reader.readLine()
+    if (order == null) reader.close()
+
+    override def hasNext: Boolean = order != null
+
+    override def next(): (String, Row) = {
+      val r = RowObj(reader.readLine())
+      val current = (order, r)
+      order = reader.readLine()
+      if (order == null) reader.close()
+      current
+    }
+  }
+
+  private def merge(sources: Seq[Iterator[(String, Row)]], consumer: (String, Row) => Unit): Unit = {
+    val queue = mutable.PriorityQueue.empty[(String, Row, Int)](Ordering.by[(String, Row, Int), String](_._1).reverse)
+    sources.indices.foreach(i => if (sources(i).hasNext) {
+      val (order, r) = sources(i).next()
+      queue += ((order, r, i))
+    })
+    while (queue.nonEmpty) {
+      val (order, r, i) = queue.dequeue()
+      consumer(order, r)
+      if (sources(i).hasNext) {
+        val (nextOrder, nextRow) = sources(i).next()
+        queue += ((nextOrder, nextRow, i))
+      }
+    }
+  }
+
+  /**
+   * Drop the groups and delete the spilled rows.
+   */
+  def close(): Unit = {
+    groups.clear()
+    groupBudget.release(memoryUsed)
+    memoryUsed = 0
+    memory.close()
+    if (spillWriters != null) {
+      spillWriters.foreach(w => try w.close() catch { case _: IOException => /* deleted below */ })
+      spillWriters = null
+    }
+    if (spillDir != null) {
+      FileUtils.deleteQuietly(spillDir.toFile)
+      spillDir = null
+    }
+  }
+}
@@ -26,7 +26,7 @@ import java.util.Optional
 
 import gorsat.Utilities.AnalysisUtilities
 import gorsat.Commands.CommandParseUtilities._
-import gorsat.process.ProcessIteratorAdaptor
+import gorsat.process.{ProcessIteratorAdaptor, ShardedProcessIteratorAdaptor}
 import gorsat.Utilities.Utilities.makeTempFile
 import org.gorpipe.gor.session.GorContext
 import org.gorpipe.model.gor.iterators.RowSource
@@ -34,7 +34,7 @@ import org.gorpipe.model.gor.iterators.RowSource
 object Cmd {
 
   class Cmd extends CommandInfo("CMD",
-    CommandArguments("-u -h -e", "-s -f", 1, 1),
+    CommandArguments("-u -h -e", "-s -f -j", 1, 1),
     CommandOptions(gorCommand = true, norCommand = true)) {
     override def processArguments(context: GorContext, argString: String, iargs: Array[String], args: Array[String], executeNor: Boolean, forcedInputHeader: String, commandRuntime: CommandRuntime): CommandParsingResult = {
 
@@ -65,8 +65,13 @@ object Cmd {
       }
 
       val filter = if (hasOption(args, "-f")) stringValueOfOption(args, "-f") else null
+      val shards = intValueOfOptionWithDefaultWithRangeCheck(args, "-j", 1, 1, ShardedProcessIteratorAdaptor.maxShards())
 
-      val pip = new ProcessIteratorAdaptor(context, paramString, "cmd", commandRuntime.inputSource, commandRuntime.activePipeStep, forcedInputHeader, skipheader, skip, allowerror, executeNor)
+      val pip = if (shards > 1) {
+        new ShardedProcessIteratorAdaptor(context, paramString, "cmd", commandRuntime.inputSource, commandRuntime.activePipeStep, forcedInputHeader, skipheader, skip, allowerror, executeNor, shards)
+      } else {
+        new ProcessIteratorAdaptor(context, paramString, "cmd", commandRuntime.inputSource, commandRuntime.activePipeStep, forcedInputHeader, skipheader, skip, allowerror, executeNor)
+      }
 
       CommandParsingResult(null, pip.getHeader, null, pip.asInstanceOf[RowSource])
     }
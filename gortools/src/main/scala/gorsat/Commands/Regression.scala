@@ -29,7 +29,7 @@ import org.gorpipe.exceptions.GorParsingException
 import org.gorpipe.gor.session.GorContext
 
 class Regression extends CommandInfo("REGRESSION",
-  CommandArguments("-logistic -linear -imp", "-covar -s", 1, 1),
+  CommandArguments("-logistic -linear -imp", "-covar -s -block", 1, 1),
   CommandOptions(gorCommand = true, cancelCommand = true))
 {
   override def processArguments(context: GorContext, argString: String, iargs: Array[String], args: Array[String], executeNor: Boolean, forcedInputHeader: String): CommandParsingResult = {
@@ -69,9 +69,11 @@ class Regression extends CommandInfo("REGRESSION",
       case _=> //Ok.
     }
 
+    val blockSize = if (hasOption(args, "-block")) Some(intValueOfOptionWithRangeCheck(args, "-block", 1)) else None
+
     val combinedHeader = validHeader(headerBuilder.toString)
 
-    val pipeStep = if (linear) new LinearRegressionAnalysis(lookupSignature, context.getSession, valCol, sep, imputed, phenoFile, covarFile) else new LogisticRegressionAnalysis(lookupSignature, context.getSession, valCol, sep, imputed, phenoFile, covarFile)
+    val pipeStep = if (linear) new LinearRegressionAnalysis(lookupSignature, context.getSession, valCol, sep, imputed, phenoFile, covarFile, blockSize) else new LogisticRegressionAnalysis(lookupSignature, context.getSession, valCol, sep, imputed, phenoFile, covarFile, blockSize)
     CommandParsingResult(pipeStep, combinedHeader)
   }
 }
@@ -32,7 +32,7 @@ import org.gorpipe.gor.binsearch.GorIndexType
 import org.gorpipe.gor.session.GorContext
 
 class Write extends CommandInfo("WRITE",
-  CommandArguments("-r -c -m -d -noheader", "-f -i -t -l -card -prefix", 1),
+  CommandArguments("-r -c -m -d -noheader -zone", "-f -i -t -l -card -prefix -bloom", 1),
   CommandOptions(gorCommand = true, norCommand = true, verifyCommand = true)) {
   override def processArguments(context: GorContext, argString: String, iargs: Array[String], args: Array[String], executeNor: Boolean, forcedInputHeader: String): CommandParsingResult = {
 
@@ -50,12 +50,19 @@ class Write extends CommandInfo("WRITE",
     var compressionLevel = Deflater.BEST_SPEED
     var useFolder = false
     var skipHeader = false
+    var zoneMap = false
+    var bloomColumns: Array[String] = Array.empty
 
     if (hasOption(args, "-f")) forkCol = columnOfOption(args, "-f", forcedInputHeader, executeNor)
     remove = hasOption(args, "-r")
     useFolder = hasOption(args, "-d")
     columnCompress = hasOption(args, "-c")
     md5 = hasOption(args, "-m")
+    if (hasOption(args, "-bloom")) {
+      val inputColumns = forcedInputHeader.split("\t")
+      bloomColumns = columnsOfOption(args, "-bloom", forcedInputHeader, executeNor).distinct.map(inputColumns(_)).toArray
+    }
+    zoneMap = hasOption(args, "-zone") || bloomColumns.nonEmpty
     if (hasOption(args, "-l")) compressionLevel = stringValueOfOptionWithErrorCheck(args, "-l", Array("0","1","2","3","4","5","6","7","8","9")).toInt
 
     var indexing = "NONE"
@@ -92,8 +99,11 @@ class Write extends CommandInfo("WRITE",
     if (skipHeader && List("gor", "gorz", "nor", "norz").contains(fileType)) {
       throw new GorParsingException("Option -noheader (skip header) is not valid with gor/gorz/nor/norz")
     }
+    if (zoneMap && !List("gorz", "norz").contains(fileType)) {
+      throw new GorParsingException("Options -zone and -bloom are only valid with gorz/norz", if (hasOption(args, "-zone")) "-zone" else "-bloom")
+    }
 
     val fixedHeader = forcedInputHeader.split("\t").slice(0,2).mkString("\t")
-    CommandParsingResult(ForkWrite(forkCol, fileName, forcedInputHeader, OutputOptions(remove, columnCompress, true, md5, executeNor || (forkCol == 0 && remove), idx, tagArray, prefix, prefixFile, compressionLevel, useFolder, skipHeader, cardCol = card)), fixedHeader)
+    CommandParsingResult(ForkWrite(forkCol, fileName, forcedInputHeader, OutputOptions(remove, columnCompress, true, md5, executeNor || (forkCol == 0 && remove), idx, tagArray, prefix, prefixFile, compressionLevel, useFolder, skipHeader, cardCol = card, zoneMap = zoneMap, bloomColumns = bloomColumns)), fixedHeader)
   }
 }
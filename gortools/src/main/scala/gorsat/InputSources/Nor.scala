@@ -132,7 +132,7 @@ object Nor
     }
   }
 
-  class Nor() extends InputSourceInfo("NOR", CommandArguments("-h -asdict -r -i -m -fs", "-f -ff -s -d -c", 1, 1), isNorCommand = true) {
+  class Nor() extends InputSourceInfo("NOR", CommandArguments("-h -asdict -r -i -m -fs -unordered", "-f -ff -s -d -c -prefetch", 1, 1), isNorCommand = true) {
 
     override def processArguments(context: GorContext, argString: String, iargs: Array[String],
                                   args: Array[String]): InputSourceParsingResult = {
@@ -140,7 +140,7 @@ object Nor
     }
   }
 
-  class GorNor() extends InputSourceInfo("GORNOR", CommandArguments("-h -asdict -r -i -m -fs", "-f -ff -s -d -c", 1, 1), isNorCommand = true) {
+  class GorNor() extends InputSourceInfo("GORNOR", CommandArguments("-h -asdict -r -i -m -fs -unordered", "-f -ff -s -d -c -prefetch", 1, 1), isNorCommand = true) {
 
     override def processArguments(context: GorContext, argString: String, iargs: Array[String],
                                   args: Array[String]): InputSourceParsingResult = {
@@ -153,7 +153,10 @@ object Nor
     val hasFilter = CommandParseUtilities.hasOption(args, "-f")
     val tags = AnalysisUtilities.getFilterTags(args, context, doHeader = false).split(',').filter(x => x.nonEmpty)
     val sourceColumnName = CommandParseUtilities.stringValueOfOptionWithDefault(args, "-s", "")
-    val iterator =  new NordIterator(fileName, hasFileFilter | hasFilter, tags, sourceColumnName, hasOption(args, "-fs"), hasOption(args, "-h"))
+    val prefetchEntries = CommandParseUtilities.intValueOfOptionWithDefaultWithRangeCheck(args, "-prefetch",
+      NordIterator.DEFAULT_PREFETCH_ENTRIES, 0)
+    val iterator =  new NordIterator(fileName, hasFileFilter | hasFilter, tags, sourceColumnName, hasOption(args, "-fs"), hasOption(args, "-h"),
+      prefetchEntries, hasOption(args, "-unordered"))
     iterator.init(context.getSession)
     iterator
   }
@@ -278,4 +278,9 @@ class FastGorSource(inOptions: String, gorRoot: String, context: GorContext, exe
     if (gorSource == null) openSource()
     gorSource.pushdownFilter(gorwhere)
   }
+
+  override def pushdownProjection(columns: Array[Int]): Boolean = {
+    if (gorSource == null) openSource()
+    gorSource.pushdownProjection(columns)
+  }
 }
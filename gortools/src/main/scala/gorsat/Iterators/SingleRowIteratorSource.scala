@@ -82,4 +82,6 @@ class SingleRowIteratorSource(theIterator: RowSource) extends RowSource{
   override def pushdownFilter(gorwhere: String): Boolean = theIterator.pushdownFilter(gorwhere)
 
   override def pushdownTop(limit: Int): Boolean = theIterator.pushdownTop(limit)
+
+  override def pushdownProjection(columns: Array[Int]): Boolean = theIterator.pushdownProjection(columns)
 }
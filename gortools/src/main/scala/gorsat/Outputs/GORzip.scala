@@ -24,7 +24,7 @@ package gorsat.Outputs
 
 import java.util.zip.Deflater
 import gorsat.Commands.Output
-import org.gorpipe.gor.binsearch.{GorIndexType, GorZipLexOutputStream}
+import org.gorpipe.gor.binsearch.{GorIndexType, GorZipLexOutputStream, GorzZoneMap}
 import org.gorpipe.gor.model.Row
 
 import java.nio.file.{Files, Paths}
@@ -37,14 +37,20 @@ import java.nio.file.{Files, Paths}
   * @param colcompress Whether a column compression should be used or not.
   * @param md5 Whether the md5 sum of the file's content should be written to a side file or not.
   * @param idx Whether and index file should be written.
+  * @param zoneMap Whether zone maps of the blocks should be written to a side file, they are not written when appending.
+  * @param bloomColumns Names of the columns to keep bloom filters for in the zone maps, columns not written are ignored.
   */
-class GORzip(fileName: String, header: String = null, skipHeader: Boolean = false, append: Boolean = false, colcompress: Boolean = false, md5: Boolean = false, md5File: Boolean = true, idx: GorIndexType = GorIndexType.NONE, compressionLevel: Int = Deflater.BEST_SPEED, cardCol: String) extends Output {
+class GORzip(fileName: String, header: String = null, skipHeader: Boolean = false, append: Boolean = false, colcompress: Boolean = false, md5: Boolean = false, md5File: Boolean = true, idx: GorIndexType = GorIndexType.NONE, compressionLevel: Int = Deflater.BEST_SPEED, cardCol: String, zoneMap: Boolean = false, bloomColumns: Array[String] = Array.empty) extends Output {
   val out = new GorZipLexOutputStream(fileName, append, colcompress, md5, md5File, idx, compressionLevel)
   override def getName: String = fileName
 
   def setup() {
     if (cardCol != null) meta.initCardCol(cardCol, header)
     if (header != null & !skipHeader) out.setHeader(header)
+    if (zoneMap && !append && header != null && !skipHeader) {
+      val columns = header.split("\t").map(_.toUpperCase)
+      out.setZoneMap(fileName, bloomColumns.map(c => columns.indexOf(c.toUpperCase)).filter(_ >= 0))
+    }
   }
 
   def process(r: Row) {
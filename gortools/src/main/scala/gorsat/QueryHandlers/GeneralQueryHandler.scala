@@ -35,8 +35,10 @@ import gorsat.QueryHandlers.GeneralQueryHandler.{findCacheFile, findOverheadTime
 import gorsat.Utilities.AnalysisUtilities
 import gorsat.process.ParallelExecutor
 import org.gorpipe.client.FileCache
+import org.gorpipe.gor.clients.SingleFlightCache
 import org.gorpipe.exceptions.{GorException, GorSystemException, GorUserException}
 import org.gorpipe.gor.binsearch.GorIndexType
+import org.gorpipe.gor.jfr.{QueryCacheEvent, QueryRunEvent}
 import org.gorpipe.gor.model.GorParallelQueryHandler
 import org.gorpipe.gor.monitor.GorMonitor
 import org.gorpipe.gor.session.GorContext
@@ -58,19 +60,31 @@ class GeneralQueryHandler(context: GorContext, header: Boolean) extends GorParal
         val nested = context.createNestedContext(batchGroupName, commandSignature, commandToExecute)
 
         try {
-          var cacheFile: String = fileCache.lookupFile(commandSignature)
-
-          // Do this if we have result cache active or if we are running locally and the local cacheFile does not exist.
-          if (cacheFile == null) {
+          var produced = false
+          val tempFile = findCacheFile(commandSignature, commandToExecute, header, fileCache, AnalysisUtilities.theCacheDirectory(context.getSession))
+          val lookupEvent = new QueryCacheEvent()
+          lookupEvent.begin()
+          // Only one query produces the result of a signature at a time, concurrent ones wait for it to be cached.
+          val cacheFile = SingleFlightCache.lookupOrProduce(fileCache, commandSignature, tempFile, gorMonitor, () => {
+            produced = true
             val startTime = System.currentTimeMillis
-            cacheFile = findCacheFile(commandSignature, commandToExecute, header, fileCache, AnalysisUtilities.theCacheDirectory(context.getSession))
-            val resultFileName = runCommand(nested, commandToExecute, cacheFile, useMd5)
-            if (fileCache != null) {
-              val extension = CommandParseUtilities.getExtensionForQuery(commandToExecute, header)
-              val overheadTime = findOverheadTime(commandToExecute)
-              cacheFile = fileCache.store(Paths.get(resultFileName), commandSignature, extension, overheadTime + System.currentTimeMillis - startTime)
+            val runEvent = new QueryRunEvent()
+            runEvent.begin()
+            val resultFileName = runCommand(nested, commandToExecute, tempFile, useMd5)
+            runEvent.end()
+            if (runEvent.shouldCommit()) {
+              val resultFile = new File(resultFileName)
+              runEvent.commit(batchGroupName, commandToExecute, resultFileName, if (resultFile.isFile) resultFile.length else 0L)
             }
-          } else {
+            val extension = CommandParseUtilities.getExtensionForQuery(commandToExecute, header)
+            val overheadTime = findOverheadTime(commandToExecute)
+            fileCache.store(Paths.get(resultFileName), commandSignature, extension, overheadTime + System.currentTimeMillis - startTime)
+          })
+          lookupEvent.end()
+          if (lookupEvent.shouldCommit()) {
+            lookupEvent.commit(commandSignature, cacheFile, !produced)
+          }
+          if (!produced) {
             nested.cached(cacheFile)
           }
           fileNames(i) = cacheFile
@@ -91,6 +105,7 @@ class GeneralQueryHandler(context: GorContext, header: Boolean) extends GorParal
 
   def parallelExecution(commands: Array[() => Unit]): Unit = {
     val pe = new ParallelExecutor(context.getSession.getSystemContext.getWorkers, commands)
+    pe.setProfile(context.getProfile)
     try
       pe.parallelExecute()
     catch {
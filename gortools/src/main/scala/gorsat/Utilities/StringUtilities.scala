@@ -28,7 +28,7 @@ import scala.math.BigInt
 
 object StringUtilities {
 
-  def addWhile[T](builder: StringBuilder, maxLen: Int, sep: String, toAdd: List[T]): Unit = {
+  def addWhile[T](builder: StringBuilder, maxLen: Int, sep: String, toAdd: Seq[T]): Unit = {
     if (toAdd.nonEmpty) {
       var current = toAdd.head.toString
       var len = builder.length + current.length
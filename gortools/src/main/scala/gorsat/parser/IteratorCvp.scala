@@ -41,22 +41,31 @@ case class IteratorCvp(cvp: ColumnValueProvider, source: String, delimiter: Stri
   private var curStart = -1
   private var curEnd = -1
   private var curIndex = 0
+  private var curItem: String = _
   private val singleCharDelimiter: Char = if(delimiter.length == 1) delimiter.charAt(0) else '\u0000'
 
   def hasNext: Boolean = {
     start < source.length
   }
 
-  val next: () => Unit = {
+  def next(): Unit = {
     delimiter.length match {
-      case 1 => () => nextForSingleCharDelimiter()
-      case 0 => () => nextForEmptyDelimiter()
-      case _ => () => nextForLongerDelimiter()
+      case 1 => nextForSingleCharDelimiter()
+      case 0 => nextForEmptyDelimiter()
+      case _ => nextForLongerDelimiter()
     }
+    curItem = null
   }
 
+  /** The current item, the substring is only created when the item is asked for as a string. */
   def stringValue(): String = {
-    source.substring(curStart, curEnd)
+    if (curItem == null) curItem = source.substring(curStart, curEnd)
+    curItem
+  }
+
+  /** Append the current item to the builder without creating a string for it. */
+  def appendItem(builder: java.lang.StringBuilder): Unit = {
+    builder.append(source, curStart, curEnd)
   }
 
   override def stringValue(col: Int): String = {
@@ -69,7 +78,7 @@ case class IteratorCvp(cvp: ColumnValueProvider, source: String, delimiter: Stri
 
   override def intValue(col: Int): Int = {
     col match {
-      case SpecialColumns.ListItem => stringValue().toInt
+      case SpecialColumns.ListItem => Integer.parseInt(source, curStart, curEnd, 10)
       case SpecialColumns.ListIndex => curIndex
       case _ => cvp.intValue(col)
     }
@@ -77,7 +86,7 @@ case class IteratorCvp(cvp: ColumnValueProvider, source: String, delimiter: Stri
 
   override def longValue(col: Int): Long = {
     col match {
-      case SpecialColumns.ListItem => stringValue().toLong
+      case SpecialColumns.ListItem => java.lang.Long.parseLong(source, curStart, curEnd, 10)
       case SpecialColumns.ListIndex => curIndex.toLong
       case _ => cvp.longValue(col)
     }
@@ -85,7 +94,7 @@ case class IteratorCvp(cvp: ColumnValueProvider, source: String, delimiter: Stri
 
   override def doubleValue(col: Int): Double = {
     col match {
-      case SpecialColumns.ListItem => stringValue().toDouble
+      case SpecialColumns.ListItem => ListView.parseDouble(source, curStart, curEnd)
       case SpecialColumns.ListIndex => curIndex.toDouble
       case _ => cvp.doubleValue(col)
     }
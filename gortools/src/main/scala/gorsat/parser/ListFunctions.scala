@@ -22,7 +22,6 @@
 
 package gorsat.parser
 
-import java.util.regex.Pattern
 
 import gorsat.Analysis.Cols2ListAnalysis
 import gorsat.Commands.ColumnSelection
@@ -163,85 +162,120 @@ object ListFunctions {
   }
 
   def listHasCount(ex1: sFun, ex2: List[String]): iFun = {
+    val w = ex2.map(x => x.toUpperCase).toArray
+    val view = ListView.threadLocal()
     cvp => {
-      val tmp = ex1(cvp).split(",", -1).map(b => b.toUpperCase)
-      ex2.map(x => x.toUpperCase).count(x => tmp.contains(x))
+      val list = view.get.split(ex1(cvp).toUpperCase, ',', keepTrailingEmpty = true)
+      countContained(list, w)
     }
   }
 
   def csListHasCount(ex1: sFun, ex2: List[String]): iFun = {
+    val w = ex2.toArray
+    val view = ListView.threadLocal()
     cvp => {
-      val tmp = ex1(cvp).split(",", -1)
-      ex2.count(x => tmp.contains(x))
+      countContained(view.get.split(ex1(cvp), ',', keepTrailingEmpty = true), w)
     }
   }
 
+  private def countContained(list: ListView, values: Array[String]): Int = {
+    var n = 0
+    var i = 0
+    while (i < values.length) {
+      if (list.contains(values(i))) n += 1
+      i += 1
+    }
+    n
+  }
+
   def csContainsAny(ex1: sFun, ex2: List[String]): bFun = {
     cvp => {
-      ex2.exists(ex1(cvp).contains(_))
+      val s = ex1(cvp)
+      ex2.exists(s.contains(_))
     }
   }
 
   def containsAny(ex1: sFun, ex2: List[String]): bFun = {
     val w = ex2.map(x => x.toUpperCase)
     cvp => {
-      w.exists(ex1(cvp).toUpperCase.contains(_))
+      val s = ex1(cvp).toUpperCase
+      w.exists(s.contains(_))
     }
   }
 
   def csContains(ex1: sFun, ex2: List[String]): bFun = {
     cvp => {
-      ex2.forall(ex1(cvp).contains(_))
+      val s = ex1(cvp)
+      ex2.forall(s.contains(_))
     }
   }
 
   def contains(ex1: sFun, ex2: List[String]): bFun = {
     val w = ex2.map(x => x.toUpperCase)
     cvp => {
-      w.forall(ex1(cvp).toUpperCase.contains(_))
+      val s = ex1(cvp).toUpperCase
+      w.forall(s.contains(_))
     }
   }
 
   def containsCount(ex1: sFun, ex2: List[String]): iFun = {
     val w = ex2.map(x => x.toUpperCase)
     cvp => {
-      w.count(ex1(cvp).toUpperCase.contains(_))
+      val s = ex1(cvp).toUpperCase
+      w.count(s.contains(_))
     }
   }
 
   def csContainsCount(ex1: sFun, ex2: List[String]): iFun = {
     cvp => {
-      ex2.count(ex1(cvp).contains(_))
+      val s = ex1(cvp)
+      ex2.count(s.contains(_))
     }
   }
 
   def csListHasAny(ex1: sFun, ex2: sFun): bFun = {
+    val view1 = ListView.threadLocal()
+    val view2 = ListView.threadLocal()
     cvp => {
-      val tmp = ex2(cvp).split(",", -1)
-      ex1(cvp).split(",", -1).exists(tmp.contains(_))
+      val other = view2.get.split(ex2(cvp), ',', keepTrailingEmpty = true)
+      hasAny(view1.get.split(ex1(cvp), ',', keepTrailingEmpty = true), other)
     }
   }
 
   def csListHasAnyWithStringLiterals(ex1: sFun, ex2: List[String]): bFun = {
+    val w = ex2.toArray
+    val view = ListView.threadLocal()
     cvp => {
-      ex1(cvp).split(",", -1).exists(ex2.contains(_))
+      countContained(view.get.split(ex1(cvp), ',', keepTrailingEmpty = true), w) > 0
     }
   }
 
   def listHasAny(ex1: sFun, ex2: sFun): bFun = {
+    val view1 = ListView.threadLocal()
+    val view2 = ListView.threadLocal()
     cvp => {
-      val tmp = ex2(cvp).split(",", -1).map(x => x.toUpperCase)
-      ex1(cvp).split(",", -1).map(b => b.toUpperCase).exists(tmp.contains(_))
+      val other = view2.get.split(ex2(cvp).toUpperCase, ',', keepTrailingEmpty = true)
+      hasAny(view1.get.split(ex1(cvp).toUpperCase, ',', keepTrailingEmpty = true), other)
     }
   }
 
   def listHasAnyWithStringLiterals(ex1: sFun, ex2: List[String]): bFun = {
-    val w = ex2.map(x => x.toUpperCase)
+    val w = ex2.map(x => x.toUpperCase).toArray
+    val view = ListView.threadLocal()
     cvp => {
-      ex1(cvp).split(",", -1).map(b => b.toUpperCase).exists(w.contains(_))
+      countContained(view.get.split(ex1(cvp).toUpperCase, ',', keepTrailingEmpty = true), w) > 0
     }
   }
 
+  private def hasAny(list: ListView, other: ListView): Boolean = {
+    var i = 0
+    while (i < list.size) {
+      if (other.containsItemOf(list, i)) return true
+      i += 1
+    }
+    false
+  }
+
 
   def fsvMap(owner: ParseArith, ex1: sFun, ex2: iFun, ex3: sFun, ex4: sFun): sFun = {
     val filter = owner.createSubFilter()
@@ -381,7 +415,7 @@ object ListFunctions {
       }
     }
     else {
-      val matcher = Pattern.compile(delimiter).matcher(string)
+      val matcher = ListView.pattern(delimiter).matcher(string)
       counter = 1
       while (matcher.find(lastIdx)) {
         counter += 1
@@ -392,8 +426,17 @@ object ListFunctions {
   }
 
   def listTrim(ex: sFun): sFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      ex(cvp).split(',').map(_.trim).mkString(",")
+      val list = view.get.split(ex(cvp), ',', keepTrailingEmpty = false)
+      val builder = new java.lang.StringBuilder()
+      var i = 0
+      while (i < list.size) {
+        if (i > 0) builder.append(',')
+        list.appendTrimmedItem(builder, i)
+        i += 1
+      }
+      builder.toString
     }
   }
 
@@ -429,7 +472,7 @@ object ListFunctions {
           buffer.append(delimiter)
         }
         needDelimiter = true
-        buffer.append(sourceList.stringValue(SpecialColumns.ListItem))
+        sourceList.appendItem(buffer)
       }
     }
     buffer.toString
@@ -549,7 +592,7 @@ object ListFunctions {
           buffer.append(delimiter)
         }
         needDelimiter = true
-        buffer.append(sourceList.stringValue(SpecialColumns.ListItem))
+        sourceList.appendItem(buffer)
       }
     }
     buffer.toString
@@ -612,7 +655,7 @@ object ListFunctions {
       string.substring(idx + del.length)
     }
     else {
-      val matcher = Pattern.compile(del).matcher(string)
+      val matcher = ListView.pattern(del).matcher(string)
       if (!matcher.find()) return ""
       string.substring(matcher.end())
     }
@@ -641,7 +684,7 @@ object ListFunctions {
       string.substring(tmp + 2)
     }
     else {
-      val matcher = Pattern.compile(del).matcher(string)
+      val matcher = ListView.pattern(del).matcher(string)
       var i = string.length - 1
       while (i >= 0 && !matcher.find(i)) i -= 1
       if (i == -1) string else string.substring(matcher.end())
@@ -701,8 +744,7 @@ object ListFunctions {
       if (string.length - begin == target.length && equalToSubString(string, begin, string.length, target)) return count
     }
     else {
-      val pattern = Pattern.compile(delimiter)
-      val matcher = pattern.matcher(string)
+      val matcher = ListView.pattern(delimiter).matcher(string)
       var begin = 0
       var end = 0
       while (matcher.find()) {
@@ -717,57 +759,103 @@ object ListFunctions {
   }
 
   def listMin(ex: sFun): sFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      ex(cvp).split(',').min
+      val list = view.get.split(ex(cvp), ',', keepTrailingEmpty = false)
+      if (list.size == 0) throw new UnsupportedOperationException("empty.min")
+      var m = 0
+      var i = 1
+      while (i < list.size) {
+        if (list.compareItems(i, m) < 0) m = i
+        i += 1
+      }
+      list.item(m)
     }
   }
 
   def listMax(ex: sFun): sFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      ex(cvp).split(',').max
+      val list = view.get.split(ex(cvp), ',', keepTrailingEmpty = false)
+      if (list.size == 0) throw new UnsupportedOperationException("empty.max")
+      var m = 0
+      var i = 1
+      while (i < list.size) {
+        if (list.compareItems(i, m) > 0) m = i
+        i += 1
+      }
+      list.item(m)
     }
   }
 
   def listDist(ex: sFun): sFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      ex(cvp).split(',').distinct.mkString(",")
+      val list = view.get.split(ex(cvp), ',', keepTrailingEmpty = false)
+      val order = list.distinctOrder()
+      joinItems(list, order, list.distinctCount, ",")
     }
   }
 
   def listNumSortDesc(ex: sFun): sFun = {
-    cvp => {
-      ex(cvp).split(',').toList.map(x => (x, x.toDouble)).sortWith((x, y) => x._2 > y._2).map(x => x._1).mkString(",")
-    }
+    listSortInner(ex, numeric = true, descending = true)
   }
 
   def listNumSortAsc(ex: sFun): sFun = {
-    cvp => {
-      ex(cvp).split(',').toList.map(x => (x, x.toDouble)).sortWith((x, y) => x._2 < y._2).map(x => x._1).mkString(",")
-    }
+    listSortInner(ex, numeric = true, descending = false)
   }
 
   def listSortDesc(ex: sFun): sFun = {
-    cvp => {
-      ex(cvp).split(',').toList.sortWith((x, y) => x > y).mkString(",")
-    }
+    listSortInner(ex, numeric = false, descending = true)
   }
 
   def listSortAsc(ex: sFun): sFun = {
+    listSortInner(ex, numeric = false, descending = false)
+  }
+
+  private def listSortInner(ex: sFun, numeric: Boolean, descending: Boolean): sFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      ex(cvp).split(',').toList.sortWith((x, y) => x < y).mkString(",")
+      val list = view.get.split(ex(cvp), ',', keepTrailingEmpty = false)
+      joinItems(list, list.sortedOrder(numeric, descending), list.size, ",")
     }
   }
 
+  private def joinItems(list: ListView, order: Array[Int], count: Int, delimiter: String): String = {
+    val builder = new java.lang.StringBuilder()
+    var i = 0
+    while (i < count) {
+      if (i > 0) builder.append(delimiter)
+      list.appendItem(builder, order(i))
+      i += 1
+    }
+    builder.toString
+  }
+
   def listReverse(ex: sFun): sFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      ex(cvp).split(",", -1).reverse.mkString(",")
+      reverseItems(view.get.split(ex(cvp), ',', keepTrailingEmpty = true), ",")
     }
   }
 
   def listReverseWithSeparator(ex1: sFun, ex2: sFun): sFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      ex1(cvp).split(ex2(cvp), -1).reverse.mkString(ex2(cvp))
+      val delimiter = ex2(cvp)
+      reverseItems(view.get.split(ex1(cvp), delimiter, keepTrailingEmpty = true), delimiter)
+    }
+  }
+
+  private def reverseItems(list: ListView, delimiter: String): String = {
+    val builder = new java.lang.StringBuilder()
+    var i = list.size - 1
+    while (i >= 0) {
+      list.appendItem(builder, i)
+      if (i > 0) builder.append(delimiter)
+      i -= 1
     }
+    builder.toString
   }
 
   //noinspection ScalaUnusedSymbol
@@ -830,42 +918,75 @@ object ListFunctions {
   }
 
   def listNumMax(ex: sFun): dFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      val x = ex(cvp).split(',').map(_.toDouble)
-      var m = x.head
-      x.tail.foreach(y => if (y > m) m = y)
+      val list = view.get.split(ex(cvp), ',', keepTrailingEmpty = false)
+      if (list.size == 0) throw new NoSuchElementException("head of empty array")
+      var m = list.itemToDouble(0)
+      var i = 1
+      while (i < list.size) {
+        val y = list.itemToDouble(i)
+        if (y > m) m = y
+        i += 1
+      }
       m
     }
   }
 
   def listNumMin(ex: sFun): dFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      val x = ex(cvp).split(',').map(_.toDouble)
-      var m = x.head
-      x.tail.foreach(y => if (y < m) m = y)
+      val list = view.get.split(ex(cvp), ',', keepTrailingEmpty = false)
+      if (list.size == 0) throw new NoSuchElementException("head of empty array")
+      var m = list.itemToDouble(0)
+      var i = 1
+      while (i < list.size) {
+        val y = list.itemToDouble(i)
+        if (y < m) m = y
+        i += 1
+      }
       m
     }
   }
 
   def listNumSum(ex: sFun): dFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      ex(cvp).split(',').map(_.toDouble).sum
+      sumItems(view.get.split(ex(cvp), ',', keepTrailingEmpty = false))
+    }
+  }
+
+  private def sumItems(list: ListView): Double = {
+    var sum = 0.0
+    var i = 0
+    while (i < list.size) {
+      sum += list.itemToDouble(i)
+      i += 1
     }
+    sum
   }
 
   def listNumStd(ex: sFun): dFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      val x = ex(cvp).split(',').map(_.toDouble)
-      val m = x.sum / x.length
-      val sq = x.map(y => (y - m) * (y - m)).sum
-      if (x.length < 1) Double.NaN else if (x.length == 1) 0.0 else math.sqrt(sq / (x.length - 1))
+      val list = view.get.split(ex(cvp), ',', keepTrailingEmpty = false)
+      val m = sumItems(list) / list.size
+      var sq = 0.0
+      var i = 0
+      while (i < list.size) {
+        val y = list.itemToDouble(i)
+        sq += (y - m) * (y - m)
+        i += 1
+      }
+      if (list.size < 1) Double.NaN else if (list.size == 1) 0.0 else math.sqrt(sq / (list.size - 1))
     }
   }
 
   def listNumAvg(ex: sFun): dFun = {
+    val view = ListView.threadLocal()
     cvp => {
-      val x = ex(cvp).split(',').map(_.toDouble)
-      if (x.length == 0) Double.NaN else x.sum / x.length
+      val list = view.get.split(ex(cvp), ',', keepTrailingEmpty = false)
+      if (list.size == 0) Double.NaN else sumItems(list) / list.size
     }
   }
 
@@ -0,0 +1,367 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.parser
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.regex.Pattern
+
+/**
+  * View of the items of a delimited list in a string. The items are kept as offsets into the string, so they can be
+  * compared, parsed and appended to output without creating a string for each item. The offset arrays are reused
+  * when the view is split again, so a view must only be used by one thread, see [[ListView.threadLocal]].
+  *
+  * The items are the same as those of String.split with the same delimiter, which is a regular expression.
+  */
+final class ListView {
+  private var source: String = ""
+  private var starts = new Array[Int](16)
+  private var ends = new Array[Int](16)
+  private var count = 0
+  private var order = new Array[Int](16)
+  private var orderTemp = new Array[Int](16)
+  private var keys = new Array[Double](16)
+
+  def size: Int = count
+
+  def start(i: Int): Int = starts(i)
+
+  def end(i: Int): Int = ends(i)
+
+  def itemLength(i: Int): Int = ends(i) - starts(i)
+
+  /** The item as a string, only for items that are output. */
+  def item(i: Int): String = source.substring(starts(i), ends(i))
+
+  def appendItem(builder: java.lang.StringBuilder, i: Int): Unit = {
+    builder.append(source, starts(i), ends(i))
+  }
+
+  /** Append the item without leading and trailing white space, as String.trim. */
+  def appendTrimmedItem(builder: java.lang.StringBuilder, i: Int): Unit = {
+    var s = starts(i)
+    var e = ends(i)
+    while (s < e && source.charAt(s) <= ' ') s += 1
+    while (e > s && source.charAt(e - 1) <= ' ') e -= 1
+    builder.append(source, s, e)
+  }
+
+  def itemEquals(i: Int, value: String): Boolean = {
+    ends(i) - starts(i) == value.length && source.regionMatches(starts(i), value, 0, value.length)
+  }
+
+  def itemEquals(i: Int, other: ListView, j: Int): Boolean = {
+    val len = ends(i) - starts(i)
+    len == other.ends(j) - other.starts(j) && source.regionMatches(starts(i), other.source, other.starts(j), len)
+  }
+
+  /** True if the item equals any of the items of the other view. */
+  def containsItemOf(other: ListView, j: Int): Boolean = {
+    var i = 0
+    while (i < count) {
+      if (itemEquals(i, other, j)) return true
+      i += 1
+    }
+    false
+  }
+
+  /** True if any item equals the value. */
+  def contains(value: String): Boolean = {
+    var i = 0
+    while (i < count) {
+      if (itemEquals(i, value)) return true
+      i += 1
+    }
+    false
+  }
+
+  /** Compares the items as String.compareTo. */
+  def compareItems(i: Int, j: Int): Int = {
+    var a = starts(i)
+    var b = starts(j)
+    val aEnd = ends(i)
+    val bEnd = ends(j)
+    while (a < aEnd && b < bEnd) {
+      val c1 = source.charAt(a)
+      val c2 = source.charAt(b)
+      if (c1 != c2) return c1 - c2
+      a += 1
+      b += 1
+    }
+    (aEnd - starts(i)) - (bEnd - starts(j))
+  }
+
+  def itemToDouble(i: Int): Double = ListView.parseDouble(source, starts(i), ends(i))
+
+  /**
+    * Split the string into items.
+    *
+    * @param keepTrailingEmpty true to keep trailing empty items, as String.split with negative limit.
+    */
+  def split(string: String, delimiter: String, keepTrailingEmpty: Boolean): ListView = {
+    source = string
+    count = 0
+    if (delimiter.length == 1 && ListView.REGEX_META.indexOf(delimiter.charAt(0)) < 0) {
+      splitLiteral(delimiter.charAt(0), keepTrailingEmpty)
+    } else if (ListView.isEscapedChar(delimiter)) {
+      splitLiteral(delimiter.charAt(1), keepTrailingEmpty)
+    } else {
+      splitRegex(ListView.pattern(delimiter), keepTrailingEmpty)
+    }
+    this
+  }
+
+  /** Split the string on the character, as String.split with the character escaped. */
+  def split(string: String, delimiter: Char, keepTrailingEmpty: Boolean): ListView = {
+    source = string
+    count = 0
+    splitLiteral(delimiter, keepTrailingEmpty)
+    this
+  }
+
+  private def splitLiteral(delimiter: Char, keepTrailingEmpty: Boolean): Unit = {
+    var off = 0
+    var next = source.indexOf(delimiter, off)
+    while (next >= 0) {
+      add(off, next)
+      off = next + 1
+      next = source.indexOf(delimiter, off)
+    }
+    finish(off, keepTrailingEmpty)
+  }
+
+  private def splitRegex(pattern: Pattern, keepTrailingEmpty: Boolean): Unit = {
+    val matcher = pattern.matcher(source)
+    var off = 0
+    while (matcher.find()) {
+      // No empty leading item for a zero width match at the beginning
+      if (!(off == 0 && matcher.start() == 0 && matcher.end() == 0)) {
+        add(off, matcher.start())
+        off = matcher.end()
+      }
+    }
+    finish(off, keepTrailingEmpty)
+  }
+
+  private def finish(off: Int, keepTrailingEmpty: Boolean): Unit = {
+    if (off == 0) {
+      // No delimiter found, the whole string is the only item
+      count = 0
+      add(0, source.length)
+    } else {
+      add(off, source.length)
+      if (!keepTrailingEmpty) {
+        while (count > 0 && starts(count - 1) == ends(count - 1)) count -= 1
+      }
+    }
+  }
+
+  private def add(start: Int, end: Int): Unit = {
+    if (count == starts.length) {
+      starts = java.util.Arrays.copyOf(starts, 2 * count)
+      ends = java.util.Arrays.copyOf(ends, 2 * count)
+    }
+    starts(count) = start
+    ends(count) = end
+    count += 1
+  }
+
+  private def ensureOrderCapacity(): Unit = {
+    if (order.length < count) {
+      order = new Array[Int](starts.length)
+      orderTemp = new Array[Int](starts.length)
+      keys = new Array[Double](starts.length)
+    }
+  }
+
+  /**
+    * The indices of the items in sorted order, the order of equal items is kept.
+    *
+    * @return the indices, valid up to size. The array is reused by the next call.
+    */
+  def sortedOrder(numeric: Boolean, descending: Boolean): Array[Int] = {
+    ensureOrderCapacity()
+    var i = 0
+    while (i < count) {
+      order(i) = i
+      if (numeric) keys(i) = itemToDouble(i)
+      i += 1
+    }
+    mergeSort(0, count, numeric, descending)
+    order
+  }
+
+  private def compareForSort(i: Int, j: Int, numeric: Boolean, descending: Boolean): Int = {
+    val c = if (numeric) java.lang.Double.compare(keys(i), keys(j)) else compareItems(i, j)
+    if (descending) -c else c
+  }
+
+  private def mergeSort(from: Int, to: Int, numeric: Boolean, descending: Boolean): Unit = {
+    if (to - from < 8) {
+      var i = from + 1
+      while (i < to) {
+        val x = order(i)
+        var j = i - 1
+        while (j >= from && compareForSort(order(j), x, numeric, descending) > 0) {
+          order(j + 1) = order(j)
+          j -= 1
+        }
+        order(j + 1) = x
+        i += 1
+      }
+    } else {
+      val mid = (from + to) >>> 1
+      mergeSort(from, mid, numeric, descending)
+      mergeSort(mid, to, numeric, descending)
+      System.arraycopy(order, from, orderTemp, from, to - from)
+      var a = from
+      var b = mid
+      var k = from
+      while (k < to) {
+        if (b >= to || (a < mid && compareForSort(orderTemp(a), orderTemp(b), numeric, descending) <= 0)) {
+          order(k) = orderTemp(a)
+          a += 1
+        } else {
+          order(k) = orderTemp(b)
+          b += 1
+        }
+        k += 1
+      }
+    }
+  }
+
+  /**
+    * The indices of the first occurrence of each distinct item, in list order.
+    *
+    * @return the indices, the number of them is returned by distinctCount. The array is reused by the next call.
+    */
+  def distinctOrder(): Array[Int] = {
+    ensureOrderCapacity()
+    distinct = 0
+    if (count <= ListView.MAX_LINEAR_DISTINCT) {
+      var i = 0
+      while (i < count) {
+        var j = 0
+        while (j < distinct && !itemEquals(order(j), this, i)) j += 1
+        if (j == distinct) {
+          order(distinct) = i
+          distinct += 1
+        }
+        i += 1
+      }
+    } else {
+      // Open addressing table of item indices, hashed by the characters of the item
+      val size = Integer.highestOneBit(2 * count - 1) << 1
+      if (distinctTable.length < size) distinctTable = new Array[Int](size)
+      java.util.Arrays.fill(distinctTable, 0, size, -1)
+      val mask = size - 1
+      var i = 0
+      while (i < count) {
+        var h = itemHash(i) & mask
+        while (distinctTable(h) >= 0 && !itemEquals(distinctTable(h), this, i)) h = (h + 1) & mask
+        if (distinctTable(h) < 0) {
+          distinctTable(h) = i
+          order(distinct) = i
+          distinct += 1
+        }
+        i += 1
+      }
+    }
+    order
+  }
+
+  private def itemHash(i: Int): Int = {
+    var h = 0
+    var k = starts(i)
+    val e = ends(i)
+    while (k < e) {
+      h = 31 * h + source.charAt(k)
+      k += 1
+    }
+    h ^ (h >>> 16)
+  }
+
+  private var distinctTable = new Array[Int](16)
+  private var distinct = 0
+
+  def distinctCount: Int = distinct
+}
+
+object ListView {
+  private val MAX_LINEAR_DISTINCT = 8
+  private val REGEX_META = ".$|()[{^?*+\\"
+  private val MAX_CACHED_PATTERNS = 1000
+  private val patterns = new ConcurrentHashMap[String, Pattern]()
+  private val POWERS_OF_TEN = Array.tabulate(23)(i => math.pow(10, i))
+
+  /** A view for each thread, for a function to reuse from row to row. */
+  def threadLocal(): ThreadLocal[ListView] = ThreadLocal.withInitial[ListView](() => new ListView)
+
+  /** The compiled pattern, delimiters computed per row are compiled once. */
+  def pattern(regex: String): Pattern = {
+    var p = patterns.get(regex)
+    if (p == null) {
+      if (patterns.size >= MAX_CACHED_PATTERNS) patterns.clear()
+      p = Pattern.compile(regex)
+      patterns.put(regex, p)
+    }
+    p
+  }
+
+  /** True if the delimiter is a backslash and a character that is not a letter or digit, matching that character. */
+  private def isEscapedChar(delimiter: String): Boolean = {
+    delimiter.length == 2 && delimiter.charAt(0) == '\\' && !Character.isLetterOrDigit(delimiter.charAt(1)) &&
+      (delimiter.charAt(1) < Character.MIN_HIGH_SURROGATE || delimiter.charAt(1) > Character.MAX_LOW_SURROGATE)
+  }
+
+  /**
+    * Parse the number in the range of the string as Double.parseDouble. Plain decimal numbers with up to 15 digits are
+    * parsed without creating a string, they are exactly represented before the single rounding of the division.
+    */
+  def parseDouble(s: CharSequence, start: Int, end: Int): Double = {
+    var i = start
+    val negative = i < end && s.charAt(i) == '-'
+    if (negative) i += 1
+    var mantissa = 0L
+    var digits = 0
+    var fractionDigits = 0
+    var dot = false
+    while (i < end) {
+      val c = s.charAt(i)
+      if (c >= '0' && c <= '9') {
+        mantissa = 10 * mantissa + (c - '0')
+        digits += 1
+        if (dot) fractionDigits += 1
+      } else if (c == '.' && !dot) {
+        dot = true
+      } else {
+        return java.lang.Double.parseDouble(s.subSequence(start, end).toString)
+      }
+      i += 1
+    }
+    if (digits == 0 || digits > 15) {
+      return java.lang.Double.parseDouble(s.subSequence(start, end).toString)
+    }
+    val value = if (fractionDigits == 0) mantissa.toDouble else mantissa / POWERS_OF_TEN(fractionDigits)
+    if (negative) -value else value
+  }
+}
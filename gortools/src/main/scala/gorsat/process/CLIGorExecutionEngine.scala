@@ -22,12 +22,18 @@
 
 package gorsat.process
 
+import java.io.{File, IOException}
+import java.nio.charset.StandardCharsets
+
 import gorsat.Commands.CommandParseUtilities
 import gorsat.Utilities.MacroUtilities.replaceAllAliases
 import gorsat.Outputs.{NorStdOut, StdOut}
 import gorsat.Utilities.AnalysisUtilities
+import org.apache.commons.io.FileUtils
 import org.gorpipe.gor.session.{GorRunner, GorSession}
 import org.gorpipe.gor.RequestStats
+import org.gorpipe.gor.stats.QueryProfileReport
+import org.slf4j.LoggerFactory
 
 /**
   * Execution engine for GOR running as command line. This class takes as input the command line options, construct a
@@ -38,6 +44,7 @@ import org.gorpipe.gor.RequestStats
   * @param securityContext      Security context if needed
   */
 class CLIGorExecutionEngine(pipeOptions: PipeOptions, whitelistedCmdFiles:String = null, securityContext:String = null) extends GorExecutionEngine {
+  private val log = LoggerFactory.getLogger(this.getClass)
 
   def this(args:Array[String], whitelistedCmdFiles:String, securityContext:String) {
     this(PipeOptions.parseInputArguments(args), whitelistedCmdFiles, securityContext)
@@ -84,6 +91,25 @@ class CLIGorExecutionEngine(pipeOptions: PipeOptions, whitelistedCmdFiles:String
     }
   }
 
+  override protected def reportProfile(): Unit = {
+    if (pipeOptions.profile) {
+      val context = session.getGorContext
+      if (context.getProfile.markReported()) {
+        System.err.print(QueryProfileReport.toText(context))
+        if (pipeOptions.profileFile != null) {
+          // The query has succeeded, failing to write its profile does not fail it
+          try {
+            FileUtils.writeStringToFile(new File(pipeOptions.profileFile), QueryProfileReport.toJson(context), StandardCharsets.UTF_8)
+          } catch {
+            case e: IOException => log.warn("Failed to write the query profile to " + pipeOptions.profileFile, e)
+          }
+        }
+      }
+    } else {
+      super.reportProfile()
+    }
+  }
+
   private def containsWriteCommand(query:String): Boolean = {
     val entries = CommandParseUtilities.quoteSafeSplit(query, ';')
     var containsWrite = false
@@ -75,6 +75,7 @@ class CLISessionFactory(pipeOptions: PipeOptions, securityContext: String = null
     val cache = GorSessionCacheManager.getCache(requestId)
 
     session.setNorContext(pipeOptions.norContext)
+    if (pipeOptions.profile) session.setProfiling(true)
 
     val eventLogger: EventLogger = if (pipeOptions.stats) new RequestStats(session) else new DefaultEventLogger
 
@@ -22,7 +22,9 @@
 
 package gorsat.process
 
+import org.gorpipe.exceptions.GorSystemException
 import org.gorpipe.gor.session.{GorRunner, GorSession}
+import org.gorpipe.gor.stats.QueryProfileReport
 
 /**
   * Base class used to execute gor queries. Supports user created session, iterator and runner. All resources are
@@ -36,17 +38,35 @@ abstract class GorExecutionEngine{
     var iterator: PipeInstance = null
     val listener = session.getEventLogger
 
-    session.getGorContext.start("")
-    iterator = createIterator(session)
+    // Queries wait here while the memory of the process is used up by other queries
+    if (!session.getMemoryBudget.admit(null)) {
+      session.getMemoryBudget.close()
+      throw new GorSystemException("Query " + session.getRequestId + " was interrupted while waiting for memory", null)
+    }
+
+    try {
+      session.getGorContext.start("")
+      iterator = createIterator(session)
 
-    val runner = createRunner(session)
+      val runner = createRunner(session)
 
-    if (runner != null) {
-      runner.run(iterator.theInputSource, iterator.thePipeStep)
+      if (runner != null) {
+        runner.run(iterator.theInputSource, iterator.thePipeStep)
+      }
+
+      session.getGorContext.end()
+      reportProfile()
+      listener.endSession()
+    } finally {
+      session.getMemoryBudget.close()
     }
+  }
 
-    session.getGorContext.end()
-    listener.endSession()
+  /**
+    * Report the profile of the query, when the session is profiling.
+    */
+  protected def reportProfile(): Unit = {
+    QueryProfileReport.log(session.getGorContext)
   }
 
   protected def createSession(): GorSession
@@ -53,6 +53,8 @@ trait GorPipeFirstOrderCommands {
         " -virtualfile         Output the filename of a virtualfile in the query. Advanced option for developers.\n" +
         " -helpfile            Full path to the help file.\n" +
         " -stacktrace          Show stack trace on errors.\n" +
+        " -profile             Report the time and rows of each step of the query to stderr.\n" +
+        " -profilefile         Path to a file the profile is also written to as json, implies -profile.\n" +
         " -version             Show the build version and git commit SHA hash.\n\n" +
         "Example: \n" +
         "  gorpipe \"gor genes.gor | group 1000 -count\"\n\n" +
@@ -39,9 +39,11 @@ import gorsat.gorsatGorIterator.{MemoryMonitorUtil, gorsatGorIterator}
 import gorsat.process.GorJavaUtilities.CmdParams
 import gorsat.process.GorPipe.brsConfig
 import org.gorpipe.exceptions.{GorParsingException, GorSystemException, GorUserException}
+import org.gorpipe.gor.jfr.GorEvent
 import org.gorpipe.gor.model.{DriverBackedFileReader, FileReader, GenomicIterator, GorFileReaderContext}
 import org.gorpipe.gor.monitor.GorMonitor
-import org.gorpipe.gor.session.{GorContext, GorSession}
+import org.gorpipe.gor.session.{GorContext, GorSession, MemoryBudget}
+import org.gorpipe.gor.stats.PipeProfile
 import org.gorpipe.gor.util.StringUtil
 import org.gorpipe.model.gor.iterators.RowSource
 import org.slf4j.LoggerFactory
@@ -108,6 +110,7 @@ class PipeInstance(context: GorContext) extends gorsatGorIterator(context) {
   private val session = context.getSession
   private var combinedHeader : String = _
   private var isClosed: Boolean = false
+  private var pipeProfile: PipeProfile = _
 
   var thePipeStep : Analysis = _
   var theInputSource: GenomicIterator = _
@@ -173,7 +176,11 @@ class PipeInstance(context: GorContext) extends gorsatGorIterator(context) {
       theIterator.close()
       theIterator = null
     }
-    if (context != null && context.getSession != null) context.getSession.close()
+    if (context != null && context.getSession != null) {
+      GorEvent.clearQueryId(context.getSession.getRequestId)
+      MemoryBudget.clearCurrent(context.getSession.getMemoryBudget)
+      context.getSession.close()
+    }
     isClosed = true
   }
 
@@ -239,13 +246,19 @@ class PipeInstance(context: GorContext) extends gorsatGorIterator(context) {
       gorString = fixGorString(gorString)
     }
 
+    GorEvent.setQueryId(context.getSession.getRequestId)
+    MemoryBudget.setCurrent(context.getSession.getMemoryBudget)
+    pipeProfile = if (context.getProfile != null) context.getProfile.addPipe(argString) else null
+
     val inputSourceCommand: String = prepareInputSource(argString, gorString, useStdin)
     val inputHeader: String = preparePipeStep(argString, gorString, forcedInputHeader, inputSourceCommand)
 
     // todo: get row header from input source, with types if possible
     thePipeStep.setRowHeader(RowHeader(inputHeader))
 
-    theIterator = new BatchedPipeStepIteratorAdaptor(theInputSource, thePipeStep, combinedHeader, brsConfig)
+    val pipeStepIterator = new BatchedPipeStepIteratorAdaptor(theInputSource, thePipeStep, combinedHeader, brsConfig)
+    pipeStepIterator.setProfile(context.getProfile)
+    theIterator = pipeStepIterator
 
     theInputSource
   }
@@ -253,6 +266,11 @@ class PipeInstance(context: GorContext) extends gorsatGorIterator(context) {
   def preparePipeStep(argString: String, gorString: String, forcedInputHeader: String, inputSourceCommand: String): String = {
     var command = ""
     var inputHeader = ""
+    // Stage boundaries are added before expensive steps, a run of expensive steps shares one stage
+    var stagesLeft = PipelineStage.maxStages
+    var lastStageCommand = false
+    // The source is profiled by the first step, which is added last
+    val sourceProfile = if (pipeProfile != null) pipeProfile.addStep(gorString) else null
     try {
       var pushdown: Boolean = true
       for (i <- firstCommand until pipeSteps.length) {
@@ -274,6 +292,10 @@ class PipeInstance(context: GorContext) extends gorsatGorIterator(context) {
             pushdown = pushdownWrite(fullCommand.substring(6).trim)
           } else if (command.equals("CMD")) {
             pushdown = pushdownCmd(fullCommand.substring(4).trim)
+          } else if (command.equals("SELECT") && i == firstCommand) {
+            pushdown = theInputSource.pushdownGor(fullCommand)
+            // The select step is still run, the source only skips decoding the columns it drops
+            if (!pushdown) pushdownProjection(fullCommand.substring(7).trim)
           } else {
             pushdown = theInputSource.pushdownGor(fullCommand)
           }
@@ -301,12 +323,18 @@ class PipeInstance(context: GorContext) extends gorsatGorIterator(context) {
               aPipeStep = WithIn(range.chromosome, range.start, range.stop) | aPipeStep
             }
             if (i == firstCommand) {
-              thePipeStep = aPipeStep
+              thePipeStep = profiled(aPipeStep, fullCommand)
             } else {
               if (thePipeStep == null || thePipeStep.isInstanceOf[PlaceHolder]) {
-                thePipeStep = aPipeStep
+                thePipeStep = profiled(aPipeStep, fullCommand)
               } else {
-                thePipeStep | aPipeStep
+                val stageCommand = PipelineStage.STAGE_COMMANDS.contains(command)
+                if (stageCommand && !lastStageCommand && stagesLeft > 0) {
+                  thePipeStep | profiled(PipelineStage(), "stage boundary")
+                  stagesLeft -= 1
+                }
+                lastStageCommand = stageCommand
+                thePipeStep | profiled(aPipeStep, fullCommand)
               }
             }
           }
@@ -336,9 +364,20 @@ class PipeInstance(context: GorContext) extends gorsatGorIterator(context) {
       thePipeStep = CancelMonitor(context.getSession.getSystemContext.getMonitor) | thePipeStep | CancelMonitor(context.getSession.getSystemContext.getMonitor)
     }
 
+    if (pipeProfile != null) {
+      thePipeStep = ProfileStep(sourceProfile, context.getProfile) | thePipeStep | ProfileStep(pipeProfile.addStep("output"))
+    }
+
     inputHeader
   }
 
+  /**
+    * Adds a step profiling the pipe step when the pipeline is profiled.
+    */
+  private def profiled(pipeStep: Analysis, name: String): Analysis = {
+    if (pipeProfile != null && !pipeStep.isInstanceOf[PlaceHolder]) ProfileStep(pipeProfile.addStep(name)) | pipeStep else pipeStep
+  }
+
   def prepareInputSource(argString: String, gorString: String, useStdin: Boolean): String = {
 
     val inputSourceCommand = commandFromPipeStep(gorString)
@@ -460,6 +499,18 @@ class PipeInstance(context: GorContext) extends gorsatGorIterator(context) {
     theInputSource.pushdownCmd(filename)
   }
 
+  def pushdownProjection(select: String): Boolean = {
+    val words = select.split("\\s+").filter(_.nonEmpty)
+    // Options change which columns are selected, leave those to the select step
+    if (isNorContext || words.isEmpty || words.exists(_.startsWith("-"))) return false
+    try {
+      val columns = CommandParseUtilities.columnsFromHeader(words.mkString(","), theInputSource.getHeader)
+      theInputSource.pushdownProjection(columns.toArray)
+    } catch {
+      case _: GorParsingException => false
+    }
+  }
+
   def fixGorString(gorString: String): String = {
     val command = commandFromPipeStep(gorString)
 
@@ -733,7 +784,12 @@ class PipeInstance(context: GorContext) extends gorsatGorIterator(context) {
       val skip = cmdparams.skipLines()
       val allowerror = cmdparams.allowError()
       val server = cmdparams.useHttpServer()
-      val pip: RowSource = new ProcessIteratorAdaptor(context, command, cmdparams.getAliasName, inputSource, thePipeStep, combinedHeader, skipheader, skip, allowerror, executeNor)
+      val shards = cmdparams.shards()
+      val pip: RowSource = if (shards > 1) {
+        new ShardedProcessIteratorAdaptor(context, command, cmdparams.getAliasName, inputSource, thePipeStep, combinedHeader, skipheader, skip, allowerror, executeNor, shards)
+      } else {
+        new ProcessIteratorAdaptor(context, command, cmdparams.getAliasName, inputSource, thePipeStep, combinedHeader, skipheader, skip, allowerror, executeNor)
+      }
       val newHeader = pip.getHeader
       if (newHeader != null) combinedHeader = validHeader(newHeader)
       (pip, newHeader)
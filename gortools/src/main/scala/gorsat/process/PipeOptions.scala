@@ -84,7 +84,9 @@ object PipeOptions {
     "-queryhandler",
     "-gorroot",
     "-requestid",
-    "-stats")
+    "-stats",
+    "-profile",
+    "-profilefile")
 }
 
 /**
@@ -124,6 +126,10 @@ class PipeOptions {
   var requestId:String = _
   // Enable request stats?
   var stats: Boolean = false
+  // Profile the steps of the query and report where the time goes. Value from the -profile option
+  var profile: Boolean = false
+  // File the profile is written to as json, implies -profile. Value from the -profilefile option
+  var profileFile: String = _
 
   def parseOptions(args: Array[String]): Unit = {
     this.aliasFile = CommandParseUtilities.stringValueOfOptionWithDefault(args, "-aliases", null)
@@ -138,6 +144,8 @@ class PipeOptions {
     this.showStackTrace = CommandParseUtilities.hasOption(args, "-stacktrace")
     this.version = CommandParseUtilities.hasOption(args, "-version")
     this.stats = CommandParseUtilities.hasOption(args, "-stats")
+    this.profileFile = CommandParseUtilities.stringValueOfOptionWithDefault(args, "-profilefile", null)
+    this.profile = CommandParseUtilities.hasOption(args, "-profile") || this.profileFile != null
 
     // Following options should not be part of the documentation
     this.prePipe = CommandParseUtilities.hasOption(args, "-prepipe")
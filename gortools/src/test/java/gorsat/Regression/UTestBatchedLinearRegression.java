@@ -0,0 +1,104 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.Regression;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class UTestBatchedLinearRegression {
+
+    @Test
+    public void testConstructor_IllegalArguments() {
+        boolean success = false;
+        try {
+            new BatchedLinearRegression(new double[1][3], new double[3], 3, 1);
+        } catch (IllegalArgumentException e) {
+            success = true;
+        }
+        Assert.assertTrue(success);
+    }
+
+    @Test
+    public void testConstructor_DependentCovariates() {
+        final double[] cov = ComputationTestUtils.getRandomVector(20, -10, 10);
+        boolean success = false;
+        try {
+            new BatchedLinearRegression(new double[][]{cov, Arrays.copyOf(cov, cov.length)}, new double[20], 20, 1);
+        } catch (IllegalArgumentException e) {
+            success = true;
+        }
+        Assert.assertTrue(success);
+    }
+
+    @Test
+    public void testSameAsLinearRegression() {
+        final int numberOfSamples = 50;
+        final int blockSize = 7;
+        for (int numberOfCovars = 0; numberOfCovars < 5; ++numberOfCovars) {
+            final double[][] covars = ComputationTestUtils.getRandomMatrix(numberOfCovars, numberOfSamples, -10, 10);
+            final double[] y = ComputationTestUtils.getRandomVector(numberOfSamples, -10, 10);
+            final double[][] genotypes = ComputationTestUtils.getRandomMatrix(blockSize, numberOfSamples, 0, 2);
+            final boolean[] include = new boolean[blockSize];
+            Arrays.fill(include, true);
+            include[3] = false;
+
+            final BatchedLinearRegression blr = new BatchedLinearRegression(covars, y, numberOfSamples, blockSize);
+            blr.runRegressions(genotypes, include, blockSize);
+
+            for (int i = 0; i < blockSize; ++i) {
+                Assert.assertEquals(include[i], blr.valid[i]);
+                if (!include[i]) continue;
+                final double[][] x = new double[numberOfCovars + 1][];
+                x[0] = Arrays.copyOf(genotypes[i], numberOfSamples);
+                for (int j = 0; j < numberOfCovars; ++j) {
+                    x[j + 1] = Arrays.copyOf(covars[j], numberOfSamples);
+                }
+                final LinearRegression lr = new LinearRegression(numberOfSamples, numberOfCovars + 1);
+                lr.setData(x, numberOfSamples);
+                lr.runRegression(Arrays.copyOf(y, numberOfSamples));
+
+                Assert.assertArrayEquals(lr.beta, blr.beta[i], 1e-9);
+                Assert.assertArrayEquals(lr.betaError, blr.betaError[i], 1e-9);
+                Assert.assertArrayEquals(lr.tStats, blr.tStats[i], 1e-9);
+                Assert.assertArrayEquals(lr.pValues, blr.pValues[i], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testGenotypeInCovariateSpace() {
+        final int numberOfSamples = 20;
+        final double[][] covars = ComputationTestUtils.getRandomMatrix(2, numberOfSamples, -10, 10);
+        final double[] y = ComputationTestUtils.getRandomVector(numberOfSamples, -10, 10);
+        final double[][] genotypes = {new double[numberOfSamples], Arrays.copyOf(covars[1], numberOfSamples)};
+        Arrays.fill(genotypes[0], 1);
+
+        final BatchedLinearRegression blr = new BatchedLinearRegression(covars, y, numberOfSamples, 2);
+        blr.runRegressions(genotypes, new boolean[]{true, true}, 2);
+
+        Assert.assertFalse(blr.valid[0]);
+        Assert.assertFalse(blr.valid[1]);
+    }
+}
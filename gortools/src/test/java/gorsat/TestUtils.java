@@ -205,6 +205,25 @@ public class TestUtils {
         }
     }
 
+    public static String runGorPipeWithWhitelist(String query, Path whitelistFile) {
+        String[] args = {query};
+        PipeOptions options = new PipeOptions();
+        options.parseOptions(args);
+
+        try (PipeInstance pipe = new PipeInstance(createSession(args, whitelistFile.toAbsolutePath().toString(), false).getGorContext())) {
+            String queryToExecute = processQuery(options.query(), pipe.getSession());
+            pipe.init(queryToExecute, false, "");
+            StringBuilder result = new StringBuilder();
+            result.append(pipe.getHeader());
+            result.append("\n");
+            while (pipe.hasNext()) {
+                result.append(pipe.next());
+                result.append("\n");
+            }
+            return result.toString();
+        }
+    }
+
     public static void assertTwoGorpipeResults(String query1, String query2) {
         String result1 = runGorPipe(query1);
         String result2 = runGorPipe(query2);
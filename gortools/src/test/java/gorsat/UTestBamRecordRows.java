@@ -0,0 +1,140 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat;
+
+import htsjdk.samtools.*;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Checks that the commands which read alignments straight from the bam records give the same results as when they
+ * read the text columns.
+ */
+public class UTestBamRecordRows {
+
+    private static final String[] CIGARS = {"50M", "10S40M", "20M2I28M", "15M3D35M", "5S20M1I10M2D14M", "30M100N20M", "45M5S"};
+    // Adding and removing a column turns the bam rows into plain text rows.
+    private static final String TEXT_ROWS = " | calc dummy 0 | hide dummy";
+
+    private static String bamFile;
+
+    @BeforeClass
+    public static void createBam() throws IOException {
+        final Random random = new Random(17);
+        final StringBuilder sam = new StringBuilder();
+        sam.append("@HD\tVN:1.4\tSO:coordinate\n");
+        sam.append("@SQ\tSN:chr1\tLN:100000\n");
+        int pos = 1000;
+        for (int i = 0; i < 300; i++) {
+            pos += random.nextInt(8);
+            final String cigar = CIGARS[random.nextInt(CIGARS.length)];
+            final int readLength = TextCigarCodec.decode(cigar).getReadLength();
+            final StringBuilder seq = new StringBuilder();
+            final StringBuilder qual = new StringBuilder();
+            for (int j = 0; j < readLength; j++) {
+                seq.append("ACGTN".charAt(random.nextInt(5)));
+                qual.append((char) (33 + random.nextInt(41)));
+            }
+            final int flag = random.nextBoolean() ? 0 : 16;
+            sam.append("read").append(i).append('\t').append(flag).append("\tchr1\t").append(pos).append('\t')
+                    .append(20 + random.nextInt(40)).append('\t').append(cigar).append("\t*\t0\t0\t")
+                    .append(seq).append('\t').append(qual).append('\n');
+        }
+
+        bamFile = writeBam(sam.toString());
+    }
+
+    private static String writeBam(String sam) throws IOException {
+        final File file = Files.createTempFile("records", ".bam").toFile();
+        file.deleteOnExit();
+        final SamReader reader = SamReaderFactory.makeDefault().open(SamInputResource.of(new ByteArrayInputStream(sam.getBytes())));
+        final SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
+        writerFactory.setCreateIndex(true);
+        try (SAMFileWriter writer = writerFactory.makeBAMWriter(reader.getFileHeader(), true, file)) {
+            reader.forEach(writer::addAlignment);
+        }
+        new File(file.getPath().replace(".bam", ".bai")).deleteOnExit();
+        return file.getAbsolutePath();
+    }
+
+    @Test
+    public void testReadAll() {
+        final String res = TestUtils.runGorPipe("gor " + bamFile + " | group genome -count");
+        Assert.assertEquals("300", res.split("\n")[1].split("\t")[3]);
+    }
+
+    @Test
+    public void testPileup() {
+        assertSameAsTextRows("pileup");
+    }
+
+    @Test
+    public void testPileupWithOptions() {
+        assertSameAsTextRows("pileup -gt -depth -bq 20 -span 30");
+    }
+
+    @Test
+    public void testPileupCountsEachBase() throws IOException {
+        final String bam = writeBam("@HD\tVN:1.4\tSO:coordinate\n" +
+                "@SQ\tSN:chr1\tLN:100000\n" +
+                "read1\t0\tchr1\t1000\t40\t4M\t*\t0\t0\tACGT\tIIII\n" +
+                "read2\t0\tchr1\t1000\t40\t4M\t*\t0\t0\tACGA\tIIII\n");
+        final String expected = "chr1\t1000\t2\t0\t0\t0\n" +
+                "chr1\t1001\t0\t2\t0\t0\n" +
+                "chr1\t1002\t0\t0\t2\t0\n" +
+                "chr1\t1003\t1\t0\t0\t1\n";
+        for (String rows : new String[]{"", TEXT_ROWS}) {
+            final String result = TestUtils.runGorPipe("gor " + bam + rows + " | pileup | select 1,2,Adepth,Cdepth,Gdepth,Tdepth");
+            Assert.assertEquals(expected, result.substring(result.indexOf('\n') + 1));
+        }
+    }
+
+    @Test
+    public void testCigarSegs() {
+        assertSameAsTextRows("cigarsegs");
+    }
+
+    @Test
+    public void testCigarSegsWithGroupColumns() {
+        assertSameAsTextRows("cigarsegs -gc Flag,MapQ");
+    }
+
+    @Test
+    public void testBamFlag() {
+        assertSameAsTextRows("bamflag");
+    }
+
+    private static void assertSameAsTextRows(String command) {
+        final String direct = TestUtils.runGorPipe("gor " + bamFile + " | " + command);
+        final String text = TestUtils.runGorPipe("gor " + bamFile + TEXT_ROWS + " | " + command);
+        Assert.assertTrue(direct.split("\n").length > 10);
+        Assert.assertEquals(text, direct);
+    }
+}
@@ -27,6 +27,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
@@ -43,6 +44,9 @@ public class UTestDistinct {
     @Rule
     public TemporaryFolder workDir = new TemporaryFolder();
 
+    @Rule
+    public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
     @Before
     public void setUpTest() throws IOException {
         distinctGor = FileTestUtils.createTempFile(workDir.getRoot(), "distinct.gor",
@@ -88,4 +92,13 @@ public class UTestDistinct {
         final int len = resultVals.length;
         for (int i = 0; i < len; ++i) assert resultVals[i].equals(assumedVals[i]);
     }
+
+    @Test
+    public void testDistinctOnNorSpillsToDisk() throws IOException {
+        final String query = "nor " + testFileGor.getCanonicalPath() + " | select numbers | distinct";
+        final String expected = TestUtils.runGorPipe(query);
+
+        System.setProperty("gor.aggregate.memory.budget", "100");
+        Assert.assertEquals(expected, TestUtils.runGorPipe(query));
+    }
 }
@@ -22,6 +22,9 @@
 
 package gorsat;
 
+import gorsat.process.GorJavaUtilities;
+import gorsat.process.ShardedProcessIteratorAdaptor;
+import org.gorpipe.exceptions.GorParsingException;
 import org.gorpipe.test.utils.FileTestUtils;
 import org.junit.*;
 import org.junit.rules.TemporaryFolder;
@@ -30,6 +33,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
 
 /**
  * Created by sigmar on 30/10/15.
@@ -53,7 +57,8 @@ public class UTestGorCMD {
                         "fullpathhead -h\t[/usr/bin/head]\n" +
                         "samtools -ssam\t[samtools view -h]\n" +
                         "users\t[sql select * from users]\n" +
-                        "mydate -c   [date]\n"
+                        "mydate -c   [date]\n" +
+                        "shardedcat -j3\t[cat]\n"
         );
 
         tempFilePath = tempFile.toPath();
@@ -96,6 +101,53 @@ public class UTestGorCMD {
         Assert.assertEquals(25, count);
     }
 
+    @Test
+    public void testGorCMDSharded() {
+        System.setProperty(ShardedProcessIteratorAdaptor.SHARD_ROWS_KEY, "7");
+        try {
+            // The sharded output is the same, in the same order, as the output of a single process
+            String expected = TestUtils.runGorPipeWithWhitelist("gor ../tests/data/gor/genes.gorz | top 100 | cmd {cat}", tempFilePath);
+            Assert.assertEquals(101, expected.split("\n").length);
+            Assert.assertEquals(expected, TestUtils.runGorPipeWithWhitelist("gor ../tests/data/gor/genes.gorz | top 100 | cmd -j 3 {cat}", tempFilePath));
+            Assert.assertEquals(expected, TestUtils.runGorPipeWithWhitelist("gor ../tests/data/gor/genes.gorz | top 100 | shardedcat", tempFilePath));
+
+            String expectedNor = TestUtils.runGorPipeWithWhitelist("nor " + pnsTxtCanonicalPath + " | cmd {cat}", tempFilePath);
+            Assert.assertEquals(expectedNor, TestUtils.runGorPipeWithWhitelist("nor " + pnsTxtCanonicalPath + " | cmd -j 2 {cat}", tempFilePath));
+            Assert.assertEquals(TestUtils.runGorPipeCount("nor " + pnsTxtCanonicalPath), TestUtils.runGorPipeCountWithWhitelist("nor " + pnsTxtCanonicalPath + " | cmd -j 2 {cat}", tempFilePath));
+        } finally {
+            System.clearProperty(ShardedProcessIteratorAdaptor.SHARD_ROWS_KEY);
+        }
+    }
+
+    @Test
+    public void testShardCountIsLimited() {
+        System.setProperty(ShardedProcessIteratorAdaptor.MAX_SHARDS_KEY, "2");
+        try {
+            TestUtils.runGorPipeCountWithWhitelist("gor ../tests/data/gor/genes.gorz | top 10 | cmd -j 3 {cat}", tempFilePath);
+            Assert.fail("Expected -j over the shard limit to fail");
+        } catch (GorParsingException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("-j"));
+        } finally {
+            System.clearProperty(ShardedProcessIteratorAdaptor.MAX_SHARDS_KEY);
+        }
+    }
+
+    @Test
+    public void testInvalidShardCountInWhitelist() throws IOException {
+        File whitelist = FileTestUtils.createTempFile(workDir.getRoot(), "badShards.txt",
+                "badcat -jx\t[cat]\n" +
+                        "barecat -j\t[cat]\n");
+        Map<String, GorJavaUtilities.CmdParams> cmds = GorJavaUtilities.readWhiteList(whitelist.toPath());
+        for (String name : new String[]{"badcat", "barecat"}) {
+            try {
+                cmds.get(name).shards();
+                Assert.fail("Expected invalid shard count in " + name + " to fail");
+            } catch (GorParsingException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains(name));
+            }
+        }
+    }
+
     @Test
     public void testGorCMDCalc() {
         doTest(tempFileCanonicalPath, "gor", "../tests/data/gor/dbsnp_test.gorz | calc m 'm' | cmd -h {head -n 5}", 5);
@@ -97,6 +97,27 @@ public class UTestGorz {
         }
     }
 
+    @Test
+    public void testSelectFromColumnCompressedGorz() throws IOException {
+        final Path tmpDir = Files.createTempDirectory("testSelectFromColumnCompressedGorz");
+        try {
+            final File file = new File(tmpDir.toAbsolutePath() + "/wide.gorz");
+            final String source = "gorrows -p chr1:1-20001 | calc a mod(pos,7) | calc b 'x'+mod(pos,13) | calc c pos*3 "
+                    + "| calc d if(mod(pos,5)=0,'','y') | calc e 'const'";
+            TestUtils.runGorPipe(source + " | write -c " + file.getAbsolutePath());
+
+            for (String select : new String[]{"select 1,2,b", "select 1,2,c-", "select 1-2,d,b", "select 1,2,a -t"}) {
+                final String expected = TestUtils.runGorPipe(source + " | " + select);
+                Assert.assertEquals(select, expected, TestUtils.runGorPipe("gor " + file.getAbsolutePath() + " | " + select));
+            }
+            final String expected = TestUtils.runGorPipe(source + " | select 1,2,e | where pos > 10000 | calc f e+'1'");
+            Assert.assertEquals(expected, TestUtils.runGorPipe("gor " + file.getAbsolutePath() + " | select 1,2,e | where pos > 10000 | calc f e+'1'"));
+            Assert.assertEquals(expected, TestUtils.runGorPipe("gor -p chr1:10001-20001 " + file.getAbsolutePath() + " | select 1,2,e | where pos > 10000 | calc f e+'1'"));
+        } finally {
+            FileUtils.deleteDirectory(tmpDir.toFile());
+        }
+    }
+
     private void assertCompressedFileSmaller(File sourceFile, File compressedFile) {
         Assert.assertTrue("Compressed file:" + compressedFile + " size:" + compressedFile.length() +
                         " should be smaller than source file:" + sourceFile + " size: " + sourceFile.length() +
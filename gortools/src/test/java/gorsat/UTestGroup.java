@@ -27,6 +27,7 @@ import org.gorpipe.exceptions.GorDataException;
 import org.gorpipe.exceptions.GorParsingException;
 import org.gorpipe.test.utils.FileTestUtils;
 import org.junit.*;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 
@@ -51,6 +52,9 @@ public class UTestGroup {
     @Rule
     public ExpectedException thrown = ExpectedException.none();
 
+    @Rule
+    public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
     @Before
     public void setUp() {
         try {
@@ -438,6 +442,33 @@ public class UTestGroup {
         Assert.assertEquals(expected, result);
     }
 
+    @Test
+    public void groupGenomeSpillsToDisk() {
+        final String query = "gor ../tests/data/gor/genes.gor | group genome -gc gene_symbol -count -sc gene_start -lis -len 1000";
+        final String expected = TestUtils.runGorPipe(query);
+
+        System.setProperty("gor.aggregate.memory.budget", "1000");
+        Assert.assertEquals(expected, TestUtils.runGorPipe(query));
+
+        System.setProperty("gor.aggregate.spill.parallelism", "4");
+        Assert.assertEquals(expected, TestUtils.runGorPipe(query));
+    }
+
+    @Test
+    public void groupApproximateSameAsExactForSmallGroups() {
+        final String query = "gorrows -p chr1:1-301 | calc a mod(pos,10) | calc g mod(pos,3) | calc s 'v'+str(mod(pos,7)) | group genome -gc g -fc a -sc s -med -dis";
+        Assert.assertEquals(TestUtils.runGorPipe(query), TestUtils.runGorPipe(query + " -approx"));
+    }
+
+    @Test
+    public void groupApproximateMedianAndDistinct() {
+        String[] lines = TestUtils.runGorPipeLines("gorrows -p chr1:1-100001 | calc a mod(pos,5000) | group genome -fc a -med -dis -approx");
+        Assert.assertEquals(2, lines.length);
+        String[] values = lines[1].split("\t");
+        Assert.assertEquals(2499.5, Double.parseDouble(values[3]), 25.0);
+        Assert.assertEquals(5000, Long.parseLong(values[4]), 100);
+    }
+
     private void assertValueArray(String line, int offset, double[] expectedValues, String[] functions) {
         String[] values = line.split("\t", -1);
         int count = 0;
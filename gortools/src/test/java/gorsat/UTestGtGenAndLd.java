@@ -91,6 +91,17 @@ public class UTestGtGenAndLd {
         FileUtils.deleteDirectory(tmpDir);
     }
 
+    @Test
+    public void testGtLdPairsRowsInSameBin() throws IOException {
+        final File tmpDir = Files.createTempDir();
+        final File gorFile = new File(tmpDir, "variants.gor");
+        FileUtils.write(gorFile, "CHROM\tPOS\tREF\tALT\tVALUES\nchr1\t1\tA\tT\t0120\nchr1\t2\tA\tC\t0210\n", (String) null);
+        final String results = TestUtils.runGorPipe("gor " + gorFile.getAbsolutePath() + " | gtld -sum -f 10 | select 1,2,distance");
+        final String rows = results.substring(results.indexOf('\n') + 1);
+        Assert.assertEquals("chr1\t1\t0\nchr1\t1\t1\nchr1\t2\t-1\nchr1\t2\t0\n", rows);
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
     @Test
     public void GTLDWithBuckets() {
         String common = "def #pns# = 100000;\n" +
@@ -42,6 +42,7 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 /**
  * Created by sigmar on 11/05/16.
@@ -275,6 +276,37 @@ public class UTestNorDictionary {
         Assert.assertEquals((numDictFiles-1) * numDictFileLines, count);
     }
 
+    @Test
+    public void testNordDictionaryWithPrefetch() throws IOException {
+        int numDictFiles = 50;
+        int numDictFileLines = 100;
+        String path = createTestFiles(numDictFiles, numDictFileLines, true);
+
+        String[] expectedLines = TestUtils.runGorPipeLines(String.format("nor %1$s/test.nord", path));
+        String[] lines = TestUtils.runGorPipeLines(String.format("nor %1$s/test.nord -prefetch 4", path));
+        Assert.assertArrayEquals(expectedLines, lines);
+
+        String[] unorderedLines = TestUtils.runGorPipeLines(String.format("nor %1$s/test.nord -prefetch 4 -unordered", path));
+        Assert.assertEquals(expectedLines[0], unorderedLines[0]);
+        Arrays.sort(expectedLines, 1, expectedLines.length);
+        Arrays.sort(unorderedLines, 1, unorderedLines.length);
+        Assert.assertArrayEquals(expectedLines, unorderedLines);
+    }
+
+    @Test
+    public void testNordDictionaryWithPrefetchMiddleFileMissing() throws IOException {
+        final NorDictTestDataGenerator testDataGenerator = new NorDictTestDataGeneratorBuilder()
+                .setNumberOfDictionaryFiles(10)
+                .setNumberOfLinesInDictionaryFile(100)
+                .setSourceFileHeader(true)
+                .setFileMissing(5)
+                .createNorDictTestDataGenerator();
+        String path = testDataGenerator.invoke();
+
+        expected.expect(GorResourceException.class);
+        TestUtils.runGorPipeCount(String.format("nor %1$s/test.nord -prefetch 4", path));
+    }
+
     @Test
     public void testNordDictionaryDataIntegrity() throws IOException {
         int numDictFiles = 10;
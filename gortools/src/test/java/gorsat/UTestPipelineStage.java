@@ -0,0 +1,95 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat;
+
+import org.gorpipe.exceptions.GorDataException;
+import org.gorpipe.gor.model.Row;
+import org.gorpipe.model.gor.RowObj;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UTestPipelineStage {
+
+    @Rule
+    public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
+    @Test
+    public void rowBatchRingKeepsOrder() throws InterruptedException {
+        RowBatchRing ring = new RowBatchRing(3);
+        List<Row> taken = new ArrayList<>();
+        Thread consumer = new Thread(() -> {
+            Row[] batch;
+            while ((batch = ring.take()) != null) {
+                for (Row r : batch) taken.add(r);
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(ring.put(new Row[]{RowObj.StoR("chr1\t" + (2 * i + 1)), RowObj.StoR("chr1\t" + (2 * i + 2))}));
+        }
+        ring.close();
+        consumer.join();
+
+        Assert.assertEquals(2000, taken.size());
+        for (int i = 0; i < taken.size(); i++) {
+            Assert.assertEquals(i + 1, taken.get(i).pos);
+        }
+    }
+
+    @Test
+    public void rowBatchRingDropsBatchesWhenCancelled() {
+        RowBatchRing ring = new RowBatchRing(1);
+        Assert.assertTrue(ring.put(new Row[0]));
+        ring.cancel();
+        Assert.assertFalse(ring.put(new Row[0]));
+        Assert.assertNull(ring.take());
+    }
+
+    @Test
+    public void stagesGiveSameResults() {
+        final String query = "gorrows -p chr1:1-20000 | calc a mod(pos,7) | where a > 2 | calc b a * 2 | rownum | join -snpsnp <(gorrows -p chr1:1-20000 | where mod(pos,3) = 0)";
+        final String expected = TestUtils.runGorPipe(query);
+
+        System.setProperty("gor.pipe.stages", "2");
+        Assert.assertEquals(expected, TestUtils.runGorPipe(query));
+    }
+
+    @Test
+    public void stagesStopWhenNoMoreRowsWanted() {
+        System.setProperty("gor.pipe.stages", "2");
+        String[] lines = TestUtils.runGorPipeLines("gorrows -p chr1:1-1000000 | rownum | calc a rownum * 2 | top 10");
+        Assert.assertEquals(11, lines.length);
+        Assert.assertTrue(lines[10].startsWith("chr1\t10\t"));
+    }
+
+    @Test(expected = GorDataException.class)
+    public void stagesThrowErrorsOfLaterSteps() {
+        System.setProperty("gor.pipe.stages", "2");
+        TestUtils.runGorPipe("gorrows -p chr1:1-100000 | rownum | calc a rownum * 2 | throwif a > 100000");
+    }
+}
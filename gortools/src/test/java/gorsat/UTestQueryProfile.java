@@ -0,0 +1,154 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat;
+
+import gorsat.process.CLISessionFactory;
+import gorsat.process.PipeInstance;
+import gorsat.process.PipeOptions;
+import org.gorpipe.gor.session.GorSession;
+import org.gorpipe.gor.stats.PipeProfile;
+import org.gorpipe.gor.stats.QueryProfileReport;
+import org.gorpipe.gor.stats.StepProfile;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class UTestQueryProfile {
+
+    @Rule
+    public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
+    @Rule
+    public TemporaryFolder workDir = new TemporaryFolder();
+
+    private GorSession runProfiled(String query) {
+        PipeOptions options = new PipeOptions();
+        options.parseOptions(new String[]{query, "-profile", "-cachedir", workDir.getRoot().getAbsolutePath()});
+        GorSession session = new CLISessionFactory(options, null).create();
+        try (PipeInstance pipe = new PipeInstance(session.getGorContext())) {
+            pipe.init(options.query(), false, "");
+            while (pipe.hasNext()) {
+                pipe.next();
+            }
+        }
+        return session;
+    }
+
+    private static PipeProfile findPipe(GorSession session) {
+        for (PipeProfile pipe : session.getGorContext().getProfile().getPipes()) {
+            if (pipe.hasRun()) {
+                return pipe;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void stepsAreProfiled() {
+        GorSession session = runProfiled("gorrows -p chr1:1-10001 | calc x pos * 2 | where x > 100 | group chrom -count");
+
+        PipeProfile pipe = findPipe(session);
+        Assert.assertNotNull(pipe);
+        List<StepProfile> steps = pipe.getSteps();
+        Assert.assertEquals(5, steps.size());
+        Assert.assertEquals("gorrows -p chr1:1-10001", steps.get(0).getName());
+        Assert.assertEquals("calc x pos * 2", steps.get(1).getName());
+        Assert.assertEquals("where x > 100", steps.get(2).getName());
+        Assert.assertEquals("group chrom -count", steps.get(3).getName());
+        Assert.assertEquals("output", steps.get(4).getName());
+
+        Assert.assertEquals(10000, steps.get(0).getRows());
+        Assert.assertEquals(10000, steps.get(1).getRows());
+        Assert.assertEquals(10000, steps.get(2).getRows());
+        Assert.assertEquals(9950, steps.get(3).getRows());
+        Assert.assertEquals(1, steps.get(4).getRows());
+        for (StepProfile step : steps) {
+            Assert.assertTrue(step.getName(), step.getNanos() >= 0);
+        }
+        Assert.assertTrue(steps.get(1).getBytesPerRow() > 0);
+
+        String report = QueryProfileReport.toText(session.getGorContext());
+        Assert.assertTrue(report, report.contains("where x > 100"));
+        Assert.assertTrue(report, report.contains("wait BatchedPipeStepIteratorAdaptor consumer"));
+        Assert.assertTrue(QueryProfileReport.toJson(session.getGorContext()).contains("\"name\" : \"calc x pos * 2\""));
+    }
+
+    @Test
+    public void stageBoundariesAreProfiled() {
+        System.setProperty("gor.pipe.stages", "1");
+        GorSession session = runProfiled("gorrows -p chr1:1-10001 | rownum | calc x pos * 2");
+
+        List<StepProfile> steps = findPipe(session).getSteps();
+        Assert.assertEquals("stage boundary", steps.get(2).getName());
+        Assert.assertEquals(10000, steps.get(2).getRows());
+        Assert.assertEquals(10000, steps.get(3).getRows());
+        Assert.assertEquals(10000, steps.get(4).getRows());
+    }
+
+    @Test
+    public void nestedQueriesAreProfiled() {
+        GorSession session = runProfiled("create #x# = gorrows -p chr1:1-1001 | calc a pos; gor [#x#] | group chrom -count");
+
+        QueryProfileReport.ContextInfo info = QueryProfileReport.getInfo(session.getGorContext());
+        Assert.assertFalse(info.pipes.isEmpty());
+        Assert.assertEquals(1, info.nested.size());
+        QueryProfileReport.PipeInfo nested = info.nested.get(0).pipes.get(0);
+        Assert.assertEquals("calc a pos", nested.steps.get(1).name);
+        Assert.assertEquals(1000, nested.steps.get(1).rows);
+    }
+
+    @Test
+    public void profilingGivesSameResults() {
+        final String query = "gorrows -p chr1:1-20000 | calc a mod(pos,7) | where a > 2 | rownum | join -snpsnp <(gorrows -p chr1:1-20000 | where mod(pos,3) = 0) | sort 1000 -c a";
+        final String expected = TestUtils.runGorPipe(query);
+
+        System.setProperty("gor.query.profile", "true");
+        Assert.assertEquals(expected, TestUtils.runGorPipe(query));
+    }
+
+    @Test
+    public void profileIsWrittenToProfileFile() throws IOException {
+        File profileFile = new File(workDir.getRoot(), "profile.json");
+        TestUtils.runGorPipeIteratorOnMain(new String[]{"gorrows -p chr1:1-11 | calc x pos * 2",
+                "-profilefile", profileFile.getAbsolutePath()});
+
+        String json = new String(Files.readAllBytes(profileFile.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(json, json.contains("\"name\" : \"calc x pos * 2\""));
+    }
+
+    @Test
+    public void failingToWriteProfileDoesNotFailQuery() throws IOException {
+        // The profile file can not be created under a file
+        File profileFile = new File(workDir.newFile("notadir"), "profile.json");
+        TestUtils.runGorPipeIteratorOnMain(new String[]{"gorrows -p chr1:1-11", "-profile", "-profilefile", profileFile.getAbsolutePath()});
+        Assert.assertFalse(profileFile.exists());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat;
+
+import org.gorpipe.gor.model.Row;
+import org.gorpipe.model.gor.RowObj;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class UTestRowBufferRing {
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    public void testRowsAreHandedOffInOrder() throws InterruptedException {
+        int rows = 100000;
+        RowBufferRing ring = new RowBufferRing(4, TimeUnit.MILLISECONDS.toNanos(1));
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                RowBuffer current = ring.claim(TIMEOUT);
+                long t = System.nanoTime();
+                for (int i = 1; i <= rows; i++) {
+                    current.add(RowObj.StoR("chr1\t" + i));
+                    if (ring.shouldPublish(current)) {
+                        ring.publish(current.size() * 1000000.0 / Math.max(1, System.nanoTime() - t));
+                        current = ring.claim(TIMEOUT);
+                        t = System.nanoTime();
+                    }
+                }
+                current.add(RowObj.StoR("chrN\t-1"));
+                ring.publish(1.0);
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        producer.start();
+
+        int expected = 1;
+        RowBuffer buffer = ring.take(TIMEOUT);
+        while (buffer != null) {
+            while (buffer.hasNext()) {
+                Row r = buffer.next();
+                Assert.assertEquals(expected++, r.pos);
+            }
+            if (buffer.available()) {
+                break;
+            }
+            buffer = ring.take(TIMEOUT);
+        }
+        producer.join(10000);
+        Assert.assertNull(error.get());
+        Assert.assertEquals(rows + 1, expected);
+    }
+
+    @Test
+    public void testStopReleasesWaitingConsumer() throws InterruptedException {
+        RowBufferRing ring = new RowBufferRing(2, TimeUnit.MILLISECONDS.toNanos(1));
+        AtomicReference<RowBuffer> taken = new AtomicReference<>(RowBufferRing.EMPTY);
+        Thread consumer = new Thread(() -> {
+            try {
+                taken.set(ring.take(TIMEOUT));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        ring.stop();
+        consumer.join(1000);
+        Assert.assertFalse("Consumer still waiting after stop", consumer.isAlive());
+        Assert.assertNull(taken.get());
+        Assert.assertNull(ring.claim(TIMEOUT));
+    }
+
+    @Test
+    public void testFullRingTimesOut() throws InterruptedException {
+        RowBufferRing ring = new RowBufferRing(2, TimeUnit.MILLISECONDS.toNanos(1));
+        for (int i = 0; i < 2; i++) {
+            RowBuffer current = ring.claim(TIMEOUT);
+            current.add(RowObj.StoR("chr1\t" + i));
+            ring.publish(1.0);
+        }
+        Assert.assertNull(ring.claim(TimeUnit.MILLISECONDS.toNanos(10)));
+        Assert.assertNotNull(ring.take(TIMEOUT));
+        Assert.assertNotNull(ring.take(TIMEOUT));
+        Assert.assertNotNull(ring.claim(TIMEOUT));
+    }
+}
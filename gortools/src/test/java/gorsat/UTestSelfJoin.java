@@ -0,0 +1,52 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class UTestSelfJoin {
+
+    @Rule
+    public TemporaryFolder workDir = new TemporaryFolder();
+
+    @Test
+    public void testRowsInSameBinAreJoined() throws IOException {
+        final File gorFile = workDir.newFile("rows.gor");
+        FileUtils.write(gorFile, "Chrom\tPos\tName\nchr1\t1\ta\nchr1\t2\tb\n", StandardCharsets.UTF_8);
+
+        final String result = TestUtils.runGorPipe("gor " + gorFile.getAbsolutePath() + " | selfjoin -f 10");
+        final String rows = result.substring(result.indexOf('\n') + 1);
+        Assert.assertEquals("chr1\t1\ta\t0\t1\ta\n" +
+                "chr1\t1\ta\t0\t2\tb\n" +
+                "chr1\t2\tb\t-1\t1\ta\n" +
+                "chr1\t2\tb\t0\t2\tb\n", rows);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.gtld;
+
+import gorsat.TestUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+public class UTestGenotypeBitPlanes {
+
+    @Rule
+    public TemporaryFolder workDir = new TemporaryFolder();
+
+    @Test
+    public void contingencyMatchesCharacterCount() {
+        final Random random = new Random(3);
+        for (int len : new int[]{0, 1, 63, 64, 65, 200, 1000}) {
+            final String a = randomValues(random, len);
+            final String b = randomValues(random, len);
+            final int[] counts = new int[10];
+            GenotypeBitPlanes.of(a).contingency(GenotypeBitPlanes.of(b), counts, 1);
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    Assert.assertEquals("Length " + len + ", g" + i + j, count(a, b, i, j), counts[1 + 3 * j + i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void contingencyOfDifferentLengths() {
+        final int[] counts = new int[9];
+        GenotypeBitPlanes.of("0120").contingency(GenotypeBitPlanes.of("01"), counts, 0);
+        Assert.assertArrayEquals(new int[]{1, 0, 0, 0, 1, 0, 0, 0, 0}, counts);
+    }
+
+    @Test
+    public void gtldPairsWithinDistance() throws IOException {
+        assertGtldPairs(400, 100, 150);
+    }
+
+    @Test
+    public void gtldPairsInLargeWindows() throws IOException {
+        assertGtldPairs(1500, 1000, 700);
+    }
+
+    private void assertGtldPairs(int numberOfVariants, int fuzz, int numberOfSamples) throws IOException {
+        final Random random = new Random(7);
+        final int[] positions = new int[numberOfVariants];
+        final String[] values = new String[numberOfVariants];
+        final StringBuilder input = new StringBuilder("Chrom\tPos\tRef\tAlt\tValues\n");
+        int pos = 1;
+        for (int i = 0; i < numberOfVariants; i++) {
+            pos += random.nextInt(3);
+            positions[i] = pos;
+            values[i] = randomValues(random, numberOfSamples);
+            input.append("chr1\t").append(pos).append("\tA\tC\t").append(values[i]).append('\n');
+        }
+        final File file = workDir.newFile("gt.gor");
+        Files.write(file.toPath(), input.toString().getBytes());
+
+        final StringBuilder expected = new StringBuilder();
+        for (int l = 0; l < numberOfVariants; l++) {
+            for (int r = 0; r < numberOfVariants; r++) {
+                if (Math.abs(positions[r] - positions[l]) > fuzz) continue;
+                expected.append("chr1\t").append(positions[l]).append("\tA\tC\t").append(positions[r] - positions[l])
+                        .append('\t').append(positions[r]).append("\tA\tC");
+                for (int j = 0; j < 3; j++) {
+                    for (int i = 0; i < 3; i++) {
+                        expected.append('\t').append(count(values[l], values[r], i, j));
+                    }
+                }
+                expected.append('\n');
+            }
+        }
+
+        final String result = TestUtils.runGorPipeNoHeader("gor " + file.getAbsolutePath() + " | gtld -sum -f " + fuzz);
+        Assert.assertEquals(expected.toString(), result);
+    }
+
+    private static String randomValues(Random random, int len) {
+        final StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            sb.append("0123".charAt(random.nextInt(4)));
+        }
+        return sb.toString();
+    }
+
+    private static int count(String a, String b, int i, int j) {
+        int count = 0;
+        for (int k = 0; k < a.length(); k++) {
+            if (a.charAt(k) == '0' + i && b.charAt(k) == '0' + j) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.clients;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class UTestSingleFlightCache {
+
+    @Rule
+    public TemporaryFolder workDir = new TemporaryFolder();
+
+    private static Supplier<String> producer(LocalFileCacheClient client, String fingerprint, String file,
+                                             AtomicInteger runs, long millis) {
+        return () -> {
+            runs.incrementAndGet();
+            try {
+                Thread.sleep(millis);
+                FileUtils.writeStringToFile(new File(file), "Chrom\tPos\nchr1\t1\n", Charset.defaultCharset());
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return client.store(Paths.get(file), fingerprint, ".gor", millis);
+        };
+    }
+
+    @Test
+    public void testProducedOnceForConcurrentRequests() throws Exception {
+        final String fingerprint = "fingerprint1";
+        final AtomicInteger runs = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                // Separate clients, so the lookups are not shared between the requests
+                final LocalFileCacheClient client = new LocalFileCacheClient(workDir.getRoot().toPath());
+                final String file = client.tempLocation(fingerprint, ".gor");
+                results.add(executor.submit(() -> SingleFlightCache.lookupOrProduce(client, fingerprint, file, null,
+                        producer(client, fingerprint, file, runs, 500))));
+            }
+            for (Future<String> result : results) {
+                Assert.assertTrue(result.get().endsWith(fingerprint + ".gor"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, runs.get());
+        Assert.assertFalse(Files.exists(SingleFlightCache.lockPath(workDir.getRoot().toPath().resolve(fingerprint + ".gor").toString(), fingerprint)));
+    }
+
+    @Test
+    public void testCachedResultIsNotProduced() {
+        final String fingerprint = "fingerprint2";
+        final AtomicInteger runs = new AtomicInteger();
+        final LocalFileCacheClient client = new LocalFileCacheClient(workDir.getRoot().toPath());
+        final String file = client.tempLocation(fingerprint, ".gor");
+        SingleFlightCache.lookupOrProduce(client, fingerprint, file, null, producer(client, fingerprint, file, runs, 0));
+        SingleFlightCache.lookupOrProduce(client, fingerprint, file, null, producer(client, fingerprint, file, runs, 0));
+        Assert.assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testWaiterProducesWhenProducerFails() throws Exception {
+        final String fingerprint = "fingerprint3";
+        final AtomicInteger runs = new AtomicInteger();
+        final LocalFileCacheClient client = new LocalFileCacheClient(workDir.getRoot().toPath());
+        final String file = client.tempLocation(fingerprint, ".gor");
+        final CountDownLatch started = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<String> failing = executor.submit(() -> SingleFlightCache.lookupOrProduce(client, fingerprint, file, null, () -> {
+                started.countDown();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw new IllegalStateException("Failed");
+            }));
+            started.await();
+            final Future<String> waiting = executor.submit(() -> SingleFlightCache.lookupOrProduce(client, fingerprint, file, null,
+                    producer(client, fingerprint, file, runs, 0)));
+            try {
+                failing.get();
+                Assert.fail("Producer should fail");
+            } catch (ExecutionException e) {
+                Assert.assertEquals("Failed", e.getCause().getMessage());
+            }
+            Assert.assertTrue(waiting.get().endsWith(fingerprint + ".gor"));
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, runs.get());
+    }
+}
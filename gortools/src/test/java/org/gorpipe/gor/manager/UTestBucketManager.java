@@ -22,6 +22,7 @@
 
 package org.gorpipe.gor.manager;
 
+import gorsat.TestUtils;
 import org.apache.commons.io.FileUtils;
 import org.gorpipe.exceptions.GorSystemException;
 import org.gorpipe.gor.table.BaseTable;
@@ -552,6 +553,38 @@ public class UTestBucketManager {
         Assert.assertEquals("Wrong number of buckets created", 0, bucketsCreated);
     }
 
+    @Test
+    public void testMergeBucketCreator() throws Exception {
+        String name = "testMergeBucketCreator";
+
+        Path dataDir = workDirPath.resolve("data");
+        Files.createDirectory(dataDir);
+        String[] sources = IntStream.range(1, 40).mapToObj(i -> String.format("PN%d", i)).toArray(size -> new String[size]);
+        Map<String, List<String>> dataFiles = GorDictionarySetup.createDataFilesMap(
+                name, dataDir, 40, new int[]{1, 2, 3}, 10, "PN", true, sources);
+
+        DictionaryTable table = DictionaryTable.createDictionaryWithData(name, workDirPath, dataFiles);
+        String query = "gor " + table.getPath() + " | select 1,2";
+        String[] expected = TestUtils.runGorPipe(query).split("\n");
+
+        BucketManager buc = BucketManager.newBuilder(table)
+                .minBucketSize(10).bucketSize(10).bucketCreator(new BucketCreatorMerge<>(2)).build();
+        int bucketsCreated = buc.bucketize(BucketManager.DEFAULT_BUCKET_PACK_LEVEL, -1);
+
+        Assert.assertEquals("Wrong number of buckets created", 4, bucketsCreated);
+        Assert.assertEquals("Not all lines bucketized", 0, table.needsBucketizing().size());
+        for (Path bucket : table.getBuckets()) {
+            Path bucketFile = resolve(table.getRootPath(), bucket);
+            Assert.assertTrue("Bucket file missing", Files.exists(bucketFile));
+            Assert.assertTrue("Bucket index missing", Files.exists(Paths.get(bucketFile + ".gori")));
+        }
+
+        String[] result = TestUtils.runGorPipe(query).split("\n");
+        Arrays.sort(expected);
+        Arrays.sort(result);
+        Assert.assertArrayEquals("Bucketized content differs from the files", expected, result);
+    }
+
     private BaseTable<DictionaryEntry> createTable(Path path) {
         return new DictionaryTable.Builder<>(path).useHistory(true)
                 .securityContext("").validateFiles(false).build();
@@ -0,0 +1,101 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.Analysis
+
+import org.gorpipe.gor.model.Row
+import org.gorpipe.gor.session.{MemoryBudget, MemoryReservation}
+import org.gorpipe.model.gor.RowObj
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+import scala.collection.mutable.ListBuffer
+
+@RunWith(classOf[JUnitRunner])
+class UTestSpillableAggregation extends FlatSpec {
+  private val chunk = 1024L * 1024L
+
+  class CountAggregation(groupBudget: SpillableAggregation.GroupBudget, level: Int)
+    extends SpillableAggregation[Array[Long]](groupBudget, level) {
+    override def keyOf(r: Row): String = r.colAsString(2).toString
+
+    override def createGroup(key: String, ordinal: Long): Array[Long] = Array(0L)
+
+    override def groupOverhead(key: String): Long = 100
+
+    override def update(group: Array[Long], r: Row): Long = {
+      group(0) += 1
+      0
+    }
+
+    override def orderKey(key: String, group: Array[Long]): String = key
+
+    override def result(key: String, group: Array[Long]): Row = RowObj("chr1\t1\t" + key + "\t" + group(0))
+
+    override def createPartitionAggregation(groupBudget: SpillableAggregation.GroupBudget, level: Int): SpillableAggregation[Array[Long]] =
+      new CountAggregation(groupBudget, level)
+  }
+
+  "add" should "keep spilling a key after memory has been freed" in {
+    System.setProperty(MemoryBudget.QUERY_BUDGET_KEY, (2 * chunk).toString)
+    val budget = MemoryBudget.forQuery("test")
+    MemoryBudget.setCurrent(budget)
+    try {
+      val aggregation = new CountAggregation(new SpillableAggregation.GroupBudget(Long.MaxValue), 0)
+      val other = new MemoryReservation(budget)
+      other.forceReserve(2 * chunk)
+      aggregation.add(RowObj("chr1\t1\ta"))
+      other.close()
+      aggregation.add(RowObj("chr1\t2\ta"))
+      aggregation.add(RowObj("chr1\t3\tb"))
+      aggregation.add(RowObj("chr1\t4\ta"))
+
+      val results = ListBuffer[String]()
+      aggregation.results(r => results += r.toString)
+      assert(results.toList == List("chr1\t1\ta\t3", "chr1\t1\tb\t1"))
+    } finally {
+      MemoryBudget.setCurrent(null)
+      budget.close()
+      System.clearProperty(MemoryBudget.QUERY_BUDGET_KEY)
+    }
+  }
+
+  it should "spill new groups when the aggregations sharing the budget use it up" in {
+    val groupBudget = new SpillableAggregation.GroupBudget(150)
+    val first = new CountAggregation(groupBudget, 0)
+    val second = new CountAggregation(groupBudget, 0)
+    first.add(RowObj("chr1\t1\ta"))
+    second.add(RowObj("chr1\t1\tb"))
+    assert(groupBudget.getUsed == 200)
+    // No room is left for a new group in either aggregation
+    second.add(RowObj("chr1\t2\tc"))
+    second.add(RowObj("chr1\t3\tb"))
+    assert(groupBudget.getUsed == 200)
+
+    val results = ListBuffer[String]()
+    first.results(r => results += r.toString)
+    second.results(r => results += r.toString)
+    assert(results.toList == List("chr1\t1\ta\t1", "chr1\t1\tb\t2", "chr1\t1\tc\t1"))
+    assert(groupBudget.getUsed == 0)
+  }
+}
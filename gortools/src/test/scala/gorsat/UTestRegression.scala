@@ -77,6 +77,14 @@ class UTestRegression extends FunSuite {
     }
   }
 
+  test("test linear regression - no missing values") {
+    val numberOfSamples = 100
+    for (numberOfPhenoTypes <- 1 to 2;
+         numberOfCovs <- 0 to 2) {
+      testWithUnknownsLinear(numberOfSamples, numberOfPhenoTypes, 0.0, numberOfCovs, 5)
+    }
+  }
+
   def testWithUnknownsLogistic(numberOfSamples: Int, numberOfPhenoTypes: Int, missingProbs: Double, numberOfCovs: Int =  0, numberOfVariants: Int = 1): Unit = {
     //Probabilities
     val probs = Array.tabulate(numberOfVariants)(_ => getRandomProbabilities(numberOfSamples))
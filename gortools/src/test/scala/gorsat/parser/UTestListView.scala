@@ -0,0 +1,91 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package gorsat.parser
+
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class UTestListView extends FlatSpec {
+  private def items(view: ListView): Seq[String] = (0 until view.size).map(view.item)
+
+  "split" should "give the same items as String.split" in {
+    val view = new ListView
+    val cases = Seq(("a,b,c", ","), ("a,,b,,", ","), ("", ","), (",,,", ","), ("a|b", "|"), ("a.b.c", "\\."),
+      ("a::b:::c", "::"), ("a1b22c", "[0-9]+"), ("abc", ""), ("abc", "x"))
+    cases.foreach { case (s, d) =>
+      assert(items(view.split(s, d, keepTrailingEmpty = false)) == s.split(d).toSeq, s"'$s' split by '$d'")
+      assert(items(view.split(s, d, keepTrailingEmpty = true)) == s.split(d, -1).toSeq, s"'$s' split by '$d', -1")
+    }
+  }
+
+  it should "reuse the view for a new string" in {
+    val view = new ListView
+    view.split((1 to 100).mkString(","), ',', keepTrailingEmpty = false)
+    assert(view.size == 100)
+    assert(items(view.split("x,y", ',', keepTrailingEmpty = false)) == Seq("x", "y"))
+  }
+
+  "contains" should "compare items without creating strings" in {
+    val view = new ListView().split("ab,c,,d", ',', keepTrailingEmpty = true)
+    assert(view.contains("c"))
+    assert(view.contains(""))
+    assert(!view.contains("a"))
+    assert(!view.contains("ab,c"))
+  }
+
+  "sortedOrder" should "sort the items stably" in {
+    val view = new ListView().split("10,9,b,a,9.0,1e1", ',', keepTrailingEmpty = false)
+    assert(view.sortedOrder(numeric = false, descending = false).take(view.size).map(view.item).toSeq ==
+      Seq("10", "1e1", "9", "9.0", "a", "b"))
+    val numbers = new ListView().split("10,9,1e1,9.0,-2", ',', keepTrailingEmpty = false)
+    assert(numbers.sortedOrder(numeric = true, descending = false).take(numbers.size).map(numbers.item).toSeq ==
+      Seq("-2", "9", "9.0", "10", "1e1"))
+    assert(numbers.sortedOrder(numeric = true, descending = true).take(numbers.size).map(numbers.item).toSeq ==
+      Seq("10", "1e1", "9", "9.0", "-2"))
+  }
+
+  "distinctOrder" should "keep the first occurrence of each item" in {
+    val view = new ListView().split("b,a,b,c,a", ',', keepTrailingEmpty = false)
+    val order = view.distinctOrder()
+    assert(order.take(view.distinctCount).map(view.item).toSeq == Seq("b", "a", "c"))
+  }
+
+  it should "match distinct on long lists" in {
+    val items = (0 until 1000).map(i => "x" + (i * 7919 % 137))
+    val view = new ListView().split(items.mkString(","), ',', keepTrailingEmpty = false)
+    val order = view.distinctOrder()
+    assert(order.take(view.distinctCount).map(view.item).toSeq == items.distinct)
+  }
+
+  "parseDouble" should "parse as Double.parseDouble" in {
+    Seq("0", "1", "-1", "+2.5", "0.1", "123456789.123456", "1.7976931348623157E308", "1e-5", " 3 ", "NaN",
+      "-0", "12345678901234567890", ".5", "5.").foreach { s =>
+      val text = "x" + s + "y"
+      assert(ListView.parseDouble(text, 1, text.length - 1).equals(java.lang.Double.parseDouble(s)), s)
+    }
+    assertThrows[NumberFormatException](ListView.parseDouble("a,b", 0, 1))
+    assertThrows[NumberFormatException](ListView.parseDouble("-", 0, 1))
+  }
+}
@@ -95,6 +95,22 @@ public class BlockPacker {
      * @return The number of bytes written into the destination buffer
      */
     public static int decode(final byte[] src, int off, byte[] dest, int destOffset, Map<Integer, Map<Integer, byte[]>> mapExternalTables) {
+        return decode(src, off, dest, destOffset, mapExternalTables, null);
+    }
+
+    /**
+     * Decode a block previously encoded by format defined by this class, writing only the projected columns.  The other
+     * columns are written empty, so the rows keep their column count.
+     *
+     * @param src               The source byte buffer containing the block
+     * @param off               The position in buffer where the block starts
+     * @param dest              The destination byte buffer for the decoded block
+     * @param destOffset        The position in the destination buffer to start writing
+     * @param mapExternalTables External lookup table content, used to get values from
+     * @param projection        The columns to decode, by zero based column index, or null to decode all columns
+     * @return The number of bytes written into the destination buffer
+     */
+    public static int decode(final byte[] src, int off, byte[] dest, int destOffset, Map<Integer, Map<Integer, byte[]>> mapExternalTables, boolean[] projection) {
         // Read the rowcnt
         final int rowcnt = ByteArray.readUnsignedShortBigEndian(src, off);
 
@@ -121,7 +137,25 @@ public class BlockPacker {
         // Write the decoded block into the destination buffer
         int dp = destOffset;
         final int colcnt = decoders.length;
-        if (colcnt != 0) {
+        if (colcnt != 0 && projection != null) {
+            // Columns that are not projected are only skipped in the source, their decoders are not called
+            final RowDecoder[] projected = new RowDecoder[colcnt];
+            for (int j = 0; j < colcnt; j++) {
+                projected[j] = j < projection.length && projection[j] ? decoders[j] : null;
+            }
+            for (int i = 0; i < rowcnt; i++) {
+                if (projected[0] != null) {
+                    dp += projected[0].decodeNext(dest, dp);
+                }
+                for (int j = 1; j < colcnt; j++) {
+                    dest[dp++] = '\t';
+                    if (projected[j] != null) {
+                        dp += projected[j].decodeNext(dest, dp);
+                    }
+                }
+                dest[dp++] = '\n';
+            }
+        } else if (colcnt != 0) {
             for (int i = 0; i < rowcnt; i++) {
                 dp += decoders[0].decodeNext(dest, dp);
                 for (int j = 1; j < colcnt; j++) {
@@ -39,6 +39,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
@@ -76,6 +77,8 @@ public class GorZipLexOutputStream extends OutputStream {
     private final boolean base64;
 
     private final LexRow chrColRow;
+    private GorzZoneMap.Writer zoneMapWriter = null;
+    private Path zoneMapGorzFile = null;
     private String lastChr = null;
     private int lastPos = 0;
 
@@ -121,7 +124,7 @@ public class GorZipLexOutputStream extends OutputStream {
      * @throws IOException
      */
     public GorZipLexOutputStream(String fileName, boolean append, boolean useColumnEncodingZip, boolean md5, boolean md5File, GorIndexType idx) throws IOException {
-        this(new FileOutputStream(fileName, append), useColumnEncodingZip, md5, md5File ? Paths.get(fileName + ".md5") : null, idx != GorIndexType.NONE ? new File(fileName + DataType.GORI.suffix) : null, idx, Deflater.BEST_SPEED);
+        this(openGorzFile(fileName, append), useColumnEncodingZip, md5, md5File ? Paths.get(fileName + ".md5") : null, idx != GorIndexType.NONE ? new File(fileName + DataType.GORI.suffix) : null, idx, Deflater.BEST_SPEED);
     }
 
     /**
@@ -131,7 +134,16 @@ public class GorZipLexOutputStream extends OutputStream {
      * @throws IOException
      */
     public GorZipLexOutputStream(String fileName, boolean append, boolean useColumnEncodingZip, boolean md5, boolean md5File, GorIndexType idx, int compressionLevel) throws IOException {
-        this(new FileOutputStream(fileName, append), useColumnEncodingZip, md5, md5File ? Paths.get(fileName + ".md5") : null, idx != GorIndexType.NONE ? new File(fileName + DataType.GORI.suffix) : null, idx, compressionLevel);
+        this(openGorzFile(fileName, append), useColumnEncodingZip, md5, md5File ? Paths.get(fileName + ".md5") : null, idx != GorIndexType.NONE ? new File(fileName + DataType.GORI.suffix) : null, idx, compressionLevel);
+    }
+
+    /**
+     * Open the gorz file for writing, deleting the zone map of its earlier content.  A new zone map is written if one is
+     * set with {@link #setZoneMap(String, int[])}.
+     */
+    private static OutputStream openGorzFile(String fileName, boolean append) throws IOException {
+        Files.deleteIfExists(Paths.get(fileName + GorzZoneMap.SUFFIX));
+        return new FileOutputStream(fileName, append);
     }
 
     /**
@@ -211,6 +223,25 @@ public class GorZipLexOutputStream extends OutputStream {
         this.headerToWrite = header;
     }
 
+    /**
+     * Record zone maps of the blocks to a side file, the range of the numeric columns and bloom filters of the given
+     * columns in each block.  Must be called after the header is set and before any line is written.
+     *
+     * @param gorzFile     the gorz file written, the zone maps are written next to it.
+     * @param bloomColumns the columns to keep bloom filters for.
+     * @throws IOException
+     */
+    public void setZoneMap(String gorzFile, int[] bloomColumns) throws IOException {
+        if (this.headerToWrite == null) {
+            throw new IOException("Error: Header must be set before the zone map");
+        }
+        if (this.isHeaderWritten || this.byteOutput.size() > 0 || this.cachedOutputIdx > 0) {
+            throw new IOException("Error: Zone map must be set before lines are written");
+        }
+        this.zoneMapGorzFile = Paths.get(gorzFile);
+        this.zoneMapWriter = new GorzZoneMap.Writer(Paths.get(gorzFile + GorzZoneMap.SUFFIX), this.headerToWrite, bloomColumns);
+    }
+
 
     @Override
     public void write(int b) throws IOException {
@@ -293,6 +324,14 @@ public class GorZipLexOutputStream extends OutputStream {
             this.idx.close();
         }
         this.target.close();
+
+        if (this.zoneMapWriter != null) {
+            try {
+                this.zoneMapWriter.finish(this.zoneMapGorzFile);
+            } finally {
+                this.zoneMapWriter.close();
+            }
+        }
     }
 
     private void writeBuffer() throws IOException {
@@ -308,15 +347,19 @@ public class GorZipLexOutputStream extends OutputStream {
         while (buffer[endOfLastLineIdx++] != '\t'); //Run over chromosome key.
         //Now we are at the first byte of the position key.
         while (buffer[endOfLastLineIdx] != '\t' && buffer[endOfLastLineIdx] != '\n') ++endOfLastLineIdx; //Run over position.
+        final byte[] keyInBytes = Arrays.copyOfRange(buffer, this.beginOfLastLine, endOfLastLineIdx);
+        if (this.zoneMapWriter != null) {
+            this.zoneMapWriter.addBlock(keyInBytes, buffer, bufferLen);
+        }
         if (this.useColumnEncodingZip) {
             final byte[] dest = new byte[1024 + bufferLen];
             final int extMapSize = 32 * 1024 - (this.headerToWrite.length() + 1 + 1); // Total - header - zero - newline
             final int len = BlockPacker.encode(buffer, bufferLen, dest, this.extLookupMap, !this.isHeaderWritten, extMapSize);
             final byte[] it = new byte[len];
             System.arraycopy(dest, 0, it, 0, len);
-            writeBlock(Arrays.copyOfRange(buffer, this.beginOfLastLine, endOfLastLineIdx), it, it.length);
+            writeBlock(keyInBytes, it, it.length);
         } else {
-            writeBlock(Arrays.copyOfRange(buffer, this.beginOfLastLine, endOfLastLineIdx), buffer, bufferLen);
+            writeBlock(keyInBytes, buffer, bufferLen);
         }
         this.byteOutput.reset();
     }
@@ -412,8 +455,8 @@ public class GorZipLexOutputStream extends OutputStream {
             this.target.write(bufferInfo.block, 0, bufferInfo.blockLen);
             this.target.write('\n');
 
+            this.start += 3 + keyInBytes.length + bufferInfo.blockLen;
             if (this.idx != null) {
-                this.start += 3 + keyInBytes.length + bufferInfo.blockLen;
                 String key = new String(keyInBytes);
                 String[] components = key.split("\t");
                 this.idx.putFilePosition(components[0], Integer.parseInt(components[1]), this.start);
@@ -28,7 +28,9 @@ import org.gorpipe.exceptions.GorException;
 import org.gorpipe.exceptions.GorResourceException;
 import org.gorpipe.exceptions.GorSystemException;
 import org.gorpipe.gor.driver.adapters.StreamSourceSeekableFile;
+import org.gorpipe.gor.driver.providers.stream.sources.StreamSource;
 import org.gorpipe.gor.driver.providers.stream.datatypes.gor.GorHeader;
+import org.gorpipe.gor.jfr.BlockInflateEvent;
 import org.gorpipe.gor.model.GenomicIterator;
 import org.gorpipe.gor.model.Line;
 import org.gorpipe.gor.model.Row;
@@ -41,9 +43,12 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.zip.DataFormatException;
 import java.util.zip.InflaterOutputStream;
 
@@ -59,12 +64,17 @@ public class GorzSeekableIterator extends GenomicIterator {
     private final ByteArrayWrapper rawDataHolder = new ByteArrayWrapper();
     private boolean firstBlock = true;
     private boolean isClosed = false;
+    private final StreamSourceSeekableFile file;
+    private Callable<StreamSource> zoneMapSource = null;
+    private GorzZoneMap.BlockFilter blockFilter = null;  // Skips blocks without rows matching the where filter
+    private int blocksSkipped = 0;
 
     public GorzSeekableIterator(StreamSourceSeekableFile file) {
         this(file, null);
     }
 
     public GorzSeekableIterator(StreamSourceSeekableFile file, StreamSourceSeekableFile index) {
+        this.file = file;
         try {
             this.filePath = file.getCanonicalPath();
             this.seekableIterator = new SeekableIterator(file, index,true);
@@ -86,6 +96,13 @@ public class GorzSeekableIterator extends GenomicIterator {
         this.buffer = new byte[32 * 1024];
     }
 
+    /**
+     * @param zoneMapSource resolves the zone map side file of the gorz file, when a filter is pushed down.
+     */
+    public void setZoneMapSource(Callable<StreamSource> zoneMapSource) {
+        this.zoneMapSource = zoneMapSource;
+    }
+
     @Override
     public String getHeader() {
         return String.join("\t", this.header.getColumns());
@@ -135,7 +152,14 @@ public class GorzSeekableIterator extends GenomicIterator {
         if (isClosed) {
             throw new GorSystemException("Iterator is closed", null);
         }
-        return this.bufferIterator.hasNext() || this.seekableIterator.hasNext();
+        if (this.blockFilter == null) {
+            return this.bufferIterator.hasNext() || this.seekableIterator.hasNext();
+        }
+        // The remaining blocks may all be skipped, so a block must be loaded to know if there are more rows
+        if (!this.bufferIterator.hasNext() && this.seekableIterator.hasNext()) {
+            loadBufferIteratorWrapped();
+        }
+        return this.bufferIterator.hasNext();
     }
 
     @Override
@@ -144,17 +168,21 @@ public class GorzSeekableIterator extends GenomicIterator {
             throw new GorSystemException("Iterator is closed", null);
         }
         if (!this.bufferIterator.hasNext()) {
-            try {
-                loadBufferIterator();
-            } catch (IOException e) {
-                throw wrapIOException(e);
-            } catch (DataFormatException e) {
-                throw new GorResourceException("Corrupt gorz file: " + e.getMessage(), this.filePath, e);
-            }
+            loadBufferIteratorWrapped();
         }
         return RowObj.apply(this.bufferIterator.getNextAsString());
     }
 
+    private void loadBufferIteratorWrapped() {
+        try {
+            loadBufferIterator();
+        } catch (IOException e) {
+            throw wrapIOException(e);
+        } catch (DataFormatException e) {
+            throw new GorResourceException("Corrupt gorz file: " + e.getMessage(), this.filePath, e);
+        }
+    }
+
     @Override
     public boolean next(Line line) {
         throw new UnsupportedOperationException();
@@ -163,6 +191,9 @@ public class GorzSeekableIterator extends GenomicIterator {
     @Override
     public void close() {
         isClosed = true;
+        if (this.blocksSkipped > 0) {
+            log.debug("Skipped {} blocks of {} by zone map", this.blocksSkipped, this.filePath);
+        }
         try {
             this.seekableIterator.close();
         } catch (IOException e) {
@@ -171,14 +202,22 @@ public class GorzSeekableIterator extends GenomicIterator {
     }
 
     private void loadBufferIterator() throws IOException, DataFormatException {
-        this.rawDataHolder.reset();
-        this.seekableIterator.writeNextToStream(this.rawDataHolder);
-        final byte[] in = this.rawDataHolder.getBuffer();
-        final int len = this.rawDataHolder.size();
-        final int blockIdx = getBeginningOfBlock(in);
-
-        final int unzippedLen = unzipBlock(in, len, blockIdx);
-        this.bufferIterator.update(this.buffer, 0, unzippedLen, true, true);
+        do {
+            this.rawDataHolder.reset();
+            this.seekableIterator.writeNextToStream(this.rawDataHolder);
+            final byte[] in = this.rawDataHolder.getBuffer();
+            final int len = this.rawDataHolder.size();
+            final int blockIdx = getBeginningOfBlock(in);
+
+            // The key of the block, chromosome and position of its last row, is in front of the tab before the block
+            if (this.blockFilter == null || this.blockFilter.mayMatch(new String(in, 0, blockIdx - 2, StandardCharsets.UTF_8))) {
+                final int unzippedLen = unzipBlock(in, len, blockIdx);
+                this.bufferIterator.update(this.buffer, 0, unzippedLen, true, true);
+                return;
+            }
+            this.blocksSkipped++;
+        } while (this.seekableIterator.hasNext());
+        this.bufferIterator.clear();
     }
 
 
@@ -203,6 +242,8 @@ public class GorzSeekableIterator extends GenomicIterator {
     }
 
     private int unzipBlock(byte[] in, int len, int blockIdx) throws DataFormatException, IOException {
+        final BlockInflateEvent event = new BlockInflateEvent();
+        event.begin();
         this.unzipper.setInput(in, blockIdx, len - blockIdx);
         int totalRead = 0;
         do {
@@ -216,6 +257,10 @@ public class GorzSeekableIterator extends GenomicIterator {
                 break;
             }
         } while (true);
+        event.end();
+        if (event.shouldCommit()) {
+            event.commit(this.filePath, len - blockIdx, totalRead);
+        }
         return totalRead;
     }
 
@@ -224,6 +269,7 @@ public class GorzSeekableIterator extends GenomicIterator {
         private byte[] lookupBytesCompressed7Bit;
         private final Map<Integer, Map<Integer, byte[]>> mapExtTable;
         private boolean lookupTableParsed = false;
+        private boolean[] projection = null;  // Columns to decode, null for all
 
         ColumnCompressedUnzipper(byte[] lookupBytesCompressed7Bit) {
             super();
@@ -281,13 +327,72 @@ public class GorzSeekableIterator extends GenomicIterator {
                 return 0;
             } else {
                 super.decompress(this.buffer, 0, this.buffer.length);
-                return BlockPacker.decode(this.buffer, 0, out, offset, this.mapExtTable);
+                return BlockPacker.decode(this.buffer, 0, out, offset, this.mapExtTable, this.projection);
             }
         }
     }
 
+    /**
+     * Blocks are skipped without unzipping them when the zone map of the gorz file shows that none of their rows can
+     * match the filter.  The filter is not applied to the rows of the other blocks, so false is returned and the where
+     * step is still run.
+     */
+    @Override
+    public boolean pushdownFilter(String gorwhere) {
+        if (this.blockFilter == null) {
+            final GorzZoneMap zoneMap = loadZoneMap();
+            if (zoneMap != null) {
+                this.blockFilter = zoneMap.filter(gorwhere);
+            }
+        }
+        return false;
+    }
+
+    private GorzZoneMap loadZoneMap() {
+        if (this.zoneMapSource == null) {
+            return null;
+        }
+        try {
+            final StreamSource source = this.zoneMapSource.call();
+            if (source == null || !source.exists()) {
+                return null;
+            }
+            try (InputStream in = source.open()) {
+                final GorzZoneMap zoneMap = GorzZoneMap.read(in);
+                if (zoneMap != null && zoneMap.isFor(this.file)) {
+                    return zoneMap;
+                }
+                log.debug("Zone map of {} is not for the current file", this.filePath);
+            }
+        } catch (Exception e) {
+            log.warn("Could not read zone map of " + this.filePath, e);
+        }
+        return null;
+    }
+
     @Override
     protected void selectHeader(int[] cols) {
         this.header = this.header.select(cols);
     }
+
+    /**
+     * Only the columns read are decoded from column compressed blocks, the others are returned empty.  Chromosome and
+     * position are always decoded, blocks are seeked by them.
+     */
+    @Override
+    public boolean pushdownProjection(int[] columns) {
+        if (!(this.unzipper instanceof ColumnCompressedUnzipper)) {
+            return false;
+        }
+        final boolean[] projection = new boolean[this.header.getColumns().length];
+        projection[0] = true;
+        projection[1] = true;
+        for (int column : columns) {
+            if (column >= 0 && column < projection.length) {
+                projection[column] = true;
+            }
+        }
+        ((ColumnCompressedUnzipper) this.unzipper).projection = projection;
+        return true;
+    }
 }
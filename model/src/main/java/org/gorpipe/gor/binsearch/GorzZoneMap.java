@@ -0,0 +1,640 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.binsearch;
+
+import org.gorpipe.exceptions.GorDataException;
+import org.gorpipe.gor.model.SeekableFile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Per block zone maps of a gorz file, kept in a side file next to the gorz file.
+ * <p>
+ * For each block the zone map holds the minimum and maximum value of every column whose values are all numbers in the
+ * block, and a small bloom filter of the values of selected columns.  Blocks are identified by their key, the
+ * chromosome and position of their last row, blocks with the same key share one merged zone.
+ * <p>
+ * The zone map ends with the length of the gorz file it was written for and a fingerprint of its first and last bytes,
+ * so a zone map left from an earlier version of the file is not used.  Writing a gorz file also deletes any zone map
+ * left next to it.
+ */
+public class GorzZoneMap {
+
+    public static final String SUFFIX = ".zone";
+    private static final int MAGIC = 0x475a4d50;  // GZMP
+    private static final int VERSION = 2;
+    private static final int FINGERPRINT_BYTES = 4096;
+    static final int BLOOM_BITS = 2048;
+    private static final int BLOOM_WORDS = BLOOM_BITS / 64;
+    private static final int BLOOM_HASHES = 3;
+
+    private static final Pattern COMPARISON = Pattern.compile("^\\s*([A-Za-z_][\\w]*)\\s*(<=|>=|==|=|<|>)\\s*(.+?)\\s*$");
+    private static final Pattern IN_LIST = Pattern.compile("^\\s*([A-Za-z_][\\w]*)\\s+(?i:in)\\s*\\((.*)\\)\\s*$");
+
+    private final String[] columns;
+    private final int[] bloomSlots;  // The bloom filter of each column, or -1.
+    private final Map<String, Zone> zones;
+    private final long gorzLength;
+    private final long gorzFingerprint;
+
+    private GorzZoneMap(String[] columns, int[] bloomSlots, Map<String, Zone> zones, long gorzLength, long gorzFingerprint) {
+        this.columns = columns;
+        this.bloomSlots = bloomSlots;
+        this.zones = zones;
+        this.gorzLength = gorzLength;
+        this.gorzFingerprint = gorzFingerprint;
+    }
+
+    /**
+     * @return the length of the gorz file the zone map was written for.
+     */
+    public long getGorzLength() {
+        return gorzLength;
+    }
+
+    /**
+     * @return the fingerprint of the gorz file the zone map was written for.
+     */
+    public long getGorzFingerprint() {
+        return gorzFingerprint;
+    }
+
+    /**
+     * Check if the zone map was written for the given gorz file, by its length and fingerprint.  The file position is
+     * left unchanged.
+     */
+    public boolean isFor(SeekableFile gorzFile) throws IOException {
+        final long length = gorzFile.length();
+        if (length != gorzLength) {
+            return false;
+        }
+        final long position = gorzFile.getFilePointer();
+        try {
+            final int n = (int) Math.min(FINGERPRINT_BYTES, length);
+            final byte[] head = new byte[n];
+            final byte[] tail = new byte[n];
+            gorzFile.seek(0);
+            readFully(gorzFile, head);
+            gorzFile.seek(length - n);
+            readFully(gorzFile, tail);
+            return fingerprint(length, head, tail) == gorzFingerprint;
+        } finally {
+            gorzFile.seek(position);
+        }
+    }
+
+    private static void readFully(SeekableFile file, byte[] b) throws IOException {
+        int off = 0;
+        while (off < b.length) {
+            final int read = file.read(b, off, b.length - off);
+            if (read <= 0) {
+                throw new EOFException();
+            }
+            off += read;
+        }
+    }
+
+    /**
+     * Fingerprint of a file of the given length from its first and last bytes, they hold the header and the key and
+     * end of the last block of a gorz file.
+     */
+    static long fingerprint(long length, byte[] head, byte[] tail) {
+        final CRC32 crc = new CRC32();
+        crc.update(head);
+        crc.update(tail);
+        return crc.getValue() ^ (length << 32);
+    }
+
+    public int getBlockCount() {
+        return zones.size();
+    }
+
+    static class Zone {
+        final double[] min;  // NaN if not all values of the column in the block are numbers.
+        final double[] max;
+        final long[][] blooms;
+
+        Zone(int columnCount, int bloomCount) {
+            this.min = new double[columnCount];
+            this.max = new double[columnCount];
+            this.blooms = new long[bloomCount][BLOOM_WORDS];
+        }
+
+        void merge(Zone other) {
+            for (int i = 0; i < min.length; i++) {
+                min[i] = Math.min(min[i], other.min[i]);
+                max[i] = Math.max(max[i], other.max[i]);
+            }
+            for (int i = 0; i < blooms.length; i++) {
+                for (int w = 0; w < BLOOM_WORDS; w++) {
+                    blooms[i][w] |= other.blooms[i][w];
+                }
+            }
+        }
+    }
+
+    /**
+     * Filter of the blocks that may have rows matching a where expression.
+     */
+    public static class BlockFilter {
+        private final Map<String, Zone> zones;
+        private final List<Condition> conditions;
+
+        private BlockFilter(Map<String, Zone> zones, List<Condition> conditions) {
+            this.zones = zones;
+            this.conditions = conditions;
+        }
+
+        /**
+         * @param key the key of the block, its chromosome and position separated by tab.
+         * @return false if no row of the block can match the filter.
+         */
+        public boolean mayMatch(String key) {
+            final Zone zone = zones.get(key);
+            if (zone == null) {
+                return true;
+            }
+            for (Condition condition : conditions) {
+                if (!condition.mayMatch(zone)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private interface Condition {
+        boolean mayMatch(Zone zone);
+    }
+
+    /**
+     * Filter for the blocks that may match the where expression.  Only conditions comparing a column to a constant
+     * number, or a column with bloom filter to constant strings, are used, joined by {@code and}.  Other conditions of
+     * the expression are ignored, so the rows of the blocks must still be filtered by the expression.
+     *
+     * @param where the where expression.
+     * @return the filter, or null if no condition in the expression can be used to skip blocks.
+     */
+    public BlockFilter filter(String where) {
+        final List<String> conjuncts = splitConjuncts(where);
+        if (conjuncts == null) {
+            return null;
+        }
+        final List<Condition> conditions = new ArrayList<>();
+        for (String conjunct : conjuncts) {
+            final Condition condition = parseCondition(conjunct);
+            if (condition != null) {
+                conditions.add(condition);
+            }
+        }
+        return conditions.isEmpty() ? null : new BlockFilter(zones, conditions);
+    }
+
+    private Condition parseCondition(String conjunct) {
+        Matcher m = COMPARISON.matcher(conjunct);
+        if (m.matches()) {
+            final int col = columnIndex(m.group(1));
+            final String op = m.group(2);
+            final String constant = m.group(3);
+            if (col < 0) {
+                return null;
+            }
+            final String text = unquote(constant);
+            if (text != null) {
+                return op.startsWith("=") ? bloomCondition(col, new String[]{text}) : null;
+            }
+            final double value = parseNumber(constant);
+            if (Double.isNaN(value)) {
+                return null;
+            }
+            switch (op) {
+                case "<":
+                    return zone -> !(zone.min[col] >= value);
+                case "<=":
+                    return zone -> !(zone.min[col] > value);
+                case ">":
+                    return zone -> !(zone.max[col] <= value);
+                case ">=":
+                    return zone -> !(zone.max[col] < value);
+                default:
+                    return zone -> !(zone.min[col] > value || zone.max[col] < value);
+            }
+        }
+        m = IN_LIST.matcher(conjunct);
+        if (m.matches()) {
+            final int col = columnIndex(m.group(1));
+            final List<String> constants = splitList(m.group(2));
+            if (col < 0 || constants == null || constants.isEmpty()) {
+                return null;
+            }
+            final String[] texts = new String[constants.size()];
+            final double[] values = new double[constants.size()];
+            boolean allTexts = true;
+            boolean allNumbers = true;
+            for (int i = 0; i < texts.length; i++) {
+                texts[i] = unquote(constants.get(i));
+                values[i] = parseNumber(constants.get(i));
+                allTexts &= texts[i] != null;
+                allNumbers &= !Double.isNaN(values[i]);
+            }
+            if (allTexts) {
+                return bloomCondition(col, texts);
+            } else if (allNumbers) {
+                return zone -> {
+                    for (double value : values) {
+                        if (!(zone.min[col] > value || zone.max[col] < value)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                };
+            }
+        }
+        return null;
+    }
+
+    private Condition bloomCondition(int col, String[] texts) {
+        final int slot = bloomSlots[col];
+        if (slot < 0) {
+            return null;
+        }
+        final long[] hashes = new long[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            final byte[] bytes = texts[i].getBytes(StandardCharsets.UTF_8);
+            hashes[i] = hash(bytes, 0, bytes.length);
+        }
+        return zone -> {
+            for (long h : hashes) {
+                if (bloomContains(zone.blooms[slot], h)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private int columnIndex(String name) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Split the expression on {@code and} outside of quotes and parentheses.
+     *
+     * @return the conjuncts, or null if the expression has {@code or} or {@code not} outside of parentheses.
+     */
+    static List<String> splitConjuncts(String where) {
+        final List<String> conjuncts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        int i = 0;
+        while (i < where.length()) {
+            final char c = where.charAt(i);
+            if (c == '\'' || c == '"') {
+                final int end = where.indexOf(c, i + 1);
+                if (end < 0) {
+                    return null;
+                }
+                i = end + 1;
+            } else if (c == '(') {
+                depth++;
+                i++;
+            } else if (c == ')') {
+                depth--;
+                i++;
+            } else if (Character.isLetter(c) && (i == 0 || !isWordChar(where.charAt(i - 1)))) {
+                int end = i;
+                while (end < where.length() && isWordChar(where.charAt(end))) end++;
+                final String word = where.substring(i, end);
+                if (depth == 0 && word.equalsIgnoreCase("and")) {
+                    conjuncts.add(where.substring(start, i));
+                    start = end;
+                } else if (depth == 0 && (word.equalsIgnoreCase("or") || word.equalsIgnoreCase("xor") || word.equalsIgnoreCase("not"))) {
+                    return null;
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        conjuncts.add(where.substring(start));
+        return conjuncts;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static List<String> splitList(String list) {
+        final List<String> items = new ArrayList<>();
+        int start = 0;
+        int i = 0;
+        while (i < list.length()) {
+            final char c = list.charAt(i);
+            if (c == '\'' || c == '"') {
+                final int end = list.indexOf(c, i + 1);
+                if (end < 0) {
+                    return null;
+                }
+                i = end + 1;
+            } else {
+                if (c == ',') {
+                    items.add(list.substring(start, i).trim());
+                    start = i + 1;
+                }
+                i++;
+            }
+        }
+        items.add(list.substring(start).trim());
+        return items;
+    }
+
+    private static String unquote(String constant) {
+        final int len = constant.length();
+        if (len >= 2 && (constant.charAt(0) == '\'' || constant.charAt(0) == '"') && constant.indexOf(constant.charAt(0), 1) == len - 1) {
+            return constant.substring(1, len - 1);
+        }
+        return null;
+    }
+
+    private static double parseNumber(String constant) {
+        final byte[] bytes = constant.getBytes(StandardCharsets.ISO_8859_1);
+        return parseNumber(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return the number in the field, or NaN if it is not a number.
+     */
+    static double parseNumber(byte[] buffer, int start, int end) {
+        if (start == end) {
+            return Double.NaN;
+        }
+        long value = 0;
+        boolean integer = end - start < 18;
+        final boolean negative = buffer[start] == '-';
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            final byte c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                value = 10 * value + (c - '0');
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '-' || c == '+') {
+                integer = false;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (integer) {
+            return negative ? (end - start == 1 ? Double.NaN : -value) : value;
+        }
+        try {
+            return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    static long hash(byte[] buffer, int start, int end) {
+        long h = 0xcbf29ce484222325L;  // FNV-1a
+        for (int i = start; i < end; i++) {
+            h ^= buffer[i] & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static void bloomAdd(long[] bloom, long hash) {
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            final int bit = Math.floorMod(h1 + i * h2, BLOOM_BITS);
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static boolean bloomContains(long[] bloom, long hash) {
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            final int bit = Math.floorMod(h1 + i * h2, BLOOM_BITS);
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read a zone map.
+     *
+     * @return the zone map, or null if it was written by an unknown version.
+     */
+    public static GorzZoneMap read(InputStream input) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return null;
+        }
+        final String[] columns = new String[in.readInt()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = in.readUTF();
+        }
+        final int[] bloomSlots = new int[columns.length];
+        Arrays.fill(bloomSlots, -1);
+        final int bloomCount = in.readInt();
+        for (int slot = 0; slot < bloomCount; slot++) {
+            bloomSlots[in.readInt()] = slot;
+        }
+        final Map<String, Zone> zones = new HashMap<>();
+        while (in.readBoolean()) {
+            final String key = in.readUTF();
+            final Zone zone = new Zone(columns.length, bloomCount);
+            for (int col = 0; col < columns.length; col++) {
+                if (in.readBoolean()) {
+                    zone.min[col] = in.readDouble();
+                    zone.max[col] = in.readDouble();
+                } else {
+                    zone.min[col] = Double.NaN;
+                    zone.max[col] = Double.NaN;
+                }
+            }
+            for (int slot = 0; slot < bloomCount; slot++) {
+                for (int w = 0; w < BLOOM_WORDS; w++) {
+                    zone.blooms[slot][w] = in.readLong();
+                }
+            }
+            final Zone previous = zones.putIfAbsent(key, zone);
+            if (previous != null) {
+                previous.merge(zone);
+            }
+        }
+        final long gorzLength = in.readLong();
+        return new GorzZoneMap(columns, bloomSlots, zones, gorzLength, in.readLong());
+    }
+
+    /**
+     * Writes the zone maps of the blocks of a gorz file as they are written.
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final int columnCount;
+        private final int[] bloomSlots;
+        private final Zone zone;
+        private final boolean[] numeric;
+
+        /**
+         * @param zoneMapFile  the file to write the zone map to.
+         * @param header       the header of the gorz file.
+         * @param bloomColumns the columns to keep bloom filters for.
+         */
+        public Writer(Path zoneMapFile, String header, int[] bloomColumns) throws IOException {
+            final String[] columns = header.split("\t", -1);
+            this.columnCount = columns.length;
+            this.bloomSlots = new int[columnCount];
+            Arrays.fill(this.bloomSlots, -1);
+            for (int slot = 0; slot < bloomColumns.length; slot++) {
+                if (bloomColumns[slot] < 0 || bloomColumns[slot] >= columnCount) {
+                    throw new GorDataException("Bloom filter column " + bloomColumns[slot] + " is not in the header " + header);
+                }
+                this.bloomSlots[bloomColumns[slot]] = slot;
+            }
+            this.zone = new Zone(columnCount, bloomColumns.length);
+            this.numeric = new boolean[columnCount];
+
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(zoneMapFile)));
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+            this.out.writeInt(columnCount);
+            for (String column : columns) {
+                this.out.writeUTF(column);
+            }
+            this.out.writeInt(bloomColumns.length);
+            for (int column : bloomColumns) {
+                this.out.writeInt(column);
+            }
+        }
+
+        /**
+         * Add the zone of a block.
+         *
+         * @param key    chromosome and position of the last row in the block, separated by tab.
+         * @param buffer the rows of the block, each ending with a newline.
+         * @param len    the length of the rows in the buffer.
+         */
+        public void addBlock(byte[] key, byte[] buffer, int len) throws IOException {
+            Arrays.fill(zone.min, Double.POSITIVE_INFINITY);
+            Arrays.fill(zone.max, Double.NEGATIVE_INFINITY);
+            Arrays.fill(numeric, true);
+            for (long[] bloom : zone.blooms) {
+                Arrays.fill(bloom, 0L);
+            }
+
+            int i = 0;
+            while (i < len) {
+                int col = 0;
+                int fieldStart = i;
+                while (true) {
+                    final byte c = i < len ? buffer[i] : (byte) '\n';
+                    if (c == '\t' || c == '\n') {
+                        if (col < columnCount) {
+                            addField(col, buffer, fieldStart, i);
+                        }
+                        col++;
+                        fieldStart = i + 1;
+                        if (c == '\n') break;
+                    }
+                    i++;
+                }
+                for (; col < columnCount; col++) {
+                    numeric[col] = false;
+                }
+                i++;
+            }
+
+            out.writeBoolean(true);
+            out.writeUTF(new String(key, StandardCharsets.UTF_8));
+            for (int col = 0; col < columnCount; col++) {
+                out.writeBoolean(numeric[col]);
+                if (numeric[col]) {
+                    out.writeDouble(zone.min[col]);
+                    out.writeDouble(zone.max[col]);
+                }
+            }
+            for (long[] bloom : zone.blooms) {
+                for (long word : bloom) {
+                    out.writeLong(word);
+                }
+            }
+        }
+
+        private void addField(int col, byte[] buffer, int start, int end) {
+            if (numeric[col]) {
+                final double value = parseNumber(buffer, start, end);
+                if (Double.isNaN(value)) {
+                    numeric[col] = false;
+                } else {
+                    if (value < zone.min[col]) zone.min[col] = value;
+                    if (value > zone.max[col]) zone.max[col] = value;
+                }
+            }
+            if (bloomSlots[col] >= 0) {
+                bloomAdd(zone.blooms[bloomSlots[col]], hash(buffer, start, end));
+            }
+        }
+
+        /**
+         * Finish the zone map with the length and fingerprint of the gorz file, after it has been closed.
+         */
+        public void finish(Path gorzFile) throws IOException {
+            try (RandomAccessFile file = new RandomAccessFile(gorzFile.toFile(), "r")) {
+                final long length = file.length();
+                final int n = (int) Math.min(FINGERPRINT_BYTES, length);
+                final byte[] head = new byte[n];
+                final byte[] tail = new byte[n];
+                file.readFully(head);
+                file.seek(length - n);
+                file.readFully(tail);
+                out.writeBoolean(false);
+                out.writeLong(length);
+                out.writeLong(fingerprint(length, head, tail));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
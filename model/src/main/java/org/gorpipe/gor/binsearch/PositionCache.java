@@ -24,6 +24,9 @@ package org.gorpipe.gor.binsearch;
 
 import org.gorpipe.gor.driver.adapters.StreamSourceSeekableFile;
 import org.gorpipe.gor.driver.providers.stream.sources.StreamSource;
+import org.gorpipe.gor.jfr.PositionCacheEvent;
+import org.gorpipe.gor.session.MemoryBudget;
+import org.gorpipe.gor.session.MemoryReservation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,11 +48,17 @@ public class PositionCache {
     static int MAX_NUMBER_OF_FILES_IN_CACHE = DEFAULT_MAX_NUMBER_OF_FILES_IN_CACHE;
     static int MAX_NUMBER_OF_POS_PER_GB = DEFAULT_MAX_NUMBER_OF_POS_PER_GB;
     static final int GB = 1024 * 1024 * 1024;
+    // Estimated bytes of an entry, with its key
+    static final int ENTRY_BYTES = 96;
 
     private static final Map<String, PositionCache> GLOBAL_CACHE =
             new LinkedHashMap<String, PositionCache>(16, 0.75f, true) {
                 protected boolean removeEldestEntry(Map.Entry<String, PositionCache> e) {
-                    return size() > getMaxNumberOfFilesInCache();
+                    if (size() > getMaxNumberOfFilesInCache()) {
+                        e.getValue().unshare();
+                        return true;
+                    }
+                    return false;
                 }
             };
 
@@ -59,18 +68,29 @@ public class PositionCache {
         if (candidate == null || !candidate.uniqueId.equals(uniqueId)) {
             final int maxNumberOfPos = getMaxNumberOfPos(fileOffset, fileSize);
             toReturn = new PositionCache(uniqueId, fileOffset, fileSize, maxNumberOfPos);
+            if (candidate != null) {
+                candidate.unshare();
+            }
             if (uniqueId == null || uniqueId.equals("")) {
                 GLOBAL_CACHE.remove(filePath);
             } else {
+                toReturn.share();
                 GLOBAL_CACHE.put(filePath, toReturn);
             }
         } else {
             toReturn = candidate;
         }
+        final PositionCacheEvent event = new PositionCacheEvent();
+        if (event.shouldCommit()) {
+            event.commit(filePath, toReturn == candidate, toReturn.getSize());
+        }
         return toReturn;
     }
 
-    public static void clearGlobalCache() {
+    public static synchronized void clearGlobalCache() {
+        for (PositionCache pc : GLOBAL_CACHE.values()) {
+            pc.unshare();
+        }
         GLOBAL_CACHE.clear();
     }
 
@@ -106,6 +126,8 @@ public class PositionCache {
     private final int maxNumberOfPos;
     private final String uniqueId;
     private boolean isIndexLoaded;
+    // Entries of caches shared in the global cache are reserved from the global memory budget, null if not shared
+    private MemoryReservation memory;
 
     PositionCache(long fileOffset, long fileSize, int maxNumberOfPos) {
         this(null, fileOffset, fileSize, maxNumberOfPos);
@@ -161,6 +183,10 @@ public class PositionCache {
         PositionCacheEntry entry = new PositionCacheEntry(keyToPut, posToPut);
         int index = Arrays.binarySearch(entries, 0, numEntries, entry);
         if (index < 0) {
+            if (memory != null && !memory.tryReserve(ENTRY_BYTES)) {
+                // The global memory budget is used up, the cache stops growing
+                return;
+            }
             int insertionPoint = -index - 1;
             int entriesToShift = numEntries - insertionPoint;
             if (entriesToShift > 0) {
@@ -205,6 +231,23 @@ public class PositionCache {
             System.arraycopy(entries, indexOfSmallest + 1, entries, indexOfSmallest, numEntries - indexOfSmallest - 1);
             numEntries--;
             entries[numEntries] = null;
+            if (memory != null) {
+                memory.release(ENTRY_BYTES);
+            }
+        }
+    }
+
+    private synchronized void share() {
+        if (memory == null) {
+            memory = new MemoryReservation(MemoryBudget.global());
+            memory.forceReserve((long) numEntries * ENTRY_BYTES);
+        }
+    }
+
+    private synchronized void unshare() {
+        if (memory != null) {
+            memory.close();
+            memory = null;
         }
     }
 
@@ -23,6 +23,7 @@
 package org.gorpipe.gor.binsearch;
 
 import org.gorpipe.gor.driver.adapters.StreamSourceSeekableFile;
+import org.gorpipe.gor.jfr.SeekEvent;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -51,6 +52,7 @@ public class SeekableIterator implements AutoCloseable {
     private final long fileSize;
     private final BufferIterator bufferIterator;
     private final int offset;
+    private long bytesRead = 0;
 
     /**
      * Creates a new instance of an iterator using {@code DEFAULT_COMPARATOR}
@@ -93,6 +95,13 @@ public class SeekableIterator implements AutoCloseable {
         return this.header == null ? null : new String(this.header);
     }
 
+    /**
+     * @return The size of the file in bytes.
+     */
+    public long getFileSize() {
+        return this.fileSize;
+    }
+
     /**
      * @return The header as a byte array.
      */
@@ -165,6 +174,9 @@ public class SeekableIterator implements AutoCloseable {
      * @throws IOException If we encounter a problem seeking to the file and reading its content.
      */
     public void seek(StringIntKey key) throws IOException {
+        final SeekEvent event = new SeekEvent();
+        event.begin();
+        final long bytesReadBefore = this.bytesRead;
         if (filePositionCache == null) {
             final String uniqueId = file.getMeta().getUniqueId();
             filePositionCache = PositionCache.getFilePositionCache(this, this.file.getCanonicalPath(), uniqueId, offset, this.fileSize);
@@ -181,6 +193,11 @@ public class SeekableIterator implements AutoCloseable {
         } else {
             seekWithinRange(key, lowerBound.fileIdx, upperBound.fileIdx, lowerBound.key, upperBound.key);
         }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.commit(this.file.getDataSource().getName(), key.chr, key.bpair, this.bytesRead - bytesReadBefore);
+        }
     }
 
     @Override
@@ -338,6 +355,7 @@ public class SeekableIterator implements AutoCloseable {
         while ((read = this.file.read(buffer, bufferIdx, upTo - bufferIdx)) > 0) {
             bufferIdx += read;
         }
+        this.bytesRead += bufferIdx - offset;
         return bufferIdx - offset;
     }
 
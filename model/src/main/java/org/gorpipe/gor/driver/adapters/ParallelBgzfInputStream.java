@@ -0,0 +1,376 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.driver.adapters;
+
+import org.gorpipe.gor.driver.providers.stream.sources.StreamSource;
+import org.gorpipe.gor.util.ByteTextBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Input stream over a BGZF (block gzip) file, which inflates the blocks ahead of the reader on a shared worker pool.
+ *
+ * The compressed blocks are read on the calling thread, in order, and handed to the pool. The number of blocks in
+ * flight starts at one after each seek and doubles with every block consumed, up to {@code gor.bgzf.readahead}, so
+ * short indexed reads do not inflate data they never use. The stream is positioned with BGZF virtual file offsets,
+ * i.e. the block address shifted left by 16 bits plus the offset within the inflated block.
+ */
+public class ParallelBgzfInputStream extends InputStream {
+    private static final int THREADS = Integer.parseInt(System.getProperty("gor.bgzf.threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+    private static final int MAX_READ_AHEAD = Math.max(1, Integer.parseInt(System.getProperty("gor.bgzf.readahead", "32")));
+
+    private static final int BLOCK_HEADER_LENGTH = 12;
+    private static final int MAX_BLOCK_SIZE = 1 << 16;
+
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private static class WorkerPool {
+        // Created on first use so that readers which never see a BGZF file do not start threads.
+        static final ExecutorService executor = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setName("bgzf-inflater-" + t.getId());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static class Block {
+        final long address;
+        final int compressedLength;
+        final Future<byte[]> data;
+
+        Block(long address, int compressedLength, Future<byte[]> data) {
+            this.address = address;
+            this.compressedLength = compressedLength;
+            this.data = data;
+        }
+    }
+
+    private final StreamSource source;
+    private final String name;
+    private final ArrayDeque<Block> pending = new ArrayDeque<>();
+    private final byte[] header = new byte[BLOCK_HEADER_LENGTH];
+
+    private InputStream raw;
+    private long rawAddress;
+    private boolean rawExhausted;
+    private int readAhead = 1;
+
+    private byte[] buffer = new byte[0];
+    private int bufferPosition;
+    private long bufferAddress;
+    private int bufferCompressedLength;
+
+    public ParallelBgzfInputStream(StreamSource source) throws IOException {
+        this.source = source;
+        this.name = source.getName();
+        openRaw(0);
+    }
+
+    /**
+     * @return {@code true} if the stream starts with a BGZF block header. The stream is expected to support mark/reset.
+     */
+    public static boolean isBgzf(InputStream in) throws IOException {
+        final byte[] head = new byte[BLOCK_HEADER_LENGTH + 4];
+        in.mark(head.length);
+        try {
+            int n = readFully(in, head, 0, head.length);
+            return n == head.length && isBlockHeader(head) && (head[12] & 0xff) == 'B' && (head[13] & 0xff) == 'C';
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * @return The virtual file offset of the next byte to be read.
+     */
+    public long getFilePointer() {
+        if (bufferPosition == buffer.length) {
+            return (bufferAddress + bufferCompressedLength) << 16;
+        }
+        return bufferAddress << 16 | bufferPosition;
+    }
+
+    /**
+     * Positions the stream at the given virtual file offset.
+     */
+    public void seek(long virtualOffset) throws IOException {
+        final long address = virtualOffset >>> 16;
+        final int offset = (int) (virtualOffset & 0xffff);
+        if (address != bufferAddress || buffer.length == 0) {
+            while (!pending.isEmpty() && pending.peekFirst().address < address) {
+                pending.pollFirst().data.cancel(false);
+            }
+            if (pending.isEmpty() || pending.peekFirst().address != address) {
+                cancelPending();
+                openRaw(address);
+            }
+            readAhead = 1;
+            if (!nextBuffer() && offset == 0) {
+                return;
+            }
+        }
+        if (offset > buffer.length) {
+            throw new IOException("Invalid virtual offset " + virtualOffset + " in " + name);
+        }
+        bufferPosition = offset;
+    }
+
+    /**
+     * Reads the next line into {@code line}, without the line terminator.
+     *
+     * @return {@code false} if the end of the stream was reached before any byte was read.
+     */
+    public boolean readLine(ByteTextBuilder line) throws IOException {
+        line.clear();
+        boolean any = false;
+        while (true) {
+            if (bufferPosition == buffer.length && !nextBuffer()) {
+                return any;
+            }
+            any = true;
+            final byte[] buf = buffer;
+            final int start = bufferPosition;
+            int i = start;
+            final int end = buf.length;
+            while (i < end && buf[i] != '\n') {
+                i++;
+            }
+            if (i < end) {
+                int length = i - start;
+                if (length > 0 && buf[i - 1] == '\r') {
+                    length--;
+                }
+                line.append(buf, start, length);
+                bufferPosition = i + 1;
+                return true;
+            }
+            line.append(buf, start, end - start);
+            bufferPosition = end;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (bufferPosition == buffer.length && !nextBuffer()) {
+            return -1;
+        }
+        return buffer[bufferPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (bufferPosition == buffer.length && !nextBuffer()) {
+            return -1;
+        }
+        final int n = Math.min(len, buffer.length - bufferPosition);
+        System.arraycopy(buffer, bufferPosition, b, off, n);
+        bufferPosition += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return buffer.length - bufferPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        cancelPending();
+        if (raw != null) {
+            raw.close();
+            raw = null;
+        }
+    }
+
+    /**
+     * Moves to the next non-empty block, keeping the read ahead queue filled.
+     */
+    private boolean nextBuffer() throws IOException {
+        do {
+            fillPending();
+            final Block block = pending.pollFirst();
+            if (block == null) {
+                buffer = new byte[0];
+                bufferPosition = 0;
+                bufferAddress = rawAddress;
+                bufferCompressedLength = 0;
+                return false;
+            }
+            buffer = await(block);
+            bufferPosition = 0;
+            bufferAddress = block.address;
+            bufferCompressedLength = block.compressedLength;
+            readAhead = Math.min(readAhead * 2, MAX_READ_AHEAD);
+        } while (buffer.length == 0);
+        fillPending();
+        return true;
+    }
+
+    private void fillPending() throws IOException {
+        while (pending.size() < readAhead && !rawExhausted) {
+            final Block block = readBlock();
+            if (block == null) {
+                rawExhausted = true;
+            } else {
+                pending.addLast(block);
+            }
+        }
+    }
+
+    private Block readBlock() throws IOException {
+        final int n = readFully(raw, header, 0, BLOCK_HEADER_LENGTH);
+        if (n == 0) {
+            return null;
+        }
+        if (n < BLOCK_HEADER_LENGTH || !isBlockHeader(header)) {
+            throw new IOException("Invalid BGZF block header at " + rawAddress + " in " + name);
+        }
+        final int extraLength = (header[10] & 0xff) | (header[11] & 0xff) << 8;
+        final byte[] extra = new byte[extraLength];
+        readFullyOrFail(extra, extraLength);
+        final int blockSize = findBlockSize(extra) + 1;
+        final int remaining = blockSize - BLOCK_HEADER_LENGTH - extraLength;
+        if (blockSize <= 0 || remaining < 8) {
+            throw new IOException("Invalid BGZF block size at " + rawAddress + " in " + name);
+        }
+        final byte[] compressed = new byte[remaining];
+        readFullyOrFail(compressed, remaining);
+
+        final long address = rawAddress;
+        rawAddress += blockSize;
+        final int inflatedLength = (compressed[remaining - 4] & 0xff) | (compressed[remaining - 3] & 0xff) << 8
+                | (compressed[remaining - 2] & 0xff) << 16 | (compressed[remaining - 1] & 0xff) << 24;
+        if (inflatedLength < 0 || inflatedLength > MAX_BLOCK_SIZE) {
+            throw new IOException("Invalid BGZF block length at " + address + " in " + name);
+        }
+        final Future<byte[]> data;
+        if (inflatedLength == 0) {
+            data = CompletableFuture.completedFuture(new byte[0]);
+        } else if (THREADS <= 1) {
+            data = CompletableFuture.completedFuture(inflate(compressed, remaining - 8, inflatedLength));
+        } else {
+            data = WorkerPool.executor.submit(() -> inflate(compressed, remaining - 8, inflatedLength));
+        }
+        return new Block(address, blockSize, data);
+    }
+
+    private byte[] await(Block block) throws IOException {
+        try {
+            return block.data.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while inflating " + name, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed inflating block at " + block.address + " in " + name, e.getCause());
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int compressedLength, int inflatedLength) throws IOException {
+        final Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        final byte[] inflated = new byte[inflatedLength];
+        int n = 0;
+        try {
+            while (n < inflatedLength) {
+                final int r = inflater.inflate(inflated, n, inflatedLength - n);
+                if (r == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                n += r;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+        if (n != inflatedLength) {
+            throw new ZipException("Inflated " + n + " bytes, expected " + inflatedLength);
+        }
+        return inflated;
+    }
+
+    private void openRaw(long address) throws IOException {
+        if (raw != null) {
+            raw.close();
+        }
+        raw = new BufferedInputStream(address == 0 ? source.open() : source.open(address), MAX_BLOCK_SIZE);
+        rawAddress = address;
+        rawExhausted = false;
+    }
+
+    private void cancelPending() {
+        for (Block block : pending) {
+            block.data.cancel(false);
+        }
+        pending.clear();
+    }
+
+    private void readFullyOrFail(byte[] b, int len) throws IOException {
+        if (readFully(raw, b, 0, len) != len) {
+            throw new EOFException("Truncated BGZF block at " + rawAddress + " in " + name);
+        }
+    }
+
+    private static int findBlockSize(byte[] extra) throws IOException {
+        int i = 0;
+        while (i + 4 <= extra.length) {
+            final int length = (extra[i + 2] & 0xff) | (extra[i + 3] & 0xff) << 8;
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && length == 2 && i + 6 <= extra.length) {
+                return (extra[i + 4] & 0xff) | (extra[i + 5] & 0xff) << 8;
+            }
+            i += 4 + length;
+        }
+        throw new IOException("Missing BGZF block size field");
+    }
+
+    private static boolean isBlockHeader(byte[] h) {
+        return (h[0] & 0xff) == 31 && (h[1] & 0xff) == 139 && (h[2] & 0xff) == 8 && (h[3] & 4) != 0;
+    }
+
+    private static int readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            final int r = in.read(b, off + n, len - n);
+            if (r < 0) {
+                break;
+            }
+            n += r;
+        }
+        return n;
+    }
+}
@@ -37,6 +37,8 @@ import java.io.File;
  * Created by villi on 23/08/15.
  */
 public class SamtoolsAdapter {
+    // Inflate the BGZF blocks of bam files on a separate thread
+    private static final boolean USE_ASYNC_IO = Boolean.parseBoolean(System.getProperty("gor.driver.bam.asyncio", "true"));
 
     /**
      * Create SamReader from file and index sources.
@@ -49,7 +51,7 @@ public class SamtoolsAdapter {
      * Create SamReader from file and index sources.
      */
     public static SamReader createReader(StreamSource source, StreamSource index, File ref) {
-        SamReaderFactory srf = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT);
+        SamReaderFactory srf = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).setUseAsyncIo(USE_ASYNC_IO);
         if (ref != null) srf.referenceSource(new ReferenceSource(ref));
         SeekableStream bamStream = new StreamSourceSeekableStream(source);
         SamInputResource sir = SamInputResource.of(bamStream);
@@ -51,6 +51,12 @@ public class BamIterator extends GenomicIterator {
     public SamReader reader;
     public CloseableIterator<SAMRecord> it;
     public static final String[] HEADER = {"Chromo", "Pos", "End", "QName", "Flag", "MapQ", "Cigar", "MD", "MRNM", "MPOS", "ISIZE", "SEQ", "QUAL", "TAG_VALUES"};
+    public static final int FLAG_COLUMN = 4;
+    public static final int CIGAR_COLUMN = 6;
+    public static final int SEQ_COLUMN = 11;
+    public static final int QUAL_COLUMN = 12;
+    // Read and decode the records on a worker thread, ahead of the consumer
+    private static final boolean PREFETCH = Boolean.parseBoolean(System.getProperty("gor.driver.bam.prefetch", "true"));
     private static final int[] ALL_COLUMNS = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13};
     private int[] columns; // source columns to include
     private ToIntFunction<SAMRecord>[] defaultReverseIntMap;
@@ -171,8 +177,17 @@ public class BamIterator extends GenomicIterator {
     }
 
     public void setReader(SamReader reader) {
+        if (it != null) {
+            it.close();
+            it = null;
+        }
         this.reader = reader;
-        if (this.reader != null) this.it = this.reader.iterator();
+        // The iterator on the new reader, and its prefetching, is started by the first seek or hasNext
+        if (this.reader != null) chrId = Integer.MIN_VALUE;
+    }
+
+    private static CloseableIterator<SAMRecord> prefetch(CloseableIterator<SAMRecord> iterator) {
+        return PREFETCH ? new PrefetchingRecordIterator(iterator) : iterator;
     }
 
     @Override
@@ -219,8 +234,12 @@ public class BamIterator extends GenomicIterator {
             this.initialize = false;
         }
         if (chrId == Integer.MIN_VALUE) {
+            if (it != null) {
+                it.close();
+                it = null;
+            }
             if (chrnamesystem == 0) { // Use an iterator on the complete content since its the same order as GOR use
-                it = reader.iterator();
+                it = prefetch(reader.iterator());
             } else {
                 String name = "";
                 for (hgSeekIndex = 0; hgSeekIndex < ChrDataScheme.ChrLexico.order2id.length; hgSeekIndex++) {
@@ -298,7 +317,7 @@ public class BamIterator extends GenomicIterator {
         if (it != null) {
             it.close();
         }
-        it = reader.queryContained(chr, pos == 0 ? 1 : pos, Integer.MAX_VALUE);
+        it = prefetch(reader.queryContained(chr, pos == 0 ? 1 : pos, Integer.MAX_VALUE));
     }
 
     public void prepareBaseQualities(SAMRecord record, ByteTextBuilder btb) {
@@ -401,6 +420,15 @@ public class BamIterator extends GenomicIterator {
             this.reverseIntMap = reverseIntMap;
         }
 
+        /**
+         * @return true if column {@code col} of this row still holds the source column {@code sourceCol}, in which
+         * case its value can be read directly from the decoded record instead of from the text of the column.
+         */
+        public boolean hasSourceColumn(int col, int sourceCol) {
+            return col < reverseStringMap.length && sourceCol < defaultReverseStringMap.length
+                    && reverseStringMap[col] == defaultReverseStringMap[sourceCol];
+        }
+
         @Override
         public String toColString() {
             StringBuilder line = new StringBuilder();
@@ -457,6 +485,10 @@ public class BamIterator extends GenomicIterator {
 
         @Override
         public CharSequence getAllCols() {
+            return allCols();
+        }
+
+        private StringBuilder allCols() {
             StringBuilder sb = new StringBuilder();
             sb.append(chr);
             sb.append('\t');
@@ -526,7 +558,9 @@ public class BamIterator extends GenomicIterator {
 
         @Override
         public Row rowWithAddedColumn(CharSequence s) {
-            return RowObj.apply(getAllCols() + "\t" + s);
+            StringBuilder sb = allCols();
+            sb.append('\t').append(s);
+            return RowObj.apply(sb);
         }
 
         @Override
@@ -604,7 +638,7 @@ public class BamIterator extends GenomicIterator {
     public boolean hasNext() {
         initIterator();
         boolean hasNext = it.hasNext();
-        while (hasNext && (record = it.next()) != null && (record.getReadUnmappedFlag() || "*".equals(record.getCigarString()) || record.getStart() < pos)) {
+        while (hasNext && (record = it.next()) != null && (record.getReadUnmappedFlag() || record.getCigar().isEmpty() || record.getStart() < pos)) {
             hasNext = it.hasNext();
         }
         if (!hasNext) {
@@ -0,0 +1,175 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.driver.providers.stream.datatypes.bam;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.util.CloseableIterator;
+import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.jfr.GorEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and decodes records from a sam reader iterator on a worker thread, ahead of the consumer.
+ *
+ * The records are handed over in batches through a bounded queue, so block inflation, container decoding and the
+ * decoding of the record fields overlap with the processing of the previous batches.
+ */
+class PrefetchingRecordIterator implements CloseableIterator<SAMRecord> {
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUED_BATCHES = 8;
+    private static final List<SAMRecord> END = Collections.emptyList();
+
+    private static class WorkerPool {
+        // Cached, since every open iterator holds on to its worker until it is exhausted or closed.
+        static final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setName("sam-record-prefetch-" + t.getId());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private final CloseableIterator<SAMRecord> source;
+    private final BlockingQueue<List<SAMRecord>> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+    private final Future<?> producer;
+    private volatile boolean closed = false;
+    private volatile Throwable error = null;
+
+    private List<SAMRecord> batch = Collections.emptyList();
+    private int index = 0;
+    private boolean exhausted = false;
+
+    PrefetchingRecordIterator(CloseableIterator<SAMRecord> source) {
+        this.source = source;
+        this.producer = WorkerPool.executor.submit(GorEvent.withQueryId((Runnable) this::produce));
+    }
+
+    private void produce() {
+        try {
+            List<SAMRecord> records = new ArrayList<>(BATCH_SIZE);
+            while (!closed && source.hasNext()) {
+                final SAMRecord record = source.next();
+                decode(record);
+                records.add(record);
+                if (records.size() == BATCH_SIZE) {
+                    offer(records);
+                    records = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!records.isEmpty()) {
+                offer(records);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = e;
+        } catch (Throwable e) {
+            error = e;
+        } finally {
+            try {
+                offer(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Forces the lazily decoded fields of bam records to be decoded on the worker thread.
+     */
+    private static void decode(SAMRecord record) {
+        record.getCigar();
+        record.getReadBases();
+        record.getBaseQualities();
+        record.getAttribute(SAMTag.MD.name());
+    }
+
+    private void offer(List<SAMRecord> records) throws InterruptedException {
+        while (!closed && !queue.offer(records, 100, TimeUnit.MILLISECONDS)) {
+            // Wait for the consumer, or for the iterator to be closed
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (index == batch.size()) {
+            if (exhausted) {
+                return false;
+            }
+            final List<SAMRecord> records;
+            try {
+                records = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GorSystemException("Interrupted while reading alignments", e);
+            }
+            if (records == END) {
+                exhausted = true;
+                final Throwable t = error;
+                if (t instanceof RuntimeException) {
+                    throw (RuntimeException) t;
+                } else if (t != null) {
+                    throw new GorSystemException("Error reading alignments", t);
+                }
+                return false;
+            }
+            batch = records;
+            index = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public SAMRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return batch.get(index++);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+        try {
+            producer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // The producer records its own errors
+        } finally {
+            source.close();
+        }
+    }
+}
@@ -38,6 +38,7 @@ import org.gorpipe.gor.driver.adapters.StreamSourceSeekableStream;
 import org.gorpipe.gor.driver.providers.stream.sources.StreamSource;
 import org.gorpipe.gor.table.PathUtils;
 import org.gorpipe.gor.util.StringUtil;
+import org.gorpipe.gor.model.ReferenceStore;
 import org.gorpipe.gor.model.Row;
 import org.gorpipe.gor.model.SharedFastaReferenceSource;
 import org.slf4j.Logger;
@@ -76,6 +77,7 @@ public class CramIterator extends BamIterator {
     private CRAMFileReader cramFileReader;
     private ReferenceSequenceFile referenceSequenceFile;
     private CRAMReferenceSource referenceSource;
+    private ReferenceStore referenceStore;
     private boolean generateMissingCramAttributes;
 
     /**
@@ -132,7 +134,12 @@ public class CramIterator extends BamIterator {
             boolean calculateNM = record.getIntegerAttribute(SAMTag.NM.name()) == null;
 
             if (calculateMD) {
-                byte[] referenceBytes = referenceSequenceFile.getSubsequenceAt(record.getContig(), record.getAlignmentStart(), record.getAlignmentEnd()).getBases();
+                byte[] referenceBytes = referenceStore != null
+                        ? referenceStore.getBases(record.getContig(), record.getAlignmentStart(), record.getAlignmentEnd())
+                        : null;
+                if (referenceBytes == null) {
+                    referenceBytes = referenceSequenceFile.getSubsequenceAt(record.getContig(), record.getAlignmentStart(), record.getAlignmentEnd()).getBases();
+                }
                 CramUtils.calculateMdAndNmTags(record, referenceBytes, calculateMD, calculateNM);
             } else if (calculateNM) {
                 SequenceUtil.calculateSamNmTagFromCigar(record);
@@ -279,7 +286,8 @@ public class CramIterator extends BamIterator {
     private CRAMReferenceSource createFileReference(String ref) {
         String referenceKey = FilenameUtils.removeExtension(FilenameUtils.getBaseName(ref));
         referenceSequenceFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(new File(ref));
-        return new SharedFastaReferenceSource(referenceSequenceFile, referenceKey);
+        referenceStore = ReferenceStore.fasta(Paths.get(ref));
+        return new SharedFastaReferenceSource(referenceSequenceFile, referenceKey, referenceStore);
     }
 
 }
@@ -22,7 +22,10 @@
 
 package org.gorpipe.gor.driver.providers.stream.datatypes.gorz;
 
+import org.gorpipe.gor.binsearch.GorzZoneMap;
+import org.gorpipe.gor.driver.GorDriverFactory;
 import org.gorpipe.gor.driver.meta.DataType;
+import org.gorpipe.gor.driver.meta.SourceReference;
 import org.gorpipe.gor.driver.providers.stream.StreamSourceFile;
 import org.gorpipe.gor.driver.providers.stream.sources.StreamSource;
 
@@ -49,4 +52,13 @@ public class GorzFile extends StreamSourceFile {
         result.add(name.substring(0, endIdx) + DataType.GORI.suffix);
         return result;
     }
+
+    /**
+     * @return the zone map side file of the gorz file, it may not exist.
+     */
+    public StreamSource getZoneMapSource() throws IOException {
+        String name = getFileSource().getSourceMetadata().getNamedUrl();
+        return (StreamSource) GorDriverFactory.fromConfig().getDataSource(
+                new SourceReference(name + GorzZoneMap.SUFFIX, getFileSource().getSourceReference()));
+    }
 }
@@ -40,7 +40,11 @@ public class GorzIteratorFactory implements StreamSourceIteratorFactory {
         if (file.getIndexSource() != null) {
             indexSource = new StreamSourceSeekableFile(file.getIndexSource());
         }
-        return new GorzSeekableIterator(fileSource, indexSource);
+        GorzSeekableIterator iterator = new GorzSeekableIterator(fileSource, indexSource);
+        if (file instanceof GorzFile) {
+            iterator.setZoneMapSource(((GorzFile) file)::getZoneMapSource);
+        }
+        return iterator;
     }
 
     @Override
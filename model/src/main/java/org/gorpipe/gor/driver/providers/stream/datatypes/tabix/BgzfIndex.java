@@ -0,0 +1,227 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.driver.providers.stream.datatypes.tabix;
+
+import org.gorpipe.exceptions.GorDataException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Binning index of a BGZF compressed, position sorted, text file. Reads both tabix (.tbi) and coordinate sorted
+ * index (.csi) files. The index is only used to find where to start reading, the caller filters the records.
+ */
+public class BgzfIndex {
+    private static final int TBI_MAGIC = 0x01494254;
+    private static final int CSI_MAGIC = 0x01495343;
+
+    private static final int TBI_MIN_SHIFT = 14;
+    private static final int TBI_DEPTH = 5;
+
+    private final int minShift;
+    private final int depth;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameToRef = new HashMap<>();
+    private final Reference[] references;
+
+    private static class Reference {
+        // Bin number -> chunk virtual offsets, {begin0, end0, begin1, end1, ...}.
+        final Map<Integer, long[]> bins = new HashMap<>();
+        // Lowest virtual offset of a record overlapping each bin, only used for csi.
+        final Map<Integer, Long> binOffsets = new HashMap<>();
+        // Linear index, only used for tbi.
+        long[] intervals = new long[0];
+    }
+
+    private BgzfIndex(ByteBuffer in) {
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        final int magic = in.getInt();
+        final boolean csi;
+        if (magic == TBI_MAGIC) {
+            csi = false;
+            minShift = TBI_MIN_SHIFT;
+            depth = TBI_DEPTH;
+            final int numberOfReferences = in.getInt();
+            readNames(in, numberOfReferences);
+            references = new Reference[numberOfReferences];
+        } else if (magic == CSI_MAGIC) {
+            csi = true;
+            minShift = in.getInt();
+            depth = in.getInt();
+            final int auxLength = in.getInt();
+            final int auxEnd = in.position() + auxLength;
+            final int numberOfReferences = in.getInt(auxEnd);
+            if (auxLength >= 28) {
+                readNames(in, numberOfReferences);
+            }
+            in.position(auxEnd + 4);
+            references = new Reference[numberOfReferences];
+            if (names.size() != numberOfReferences) {
+                throw new GorDataException("The csi index does not contain sequence names");
+            }
+        } else {
+            throw new GorDataException("Unknown index format, expected tabix or csi");
+        }
+        for (int r = 0; r < references.length; r++) {
+            final Reference ref = new Reference();
+            final int numberOfBins = in.getInt();
+            for (int b = 0; b < numberOfBins; b++) {
+                final int bin = in.getInt();
+                if (csi) {
+                    ref.binOffsets.put(bin, in.getLong());
+                }
+                final int numberOfChunks = in.getInt();
+                final long[] chunks = new long[2 * numberOfChunks];
+                for (int c = 0; c < chunks.length; c++) {
+                    chunks[c] = in.getLong();
+                }
+                ref.bins.put(bin, chunks);
+            }
+            if (!csi) {
+                ref.intervals = new long[in.getInt()];
+                for (int i = 0; i < ref.intervals.length; i++) {
+                    ref.intervals[i] = in.getLong();
+                }
+            }
+            references[r] = ref;
+        }
+    }
+
+    /**
+     * Reads a tabix or csi index from a BGZF compressed stream. The stream is closed.
+     */
+    public static BgzfIndex read(InputStream compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(compressed)) {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final byte[] buf = new byte[1 << 16];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                baos.write(buf, 0, n);
+            }
+            return new BgzfIndex(ByteBuffer.wrap(baos.toByteArray()));
+        }
+    }
+
+    /**
+     * @return The sequence names in the order they appear in the file.
+     */
+    public List<String> getSequenceNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Finds the virtual file offset to start reading from to get all records on {@code sequence} which end at or after
+     * the 1-based position {@code pos}. Reading from the offset gives records in file order, so records with lower
+     * positions and, once the sequence ends, records on other sequences must be skipped by the caller.
+     *
+     * @return The virtual offset, or -1 if no records on the sequence reach the position.
+     */
+    public long startOffset(String sequence, int pos) {
+        final Integer ref = nameToRef.get(sequence);
+        if (ref == null) {
+            return -1;
+        }
+        final Reference reference = references[ref];
+        final long beg = Math.max(0, pos - 1);
+        final long minOffset = minimumOffset(reference, beg);
+
+        long start = Long.MAX_VALUE;
+        for (Map.Entry<Integer, long[]> entry : reference.bins.entrySet()) {
+            if (binEnd(entry.getKey()) > beg) {
+                final long[] chunks = entry.getValue();
+                for (int c = 0; c < chunks.length; c += 2) {
+                    if (chunks[c + 1] > minOffset) {
+                        start = Math.min(start, Math.max(chunks[c], minOffset));
+                    }
+                }
+            }
+        }
+        return start == Long.MAX_VALUE ? -1 : start;
+    }
+
+    private long minimumOffset(Reference reference, long beg) {
+        if (reference.intervals.length > 0) {
+            final int window = (int) Math.min(beg >> TBI_MIN_SHIFT, reference.intervals.length - 1);
+            return reference.intervals[window];
+        }
+        if (!reference.binOffsets.isEmpty()) {
+            int bin = binOfLevel(depth, beg);
+            while (bin > 0 && !reference.binOffsets.containsKey(bin)) {
+                bin = (bin - 1) >> 3;
+            }
+            final Long offset = reference.binOffsets.get(bin);
+            return offset != null ? offset : 0;
+        }
+        return 0;
+    }
+
+    /**
+     * @return The 0-based exclusive end of the region covered by the bin, or -1 for bins outside the binning scheme,
+     * such as the tabix meta data bin.
+     */
+    private long binEnd(int bin) {
+        int first = 0;
+        for (int level = 0; level <= depth; level++) {
+            final int size = 1 << (3 * level);
+            if (bin < first + size) {
+                return (long) (bin - first + 1) << (minShift + 3 * (depth - level));
+            }
+            first += size;
+        }
+        return -1;
+    }
+
+    private int binOfLevel(int level, long beg) {
+        final int first = ((1 << (3 * level)) - 1) / 7;
+        return first + (int) (beg >> (minShift + 3 * (depth - level)));
+    }
+
+    private void readNames(ByteBuffer in, int numberOfReferences) {
+        // format, col_seq, col_beg, col_end, meta, skip
+        in.position(in.position() + 24);
+        final int namesLength = in.getInt();
+        final int end = in.position() + namesLength;
+        int start = in.position();
+        for (int i = start; i < end && names.size() < numberOfReferences; i++) {
+            if (in.get(i) == 0) {
+                final byte[] bytes = new byte[i - start];
+                in.position(start);
+                in.get(bytes);
+                final String name = new String(bytes);
+                nameToRef.put(name, names.size());
+                names.add(name);
+                start = i + 1;
+            }
+        }
+        in.position(end);
+    }
+}
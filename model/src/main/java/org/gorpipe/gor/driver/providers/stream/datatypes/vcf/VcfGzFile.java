@@ -26,6 +26,9 @@ import org.gorpipe.gor.driver.meta.DataType;
 import org.gorpipe.gor.driver.providers.stream.datatypes.tabix.TabixIndexedFile;
 import org.gorpipe.gor.driver.providers.stream.sources.StreamSource;
 
+import java.io.IOException;
+import java.util.List;
+
 /**
  * Created by sigmar on 28/10/15.
  */
@@ -41,4 +44,15 @@ public class VcfGzFile extends TabixIndexedFile {
     public DataType getType() {
         return DataType.VCFGZ;
     }
+
+    /**
+     * Vcf files are read with {@link org.gorpipe.gor.driver.providers.stream.datatypes.tabix.BgzfIndex} which
+     * also supports csi indices.
+     */
+    @Override
+    public List<String> possibleIndexNames() throws IOException {
+        List<String> result = super.possibleIndexNames();
+        result.add(getFileSource().getSourceMetadata().getNamedUrl() + ".csi");
+        return result;
+    }
 }
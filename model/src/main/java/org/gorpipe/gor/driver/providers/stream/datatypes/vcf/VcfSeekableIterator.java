@@ -22,6 +22,7 @@
 
 package org.gorpipe.gor.driver.providers.stream.datatypes.vcf;
 
+import org.gorpipe.exceptions.GorDataException;
 import org.gorpipe.exceptions.GorResourceException;
 import org.gorpipe.gor.driver.adapters.StreamSourceSeekableFile;
 import org.gorpipe.gor.driver.providers.stream.datatypes.gor.GorHeader;
@@ -31,7 +32,7 @@ import org.gorpipe.gor.model.ContigDataScheme;
 import org.gorpipe.gor.model.GenomicIterator;
 import org.gorpipe.gor.model.Line;
 import org.gorpipe.gor.model.Row;
-import org.gorpipe.model.gor.RowObj;
+import org.gorpipe.gor.model.RowBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -162,6 +163,25 @@ public class VcfSeekableIterator extends GenomicIterator {
             return this.hasNext();
         }
 
+        /**
+         * Creates a row with the chromosome renamed to the one being iterated over. Only the position is parsed, the
+         * other columns are split on first access.
+         */
+        private Row createRow(String line, String lineChr, int chrEnd) {
+            int posEnd = line.indexOf('\t', chrEnd + 1);
+            if (posEnd == -1) {
+                posEnd = line.length();
+            }
+            final int pos;
+            try {
+                pos = Integer.parseInt(line, chrEnd + 1, posEnd, 10);
+            } catch (NumberFormatException e) {
+                throw new GorDataException("Invalid position in vcf line: " + line, e);
+            }
+            final String allCols = lineChr.equals(this.chr) ? line : this.chr + line.substring(chrEnd);
+            return new RowBase(this.chr, pos, allCols);
+        }
+
         private void getNext() {
             if (seekableIterator.hasNext()) {
                 final String next;
@@ -177,7 +197,7 @@ public class VcfSeekableIterator extends GenomicIterator {
                     this.current = null;
                     this.reachedEnd = true;
                 } else {
-                    this.current = RowObj.apply(this.chr + next.substring(chrEnd));
+                    this.current = createRow(next, nextChr, chrEnd);
                 }
             } else {
                 this.current = null;
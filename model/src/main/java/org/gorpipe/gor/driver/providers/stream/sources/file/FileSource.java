@@ -116,6 +116,13 @@ public class FileSource implements StreamSource {
         return open(0);
     }
 
+    /**
+     * @return the local file of this source.
+     */
+    public File getFile() {
+        return file;
+    }
+
     @Override
     public String getName() {
         return sourceReference.getUrl();
@@ -26,6 +26,7 @@ import org.gorpipe.gor.driver.adapters.PersistentInputStream;
 import org.gorpipe.gor.driver.providers.stream.RequestRange;
 import org.gorpipe.gor.driver.providers.stream.sources.StreamSource;
 import org.gorpipe.gor.driver.providers.stream.sources.StreamSourceMetadata;
+import org.gorpipe.gor.jfr.RemoteRequestEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -107,10 +108,21 @@ public class ExtendedRangeWrapper extends WrappedStreamSource {
             }
         }
         // Start a new stream.
-        extendedRangeStream = new ExtendedRangeStream(super.open(start, minLength), RequestRange.fromFirstLength(start, minLength));
+        extendedRangeStream = new ExtendedRangeStream(openRange("range", start, minLength), RequestRange.fromFirstLength(start, minLength));
         return extendedRangeStream;
     }
 
+    private InputStream openRange(String operation, long start, long length) throws IOException {
+        final RemoteRequestEvent event = new RemoteRequestEvent();
+        event.begin();
+        final InputStream stream = super.open(start, length);
+        event.end();
+        if (event.shouldCommit()) {
+            event.commit(getName(), operation, start, length, 1);
+        }
+        return stream;
+    }
+
     private void clearStream() {
         if (extendedRangeStream != null) {
             extendedRangeStream.reallyClose();
@@ -160,7 +172,7 @@ public class ExtendedRangeWrapper extends WrappedStreamSource {
 
                 // 3. Open new 'in' stream at last position + new request length
                 RequestRange range = RequestRange.fromFirstLength(bookKeeping.getFirst() + getPosition(), rlen);
-                this.in = ExtendedRangeWrapper.super.open(range.getFirst(), range.getLength());
+                this.in = openRange("extended range", range.getFirst(), range.getLength());
                 this.lastRequest = range;
                 this.bookKeeping = RequestRange.fromFirstLast(bookKeeping.getFirst(), range.getLast());
 
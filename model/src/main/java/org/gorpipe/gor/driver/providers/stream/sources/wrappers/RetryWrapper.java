@@ -27,7 +27,9 @@ import org.gorpipe.gor.driver.providers.stream.StreamUtils;
 import org.gorpipe.gor.driver.providers.stream.sources.StreamSource;
 import org.gorpipe.gor.driver.providers.stream.sources.StreamSourceMetadata;
 import org.gorpipe.gor.driver.utils.RetryHandler;
+import org.gorpipe.gor.driver.utils.RetryHandler.IoOp;
 import org.gorpipe.gor.driver.utils.RetryHandler.OnRetryOp;
+import org.gorpipe.gor.jfr.RemoteRequestEvent;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -62,17 +64,29 @@ public class RetryWrapper extends WrappedStreamSource {
 
     @Override
     public InputStream open() throws IOException {
-        return retry.tryOp(() -> wrapStream(RetryWrapper.super.open(), 0, null), requestRetries);
+        return tryOpen(0, -1, () -> wrapStream(RetryWrapper.super.open(), 0, null));
     }
 
     @Override
     public InputStream open(long start) throws IOException {
-        return retry.tryOp(() -> wrapStream(super.open(start), start, null), requestRetries);
+        return tryOpen(start, -1, () -> wrapStream(super.open(start), start, null));
     }
 
     @Override
     public InputStream open(long start, long minLength) throws IOException {
-        return retry.tryOp(() -> wrapStream(super.open(start, minLength), start, minLength), requestRetries);
+        return tryOpen(start, minLength, () -> wrapStream(super.open(start, minLength), start, minLength));
+    }
+
+    private InputStream tryOpen(long start, long length, IoOp<InputStream> op) throws IOException {
+        final RemoteRequestEvent event = new RemoteRequestEvent();
+        event.begin();
+        final int[] requestAttempts = {1};
+        final InputStream stream = retry.tryOp(op, requestRetries, e -> requestAttempts[0]++);
+        event.end();
+        if (event.shouldCommit()) {
+            event.commit(getName(), "open", start, length, requestAttempts[0]);
+        }
+        return stream;
     }
 
     @Override
@@ -131,11 +145,19 @@ public class RetryWrapper extends WrappedStreamSource {
          * NB: If reopening the stream fails - it is not retried.
          */
         private InputStream reopen() throws IOException {
+            final RemoteRequestEvent event = new RemoteRequestEvent();
+            event.begin();
+            final InputStream stream;
             if (length == null) {
-                return RetryWrapper.super.open(start + getPosition());
+                stream = RetryWrapper.super.open(start + getPosition());
             } else {
-                return RetryWrapper.super.open(start + getPosition(), length - getPosition());
+                stream = RetryWrapper.super.open(start + getPosition(), length - getPosition());
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.commit(RetryWrapper.this.getName(), "reopen", start + getPosition(), length == null ? -1 : length - getPosition(), 1);
             }
+            return stream;
         }
 
         /**
@@ -0,0 +1,123 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Base of the JDK Flight Recorder events emitted by gor.
+ * <p>
+ * The events are disabled unless a recording enables them, e.g. {@code jcmd <pid> JFR.start settings=profile} or
+ * {@code -XX:StartFlightRecording}.  When disabled an event is never committed and its fields are not filled in, so
+ * the cost is a few instructions at each emitting site.  Events are tagged with the id of the query that emitted them,
+ * which is set on the thread running the query and inherited by the threads it starts.  Tasks the query submits to
+ * pooled threads are wrapped with {@link #withQueryId}.
+ */
+@Category("GOR")
+@StackTrace(false)
+public abstract class GorEvent extends Event {
+    private static final InheritableThreadLocal<String> QUERY_ID = new InheritableThreadLocal<>();
+
+    @Label("Query Id")
+    protected String queryId;
+
+    /**
+     * Set the id of the query run by the current thread, and the threads it starts.
+     */
+    public static void setQueryId(String queryId) {
+        QUERY_ID.set(queryId);
+    }
+
+    /**
+     * Clear the query id of the current thread when the query has ended, unless the thread has moved on to another
+     * query.
+     */
+    public static void clearQueryId(String queryId) {
+        if (queryId != null && queryId.equals(QUERY_ID.get())) {
+            QUERY_ID.remove();
+        }
+    }
+
+    public static String getQueryId() {
+        return QUERY_ID.get();
+    }
+
+    /**
+     * Set the query id of the current thread, or clear it if null, for a task run on a pooled thread.  Pooled threads
+     * otherwise keep the id of the query that started them.
+     *
+     * @return the previous query id of the thread, to restore when the task is done.
+     */
+    public static String swapQueryId(String queryId) {
+        String previous = QUERY_ID.get();
+        if (queryId != null) {
+            QUERY_ID.set(queryId);
+        } else {
+            QUERY_ID.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * @return the task, run with the query id of the thread submitting it.
+     */
+    public static Runnable withQueryId(Runnable task) {
+        String queryId = QUERY_ID.get();
+        return () -> {
+            String previous = swapQueryId(queryId);
+            try {
+                task.run();
+            } finally {
+                swapQueryId(previous);
+            }
+        };
+    }
+
+    /**
+     * @return the task, run with the query id of the thread submitting it.
+     */
+    public static <T> Callable<T> withQueryId(Callable<T> task) {
+        String queryId = QUERY_ID.get();
+        return () -> {
+            String previous = swapQueryId(queryId);
+            try {
+                return task.call();
+            } finally {
+                swapQueryId(previous);
+            }
+        };
+    }
+
+    /**
+     * Commit the event tagged with the current query id, the caller has checked that it should be committed.
+     */
+    protected void commitForQuery() {
+        queryId = QUERY_ID.get();
+        commit();
+    }
+}
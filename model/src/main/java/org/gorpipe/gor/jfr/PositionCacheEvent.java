@@ -0,0 +1,51 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Lookup of the cached file positions of a sorted file, done when a file is first seeked.
+ */
+@Name("gor.PositionCacheLookup")
+@Label("Position Cache Lookup")
+@Description("Lookup of the cached seek positions of a file")
+public class PositionCacheEvent extends GorEvent {
+    @Label("File")
+    public String file;
+
+    @Label("Hit")
+    public boolean hit;
+
+    @Label("Cached Positions")
+    public int positions;
+
+    public void commit(String file, boolean hit, int positions) {
+        this.file = file;
+        this.hit = hit;
+        this.positions = positions;
+        commitForQuery();
+    }
+}
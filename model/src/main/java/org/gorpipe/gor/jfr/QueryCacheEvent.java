@@ -0,0 +1,52 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Lookup of the cached result of a nested query.  The duration includes running the query when it is not cached, or
+ * waiting for a concurrent query producing the same result.
+ */
+@Name("gor.QueryCacheLookup")
+@Label("Query Cache Lookup")
+@Description("Lookup of the cached result of a nested query")
+public class QueryCacheEvent extends GorEvent {
+    @Label("Signature")
+    public String signature;
+
+    @Label("File")
+    public String file;
+
+    @Label("Hit")
+    public boolean hit;
+
+    public void commit(String signature, String file, boolean hit) {
+        this.signature = signature;
+        this.file = file;
+        this.hit = hit;
+        commitForQuery();
+    }
+}
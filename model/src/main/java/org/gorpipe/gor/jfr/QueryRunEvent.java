@@ -0,0 +1,57 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Run of a nested query, such as a create statement or a pgor partition, writing its result to the cache.
+ */
+@Name("gor.QueryRun")
+@Label("Query Run")
+@Description("Run of a nested query into a cache file")
+public class QueryRunEvent extends GorEvent {
+    @Label("Name")
+    public String name;
+
+    @Label("Command")
+    public String command;
+
+    @Label("File")
+    public String file;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytes;
+
+    public void commit(String name, String command, String file, long bytes) {
+        this.name = name;
+        this.command = command;
+        this.file = file;
+        this.bytes = bytes;
+        commitForQuery();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Request opening a stream on a source, as issued by the stream source wrappers.  The duration is the time taken to
+ * open the stream, including retries.
+ */
+@Name("gor.RemoteRequest")
+@Label("Remote Request")
+@Description("Request for a range of a stream source")
+public class RemoteRequestEvent extends GorEvent {
+    @Label("File")
+    public String file;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Start")
+    public long start;
+
+    @Label("Requested Bytes")
+    @Description("Length of the requested range, or -1 for the rest of the source")
+    @DataAmount
+    public long bytes;
+
+    @Label("Attempts")
+    public int attempts;
+
+    public void commit(String file, String operation, long start, long bytes, int attempts) {
+        this.file = file;
+        this.operation = operation;
+        this.start = start;
+        this.bytes = bytes;
+        this.attempts = attempts;
+        commitForQuery();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Binary search seek in a sorted file.
+ */
+@Name("gor.Seek")
+@Label("Seek")
+@Description("Seek to a genomic position in a sorted file")
+public class SeekEvent extends GorEvent {
+    @Label("File")
+    public String file;
+
+    @Label("Chromosome")
+    public String chromosome;
+
+    @Label("Position")
+    public int position;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytes;
+
+    public void commit(String file, String chromosome, int position, long bytes) {
+        this.file = file;
+        this.chromosome = chromosome;
+        this.position = position;
+        this.bytes = bytes;
+        commitForQuery();
+    }
+}
@@ -39,6 +39,12 @@ class FilteredIterator extends GenomicIteratorAdapterBase {
         this.rf = rf;
     }
 
+    @Override
+    public boolean pushdownProjection(int[] columns) {
+        // The filter may read any column
+        return false;
+    }
+
     @Override
     public boolean seek(String chr, int pos) {
         this.myHasNext = false;
@@ -373,6 +373,17 @@ public abstract class GenomicIterator implements Iterator<Row>, AutoCloseable {
         return false;
     }
 
+    /**
+     * Tells the source iterator which columns are read by the steps that follow it, so it can skip decoding the others.
+     * Unlike the other pushdowns, the following steps are still run, the rows keep all their columns but the columns
+     * that are not read may be empty.
+     * @param columns zero based indices of the columns that are read
+     * @return true if columns that are not read may be returned empty
+     */
+    public boolean pushdownProjection(int[] columns) {
+        return false;
+    }
+
     protected void selectHeader(int[] cols) {
         if (this.getHeader() != null && !this.getHeader().equals("")) {
             final String[] headerCols = this.getHeader().split("\t");
@@ -191,4 +191,9 @@ public abstract class GenomicIteratorAdapterBase extends GenomicIterator {
     public boolean pushdownWrite(String write) {
         return iterator.pushdownWrite(write);
     }
+
+    @Override
+    public boolean pushdownProjection(int[] columns) {
+        return iterator.pushdownProjection(columns);
+    }
 }
@@ -77,6 +77,16 @@ public class MonitorIterator extends GenomicIterator {
         iterator.close();
     }
 
+    @Override
+    public boolean pushdownFilter(String where) {
+        return iterator.pushdownFilter(where);
+    }
+
+    @Override
+    public boolean pushdownProjection(int[] columns) {
+        return iterator.pushdownProjection(columns);
+    }
+
     private void handleNotify(Row r) {
         rowCount++;
         if(rowCount % 500 == 0) {
@@ -0,0 +1,290 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.model;
+
+import com.google.common.cache.CacheBuilder;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.reference.FastaSequenceIndex;
+import htsjdk.samtools.reference.FastaSequenceIndexCreator;
+import htsjdk.samtools.reference.IndexedFastaSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.StringUtil;
+import org.gorpipe.exceptions.GorResourceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reference sequences as memory mapped files, one byte per base.
+ * <p>
+ * The sequences of a chromseq directory are mapped as they are, a file {@code <name>.txt} per sequence. Fasta files
+ * are unpacked into the same layout in a store directory ({@code gor.reference.store.dir}) the first time a sequence
+ * is requested. The mapped files are shared by all users of the store in the JVM and, through the page cache, by all
+ * processes on the host, so the reference is read from disk once rather than once per query.  If no store directory
+ * is set, or it can not be written, the sequences are read from the fasta file into memory instead.
+ * <p>
+ * The stores are shared by path, the least recently used ones are dropped when there are more than
+ * {@code gor.reference.store.max}.
+ * <p>
+ * A zero byte, or a position outside of the sequence, stands for an unknown base.
+ */
+public class ReferenceStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ReferenceStore.class);
+
+    private static final String KEY_STORE_DIR = "gor.reference.store.dir";
+    private static final String KEY_MAX_STORES = "gor.reference.store.max";
+    private static final String SEQUENCE_SUFFIX = ".txt";
+
+    private static final Map<Path, ReferenceStore> stores = CacheBuilder.newBuilder()
+            .maximumSize(Long.getLong(KEY_MAX_STORES, 64))
+            .<Path, ReferenceStore>build().asMap();
+
+    private final Path directory;
+    private final Path fasta;
+    private final Map<String, Optional<ByteBuffer>> sequences = new ConcurrentHashMap<>();
+    private boolean unpackedAll = false;  // All sequences of an unindexed fasta file have been unpacked.
+    private volatile boolean storeFailed;  // Sequences are not stored, they are read into memory instead.
+    private FastaSequenceIndex fastaIndex = null;  // In memory index of an unindexed fasta file, when storing failed.
+
+    private ReferenceStore(Path directory, Path fasta) {
+        this.directory = directory;
+        this.fasta = fasta;
+        this.storeFailed = fasta != null && directory == null;
+    }
+
+    /**
+     * @param directory chromseq directory, with a file {@code <name>.txt} per sequence.
+     * @return the shared store for the directory.
+     */
+    public static ReferenceStore chromSeq(Path directory) {
+        return stores.computeIfAbsent(directory.toAbsolutePath().normalize(), d -> new ReferenceStore(d, null));
+    }
+
+    /**
+     * @param fasta fasta file, preferably indexed.
+     * @return the shared store for the fasta file.
+     */
+    public static ReferenceStore fasta(Path fasta) {
+        return stores.computeIfAbsent(fasta.toAbsolutePath().normalize(), f -> new ReferenceStore(storeDirectory(f), f));
+    }
+
+    /**
+     * Get the bases of a sequence.
+     *
+     * @param name sequence name.
+     * @return read only buffer with the bases of the sequence, positioned at the first base, or null if the store
+     * has no sequence with the given name.
+     */
+    public ByteBuffer getSequence(String name) {
+        final Optional<ByteBuffer> sequence = sequences.computeIfAbsent(name, this::load);
+        return sequence.map(ByteBuffer::duplicate).orElse(null);
+    }
+
+    /**
+     * Get a range of bases from a sequence.
+     *
+     * @param name  sequence name.
+     * @param start one based position of the first base.
+     * @param end   one based position of the last base, inclusive.
+     * @return the bases in the range which are within the sequence, or null if the store has no sequence with the
+     * given name.
+     */
+    public byte[] getBases(String name, int start, int end) {
+        final ByteBuffer sequence = getSequence(name);
+        if (sequence == null) {
+            return null;
+        }
+        final int from = Math.max(start - 1, 0);
+        final int to = Math.min(end, sequence.limit());
+        if (from >= to) {
+            return new byte[0];
+        }
+        final byte[] bases = new byte[to - from];
+        sequence.position(from);
+        sequence.get(bases);
+        return bases;
+    }
+
+    private Optional<ByteBuffer> load(String name) {
+        if (name.isEmpty() || name.contains("/") || name.contains("\\")) {
+            return Optional.empty();
+        }
+        if (storeFailed) {
+            return readFromFasta(name);
+        }
+        final Path file = directory.resolve(name + SEQUENCE_SUFFIX);
+        if (fasta != null && !Files.exists(file)) {
+            try {
+                if (!unpack(name, file)) {
+                    return Optional.empty();
+                }
+            } catch (IOException e) {
+                log.warn("Failed to store reference sequences of {} in {}, reading them from the fasta file: {}", fasta, directory, e.getMessage());
+                storeFailed = true;
+                return readFromFasta(name);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return Optional.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new GorResourceException("Failed to map reference sequence " + name, file.toString(), e);
+        }
+    }
+
+    /**
+     * Unpack the sequence to the store.  The sequences of an unindexed fasta file are all unpacked in one pass through
+     * the file, the first time one is requested.
+     *
+     * @return true if the sequence is in the store, false if the fasta file does not have it.
+     * @throws IOException if the sequence could not be stored.
+     */
+    private boolean unpack(String name, Path file) throws IOException {
+        final ReferenceSequence sequence;
+        try (ReferenceSequenceFile sequenceFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta)) {
+            if (!sequenceFile.isIndexed()) {
+                unpackAll(sequenceFile);
+                return Files.exists(file);
+            }
+            // The only way to tell whether an indexed file has the sequence is to ask for it.
+            sequence = sequenceFile.getSequence(name);
+        } catch (SAMException e) {
+            log.debug("Sequence {} not found in {}", name, fasta, e);
+            return false;
+        }
+        store(name, file, sequence.getBases());
+        return true;
+    }
+
+    private synchronized void unpackAll(ReferenceSequenceFile sequenceFile) throws IOException {
+        if (unpackedAll) {
+            return;
+        }
+        ReferenceSequence sequence;
+        while ((sequence = sequenceFile.nextSequence()) != null) {
+            final String name = sequence.getName();
+            if (name.isEmpty() || name.contains("/") || name.contains("\\")) {
+                continue;
+            }
+            final Path file = directory.resolve(name + SEQUENCE_SUFFIX);
+            if (!Files.exists(file)) {
+                store(name, file, sequence.getBases());
+            }
+        }
+        unpackedAll = true;
+    }
+
+    private void store(String name, Path file, byte[] bases) throws IOException {
+        toUpperCase(bases);
+        // Other processes may be unpacking the same sequence, write to a private file and move it into place.
+        Path tempFile = null;
+        try {
+            Files.createDirectories(directory);
+            tempFile = Files.createTempFile(directory, name, ".tmp");
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                out.write(bases);
+            }
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.debug("Unpacked reference sequence {} from {} to {}", name, fasta, file);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    log.warn("Failed to delete {}", tempFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the sequence from the fasta file into memory, when it can not be stored.  An unindexed fasta file is
+     * indexed in memory first, so each sequence is read without scanning the file.
+     */
+    private Optional<ByteBuffer> readFromFasta(String name) {
+        try (ReferenceSequenceFile sequenceFile = openIndexedFasta()) {
+            final byte[] bases = sequenceFile.getSequence(name).getBases();
+            toUpperCase(bases);
+            return Optional.of(ByteBuffer.wrap(bases).asReadOnlyBuffer());
+        } catch (SAMException | IOException e) {
+            log.debug("Sequence {} not found in {}", name, fasta, e);
+            return Optional.empty();
+        }
+    }
+
+    private synchronized ReferenceSequenceFile openIndexedFasta() throws IOException {
+        final ReferenceSequenceFile sequenceFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta);
+        if (sequenceFile.isIndexed()) {
+            return sequenceFile;
+        }
+        try {
+            sequenceFile.close();
+        } catch (IOException e) {
+            log.debug("Failed to close {}", fasta, e);
+        }
+        if (fastaIndex == null) {
+            fastaIndex = FastaSequenceIndexCreator.buildFromFasta(fasta);
+        }
+        return new IndexedFastaSequenceFile(fasta, fastaIndex);
+    }
+
+    private static void toUpperCase(byte[] bases) {
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = StringUtil.toUpperCase(bases[i]);
+        }
+    }
+
+    /**
+     * The unpacked sequences of a fasta file go to a directory named after the file, its size and modification time,
+     * so a changed file gets a new directory.
+     *
+     * @return the store directory, or null if no store directory is set.
+     */
+    private static Path storeDirectory(Path fasta) {
+        final String storeDir = System.getProperty(KEY_STORE_DIR);
+        if (storeDir == null || storeDir.isEmpty()) {
+            return null;
+        }
+        final Path root = Paths.get(storeDir);
+        String signature = fasta.toString();
+        try {
+            signature += ":" + Files.size(fasta) + ":" + Files.getLastModifiedTime(fasta).toMillis();
+        } catch (IOException e) {
+            log.debug("Could not read the attributes of {}", fasta, e);
+        }
+        final String baseName = fasta.getFileName().toString();
+        return root.resolve(baseName + "-" + Integer.toHexString(signature.hashCode()));
+    }
+}
@@ -51,8 +51,8 @@ public class RowBase extends Row implements Serializable {
     public RowBase(CharSequence input, int numColumns) {
         allCols = input;
         splitArray = createSplitArray(allCols, numColumns);
-        chr = RowObj.colString(0, allCols, splitArray).toString();
-        pos = RowObj.colInt(1, allCols, splitArray);
+        chr = RowObj.colString(0, allCols, splits()).toString();
+        pos = RowObj.colInt(1, allCols, splits());
     }
 
     public RowBase(CharSequence input) {
@@ -65,6 +65,13 @@ public class RowBase extends Row implements Serializable {
         return toReturn;
     }
 
+    /**
+     * Creates a row whose column boundaries are only located when a column beyond the position is accessed.
+     */
+    public RowBase(String chr, int pos, CharSequence allCols) {
+        this(chr, pos, allCols, null, null);
+    }
+
     public RowBase(String chr, int pos, CharSequence allCols, int[] sa, RowObj.BinaryHolder bH) {
         this.chr = chr;
         this.pos = pos;
@@ -75,7 +82,7 @@ public class RowBase extends Row implements Serializable {
 
     @Override
     public int sa(int i) {
-        return splitArray[i];
+        return splits()[i];
     }
 
     @Override
@@ -98,17 +105,17 @@ public class RowBase extends Row implements Serializable {
 
     @Override
     public int[] getSplitArray() {
-        return splitArray;
+        return splits();
     }
 
     @Override
     public void addColumns(int num) {
-        resize(splitArray.length + num);
+        resize(splits().length + num);
     }
 
     @Override
     public void removeColumn(int n) {
-        final int[] oldSplitArray = this.splitArray;
+        final int[] oldSplitArray = this.splits();
         this.splitArray = new int[oldSplitArray.length - 1];
         System.arraycopy(oldSplitArray, 0, this.splitArray, 0, n);
         final CharSequence oldSequence = this.allCols;
@@ -134,32 +141,32 @@ public class RowBase extends Row implements Serializable {
     @Override
     public void resize(int newsize) {
         int[] nsa = new int[newsize];
-        System.arraycopy(splitArray, 0, nsa, 0, splitArray.length);
+        System.arraycopy(splits(), 0, nsa, 0, splits().length);
         splitArray = nsa;
     }
 
     @Override
     public void setColumn(int i, String val) {
-        if(splitArray[i+1] < allCols.length()) {
-            final int prefixLength = splitArray[i + 1] + 1;
-            final int tailLength = splitArray[splitArray.length - 1] - splitArray[i+2] + 1;
+        if(splits()[i+1] < allCols.length()) {
+            final int prefixLength = splits()[i + 1] + 1;
+            final int tailLength = splits()[splits().length - 1] - splits()[i+2] + 1;
             final int newLength = prefixLength + val.length() + 1 + tailLength;
             StringBuilder sb = new StringBuilder(newLength);
-            sb.append(allCols, 0, splitArray[i + 1] + 1);
+            sb.append(allCols, 0, splits()[i + 1] + 1);
             sb.append(val);
-            sb.append(allCols, splitArray[i+2], splitArray[splitArray.length - 1]);
+            sb.append(allCols, splits()[i+2], splits()[splits().length - 1]);
             allCols = sb;
 
-            int newSplitValue = splitArray[i+1] + val.length() + 1;
-            int delta = splitArray[i+2] - newSplitValue;
-            for(int ix = i + 2; ix < splitArray.length; ix++) {
-                splitArray[ix] -= delta;
+            int newSplitValue = splits()[i+1] + val.length() + 1;
+            int delta = splits()[i+2] - newSplitValue;
+            for(int ix = i + 2; ix < splits().length; ix++) {
+                splits()[ix] -= delta;
             }
         } else {
-            splitArray[i + 2] = splitArray[i + 1] + val.length() + 1;
-            final int newLength = splitArray[i+2];
+            splits()[i + 2] = splits()[i + 1] + val.length() + 1;
+            final int newLength = splits()[i+2];
             StringBuilder sb = new StringBuilder(newLength);
-            sb.append(allCols, 0, splitArray[i+1]);
+            sb.append(allCols, 0, splits()[i+1]);
             sb.append('\t');
             sb.append(val);
             allCols = sb;
@@ -183,8 +190,8 @@ public class RowBase extends Row implements Serializable {
             if (i < colsToReplace.length - 1) {
                 int nextCol = colsToReplace[i + 1];
                 if (nextCol > col + 1) {
-                    int start = splitArray[col] + 1;
-                    int end = splitArray[nextCol - 1] + 1;
+                    int start = splits()[col] + 1;
+                    int end = splits()[nextCol - 1] + 1;
                     sb.append(allCols, start, end);
                 }
             }
@@ -197,7 +204,7 @@ public class RowBase extends Row implements Serializable {
 
     private void addColumnsBefore(StringBuilder sb, int firstCol) {
         if (firstCol > 0) {
-            int prefixEnd = splitArray[firstCol-1];
+            int prefixEnd = splits()[firstCol-1];
             sb.append(allCols, 0, prefixEnd);
             sb.append('\t');
         }
@@ -206,8 +213,8 @@ public class RowBase extends Row implements Serializable {
     private void addColumnsAfter(StringBuilder sb, int lastCol) {
         final int finalColumn = numCols() - 1;
         if(lastCol < finalColumn) {
-            int start = splitArray[lastCol] + 1;
-            int end = splitArray[finalColumn];
+            int start = splits()[lastCol] + 1;
+            int end = splits()[finalColumn];
             sb.append(allCols, start, end);
         }
     }
@@ -224,62 +231,59 @@ public class RowBase extends Row implements Serializable {
 
     @Override
     public int otherColsLength() {
-        return allCols.length() - splitArray[1];
+        return allCols.length() - splits()[1];
     }
 
     @Override
     public int numCols() {
-        if (splitArray == null) {
-            splitArray = RowObj.splitArray(allCols);
-        }
-        return splitArray.length;
+        return splits().length;
     }
 
     @Override
     public String toColString() {
         StringBuilder line = new StringBuilder();
         for (int i = 0; i < numCols(); i++) {
-            line.append("(").append(RowObj.colString(i, allCols, splitArray)).append(") ");
+            line.append("(").append(RowObj.colString(i, allCols, splits())).append(") ");
         }
         return line.toString();
     }
 
     @Override
     public String otherCols() {
-        if (numCols() <= 2 || (splitArray.length == 2 && splitArray[splitArray.length - 1] + 1 >= allCols.length()))
+        if (numCols() <= 2 || (splits().length == 2 && splits()[splits().length - 1] + 1 >= allCols.length()))
             return "";
-        return allCols.subSequence(splitArray[1] + 1, allCols.length()).toString();
+        return allCols.subSequence(splits()[1] + 1, allCols.length()).toString();
     }
 
     @Override
     public CharSequence colAsString(int n) {
         testColumnIndex(n);
-        return RowObj.colString(n, allCols, splitArray);
+        return RowObj.colString(n, allCols, splits());
     }
 
 
     @Override
     public int colAsInt(int n) {
         testColumnIndex(n);
-        return RowObj.colInt(n, allCols, splitArray);
+        return RowObj.colInt(n, allCols, splits());
     }
 
     @Override
     public double colAsDouble(int n) {
         testColumnIndex(n);
-        return RowObj.colDouble(n, allCols, splitArray);
+        return RowObj.colDouble(n, allCols, splits());
     }
 
     @Override
     public Long colAsLong(int n) {
         testColumnIndex(n);
-        return RowObj.colLong(n, allCols, splitArray);
+        return RowObj.colLong(n, allCols, splits());
     }
 
     @Override
     public char peekAtColumn(int n) {
         testColumnIndex(n);
-        return RowObj.peekAtColumn(n, allCols, splitArray);
+        return RowObj.peekAtColumn(n, allCols, splits());
     }
 
     @Override
@@ -300,8 +304,8 @@ public class RowBase extends Row implements Serializable {
     public CharSequence colsSlice(int m, int n) {
         testColumnRange(m, n);
         if (m == n) return "";
-        int start2 = m == 0 ? 0 : splitArray[m - 1] + 1;
-        int stop2 = splitArray[n - 1];
+        int start2 = m == 0 ? 0 : splits()[m - 1] + 1;
+        int stop2 = splits()[n - 1];
         return allCols.subSequence(start2, stop2);
     }
 
@@ -310,13 +314,13 @@ public class RowBase extends Row implements Serializable {
         if(!(other instanceof RowBase)) {
             return super.joinedWithSlice(other, startCol, endCol);
         }
-        final int[] otherSplitArray = ((RowBase) other).splitArray;
+        final int[] otherSplitArray = ((RowBase) other).getSplitArray();
         int numCols = endCol - startCol;
-        final int[] newSplitArray = Arrays.copyOf(splitArray, splitArray.length + numCols);
+        final int[] newSplitArray = Arrays.copyOf(splits(), splits().length + numCols);
 
-        int base = splitArray.length;
+        int base = splits().length;
         int start = startCol == 0 ? 0 : otherSplitArray[startCol - 1];
-        int offset = splitArray[splitArray.length - 1] - start;
+        int offset = splits()[splits().length - 1] - start;
         for(int c = 0; c < numCols; c++) {
             newSplitArray[base + c] = otherSplitArray[startCol + c] + offset;
         }
@@ -337,14 +341,14 @@ public class RowBase extends Row implements Serializable {
         if(!(other instanceof RowBase)) {
             return super.joinedWithSliceAndAddedColumn(addedColumn, other, startCol, endCol);
         }
-        final int[] otherSplitArray = ((RowBase) other).splitArray;
+        final int[] otherSplitArray = ((RowBase) other).getSplitArray();
         int numCols = endCol - startCol + 1;
-        final int[] newSplitArray = Arrays.copyOf(splitArray, splitArray.length + numCols);
+        final int[] newSplitArray = Arrays.copyOf(splits(), splits().length + numCols);
 
-        newSplitArray[splitArray.length] = splitArray[splitArray.length - 1] + addedColumn.length() + 1;
+        newSplitArray[splits().length] = splits()[splits().length - 1] + addedColumn.length() + 1;
 
-        int base = splitArray.length + 1;
-        int offset = newSplitArray[splitArray.length] - otherSplitArray[startCol - 1];
+        int base = splits().length + 1;
+        int offset = newSplitArray[splits().length] - otherSplitArray[startCol - 1];
         for(int c = 0; c < numCols - 1; c++) {
             newSplitArray[base + c] = otherSplitArray[startCol + c] + offset;
         }
@@ -362,13 +366,13 @@ public class RowBase extends Row implements Serializable {
     public Row slicedRow(int m, int n) {
         testColumnRange(m, n);
         int start1 = 0;
-        int stop1 = splitArray[1];
-        int length1 = splitArray[1] + ((numCols() > 2 && m != n) ? 1 : 0); // account for the tab
+        int stop1 = splits()[1];
+        int length1 = splits()[1] + ((numCols() > 2 && m != n) ? 1 : 0); // account for the tab
         int start2 = 0;
         int stop2 = 0;
         if (m != n) {
-            start2 = splitArray[m - 1] + 1;
-            stop2 = splitArray[n - 1];
+            start2 = splits()[m - 1] + 1;
+            stop2 = splits()[n - 1];
         }
         StringBuilder strbuff = new java.lang.StringBuilder(length1 + stop2 - start2);
         int i = start1;
@@ -389,7 +393,7 @@ public class RowBase extends Row implements Serializable {
 
     @Override
     public void addSingleColumnToRow(String s) {
-        splitArray = Arrays.copyOf(splitArray, splitArray.length + 1);
+        splitArray = Arrays.copyOf(splits(), splits().length + 1);
         splitArray[splitArray.length-1] = splitArray[splitArray.length - 2] + s.length() + 1;
         allCols = allCols + "\t" + s;
     }
@@ -399,8 +403,8 @@ public class RowBase extends Row implements Serializable {
         final int[] newSplitArray = new int[columns.length];
         int newLength = 0;
         for (final int column : columns) {
-            int start = column == 0 ? 0 : splitArray[column - 1];
-            int end = splitArray[column];
+            int start = column == 0 ? 0 : splits()[column - 1];
+            int end = splits()[column];
             newLength += end - start;
         }
         StringBuilder sb = new StringBuilder(newLength);
@@ -430,10 +434,10 @@ public class RowBase extends Row implements Serializable {
 
     @Override
     public Row rowWithAddedColumns(CharSequence[] cols) {
-        final int[] newSplitArray = Arrays.copyOf(splitArray, splitArray.length + cols.length);
+        final int[] newSplitArray = Arrays.copyOf(splits(), splits().length + cols.length);
         final StringBuilder newStringBuilder = new StringBuilder(allCols);
         final int numCols = numCols();
-        int offset = splitArray[numCols-1];
+        int offset = splits()[numCols-1];
         for(int i = 0; i < cols.length; i++) {
             newStringBuilder.append("\t");
             newStringBuilder.append(cols[i]);
@@ -451,7 +455,7 @@ public class RowBase extends Row implements Serializable {
         clone.chr = chr;
         clone.pos = pos;
         clone.allCols = allCols;
-        clone.splitArray = splitArray.clone();
+        clone.splitArray = splits().clone();
         return clone;
     }
 
@@ -486,11 +490,18 @@ public class RowBase extends Row implements Serializable {
     }
 
     private void addColumnToStringBuilder(StringBuilder sb, int column) {
-        int start = column == 0 ? 0 : splitArray[column - 1] + 1;
-        int end = splitArray[column];
+        int start = column == 0 ? 0 : splits()[column - 1] + 1;
+        int end = splits()[column];
         sb.append(allCols, start, end);
     }
 
+    private int[] splits() {
+        if (splitArray == null) {
+            splitArray = RowObj.splitArray(allCols);
+        }
+        return splitArray;
+    }
+
     private static int[] createSplitArray(CharSequence input, int numColumns) {
         int[] splitArray = new int[numColumns];
         fillSplitArray(input, splitArray);
@@ -0,0 +1,142 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.model;
+
+import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.binsearch.StringIntKey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.BiFunction;
+
+/**
+ * Genomic iterator over a stream of binary row batches, such as the results streamed from a gor server.
+ * <p>
+ * The stream is opened with the opener, with a null chromosome for the start of the data or the position of a seek.
+ * Seeking forward skips batches in the open stream, seeking backwards opens a new stream from the position, so an
+ * interrupted stream can be resumed from the last row read.
+ */
+public class RowBatchIterator extends GenomicIterator {
+    private final BiFunction<String, Integer, InputStream> opener;
+    private RowBatchReader reader;
+    private Row pushBack;
+    private StringIntKey lastKey;  // Position of the last row returned or of the last seek.
+    private int rowsAtLastKey = 0;  // Number of rows returned at the last position.
+
+    /**
+     * Constructor
+     * @param opener opens a row batch stream from the given chromosome and position, or the start if chromosome is null.
+     */
+    public RowBatchIterator(BiFunction<String, Integer, InputStream> opener) {
+        this.opener = opener;
+        open(null, 0);
+    }
+
+    @Override
+    public boolean seek(String chr, int pos) {
+        final StringIntKey key = new StringIntKey(chr, pos);
+        if (lastKey != null && key.compareTo(lastKey) < 0 || pushBack != null) {
+            closeReader();
+            open(chr, pos);
+        }
+        lastKey = key;
+        rowsAtLastKey = 0;
+        return reader.skipTo(chr, pos);
+    }
+
+    /**
+     * Open a new stream after the last row returned, to resume reading after the stream has failed.
+     */
+    public void resume() {
+        closeReader();
+        if (lastKey == null) {
+            open(null, 0);
+            return;
+        }
+        open(lastKey.chr, lastKey.bpair);
+        // Skip the rows that were already returned
+        int skipped = 0;
+        while (reader.hasNext()) {
+            final Row r = reader.next();
+            final int cmp = new StringIntKey(r.chr, r.pos).compareTo(lastKey);
+            if (cmp > 0 || cmp == 0 && skipped++ >= rowsAtLastKey) {
+                pushBack = r;
+                break;
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pushBack != null || reader.hasNext();
+    }
+
+    @Override
+    public Row next() {
+        final Row r;
+        if (pushBack != null) {
+            r = pushBack;
+            pushBack = null;
+        } else {
+            r = reader.next();
+        }
+        if (lastKey != null && lastKey.bpair == r.pos && lastKey.chr.equals(r.chr)) {
+            rowsAtLastKey++;
+        } else {
+            lastKey = new StringIntKey(r.chr, r.pos);
+            rowsAtLastKey = 1;
+        }
+        return r;
+    }
+
+    @Override
+    public boolean next(Line line) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        closeReader();
+    }
+
+    private void open(String chr, int pos) {
+        try {
+            reader = new RowBatchReader(opener.apply(chr, pos));
+        } catch (IOException e) {
+            throw new GorSystemException("Could not open row batch stream", e);
+        }
+        setHeader(reader.getHeader());
+    }
+
+    private void closeReader() {
+        pushBack = null;
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Nothing to do, a new stream is opened or the iterator is closed
+            }
+            reader = null;
+        }
+    }
+}
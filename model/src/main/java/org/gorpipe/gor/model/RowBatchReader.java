@@ -0,0 +1,231 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.model;
+
+import org.gorpipe.exceptions.GorDataException;
+import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.binsearch.StringIntKey;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads rows from a stream of binary row batches written by {@link RowBatchWriter}.
+ * <p>
+ * Rows are created with their column offsets, so their text is not parsed.  {@link #skipTo(String, int)} moves forward
+ * in the stream, skipping whole batches that end before the position without decompressing them.
+ */
+public class RowBatchReader implements Iterator<Row>, Closeable {
+    private final DataInputStream in;
+    private final String header;
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[64 * 1024];
+    private byte[] raw = new byte[64 * 1024];
+    private int rawLength = 0;
+    private int rawOffset = 0;
+    private int rowsLeft = 0;
+    private boolean ended = false;
+    private Row nextRow = null;
+    private String lastChr = null;
+
+    public RowBatchReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        if (this.in.readInt() != RowBatchWriter.MAGIC) {
+            throw new GorDataException("Not a row batch stream");
+        }
+        this.header = readString(this.in);
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRow == null) {
+            nextRow = readRow();
+        }
+        return nextRow != null;
+    }
+
+    @Override
+    public Row next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Row r = nextRow;
+        nextRow = null;
+        return r;
+    }
+
+    /**
+     * Move forward to the first row at or after the position.  Rows before the current row are not returned again.
+     *
+     * @return true if there is a row at or after the position.
+     */
+    public boolean skipTo(String chr, int pos) {
+        final StringIntKey key = new StringIntKey(chr, pos);
+        if (nextRow == null && rowsLeft == 0) {
+            skipFramesBefore(key);
+        }
+        while (hasNext()) {
+            if (key.compareTo(new StringIntKey(nextRow.chr, nextRow.pos)) <= 0) {
+                return true;
+            }
+            nextRow = null;
+            if (rowsLeft == 0) {
+                skipFramesBefore(key);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    private Row readRow() {
+        try {
+            if (rowsLeft == 0 && !readFrame(null)) {
+                return null;
+            }
+            rowsLeft--;
+            return decodeRow();
+        } catch (IOException e) {
+            throw new GorSystemException("Error reading row batch", e);
+        }
+    }
+
+    private void skipFramesBefore(StringIntKey key) {
+        try {
+            readFrame(key);
+        } catch (IOException e) {
+            throw new GorSystemException("Error reading row batch", e);
+        }
+    }
+
+    /**
+     * Read the next frame, skipping frames whose last row is before the key if it is given.
+     *
+     * @return false at the end of the stream.
+     */
+    private boolean readFrame(StringIntKey skipBefore) throws IOException {
+        while (!ended) {
+            final int rowCount = in.readInt();
+            if (rowCount == 0) {
+                ended = true;
+                break;
+            }
+            final int length = in.readInt();
+            final int compressedLength = in.readInt();
+            readString(in);
+            in.readInt();
+            final String frameLastChr = readString(in);
+            final int frameLastPos = in.readInt();
+            if (skipBefore != null && skipBefore.compareTo(new StringIntKey(frameLastChr, frameLastPos)) > 0) {
+                in.readFully(ensureCompressed(compressedLength), 0, compressedLength);
+                continue;
+            }
+            in.readFully(ensureCompressed(compressedLength), 0, compressedLength);
+            inflate(compressedLength, length);
+            rowsLeft = rowCount;
+            return true;
+        }
+        return false;
+    }
+
+    private byte[] ensureCompressed(int length) {
+        if (compressed.length < length) {
+            compressed = new byte[length];
+        }
+        return compressed;
+    }
+
+    private void inflate(int compressedLength, int length) throws IOException {
+        if (raw.length < length) {
+            raw = new byte[length];
+        }
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                n += inflater.inflate(raw, n, length - n);
+            }
+            if (n != length) {
+                throw new GorDataException("Truncated row batch");
+            }
+        } catch (DataFormatException e) {
+            throw new GorDataException("Corrupt row batch", e);
+        }
+        rawLength = length;
+        rawOffset = 0;
+    }
+
+    private Row decodeRow() {
+        final int pos = readVarInt();
+        final int numCols = readVarInt();
+        final int[] splitArray = new int[numCols];
+        int end = 0;
+        for (int i = 0; i < numCols; i++) {
+            end += readVarInt();
+            splitArray[i] = end;
+        }
+        final int textLength = readVarInt();
+        if (rawOffset + textLength > rawLength) {
+            throw new GorDataException("Corrupt row batch");
+        }
+        final String allCols = new String(raw, rawOffset, textLength, StandardCharsets.UTF_8);
+        rawOffset += textLength;
+
+        final int chrEnd = numCols > 0 ? splitArray[0] : allCols.length();
+        if (lastChr == null || lastChr.length() != chrEnd || !allCols.startsWith(lastChr)) {
+            lastChr = allCols.substring(0, chrEnd);
+        }
+        return new RowBase(lastChr, pos, allCols, splitArray, null);
+    }
+
+    private int readVarInt() {
+        int v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = raw[rawOffset++];
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
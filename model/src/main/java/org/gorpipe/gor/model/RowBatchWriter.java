@@ -0,0 +1,171 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.model;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+/**
+ * Writes rows as a stream of compressed binary row batches, read with {@link RowBatchReader}.
+ * <p>
+ * The stream starts with a magic number and the header, followed by frames.  Each frame is length prefixed and holds a
+ * batch of rows, with the chromosome and position of its first and last row uncompressed so a reader can skip frames
+ * when seeking.  Each row is stored with its position, its column end offsets and its text, so rows are read without
+ * parsing the text for tabs or positions.  A frame with no rows ends the stream.
+ * <p>
+ * Frame layout: {@code rowCount, rawLength, compressedLength, firstChr, firstPos, lastChr, lastPos, data}, where data is
+ * the deflated rows, each as {@code pos, numCols, column end offsets (delta encoded), text length, text (UTF-8)}.
+ */
+public class RowBatchWriter implements Closeable, Flushable {
+    static final int MAGIC = 0x47524231;  // GRB1
+    public static final int DEFAULT_BATCH_ROWS = Integer.parseInt(System.getProperty("gor.rowbatch.rows", "1024"));
+    private static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+
+    private final DataOutputStream out;
+    private final int batchRows;
+    private final Deflater deflater;
+    private final ByteArrayOutputStream raw = new ByteArrayOutputStream(64 * 1024);
+    private final DataOutputStream rawOut = new DataOutputStream(raw);
+    private byte[] compressed = new byte[64 * 1024];
+    private int rowCount = 0;
+    private String firstChr;
+    private int firstPos;
+    private String lastChr;
+    private int lastPos;
+
+    /**
+     * Constructor
+     * @param out       stream to write to.
+     * @param header    the header of the rows.
+     * @param batchRows maximum number of rows in a batch.
+     * @param level     deflate compression level.
+     */
+    public RowBatchWriter(OutputStream out, String header, int batchRows, int level) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.batchRows = Math.max(1, batchRows);
+        this.deflater = new Deflater(level);
+        this.out.writeInt(MAGIC);
+        writeString(this.out, header);
+    }
+
+    public RowBatchWriter(OutputStream out, String header) throws IOException {
+        this(out, header, DEFAULT_BATCH_ROWS, Deflater.BEST_SPEED);
+    }
+
+    public void write(Row r) throws IOException {
+        if (rowCount == 0) {
+            firstChr = r.chr;
+            firstPos = r.pos;
+        }
+        lastChr = r.chr;
+        lastPos = r.pos;
+
+        final CharSequence allCols = r.getAllCols();
+        final int numCols = r.numCols();
+        writeVarInt(rawOut, r.pos);
+        writeVarInt(rawOut, numCols);
+        int prev = 0;
+        for (int i = 0; i < numCols; i++) {
+            final int end = r.sa(i);
+            writeVarInt(rawOut, end - prev);
+            prev = end;
+        }
+        final byte[] text = allCols.toString().getBytes(StandardCharsets.UTF_8);
+        writeVarInt(rawOut, text.length);
+        rawOut.write(text);
+
+        rowCount++;
+        if (rowCount >= batchRows || raw.size() >= MAX_BATCH_BYTES) {
+            writeBatch();
+        }
+    }
+
+    /**
+     * Write the rows buffered so far as a batch and flush the stream, the reader receives them without waiting for a full
+     * batch.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBatch();
+        out.flush();
+    }
+
+    /**
+     * Write the buffered rows and the end of the stream, and close the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBatch();
+            out.writeInt(0);
+            out.close();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        if (rowCount == 0) {
+            return;
+        }
+        final byte[] rawBytes = raw.toByteArray();
+        deflater.reset();
+        deflater.setInput(rawBytes);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = java.util.Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        out.writeInt(rowCount);
+        out.writeInt(rawBytes.length);
+        out.writeInt(compressedLength);
+        writeString(out, firstChr);
+        out.writeInt(firstPos);
+        writeString(out, lastChr);
+        out.writeInt(lastPos);
+        out.write(compressed, 0, compressedLength);
+
+        raw.reset();
+        rowCount = 0;
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int v = (value << 1) ^ (value >> 31);  // Zig-zag, positions of nor rows can be negative
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+}
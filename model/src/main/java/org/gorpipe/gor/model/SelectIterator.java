@@ -35,4 +35,16 @@ public class SelectIterator extends GenomicIteratorAdapterBase {
     public Row next() {
         return this.iterator.next().rowWithSelectedColumns(this.cols);
     }
+
+    @Override
+    public boolean pushdownProjection(int[] columns) {
+        final int[] sourceColumns = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] >= this.cols.length) {
+                return false;
+            }
+            sourceColumns[i] = this.cols[columns[i]];
+        }
+        return this.iterator.pushdownProjection(sourceColumns);
+    }
 }
@@ -23,9 +23,8 @@
 package org.gorpipe.gor.model;
 
 import java.io.Closeable;
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 
 public class SharedChromSeqReferenceSource extends SharedCachedReferenceSource implements Closeable {
 
@@ -38,19 +37,14 @@ public class SharedChromSeqReferenceSource extends SharedCachedReferenceSource i
 
     @Override
     protected byte[] loadReference(String name) {
+        ByteBuffer sequence = ReferenceStore.chromSeq(Paths.get(referencePath)).getSequence(name);
 
-        File referenceFile = new File(referencePath, name + ".txt");
-
-        if (!referenceFile.exists()) {
+        if (sequence == null) {
             return new byte[0];
         }
 
-        try {
-            return Files.readAllBytes(referenceFile.toPath());
-        } catch (IOException ex) {
-            // we need to catch the exception and return an empty reference
-        }
-
-        return new byte[0];
+        byte[] bases = new byte[sequence.remaining()];
+        sequence.get(bases);
+        return bases;
     }
 }
@@ -28,6 +28,7 @@ import htsjdk.samtools.reference.ReferenceSequenceFile;
 import htsjdk.samtools.util.Log;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
 
 /**
  * Used to represent a CRAM reference, the backing source for which can either be
@@ -43,14 +44,34 @@ public class SharedFastaReferenceSource extends SharedCachedReferenceSource impl
 
     private static final Log log = Log.getInstance(htsjdk.samtools.cram.ref.ReferenceSource.class);
     private final ReferenceSequenceFile rsFile;
+    private final ReferenceStore store;
 
     public SharedFastaReferenceSource(final ReferenceSequenceFile rsFile, String referenceFileKey) {
+        this(rsFile, referenceFileKey, null);
+    }
+
+    /**
+     * @param store the store to read the sequences from, the sequences are only read from {@code rsFile} if it is
+     *              null.
+     */
+    public SharedFastaReferenceSource(final ReferenceSequenceFile rsFile, String referenceFileKey, ReferenceStore store) {
         super(referenceFileKey);
         this.rsFile = rsFile;
+        this.store = store;
     }
 
     @Override
     protected byte[] loadReference(String name) {
+        if (store != null) {
+            ByteBuffer sequence = store.getSequence(name);
+            if (sequence == null)
+                return new byte[0];
+
+            byte[] bases = new byte[sequence.remaining()];
+            sequence.get(bases);
+            return bases;
+        }
+
         if (rsFile == null || !rsFile.isIndexed())
             return new byte[0];
 
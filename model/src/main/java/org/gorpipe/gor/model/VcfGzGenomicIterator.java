@@ -24,6 +24,7 @@ package org.gorpipe.gor.model;
 
 import org.gorpipe.exceptions.GorDataException;
 import org.gorpipe.exceptions.GorResourceException;
+import org.gorpipe.gor.driver.adapters.ParallelBgzfInputStream;
 import org.gorpipe.gor.driver.adapters.PositionAwareInputStream;
 import org.gorpipe.gor.driver.providers.stream.sources.StreamSource;
 import org.gorpipe.gor.util.ByteTextBuilder;
@@ -33,13 +34,17 @@ import org.gorpipe.gor.util.Util;
 import org.gorpipe.model.gor.RowObj;
 import org.gorpipe.util.collection.ByteArray;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.zip.GZIPInputStream;
 
 /**
- * Simple genomic iterator for zipped vcf files, can not be seeked into
+ * Simple genomic iterator for zipped vcf files, can not be seeked into.
+ *
+ * Block gzipped files are inflated in parallel and their lines split as bytes, see {@link ParallelBgzfInputStream}.
  */
 public class VcfGzGenomicIterator extends GenomicIterator {
     public BufferedReader reader;
@@ -48,6 +53,11 @@ public class VcfGzGenomicIterator extends GenomicIterator {
     public String next;
     public ChrNameSystem chrNameSystem;
 
+    private ParallelBgzfInputStream bgzf;
+    private VcfRowBuilder rowBuilder;
+    private final ByteTextBuilder lineBuffer = new ByteTextBuilder(1024);
+    private boolean hasLine;
+
     int len = 0;
     private String fileName;
 
@@ -61,8 +71,22 @@ public class VcfGzGenomicIterator extends GenomicIterator {
     }
 
     public VcfGzGenomicIterator(GenomicIterator.ChromoLookup lookup, String file, StreamSource streamsource, boolean compressed) throws IOException {
-        this(lookup, file, new BufferedReader(new InputStreamReader(compressed ? new GZIPInputStream(new NCGZIPInputStream(new PositionAwareInputStream(streamsource.open()))) : streamsource.open())));
+        this(lookup);
         this.streamSource = streamsource;
+        if (compressed && isBgzf(streamsource)) {
+            bgzf = new ParallelBgzfInputStream(streamsource);
+            rowBuilder = new VcfRowBuilder(lookup);
+            fileName = file;
+            readHeader();
+        } else {
+            init(file, new BufferedReader(new InputStreamReader(compressed ? new GZIPInputStream(new NCGZIPInputStream(new PositionAwareInputStream(streamsource.open()))) : streamsource.open())));
+        }
+    }
+
+    private static boolean isBgzf(StreamSource streamsource) throws IOException {
+        try (InputStream in = new BufferedInputStream(streamsource.open(), 64)) {
+            return ParallelBgzfInputStream.isBgzf(in);
+        }
     }
 
     public VcfGzGenomicIterator(GenomicIterator.ChromoLookup lookup, String file, BufferedReader reader) throws IOException {
@@ -73,12 +97,22 @@ public class VcfGzGenomicIterator extends GenomicIterator {
     public void init(String file, BufferedReader reader) throws IOException {
         fileName = file;
         this.reader = reader;
+        readHeader();
+    }
+
+    private String readLine() throws IOException {
+        if (bgzf != null) {
+            return bgzf.readLine(lineBuffer) ? lineBuffer.toString() : null;
+        }
+        return reader.readLine();
+    }
 
+    private void readHeader() throws IOException {
         // Must iterate to the beginning of the file, ignoring commenting header lines
         String line;
         String contig = "##contig=<ID=";
         String length = "length=";
-        while ((line = reader.readLine()) != null && line.startsWith("##")) {
+        while ((line = readLine()) != null && line.startsWith("##")) {
             if (line.startsWith(contig)) {
                 if (chrNameSystem == null) {
                     if (line.substring(contig.length()).startsWith("chr")) {
@@ -101,16 +135,20 @@ public class VcfGzGenomicIterator extends GenomicIterator {
         }
         // support bgen_to_vcf
         while (line != null && !line.startsWith("#")) {
-            line = reader.readLine();
+            line = readLine();
         }
         if( line == null || !line.startsWith("#") ) {
-            throw new GorDataException("Error Initializing Query. Expected to find header line start with a single # in file " + file);
+            throw new GorDataException("Error Initializing Query. Expected to find header line start with a single # in file " + fileName);
         }
         String[] headerAll = StringUtil.splitToArray(line, 1, '\t');
 
         setHeader(String.join("\t",headerAll));
 
-        next = reader.readLine();
+        if (bgzf != null) {
+            hasLine = bgzf.readLine(lineBuffer);
+        } else {
+            next = reader.readLine();
+        }
     }
 
     @Override
@@ -121,6 +159,9 @@ public class VcfGzGenomicIterator extends GenomicIterator {
 
     @Override
     public boolean hasNext() {
+        if (bgzf != null) {
+            return hasNextLine();
+        }
         if (next != null) {
             return true;
         }
@@ -142,8 +183,26 @@ public class VcfGzGenomicIterator extends GenomicIterator {
         return row;
     }
 
+    private boolean hasNextLine() {
+        if (!hasLine) {
+            try {
+                hasLine = bgzf.readLine(lineBuffer);
+            } catch (IOException e) {
+                throw new GorResourceException("Error reading file", fileName, e);
+            }
+        }
+        return hasLine;
+    }
+
     @Override
     public Row next() {
+        if (bgzf != null) {
+            if (!hasNextLine()) {
+                return null;
+            }
+            hasLine = false;
+            return rowBuilder.createRow(lineBuffer.peekAtBuffer(), lineBuffer.length());
+        }
         if (next == null) {
             try {
                 next = reader.readLine();
@@ -180,6 +239,14 @@ public class VcfGzGenomicIterator extends GenomicIterator {
                 throw new RuntimeException("Failed closing VcfGzGenomicIterator reader", e);
             }
         }
+        if (bgzf != null) {
+            try {
+                bgzf.close();
+                bgzf = null;
+            } catch (IOException e) {
+                throw new GorResourceException("Failed closing VcfGzGenomicIterator reader", fileName, e);
+            }
+        }
         if (streamSource != null) {
             String name = "<unknown>";
             try {
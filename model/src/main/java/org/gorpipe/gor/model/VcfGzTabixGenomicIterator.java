@@ -22,31 +22,33 @@
 
 package org.gorpipe.gor.model;
 
-import htsjdk.tribble.readers.TabixReader;
 import org.gorpipe.exceptions.GorDataException;
 import org.gorpipe.exceptions.GorResourceException;
-import org.gorpipe.exceptions.GorSystemException;
-import org.gorpipe.gor.driver.adapters.StreamSourceSeekableStream;
+import org.gorpipe.gor.driver.adapters.ParallelBgzfInputStream;
+import org.gorpipe.gor.driver.providers.stream.datatypes.tabix.BgzfIndex;
 import org.gorpipe.gor.driver.providers.stream.sources.StreamSource;
 import org.gorpipe.gor.util.ByteTextBuilder;
 import org.gorpipe.gor.util.StringUtil;
-import org.gorpipe.gor.util.Util;
-import org.gorpipe.model.gor.RowObj;
-import org.gorpipe.util.collection.ByteArray;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
 /**
- * Simple genomic iterator for zipped vcf files with index
+ * Simple genomic iterator for zipped vcf files with a tabix or csi index
  */
 public class VcfGzTabixGenomicIterator extends GenomicIterator {
-    private TabixReader reader;
-    private TabixReader.Iterator iterator;
+    private final StreamSource source;
+    private final ParallelBgzfInputStream input;
+    private final BgzfIndex index;
+    private final VcfRowBuilder rowBuilder;
+    private final ByteTextBuilder lineBuffer = new ByteTextBuilder(1024);
     private List<String> chrs;
     private int hgSeekIndex = 0;
+    // Whether the input is positioned within the chromosome chrs[hgSeekIndex]
+    private boolean positioned = false;
 
     private Row nextRow = null;
 
@@ -59,22 +61,25 @@ public class VcfGzTabixGenomicIterator extends GenomicIterator {
     }
 
     public VcfGzTabixGenomicIterator(GenomicIterator.ChromoLookup lookup, StreamSource file, StreamSource idxfile) throws IOException {
-        fileName = file.getName();
-        init(lookup, new TabixReader(fileName, idxfile.getName(), new StreamSourceSeekableStream(file)));
-    }
-
-    private void init(GenomicIterator.ChromoLookup lookup, TabixReader reader) throws IOException {
-        this.reader = reader;
+        this.fileName = file.getName();
         this.lookup = lookup;
+        try {
+            this.index = BgzfIndex.read(idxfile.open());
+        } finally {
+            idxfile.close();
+        }
+        this.source = file;
+        this.input = new ParallelBgzfInputStream(file);
+        this.rowBuilder = new VcfRowBuilder(lookup);
         findHeader();
 
-        chrs = new ArrayList<>(reader.getChromosomes());
+        chrs = new ArrayList<>(index.getSequenceNames());
         chrs.sort(Comparator.naturalOrder());
     }
 
     private void findHeader() throws IOException {
         String line;
-        while ((line = reader.readLine()) != null && line.startsWith("##")) {
+        while ((line = readLine()) != null && line.startsWith("##")) {
             // Read all extra header lines
         }
         if (line == null || !line.startsWith("#")) {
@@ -85,41 +90,87 @@ public class VcfGzTabixGenomicIterator extends GenomicIterator {
         setHeader(String.join("\t",header));
     }
 
+    private String readLine() throws IOException {
+        return input.readLine(lineBuffer) ? lineBuffer.toString() : null;
+    }
+
     @Override
     public boolean seek(String chr, int pos) {
         nextRow = null;
-        hgSeekIndex = chrs.indexOf(chr);
-        if (hgSeekIndex == -1 && chr.startsWith("chr")) {
+        final String requestedChr = chr;
+        int seekIndex = chrs.indexOf(chr);
+        if (seekIndex == -1 && chr.startsWith("chr")) {
             chr = chr.substring(3);
-            hgSeekIndex = chrs.indexOf(chr);
+            seekIndex = chrs.indexOf(chr);
         }
-        iterator = reader.query(chr, Math.max(0, pos - 1), Integer.MAX_VALUE);
-        if (iterator != null) {
-            try {
-                String s = iterator.next();
-                while (s != null) {
-                    nextRow = createRow(s);
-                    if (nextRow.pos >= pos) {
-                        return true;
-                    }
-                    s = iterator.next();
-                }
+        if (seekIndex == -1) {
+            // Continue with the first chromosome in the file following the requested one
+            hgSeekIndex = -Collections.binarySearch(chrs, requestedChr) - 1;
+            positioned = false;
+            return false;
+        }
+        hgSeekIndex = seekIndex;
+        try {
+            if (!positionAt(chr, pos)) {
                 return false;
-            } catch (IOException e) {
-                throw new GorResourceException("Error reading file while seeking", fileName, e);
             }
+            while (readRow()) {
+                if (hgSeekIndex != seekIndex) {
+                    return false;
+                }
+                if (nextRow.pos >= pos) {
+                    return true;
+                }
+                nextRow = null;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new GorResourceException("Error reading file while seeking", fileName, e);
         }
-        return false;
     }
 
-    private Row createRow(String s) {
-        Row row = RowObj.apply(s);
-        String chr = lookup.chrToName(row.chr);
-        if (!chr.equals(row.chr)) {
-            String s2 = String.format("%s\t%d\t%s", chr, row.pos, row.otherCols());
-            row = RowObj.apply(s2);
+    /**
+     * Positions the input at the first record of the chromosome which can reach the position, or moves on to the next
+     * chromosome if there is none.
+     */
+    private boolean positionAt(String chr, int pos) throws IOException {
+        final long offset = index.startOffset(chr, pos);
+        if (offset < 0) {
+            hgSeekIndex++;
+            positioned = false;
+            return false;
         }
-        return row;
+        input.seek(offset);
+        positioned = true;
+        return true;
+    }
+
+    /**
+     * Reads the next row into nextRow. Returns false when the current chromosome has ended. If the file continues
+     * directly with the next chromosome in order, its first row is read and hgSeekIndex is moved to it.
+     */
+    private boolean readRow() throws IOException {
+        while (input.readLine(lineBuffer)) {
+            if (lineBuffer.length() == 0) {
+                continue;
+            }
+            final Row row = rowBuilder.createRow(lineBuffer.peekAtBuffer(), lineBuffer.length());
+            final String chr = rowBuilder.getLastChr();
+            if (!chr.equals(chrs.get(hgSeekIndex))) {
+                hgSeekIndex++;
+                if (hgSeekIndex < chrs.size() && chr.equals(chrs.get(hgSeekIndex))) {
+                    nextRow = row;
+                    return true;
+                }
+                positioned = false;
+                return false;
+            }
+            nextRow = row;
+            return true;
+        }
+        hgSeekIndex++;
+        positioned = false;
+        return false;
     }
 
     @Override
@@ -127,52 +178,28 @@ public class VcfGzTabixGenomicIterator extends GenomicIterator {
         if (nextRow != null) {
             return true;
         }
-        if (iterator == null) {
-            iterator = reader.query(chrs.get(hgSeekIndex), 0, Integer.MAX_VALUE);
-        }
-        if (iterator != null) {
-            try {
-                String s = iterator.next();
-                if (s == null) {
-                    iterator = null;
-                    hgSeekIndex++;
-                    if(hgSeekIndex < chrs.size()) {
-                        return hasNext();
-                    } else {
-                        return false;
+        try {
+            while (hgSeekIndex < chrs.size()) {
+                if (positioned || positionAt(chrs.get(hgSeekIndex), 1)) {
+                    if (readRow()) {
+                        return true;
                     }
-                } else {
-                    nextRow = createRow(s);
-                    return true;
                 }
-            } catch (IOException e) {
-                throw new GorResourceException("Error reading file", fileName, e);
             }
+        } catch (IOException e) {
+            throw new GorResourceException("Error reading file", fileName, e);
         }
         return false;
     }
 
     @Override
     public Row next() {
-        if (nextRow != null) {
-            Row row = nextRow;
-            nextRow = null;
-            return row;
+        if (!hasNext()) {
+            return null;
         }
-        if (iterator == null) {
-            iterator = reader.query(chrs.get(hgSeekIndex), 0, Integer.MAX_VALUE);
-        }
-
-        if (iterator != null) {
-            try {
-                final String s = iterator.next();
-                return createRow(s);
-            } catch (IOException e) {
-                throw new GorResourceException("Error reading file", fileName, e);
-            }
-        }
-
-        return null;
+        Row row = nextRow;
+        nextRow = null;
+        return row;
     }
 
     @Override
@@ -183,16 +210,10 @@ public class VcfGzTabixGenomicIterator extends GenomicIterator {
     @Override
     public void close() {
         try {
-            if (iterator != null) {
-                iterator = null;
-            }
-
-            if (reader != null) {
-                reader.close();
-                reader = null;
-            }
+            input.close();
+            source.close();
         } catch (Exception e) {
-            throw new RuntimeException("unable to close tabixreader", e);
+            throw new RuntimeException("unable to close vcf file", e);
         }
     }
 }
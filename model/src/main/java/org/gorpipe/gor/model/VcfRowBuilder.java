@@ -0,0 +1,88 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.model;
+
+import org.gorpipe.exceptions.GorDataException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds rows from vcf lines given as bytes. Only the chromosome and position are parsed, the remaining columns,
+ * including the per sample columns, are located when a downstream step first accesses them.
+ */
+class VcfRowBuilder {
+    private final GenomicIterator.ChromoLookup lookup;
+
+    private byte[] lastChr = new byte[0];
+    private String lastChrName;
+    private String lastGorChrName;
+
+    VcfRowBuilder(GenomicIterator.ChromoLookup lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * @return The chromosome name of the last row, as it appears in the file.
+     */
+    String getLastChr() {
+        return lastChrName;
+    }
+
+    Row createRow(byte[] buf, int len) {
+        int chrEnd = 0;
+        while (chrEnd < len && buf[chrEnd] != '\t') {
+            chrEnd++;
+        }
+        if (chrEnd == len) {
+            throw new GorDataException("Vcf line has too few columns: " + new String(buf, 0, len, StandardCharsets.UTF_8));
+        }
+        if (chrEnd != lastChr.length || !Arrays.equals(buf, 0, chrEnd, lastChr, 0, chrEnd)) {
+            lastChr = Arrays.copyOf(buf, chrEnd);
+            lastChrName = new String(lastChr, StandardCharsets.UTF_8);
+            lastGorChrName = lookup.chrToName(lastChrName);
+        }
+
+        int i = chrEnd + 1;
+        int pos = 0;
+        while (i < len && buf[i] != '\t') {
+            final int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new GorDataException("Invalid position in vcf line: " + new String(buf, 0, len, StandardCharsets.UTF_8));
+            }
+            pos = pos * 10 + digit;
+            i++;
+        }
+        if (i == chrEnd + 1) {
+            throw new GorDataException("Missing position in vcf line: " + new String(buf, 0, len, StandardCharsets.UTF_8));
+        }
+
+        final String allCols;
+        if (lastGorChrName.equals(lastChrName)) {
+            allCols = new String(buf, 0, len, StandardCharsets.UTF_8);
+        } else {
+            allCols = lastGorChrName + new String(buf, chrEnd, len - chrEnd, StandardCharsets.UTF_8);
+        }
+        return new RowBase(lastGorChrName, pos, allCols);
+    }
+}
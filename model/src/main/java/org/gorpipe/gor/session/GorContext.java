@@ -22,6 +22,7 @@
 
 package org.gorpipe.gor.session;
 
+import org.gorpipe.gor.stats.QueryProfile;
 import org.gorpipe.gor.stats.StatsCollector;
 
 import java.util.ArrayList;
@@ -36,6 +37,7 @@ public class GorContext {
 
     private Optional<String> sortCols = Optional.empty();
     private StatsCollector stats = null;
+    private QueryProfile profile = null;
 
     private long startedAt = System.currentTimeMillis();
     private long endedAt = 0;
@@ -114,10 +116,24 @@ public class GorContext {
         return stats;
     }
 
+    /**
+     * @return profile of the pipelines run in this context, or null if the session is not profiling.
+     */
+    public synchronized QueryProfile getProfile() {
+        if (profile == null && session.isProfiling()) {
+            profile = new QueryProfile();
+        }
+        return profile;
+    }
+
     public String getCommand() {
         return command;
     }
 
+    public GorContext getOuterContext() {
+        return outerContext;
+    }
+
     public GorContext[] getNestedContexts() {
         return nestedContexts.toArray(new GorContext[0]);
     }
@@ -23,6 +23,7 @@
 package org.gorpipe.gor.session;
 
 import org.gorpipe.gor.model.DefaultEventLogger;
+import org.gorpipe.gor.stats.QueryProfile;
 
 /**
  * Gor session object. Stores project context, system context and the session cache.
@@ -30,11 +31,13 @@ import org.gorpipe.gor.model.DefaultEventLogger;
 public class GorSession implements AutoCloseable {
 
     private boolean norContext;
+    private boolean profiling = QueryProfile.isEnabledByDefault();
     private final String requestId;
     private ProjectContext projectContext;
     private SystemContext systemContext;
     private GorSessionCache cache;
     private EventLogger eventLogger;
+    private MemoryBudget memoryBudget;
 
     private final GorContext gorContext = new GorContext(this);
 
@@ -74,6 +77,17 @@ public class GorSession implements AutoCloseable {
         this.norContext = norContext;
     }
 
+    /**
+     * @return true if the pipelines run in the session are profiled.
+     */
+    public boolean isProfiling() {
+        return this.profiling;
+    }
+
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+
     public ProjectContext getProjectContext() {
         return this.projectContext;
     }
@@ -94,7 +108,22 @@ public class GorSession implements AutoCloseable {
         return gorContext;
     }
 
+    /**
+     * @return the memory budget of the queries run in the session, released when the session is closed.
+     */
+    public synchronized MemoryBudget getMemoryBudget() {
+        if (memoryBudget == null) {
+            memoryBudget = MemoryBudget.forQuery(requestId);
+        }
+        return memoryBudget;
+    }
+
     public void close() {
+        synchronized (this) {
+            if (memoryBudget != null) {
+                memoryBudget.close();
+            }
+        }
         if (eventLogger != null) {
             eventLogger.endSession();
         }
@@ -0,0 +1,267 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+package org.gorpipe.gor.session;
+
+import org.gorpipe.exceptions.custom.GorLowMemoryException;
+import org.gorpipe.gor.monitor.CancelMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Budget of heap bytes that the large memory consumers of queries reserve from before they grow.
+ * <p>
+ * There is one global budget for the process, and a budget for each query session that reserves from the global one,
+ * so a reservation is refused when either the query or the process is out of budget.  Consumers that can spill to
+ * disk (sort, group) spill when a reservation is refused, shared caches stop growing, and consumers that must hold
+ * their rows (maps, join buffers) fail their query with {@link GorLowMemoryException} rather than running the whole
+ * process out of heap.
+ * <p>
+ * Before a query runs it is admitted with the estimated bytes it needs, reserved from the global budget up front.
+ * Queries wait for admission while the global budget does not have room for their estimate.  The estimate is given
+ * by {@value QUERY_ESTIMATE_KEY}, when it is not set queries only wait while the global budget is used up.
+ * <p>
+ * The budgets are estimates of retained heap made by the consumers, not measurements.
+ */
+public class MemoryBudget implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MemoryBudget.class);
+
+    /** Bytes of the global budget, defaults to three quarters of the max heap. */
+    public static final String BUDGET_KEY = "gor.memory.budget";
+    /** Bytes of the budget of each query, defaults to half the global budget. */
+    public static final String QUERY_BUDGET_KEY = "gor.memory.query.budget";
+    /** Bytes a query is estimated to need, reserved from the global budget when it is admitted. */
+    public static final String QUERY_ESTIMATE_KEY = "gor.memory.query.estimate";
+    /** Milliseconds a query waits for admission before it fails. */
+    public static final String ADMISSION_TIMEOUT_KEY = "gor.memory.admission.timeout";
+
+    private static final MemoryBudget GLOBAL = new MemoryBudget("global",
+            Long.getLong(BUDGET_KEY, Runtime.getRuntime().maxMemory() / 4 * 3), null);
+    private static final InheritableThreadLocal<MemoryBudget> CURRENT = new InheritableThreadLocal<>();
+
+    private final String name;
+    private final long limit;
+    private final MemoryBudget parent;
+    private long reserved;
+    private long admitted;
+    private long peak;
+    private volatile boolean closed;
+
+    MemoryBudget(String name, long limit, MemoryBudget parent) {
+        this.name = name;
+        this.limit = limit;
+        this.parent = parent;
+    }
+
+    /**
+     * @return the budget of the process.
+     */
+    public static MemoryBudget global() {
+        return GLOBAL;
+    }
+
+    /**
+     * @return new budget for a query, reserving from the global budget.
+     */
+    public static MemoryBudget forQuery(String name) {
+        return new MemoryBudget(name, Long.getLong(QUERY_BUDGET_KEY, GLOBAL.limit / 2), GLOBAL);
+    }
+
+    /**
+     * Set the budget of the query run by the current thread, and the threads it starts.
+     */
+    public static void setCurrent(MemoryBudget budget) {
+        CURRENT.set(budget);
+    }
+
+    /**
+     * Clear the budget of the current thread if it is the given one, when the query using it ends.  Threads started
+     * by the query inherit the budget and may outlive it, they fall back to the global budget once it is closed.
+     */
+    public static void clearCurrent(MemoryBudget budget) {
+        if (CURRENT.get() == budget) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * @return the budget of the query run by the current thread, or the global budget if there is none or the query
+     * has ended.  Consumers that may be created on pooled threads should be given the budget of their session instead.
+     */
+    public static MemoryBudget current() {
+        MemoryBudget budget = CURRENT.get();
+        return budget != null && !budget.closed ? budget : GLOBAL;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public synchronized long getReserved() {
+        return reserved;
+    }
+
+    public synchronized long getPeak() {
+        return peak;
+    }
+
+    /**
+     * @return bytes that can still be reserved from this budget, not considering the budgets it reserves from.
+     */
+    public synchronized long getAvailable() {
+        return Math.max(0, limit - reserved);
+    }
+
+    /**
+     * Reserve bytes if both this budget and the budget it reserves from have room for them.
+     *
+     * @return true if the bytes were reserved, false if the consumer should spill or stop growing.
+     */
+    public boolean tryReserve(long bytes) {
+        return reserve(bytes, false);
+    }
+
+    /**
+     * Reserve bytes whether or not there is room for them, for memory that is already held.  Going over the budget
+     * makes other reservations fail until it is released.
+     */
+    public void forceReserve(long bytes) {
+        reserve(bytes, true);
+    }
+
+    private synchronized boolean reserve(long bytes, boolean force) {
+        if (!force && reserved + bytes > limit) {
+            return false;
+        }
+        if (parent != null) {
+            long fromParent = Math.max(0, reserved + bytes - admitted) - Math.max(0, reserved - admitted);
+            if (fromParent > 0) {
+                if (force) {
+                    parent.forceReserve(fromParent);
+                } else if (!parent.tryReserve(fromParent)) {
+                    return false;
+                }
+            }
+        }
+        reserved += bytes;
+        peak = Math.max(peak, reserved);
+        return true;
+    }
+
+    /**
+     * Release reserved bytes.  Bytes released after the budget has been closed are ignored.
+     */
+    public synchronized void release(long bytes) {
+        long toRelease = Math.min(bytes, reserved);
+        if (parent != null) {
+            long toParent = Math.max(0, reserved - admitted) - Math.max(0, reserved - toRelease - admitted);
+            if (toParent > 0) {
+                parent.release(toParent);
+            }
+        }
+        reserved -= toRelease;
+        notifyAll();
+    }
+
+    /**
+     * Admit the query to run, waiting until the global budget has room for the estimated bytes it needs.
+     *
+     * @param monitor monitor to check for cancellation while waiting, or null.
+     * @return true if the query was admitted, false if it was cancelled while waiting.
+     * @throws GorLowMemoryException if the query waited longer than {@value ADMISSION_TIMEOUT_KEY}.
+     */
+    public boolean admit(CancelMonitor monitor) {
+        if (parent == null) {
+            return true;
+        }
+        long estimate = Math.min(Long.getLong(QUERY_ESTIMATE_KEY, 0), limit);
+        long timeout = Long.getLong(ADMISSION_TIMEOUT_KEY, 10 * 60 * 1000);
+        if (!parent.acquire(name, estimate, timeout, monitor)) {
+            return false;
+        }
+        synchronized (this) {
+            // Reservations made before admission are already taken from the global budget.
+            long alreadyReserved = Math.min(reserved, estimate);
+            admitted = estimate;
+            if (alreadyReserved > 0) {
+                parent.release(alreadyReserved);
+            }
+        }
+        return true;
+    }
+
+    private synchronized boolean acquire(String query, long bytes, long timeout, CancelMonitor monitor) {
+        long start = System.currentTimeMillis();
+        boolean waiting = false;
+        // A query estimated to need more than there is room for is admitted once nothing else holds the budget.
+        while (reserved > 0 && reserved + bytes > limit) {
+            if (monitor != null && monitor.isCancelled()) {
+                return false;
+            }
+            long remaining = start + timeout - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new GorLowMemoryException(String.format("Query %s waited %d ms for %d MB of memory, %d of %d MB are in use",
+                        query, timeout, bytes >> 20, reserved >> 20, limit >> 20));
+            }
+            if (!waiting) {
+                log.info("Query {} waiting for {} MB of memory, {} of {} MB are in use", query, bytes >> 20,
+                        reserved >> 20, limit >> 20);
+                waiting = true;
+            }
+            try {
+                wait(Math.min(remaining, 1000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        reserved += bytes;
+        peak = Math.max(peak, reserved);
+        if (waiting) {
+            log.info("Query {} admitted after waiting {} ms", query, System.currentTimeMillis() - start);
+        }
+        return true;
+    }
+
+    /**
+     * Release everything reserved from this budget, and the admission estimate, back to the global budget.  Consumers
+     * still holding reservations when the query ends can release them later, it is then ignored.
+     */
+    @Override
+    public synchronized void close() {
+        if (parent != null) {
+            long toParent = Math.max(reserved, admitted);
+            if (toParent > 0) {
+                parent.release(toParent);
+            }
+            if (peak > 0) {
+                log.debug("Query {} reserved at most {} MB of memory", name, peak >> 20);
+            }
+        }
+        reserved = 0;
+        admitted = 0;
+        closed = true;
+    }
+}
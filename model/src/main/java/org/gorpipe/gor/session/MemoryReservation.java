@@ -0,0 +1,119 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+package org.gorpipe.gor.session;
+
+/**
+ * Bytes reserved from a {@link MemoryBudget} by one memory consumer, such as a sort buffer or a hash map.
+ * <p>
+ * The bytes are taken from the budget in chunks, so a consumer can account for each row it holds without contending
+ * on the budget.  The reservation should be closed when the consumer drops its rows.  Not thread safe.
+ */
+public class MemoryReservation implements AutoCloseable {
+    static final long CHUNK = 1024 * 1024;
+
+    private final MemoryBudget budget;
+    private long used;
+    private long granted;
+
+    /**
+     * Reservation from the budget of the query run by the current thread.
+     */
+    public MemoryReservation() {
+        this(MemoryBudget.current());
+    }
+
+    public MemoryReservation(MemoryBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Estimated heap bytes of a string, or a row, of the given length.
+     */
+    public static long stringBytes(int length) {
+        return 40 + 2L * length;
+    }
+
+    /**
+     * Reserve bytes if the budget has room for them.
+     *
+     * @return true if the bytes were reserved, false if the consumer should spill or stop growing.
+     */
+    public boolean tryReserve(long bytes) {
+        if (used + bytes > granted) {
+            long grant = roundUp(used + bytes - granted);
+            if (!budget.tryReserve(grant)) {
+                return false;
+            }
+            granted += grant;
+        }
+        used += bytes;
+        return true;
+    }
+
+    /**
+     * Reserve bytes whether or not the budget has room for them, for memory the consumer can not do without.
+     */
+    public void forceReserve(long bytes) {
+        if (used + bytes > granted) {
+            long grant = roundUp(used + bytes - granted);
+            budget.forceReserve(grant);
+            granted += grant;
+        }
+        used += bytes;
+    }
+
+    /**
+     * Release bytes, whole chunks beyond the one in use are returned to the budget.
+     */
+    public void release(long bytes) {
+        used = Math.max(0, used - bytes);
+        long keep = roundUp(used) + CHUNK;
+        if (granted > keep) {
+            budget.release(granted - keep);
+            granted = keep;
+        }
+    }
+
+    public MemoryBudget getBudget() {
+        return budget;
+    }
+
+    public long getUsed() {
+        return used;
+    }
+
+    /**
+     * Return all the reserved bytes to the budget.
+     */
+    @Override
+    public void close() {
+        if (granted > 0) {
+            budget.release(granted);
+        }
+        granted = 0;
+        used = 0;
+    }
+
+    private static long roundUp(long bytes) {
+        return (bytes + CHUNK - 1) / CHUNK * CHUNK;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Profile of one pipeline, the source and each of its steps in order.
+ */
+public class PipeProfile {
+    private final String query;
+    private final List<StepProfile> steps = Collections.synchronizedList(new ArrayList<>());
+
+    public PipeProfile(String query) {
+        this.query = query;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Add a step after the steps already added.
+     */
+    public StepProfile addStep(String name) {
+        StepProfile step = new StepProfile(name);
+        steps.add(step);
+        return step;
+    }
+
+    public List<StepProfile> getSteps() {
+        synchronized (steps) {
+            return new ArrayList<>(steps);
+        }
+    }
+
+    /**
+     * @return true if any row went through the pipeline, pipelines created only to find a header are not.
+     */
+    public boolean hasRun() {
+        for (StepProfile step : getSteps()) {
+            if (step.getRows() > 0 || step.getNanos() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Profile of the pipelines run in a gor context, and the time spent waiting at the thread boundaries between them and
+ * their sources.  The profiles of nested contexts, such as create statements and pgor partitions, are kept in the
+ * nested contexts.
+ */
+public class QueryProfile {
+    /** System property enabling profiling for all sessions. */
+    public static final String PROFILE_KEY = "gor.query.profile";
+
+    private final List<PipeProfile> pipes = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, LongAdder> waits = new ConcurrentSkipListMap<>();
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    public static boolean isEnabledByDefault() {
+        return Boolean.getBoolean(PROFILE_KEY);
+    }
+
+    /**
+     * Add the profile of a pipeline run in the context.
+     */
+    public PipeProfile addPipe(String query) {
+        PipeProfile pipe = new PipeProfile(query);
+        pipes.add(pipe);
+        return pipe;
+    }
+
+    public List<PipeProfile> getPipes() {
+        synchronized (pipes) {
+            return new ArrayList<>(pipes);
+        }
+    }
+
+    /**
+     * Add time spent waiting at a boundary.
+     *
+     * @param boundary name of the boundary, and which side of it waited.
+     * @param nanos    time waited.
+     */
+    public void addWait(String boundary, long nanos) {
+        waits.computeIfAbsent(boundary, k -> new LongAdder()).add(nanos);
+    }
+
+    /**
+     * @return nanoseconds waited by boundary name.
+     */
+    public Map<String, Long> getWaits() {
+        Map<String, Long> result = new TreeMap<>();
+        waits.forEach((k, v) -> result.put(k, v.sum()));
+        return result;
+    }
+
+    /**
+     * Mark the profile as reported.
+     *
+     * @return true if it had not been reported before.
+     */
+    public boolean markReported() {
+        return reported.compareAndSet(false, true);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.stats;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.session.GorContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Report of the profiles of a gor context and its nested contexts, as a text tree or as json.
+ * <p>
+ * For each context the report has its duration, the time waited at its thread boundaries, and for each pipeline run in
+ * it the rows, self time, row size and estimated allocation of the source and each step.
+ */
+public class QueryProfileReport {
+    private static final Logger log = LoggerFactory.getLogger(QueryProfileReport.class);
+
+    private static final int MAX_NAME_LENGTH = 60;
+
+    private QueryProfileReport() {}
+
+    public static class StepInfo {
+        public String name;
+        public long rows;
+        public double selfMs;
+        public double bytesPerRow;
+        public long allocatedBytes;
+    }
+
+    public static class PipeInfo {
+        public String query;
+        public List<StepInfo> steps = new ArrayList<>();
+    }
+
+    public static class ContextInfo {
+        public String name;
+        public String signature;
+        public long durationMs;
+        public Map<String, Double> waitMs = new LinkedHashMap<>();
+        public List<PipeInfo> pipes = new ArrayList<>();
+        public List<ContextInfo> nested = new ArrayList<>();
+    }
+
+    /**
+     * Log the report of the context, if it has been profiled and not reported before.
+     */
+    public static void log(GorContext context) {
+        QueryProfile profile = context.getProfile();
+        if (profile != null && profile.markReported()) {
+            log.info("Query profile for request {}\n{}", context.getSession().getRequestId(), toText(context));
+        }
+    }
+
+    /**
+     * @return the profiles of the context and its nested contexts, null if the context was not profiled.
+     */
+    public static ContextInfo getInfo(GorContext context) {
+        if (context.getProfile() == null) {
+            return null;
+        }
+        ContextInfo info = new ContextInfo();
+        info.name = context.getName();
+        info.signature = context.getSignature();
+        info.durationMs = context.getDuration();
+        context.getProfile().getWaits().forEach((k, v) -> info.waitMs.put(k, v / 1e6));
+        for (PipeProfile pipe : context.getProfile().getPipes()) {
+            if (!pipe.hasRun()) {
+                continue;
+            }
+            PipeInfo pipeInfo = new PipeInfo();
+            pipeInfo.query = pipe.getQuery();
+            for (StepProfile step : pipe.getSteps()) {
+                StepInfo stepInfo = new StepInfo();
+                stepInfo.name = step.getName();
+                stepInfo.rows = step.getRows();
+                stepInfo.selfMs = step.getNanos() / 1e6;
+                stepInfo.bytesPerRow = step.getBytesPerRow();
+                stepInfo.allocatedBytes = step.getEstimatedAllocatedBytes();
+                pipeInfo.steps.add(stepInfo);
+            }
+            info.pipes.add(pipeInfo);
+        }
+        for (GorContext nested : context.getNestedContexts()) {
+            ContextInfo nestedInfo = getInfo(nested);
+            if (nestedInfo != null && (!nestedInfo.pipes.isEmpty() || !nestedInfo.nested.isEmpty())) {
+                info.nested.add(nestedInfo);
+            }
+        }
+        return info;
+    }
+
+    public static String toJson(GorContext context) {
+        try {
+            return new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(getInfo(context));
+        } catch (JsonProcessingException e) {
+            throw new GorSystemException("Could not write query profile", e);
+        }
+    }
+
+    public static String toText(GorContext context) {
+        StringBuilder text = new StringBuilder();
+        ContextInfo info = getInfo(context);
+        if (info != null) {
+            appendContext(text, info, "");
+        }
+        return text.toString();
+    }
+
+    private static void appendContext(StringBuilder text, ContextInfo info, String indent) {
+        text.append(indent).append(info.name).append(String.format(" %d ms%n", info.durationMs));
+        for (Map.Entry<String, Double> wait : info.waitMs.entrySet()) {
+            text.append(indent).append(String.format("  wait %s %.1f ms%n", wait.getKey(), wait.getValue()));
+        }
+        for (PipeInfo pipe : info.pipes) {
+            double totalMs = 0;
+            for (StepInfo step : pipe.steps) {
+                totalMs += step.selfMs;
+            }
+            text.append(indent).append(String.format("  %-" + MAX_NAME_LENGTH + "s %12s %10s %6s %9s %12s%n",
+                    "step", "rows", "self ms", "%", "bytes/row", "alloc MB"));
+            for (StepInfo step : pipe.steps) {
+                text.append(indent).append(String.format("  %-" + MAX_NAME_LENGTH + "s %12d %10.1f %5.1f%% %9.1f %12.1f%n",
+                        abbreviate(step.name), step.rows, step.selfMs, totalMs > 0 ? 100.0 * step.selfMs / totalMs : 0.0,
+                        step.bytesPerRow, step.allocatedBytes / (1024.0 * 1024.0)));
+            }
+        }
+        for (ContextInfo nested : info.nested) {
+            appendContext(text, nested, indent + "  ");
+        }
+    }
+
+    private static String abbreviate(String name) {
+        String oneLine = name.replaceAll("\\s+", " ");
+        return oneLine.length() <= MAX_NAME_LENGTH ? oneLine : oneLine.substring(0, MAX_NAME_LENGTH - 3) + "...";
+    }
+}
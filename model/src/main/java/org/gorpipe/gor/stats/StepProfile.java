@@ -0,0 +1,94 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.stats;
+
+/**
+ * Time, rows and sampled sizes of one step of a profiled pipeline.
+ * <p>
+ * The time is the self time of the step, the time spent in the steps after it is not included.  Row and allocation
+ * sizes are measured on a sample of the rows and estimated for the rest.  A step is only updated from the thread
+ * running it, the profile is read when the query has ended.
+ */
+public class StepProfile {
+    private final String name;
+    private long rows;
+    private long nanos;
+    private long sampledRows;
+    private long sampledBytes;
+    private long sampledAllocatedBytes;
+
+    public StepProfile(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Count a row into the step.
+     *
+     * @return number of rows into the step, including this one.
+     */
+    public long addRow() {
+        return ++rows;
+    }
+
+    public void addNanos(long delta) {
+        nanos += delta;
+    }
+
+    /**
+     * Add a measured row.
+     *
+     * @param bytes          size of the row.
+     * @param allocatedBytes bytes allocated by the step while processing the row.
+     */
+    public void addSample(int bytes, long allocatedBytes) {
+        sampledRows++;
+        sampledBytes += bytes;
+        sampledAllocatedBytes += allocatedBytes;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return average size of the rows into the step, or 0 if no row was measured.
+     */
+    public double getBytesPerRow() {
+        return sampledRows > 0 ? (double) sampledBytes / sampledRows : 0.0;
+    }
+
+    /**
+     * @return estimated bytes allocated by the step for all its rows, or 0 if no row was measured.
+     */
+    public long getEstimatedAllocatedBytes() {
+        return sampledRows > 0 ? Math.max(0, sampledAllocatedBytes * rows / sampledRows) : 0;
+    }
+}
@@ -431,6 +431,7 @@ public abstract class BaseTable<T extends BucketableTableEntry> {
                         logAfter(TableLog.LogAction.DELETE, bucket, lineToRemoveFrom);
                     } else {
                         lineToRemoveFrom.setBucket("");
+                        tableEntries.markChanged(lineToRemoveFrom);
                         logAfter(TableLog.LogAction.REMOVEFROMBUCKET, bucket, lineToRemoveFrom);
                     }
                 }
@@ -481,6 +482,7 @@ public abstract class BaseTable<T extends BucketableTableEntry> {
             fingerPrintString.append(getPath().toString());
             fingerPrintString.append((byte) '&');
             fingerPrintString.append(getLastModifiedTime(getPath().toString(), securityContext, commonRoot));
+            fingerPrintString.append(TableJournal.signature(getPath()));
         }
 
         return fingerPrintString.md5();
@@ -707,6 +709,7 @@ public abstract class BaseTable<T extends BucketableTableEntry> {
                             line.getContentRelative(), lineToUpdate.getBucket(), bucketLogical));
                 }
                 lineToUpdate.setBucket(bucketLogical);
+                tableEntries.markChanged(lineToUpdate);
                 logAfter(TableLog.LogAction.ADDTOBUCKET, bucketLogical, line);
             } else {
                 // No line found, must have been deleted.  To be able to use the bucket we must add a new line.
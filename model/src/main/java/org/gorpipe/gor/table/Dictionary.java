@@ -22,26 +22,38 @@
 
 package org.gorpipe.gor.table;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import org.gorpipe.exceptions.GorDataException;
 import org.gorpipe.exceptions.GorException;
 import org.gorpipe.exceptions.GorResourceException;
 import org.gorpipe.exceptions.GorSystemException;
+import org.gorpipe.gor.table.dictionary.DictionaryEntry;
 import org.gorpipe.gor.util.StringUtil;
 import org.gorpipe.gor.util.Util;
 import org.gorpipe.util.collection.IntArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Stream;
+import java.util.function.Function;
 
 /**
  * Class representing GOR Dictionary
@@ -107,6 +119,13 @@ import java.util.stream.Stream;
 public class Dictionary {
     private static final Logger log = LoggerFactory.getLogger(Dictionary.class);
     final private static Map<String, Dictionary> dictCache = new ConcurrentHashMap<>();   //A map from dictionaries to the cache objects.
+    final private static Map<String, Object> dictLocks = new ConcurrentHashMap<>();   //A map from dictionaries to the locks held while they are read.
+    final private static int TAIL_CHECK_LENGTH = 256;   //The number of bytes before the end of the parsed part of a dictionary that must be unchanged for an append.
+    //A map from dictionary, version and tags to the corresponding lines, shared by all dictionaries and bounded by the total number of lines.
+    final private static Cache<String, DictionaryLine[]> tagsToListCache = CacheBuilder.newBuilder()
+            .maximumWeight(Long.parseLong(System.getProperty("gor.dictionary.cache.tags.lines", "5000000")))
+            .weigher((String key, DictionaryLine[] lines) -> lines.length + 1)
+            .build();
 
 
     public final boolean isDictionaryWithBuckets; // source col from dictionary files can be hiden if no buckets and no -f filters
@@ -122,29 +141,39 @@ public class Dictionary {
     final private Set<String> validTags;    //Set containing all not deleted tags in the dictionary.
     final private String path;
     private final boolean useCache;
+    final private String commonRoot;
+    final private ParsedPart parsedPart;  //The part of the dictionary file which has been read, null if lines can not be appended to it.
+    final private JournalPart journalPart;  //The dictionary lines with the journal applied, null if there were no journal records.
 
-    private final Map<String, DictionaryLine[]> tagsToListCache;
-
-    public synchronized static Dictionary getDictionary(String path, String uniqueID, String commonRoot) {
+    public static Dictionary getDictionary(String path, String uniqueID, String commonRoot) {
         return getDictionary(path, uniqueID, commonRoot, true);
     }
 
-    public synchronized static Dictionary getDictionary(String path, String uniqueID, String commonRoot, boolean useCache) {
+    public static Dictionary getDictionary(String path, String uniqueID, String commonRoot, boolean useCache) {
         if (useCache) {
             if (uniqueID == null || uniqueID.equals("")) {
                 dictCache.remove(path);
-                return processDictionary(path, uniqueID, commonRoot, true);
+                return processDictionary(path, uniqueID, commonRoot, true, null);
             } else {
-                return dictCache.compute(path, (p, d) -> {
-                    if (d == null || !d.fileSignature.equals(uniqueID)) {
-                        return processDictionary(p, uniqueID, commonRoot, true);
-                    } else {
+                // Journal commits may not change the signature of the dictionary file, see TableJournal.signature
+                uniqueID += TableJournal.signature(Paths.get(path));
+                final Dictionary cached = dictCache.get(path);
+                if (cached != null && cached.fileSignature.equals(uniqueID)) {
+                    return cached;
+                }
+                // Only readers of the same dictionary wait for each other
+                synchronized (dictLocks.computeIfAbsent(path, p -> new Object())) {
+                    final Dictionary d = dictCache.get(path);
+                    if (d != null && d.fileSignature.equals(uniqueID)) {
                         return d;
                     }
-                });
+                    final Dictionary dict = processDictionary(path, uniqueID, commonRoot, true, d);
+                    dictCache.put(path, dict);
+                    return dict;
+                }
             }
         } else {
-            return processDictionary(path, uniqueID, commonRoot, false);
+            return processDictionary(path, uniqueID, commonRoot, false, null);
         }
     }
 
@@ -152,7 +181,7 @@ public class Dictionary {
                        DictionaryLine[] activeDictionaryLines, Map<String, Integer> mapBucketIndex,
                        int[] bucketTotalCount, int[] bucketActiveCount, String[] bucketResetNames,
                        Set<String>[] bucketTags, Multimap<String, String> bucketHasDeletedFile, Set<String> validTags,
-                       boolean useCache) {
+                       boolean useCache, String commonRoot, ParsedPart parsedPart, JournalPart journalPart) {
         this.path = path;
         this.fileSignature = uniqueId;
         this.tagsToActiveLines = tagsToActiveLines;
@@ -166,18 +195,25 @@ public class Dictionary {
         this.validTags = validTags;
         this.isDictionaryWithBuckets = this.bucketTotalCount.length > 0;
         this.useCache = useCache;
-        this.tagsToListCache = this.useCache ? new ConcurrentHashMap<>() : null;
+        this.commonRoot = commonRoot;
+        this.parsedPart = parsedPart;
+        this.journalPart = journalPart;
     }
 
     public DictionaryLine[] getSources(Set<String> tags, boolean allowBucketAccess, boolean isSilentTagFilter) {
         final DictionaryLine[] toReturn;
         final Set<String> badTags = new HashSet<>();
         if (this.useCache) {
-            final String orderedTags = orderTags(tags);
-            toReturn = tagsToListCache.compute(orderedTags, (key, list) -> list == null ? generateList(tags, allowBucketAccess, badTags) : list);
-            // Removing the entry from cache due to invalid tags should be separate from throwing the data exception
-            if (badTags.size() > 0) {
-                tagsToListCache.remove(orderedTags);
+            final String key = this.path + '\t' + this.fileSignature + '\t' + allowBucketAccess + '\t' + orderTags(tags);
+            final DictionaryLine[] cached = tagsToListCache.getIfPresent(key);
+            if (cached != null) {
+                toReturn = cached;
+            } else {
+                toReturn = generateList(tags, allowBucketAccess, badTags);
+                // Lists with invalid tags are not cached, the data exception is thrown below
+                if (badTags.isEmpty()) {
+                    tagsToListCache.put(key, toReturn);
+                }
             }
         } else {
             toReturn = generateList(tags, allowBucketAccess, badTags);
@@ -299,70 +335,367 @@ public class Dictionary {
     }
 
     /**
-     * Read filename, alias, range and tags from tab delimited text file
+     * Read filename, alias, range and tags from tab delimited text file. If the file has only been appended to since
+     * {@code previous} was read, only the appended lines are read and added to a copy of it.  Likewise, if only
+     * records have been committed to the journal of the table since, only those records are applied.
      *
      * @return Cache object with all important info about the dictionary.
      */
-    private static Dictionary processDictionary(String path, String uniqueId, String commonRoot, boolean useCache) {
-        final List<Set<String>> bucketTagsList = new ArrayList<>();
-        final List<String> resetBucketNames = new ArrayList<>();
-        final IntArray bucketTotalCounts = new IntArray();
-        final IntArray bucketActiveCount = new IntArray();
-        final Map<String, Integer> bucketToIdx = new HashMap<>();
+    private static Dictionary processDictionary(String path, String uniqueId, String commonRoot, boolean useCache, Dictionary previous) {
         final Path gordPath = Paths.get(path);
         final FileReference dictFileParent = getDictionaryFileParent(gordPath, commonRoot);
         final FileReference bucketsParent = getBucketsPath(dictFileParent, commonRoot);
-        final List<DictionaryLine> activeDictionaryLines = new ArrayList<>();
-        final Map<String, IntArray> tagsToLines = new LinkedHashMap<>();
-        final Set<String> validTags = new HashSet<>();
-        final Multimap<String, String> bucketHasDeletedFile = ArrayListMultimap.create(); //This is changed if we find a deleted line with bucket.
         if (Files.exists(gordPath)) {
-            try (final Stream<String> stream = Files.newBufferedReader(gordPath).lines()) {
-                stream.map(String::trim)
-                        .filter(line -> !(line.isEmpty() || line.charAt(0) == '#'))
-                        .map(line -> parseDictionaryLine(line, dictFileParent, path))
-                        .filter(Objects::nonNull)
-                        .forEach(dictLine -> processLine(bucketTagsList, resetBucketNames, bucketTotalCounts, bucketActiveCount, bucketToIdx, bucketsParent, activeDictionaryLines, tagsToLines, validTags, bucketHasDeletedFile, dictLine)
-                        );
+            try {
+                final Object fileKey = Files.readAttributes(gordPath, BasicFileAttributes.class).fileKey();
+                final boolean sameRoot = previous != null && Objects.equals(previous.commonRoot, commonRoot);
+                // The journal is read before the dictionary file, see TableJournal.
+                final Path journalPath = TableJournal.journalPath(gordPath);
+                if (sameRoot && previous.journalPart != null) {
+                    final JournalPart part = previous.journalPart;
+                    final TableJournal.Records appended = TableJournal.readRecords(journalPath, part.journalLength, part.journalFileKey);
+                    if (appended != null && part.gordPart.isSameAs(gordPath, fileKey)) {
+                        log.debug("Applying {} journal records to dictionary {}", appended.records.size(), path);
+                        return applyJournal(previous, appended, dictFileParent, bucketsParent, path)
+                                .build(path, uniqueId, useCache, commonRoot);
+                    }
+                }
+                final TableJournal.Records journal = TableJournal.readRecords(journalPath, 0, null);
+                if (!journal.records.isEmpty()) {
+                    log.debug("Reading dictionary {} with {} journal records", path, journal.records.size());
+                    final ParsedPart gordPart = ParsedPart.of(gordPath, fileKey);
+                    final URI rootUri = rootUri(gordPath);
+                    final LinkedHashMap<String, String> lines = readKeyedLines(gordPath, rootUri);
+                    TableJournal.apply(journal.records, lines, Function.identity(), line -> keyOfLine(line, rootUri));
+                    final DictionaryBuilder builder = new DictionaryBuilder().readLines(lines.values(), dictFileParent, bucketsParent, path);
+                    builder.journalPart = new JournalPart(gordPart, journal.length, journal.fileKey, rootUri, lines);
+                    return builder.build(path, uniqueId, useCache, commonRoot);
+                }
+                final DictionaryBuilder builder;
+                long offset = 0;
+                if (sameRoot && previous.parsedPart != null && previous.parsedPart.isPrefixOf(gordPath, fileKey)) {
+                    log.debug("Reading lines appended to dictionary {} after byte {}", path, previous.parsedPart.length);
+                    builder = new DictionaryBuilder(previous);
+                    offset = previous.parsedPart.length;
+                } else {
+                    builder = new DictionaryBuilder();
+                }
+                return builder.read(gordPath, offset, fileKey, dictFileParent, bucketsParent)
+                        .build(path, uniqueId, useCache, commonRoot);
             } catch (IOException ex) {
                 throw new GorResourceException("Error Initializing Query. Can not open file " + path, path, ex);
             }
         }
-        final Map<String, int[]> newTagsToLines = new HashMap<>();
-        tagsToLines.forEach((tag, arr) -> newTagsToLines.put(tag, arr.toArray()));
-        return new Dictionary(path, uniqueId, newTagsToLines, activeDictionaryLines.toArray(new DictionaryLine[0]), bucketToIdx,
-                bucketTotalCounts.toArray(), bucketActiveCount.toArray(), resetBucketNames.toArray(new String[0]),
-                bucketTagsList.toArray(new Set[0]), bucketHasDeletedFile, validTags, useCache);
+        return new DictionaryBuilder().build(path, uniqueId, useCache, commonRoot);
     }
 
-    private static void processLine(List<Set<String>> bucketTagsList, List<String> resetBucketNames, IntArray bucketTotalCounts, IntArray bucketActiveCount,
-                                    Map<String, Integer> bucketToIdx, FileReference bucketsParent, List<DictionaryLine> activeDictionaryLines, Map<String, IntArray> tagsToLines,
-                                    Set<String> validTags, Multimap<String, String> bucketHasDeletedFile, DictionaryLine dictLine) {
-        if (dictLine.bucket != null) {
-            final int bucketIdx = bucketToIdx.computeIfAbsent(dictLine.bucket, bucket -> {
-                resetBucketNames.add(resetFilePath(bucket, bucket.contains("://") ? new FileReference("") : bucketsParent).physical);
-                bucketTagsList.add(new HashSet<>());
-                bucketActiveCount.add(0);
-                bucketTotalCounts.add(0);
-                return bucketToIdx.size();
-            });
-            bucketTotalCounts.increment(bucketIdx);
-            if (dictLine.isDeleted) {
-                bucketHasDeletedFile.put(Paths.get(dictLine.bucket).getFileName().toString(), dictLine.alias);
-                bucketTagsList.get(bucketIdx).add(dictLine.alias);
-            } else {
-                bucketActiveCount.increment(bucketIdx);
-                bucketTagsList.get(bucketIdx).addAll(dictLine.tags);
+    /**
+     * Apply records appended to the journal to the previous dictionary.  Records that add new entries are added to a
+     * copy of it, as lines appended to the dictionary file are.  Records that change or remove entries change a copy of
+     * the lines of the previous dictionary, which is then read again.
+     */
+    private static DictionaryBuilder applyJournal(Dictionary previous, TableJournal.Records appended, FileReference dictFileParent,
+                                                  FileReference bucketsParent, String path) {
+        final JournalPart part = previous.journalPart;
+        final LinkedHashMap<String, String> added = new LinkedHashMap<>();
+        boolean onlyAdded = true;
+        for (String record : appended.records) {
+            final String line = TableJournal.entryLine(record);
+            final String key = keyOfLine(line, part.rootUri);
+            if (!TableJournal.isPut(record) || part.lines.containsKey(key) || added.containsKey(key)) {
+                onlyAdded = false;
+                break;
+            }
+            added.put(key, line);
+        }
+        final LinkedHashMap<String, String> lines;
+        final DictionaryBuilder builder;
+        if (onlyAdded) {
+            builder = new DictionaryBuilder(previous).readLines(added.values(), dictFileParent, bucketsParent, path);
+            // The previous dictionary is replaced, its lines are only used to apply later records
+            lines = part.lines;
+            lines.putAll(added);
+        } else {
+            lines = new LinkedHashMap<>(part.lines);
+            TableJournal.apply(appended.records, lines, Function.identity(), line -> keyOfLine(line, part.rootUri));
+            builder = new DictionaryBuilder().readLines(lines.values(), dictFileParent, bucketsParent, path);
+        }
+        builder.journalPart = new JournalPart(part.gordPart, appended.length, appended.fileKey, part.rootUri, lines);
+        return builder;
+    }
+
+    /**
+     * Get the lines of the dictionary file by the key of their table entry.
+     */
+    private static LinkedHashMap<String, String> readKeyedLines(Path gordPath, URI rootUri) throws IOException {
+        final LinkedHashMap<String, String> lines = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(gordPath)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#') continue;
+                lines.put(keyOfLine(line, rootUri), line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Root of the table the dictionary file belongs to, as the table resolves its entries against.
+     */
+    private static URI rootUri(Path gordPath) {
+        final Path absolutePath = gordPath.toAbsolutePath();
+        final Path rootPath = PathUtils.normalize(absolutePath.getParent() != null ? absolutePath.getParent() : Paths.get("")).toAbsolutePath();
+        return PathUtils.normalize(Paths.get(rootPath + "/").toUri());
+    }
+
+    /**
+     * Key of a dictionary line, the key of its table entry: the file, tags and range, and the bucket if the file is
+     * deleted.
+     */
+    private static String keyOfLine(String line, URI rootUri) {
+        final DictionaryEntry entry = DictionaryEntry.parseEntry(line, rootUri);
+        return entry != null ? entry.getKey() : line;
+    }
+
+    /**
+     * The part of a dictionary file which has been read, given by its length and the bytes at its end. The file can
+     * only have been appended to if it still starts with that part, which is checked by comparing those bytes.
+     */
+    private static class ParsedPart {
+        final long length;
+        final byte[] tail;
+        final Object fileKey;
+
+        ParsedPart(long length, byte[] tail, Object fileKey) {
+            this.length = length;
+            this.tail = tail;
+            this.fileKey = fileKey;
+        }
+
+        /**
+         * Get the whole file as parsed part.
+         */
+        static ParsedPart of(Path gordPath, Object fileKey) throws IOException {
+            try (final SeekableByteChannel channel = Files.newByteChannel(gordPath)) {
+                final long length = channel.size();
+                final ByteBuffer tail = ByteBuffer.allocate((int) Math.min(TAIL_CHECK_LENGTH, length));
+                channel.position(length - tail.capacity());
+                while (tail.hasRemaining() && channel.read(tail) >= 0) {
+                    // Read until the buffer is full
+                }
+                return new ParsedPart(length, tail.array(), fileKey);
+            }
+        }
+
+        boolean isPrefixOf(Path gordPath, Object fileKey) throws IOException {
+            return matches(gordPath, fileKey, false);
+        }
+
+        /**
+         * @return true if the file has not changed since this part was read.
+         */
+        boolean isSameAs(Path gordPath, Object fileKey) throws IOException {
+            return matches(gordPath, fileKey, true);
+        }
+
+        private boolean matches(Path gordPath, Object fileKey, boolean sameLength) throws IOException {
+            if (!Objects.equals(this.fileKey, fileKey)) {
+                return false;
+            }
+            try (final SeekableByteChannel channel = Files.newByteChannel(gordPath)) {
+                if (channel.size() < this.length || (sameLength && channel.size() != this.length)) {
+                    return false;
+                }
+                final ByteBuffer buffer = ByteBuffer.allocate(this.tail.length);
+                channel.position(this.length - this.tail.length);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Read until the buffer is full
+                }
+                return !buffer.hasRemaining() && Arrays.equals(buffer.array(), this.tail);
             }
         }
-        if (!dictLine.isDeleted) {
-            dictLine.tags.forEach(tag -> {
-                // Have seen the same tag before? If not, put it and an empty array to the tags-to-lines map.
-                tagsToLines.computeIfAbsent(tag, someVariableName -> new IntArray());
-                tagsToLines.get(tag).add(activeDictionaryLines.size());    //Put this line to the array with the lines which this tag corresponds to.
-                validTags.add(tag);
+    }
+
+    /**
+     * The lines of a dictionary file with the records of its journal applied, by the key of their table entry, and the
+     * parts of the dictionary file and journal they were read from.
+     */
+    private static class JournalPart {
+        final ParsedPart gordPart;
+        final long journalLength;
+        final Object journalFileKey;
+        final URI rootUri;
+        final LinkedHashMap<String, String> lines;
+
+        JournalPart(ParsedPart gordPart, long journalLength, Object journalFileKey, URI rootUri, LinkedHashMap<String, String> lines) {
+            this.gordPart = gordPart;
+            this.journalLength = journalLength;
+            this.journalFileKey = journalFileKey;
+            this.rootUri = rootUri;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * Collects the lines of a dictionary, either from the start or on top of a dictionary which has been read before.
+     * The structures of the previous dictionary are copied, and bucket tag sets only when they change, so the previous
+     * dictionary can still be used while the appended lines are read.
+     */
+    private static class DictionaryBuilder {
+        final List<Set<String>> bucketTagsList;
+        final BitSet copiedBucketTags = new BitSet();
+        final List<String> resetBucketNames;
+        final IntArray bucketTotalCounts;
+        final IntArray bucketActiveCount;
+        final Map<String, Integer> bucketToIdx;
+        final List<DictionaryLine> activeDictionaryLines;
+        final Map<String, int[]> previousTagsToLines;
+        final Map<String, IntArray> tagsToLines = new LinkedHashMap<>();
+        final Set<String> validTags;
+        final Multimap<String, String> bucketHasDeletedFile; //This is changed if we find a deleted line with bucket.
+        ParsedPart parsedPart;
+        JournalPart journalPart;
+
+        DictionaryBuilder() {
+            this.bucketTagsList = new ArrayList<>();
+            this.resetBucketNames = new ArrayList<>();
+            this.bucketTotalCounts = new IntArray();
+            this.bucketActiveCount = new IntArray();
+            this.bucketToIdx = new HashMap<>();
+            this.activeDictionaryLines = new ArrayList<>();
+            this.previousTagsToLines = Collections.emptyMap();
+            this.validTags = new HashSet<>();
+            this.bucketHasDeletedFile = ArrayListMultimap.create();
+        }
+
+        DictionaryBuilder(Dictionary previous) {
+            this.bucketTagsList = new ArrayList<>(Arrays.asList(previous.bucketTags));
+            this.resetBucketNames = new ArrayList<>(Arrays.asList(previous.bucketResetNames));
+            this.bucketTotalCounts = new IntArray(previous.bucketTotalCount.length);
+            this.bucketTotalCounts.add(previous.bucketTotalCount);
+            this.bucketActiveCount = new IntArray(previous.bucketActiveCount.length);
+            this.bucketActiveCount.add(previous.bucketActiveCount);
+            this.bucketToIdx = new HashMap<>(previous.mapBucketIndex);
+            this.activeDictionaryLines = new ArrayList<>(Arrays.asList(previous.activeDictionaryLines));
+            this.previousTagsToLines = previous.tagsToActiveLines;
+            this.validTags = new HashSet<>(previous.validTags);
+            this.bucketHasDeletedFile = ArrayListMultimap.create(previous.bucketHasDeletedFile);
+        }
+
+        /**
+         * Reads the lines of the file from {@code offset}. Only complete lines are remembered as parsed, a last line
+         * without a line ending is read but then the file can not be appended to.
+         */
+        DictionaryBuilder read(Path gordPath, long offset, Object fileKey, FileReference dictFileParent, FileReference bucketsParent) throws IOException {
+            final String path = gordPath.toString();
+            long length = offset;
+            try (final SeekableByteChannel channel = Files.newByteChannel(gordPath)) {
+                channel.position(offset);
+                final InputStream in = Channels.newInputStream(channel);
+                final ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[1 << 16];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    int lineStart = 0;
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] == '\n') {
+                            lineBytes.write(buffer, lineStart, i - lineStart);
+                            length += lineBytes.size() + 1;
+                            processLine(new String(lineBytes.toByteArray(), StandardCharsets.UTF_8), dictFileParent, bucketsParent, path);
+                            lineBytes.reset();
+                            lineStart = i + 1;
+                        }
+                    }
+                    lineBytes.write(buffer, lineStart, read - lineStart);
+                }
+                if (lineBytes.size() > 0) {
+                    processLine(new String(lineBytes.toByteArray(), StandardCharsets.UTF_8), dictFileParent, bucketsParent, path);
+                    this.parsedPart = null;
+                } else {
+                    final ByteBuffer tail = ByteBuffer.allocate((int) Math.min(TAIL_CHECK_LENGTH, length));
+                    channel.position(length - tail.capacity());
+                    while (tail.hasRemaining() && channel.read(tail) >= 0) {
+                        // Read until the buffer is full
+                    }
+                    this.parsedPart = new ParsedPart(length, tail.array(), fileKey);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Reads the given lines, the result can not be appended to.
+         */
+        DictionaryBuilder readLines(Collection<String> lines, FileReference dictFileParent, FileReference bucketsParent, String path) {
+            for (String line : lines) {
+                processLine(line, dictFileParent, bucketsParent, path);
+            }
+            this.parsedPart = null;
+            return this;
+        }
+
+        private void processLine(String line, FileReference dictFileParent, FileReference bucketsParent, String path) {
+            final String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.charAt(0) == '#') return;
+            final DictionaryLine dictLine = parseDictionaryLine(trimmed, dictFileParent, path);
+            if (dictLine != null) {
+                processLine(bucketsParent, dictLine);
+            }
+        }
+
+        private void processLine(FileReference bucketsParent, DictionaryLine dictLine) {
+            if (dictLine.bucket != null) {
+                final int bucketIdx = bucketToIdx.computeIfAbsent(dictLine.bucket, bucket -> {
+                    resetBucketNames.add(resetFilePath(bucket, bucket.contains("://") ? new FileReference("") : bucketsParent).physical);
+                    copiedBucketTags.set(bucketTagsList.size());
+                    bucketTagsList.add(new HashSet<>());
+                    bucketActiveCount.add(0);
+                    bucketTotalCounts.add(0);
+                    return bucketToIdx.size();
+                });
+                if (!copiedBucketTags.get(bucketIdx)) {
+                    // The tag set may still be used by the previous dictionary
+                    bucketTagsList.set(bucketIdx, new HashSet<>(bucketTagsList.get(bucketIdx)));
+                    copiedBucketTags.set(bucketIdx);
+                }
+                bucketTotalCounts.increment(bucketIdx);
+                if (dictLine.isDeleted) {
+                    bucketHasDeletedFile.put(Paths.get(dictLine.bucket).getFileName().toString(), dictLine.alias);
+                    bucketTagsList.get(bucketIdx).add(dictLine.alias);
+                } else {
+                    bucketActiveCount.increment(bucketIdx);
+                    bucketTagsList.get(bucketIdx).addAll(dictLine.tags);
+                }
+            }
+            if (!dictLine.isDeleted) {
+                dictLine.tags.forEach(tag -> {
+                    // Have seen the same tag before? If not, put it and an empty array to the tags-to-lines map.
+                    tagsToLines.computeIfAbsent(tag, someVariableName -> new IntArray());
+                    tagsToLines.get(tag).add(activeDictionaryLines.size());    //Put this line to the array with the lines which this tag corresponds to.
+                    validTags.add(tag);
+                });
+                activeDictionaryLines.add(dictLine);
+            }
+        }
+
+        Dictionary build(String path, String uniqueId, boolean useCache, String commonRoot) {
+            final Map<String, int[]> newTagsToLines = new HashMap<>(previousTagsToLines);
+            tagsToLines.forEach((tag, arr) -> {
+                final int[] previousLines = newTagsToLines.get(tag);
+                if (previousLines == null) {
+                    newTagsToLines.put(tag, arr.toArray());
+                } else {
+                    final IntArray lines = new IntArray(previousLines.length + arr.size());
+                    lines.add(previousLines);
+                    lines.add(arr.toArray());
+                    newTagsToLines.put(tag, lines.toArray());
+                }
             });
-            activeDictionaryLines.add(dictLine);
+            return new Dictionary(path, uniqueId, newTagsToLines, activeDictionaryLines.toArray(new DictionaryLine[0]), bucketToIdx,
+                    bucketTotalCounts.toArray(), bucketActiveCount.toArray(), resetBucketNames.toArray(new String[0]),
+                    bucketTagsList.toArray(new Set[0]), bucketHasDeletedFile, validTags, useCache, commonRoot, parsedPart,
+                    journalPart);
         }
     }
 
@@ -65,6 +65,29 @@ public interface ITableEntries<T extends BucketableTableEntry> {
      */
     List<T> getEntries(String... tags);
 
+    /**
+     * Get the tag index for the entries.  Entry ids in the index are positions in {@link #getEntries()}.
+     * @return the tag index for the entries.
+     */
+    TagIndex getTagIndex();
+
+    /**
+     * Drop the tag index, it must be called if entries are changed in place.
+     */
+    void invalidateTagIndex();
+
+    /**
+     * Record that the entry has been changed in place, drops the tag index.
+     * @param entry the changed entry.
+     */
+    void markChanged(T entry);
+
+    /**
+     * Get the journal of the changes made since the entries were loaded.
+     * @return the journal.
+     */
+    TableJournal getJournal();
+
     /**
      * Get iterator to iterate through all the entries.
      * @return iterator for all the entries.
@@ -89,6 +89,32 @@ public class TableAccessOptimizer {
         optimizeFileList(allowBucketAccess);
     }
 
+    /**
+     * Update from the tag index of the entries, so only the entries selected by the tags are visited and bucket usage
+     * is counted from the selected entries.  Gives the same lines as {@link #update(Collection, Map, boolean)}.
+     *
+     * @param entries all the entries, including the deleted ones, in the order they are indexed in.
+     * @param index   the tag index for the entries.
+     */
+    public void update(List<? extends DictionaryEntry> entries, TagIndex index, Map<Integer, Set<String>> columnTags, boolean allowBucketAccess) {
+        this.lines.clear();
+        this.hasBuckets = false;
+
+        for (int bucket = 0; bucket < index.getBucketCount(); bucket++) {
+            final BucketEntry entry = getEntryEnsureExits(index.getBucket(bucket));
+            entry.entries = entries;
+            entry.entryIds = index.getBucketEntries(bucket);
+            bucketTotalFileCounts.set(entry.id, entry.entryIds.length);
+        }
+
+        final BitSet selected = index.select(columnTags.get(3));
+        for (int id = selected.nextSetBit(0); id >= 0; id = selected.nextSetBit(id + 1)) {
+            addSource(entries.get(id), index.getEntryBucket(id));
+        }
+
+        optimizeFileList(allowBucketAccess);
+    }
+
     public static boolean match(Collection<String> lineTags, Set<String> queryTags, String alias) {
         if (lineTags == null || lineTags.size() == 0) {
             if (alias != null) return queryTags.contains(alias) || queryTags.isEmpty();
@@ -241,11 +267,12 @@ public class TableAccessOptimizer {
                 if (replace.contains(bucket)) { // All files from this bucket will be replaced with the bucket
                     final BucketEntry entry = mapIndexBuckets.get(bucket);
 
+                    final List<String> tags = entry.getTags();
                     if (log.isTraceEnabled()) {
-                        log.trace("Bucket used={} with tags={}", entry.file, entry.tags.toString());
+                        log.trace("Bucket used={} with tags={}", entry.file, tags.toString());
                     }
                     // Fake dictionary line.
-                    this.lines.add(new DictionaryEntry.Builder<>(entry.file, table.getRootUri()).tags(entry.tags).sourceInserted(true).build());
+                    this.lines.add(new DictionaryEntry.Builder<>(entry.file, table.getRootUri()).tags(tags).sourceInserted(true).build());
                     replace.remove(bucket);
                 } else if (bucket == -1 || include.contains(bucket)) { // all files from this bucket are to be included as they were
                     if (log.isTraceEnabled()) {
@@ -287,12 +314,24 @@ public class TableAccessOptimizer {
         final int id;
         final String file;
         final ArrayList<String> tags = new ArrayList<String>();
+        // When updated from a tag index, the tags are only collected from the entries if the bucket is used
+        List<? extends DictionaryEntry> entries;
+        int[] entryIds;
 
         BucketEntry(int index, String file) {
             this.id = index;
             this.file = file;
         }
 
+        List<String> getTags() {
+            if (entryIds != null && tags.isEmpty()) {
+                for (int entryId : entryIds) {
+                    tags.add(entries.get(entryId).getAliasTag());
+                }
+            }
+            return tags;
+        }
+
         @Override
         public int hashCode() {
             return id;
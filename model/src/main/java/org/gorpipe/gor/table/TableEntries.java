@@ -56,10 +56,14 @@ public class TableEntries<T extends BucketableTableEntry> implements ITableEntri
     // a little bit longer as you could get small list of values you need to loop through.
     private ArrayListMultimap<Integer, T> tagHashToLines;
     private ArrayListMultimap<Integer, T> contentHashToLines;
+    private TagIndex tagIndex;
+    private boolean modifiedSinceLoad = false;
     private int nextIndexOrderKey = 0;
     private final Path path;
+    private final Path tagIndexPath;
     private final URI rootUri;
     private final String tableName;
+    private final TableJournal journal;
 
     /**
      * Construct new dict file from the given path and chromosome cache.
@@ -68,11 +72,21 @@ public class TableEntries<T extends BucketableTableEntry> implements ITableEntri
      * Another option would be using google TypeToken, but we had problem getting that working.
      */
     public TableEntries(Path path, Class<? extends T> clazzOfT) {
+        this(path, clazzOfT, null);
+    }
+
+    /**
+     * Construct new dict file from the given path, reading the tag index saved at {@code tagIndexPath} when it is
+     * up to date with the file.
+     */
+    public TableEntries(Path path, Class<? extends T> clazzOfT, Path tagIndexPath) {
         this.clazzOfT = clazzOfT;
+        this.tagIndexPath = tagIndexPath;
         Path rootPath = normalize(path.getParent() != null ? path.getParent() : Paths.get("")).toAbsolutePath();
         this.rootUri = normalize(Paths.get(rootPath + "/").toUri());
         this.path = rootPath.resolve(path.getFileName());
         this.tableName = FilenameUtils.removeExtension(path.getFileName().toString());
+        this.journal = new TableJournal(this.path);
     }
 
     @Override
@@ -95,6 +109,8 @@ public class TableEntries<T extends BucketableTableEntry> implements ITableEntri
 
         addEntryToContentMap(line);
         addEntryToTagMap(line);
+        invalidateTagIndex();
+        journal.put(line);
     }
 
         /**
@@ -115,6 +131,8 @@ public class TableEntries<T extends BucketableTableEntry> implements ITableEntri
                 }
                 removeEntryFromContentMap(line);
                 removeEntryFromTagMap(line);
+                invalidateTagIndex();
+                journal.remove(line);
 
                 if (line.hasBucket() && keepIfBucket) {
                     // NOTE: the deleted flag is part of the hashCode so we remove and add again if we change it.
@@ -123,6 +141,7 @@ public class TableEntries<T extends BucketableTableEntry> implements ITableEntri
                     getEntries().add(entry);
                     addEntryToContentMap(entry);
                     addEntryToTagMap(entry);
+                    journal.put(entry);
                 }
             }
         }
@@ -132,6 +151,9 @@ public class TableEntries<T extends BucketableTableEntry> implements ITableEntri
         this.rawLines = null;
         clearContentMap();
         clearTagMap();
+        this.tagIndex = null;
+        this.modifiedSinceLoad = false;
+        this.journal.clear();
     }
 
     @Override
@@ -157,6 +179,40 @@ public class TableEntries<T extends BucketableTableEntry> implements ITableEntri
         return lines2Search;
     }
 
+    @Override
+    public TagIndex getTagIndex() {
+        if (this.tagIndex == null) {
+            final List<T> entries = getEntries();
+            if (this.tagIndexPath != null && !this.modifiedSinceLoad) {
+                final TagIndex saved = TagIndex.read(this.tagIndexPath, this.path);
+                if (saved != null && saved.getEntryCount() == entries.size()) {
+                    this.tagIndex = saved;
+                }
+            }
+            if (this.tagIndex == null) {
+                this.tagIndex = TagIndex.build(entries);
+            }
+        }
+        return this.tagIndex;
+    }
+
+    @Override
+    public void invalidateTagIndex() {
+        this.tagIndex = null;
+        this.modifiedSinceLoad = true;
+    }
+
+    @Override
+    public void markChanged(T entry) {
+        invalidateTagIndex();
+        journal.put(entry);
+    }
+
+    @Override
+    public TableJournal getJournal() {
+        return journal;
+    }
+
     @Override
     public Iterator<T> iterator() {
         return getEntries().iterator();
@@ -240,6 +296,7 @@ public class TableEntries<T extends BucketableTableEntry> implements ITableEntri
     }
 
 
+
     private void loadLinesAndUpdateIndices() {
         this.rawLines = this.loadLines();
         this.updateContentMap();
@@ -254,6 +311,8 @@ public class TableEntries<T extends BucketableTableEntry> implements ITableEntri
         log.debug("Loading lines for {}", tableName);
 
         try {
+            // Read the journal first, if it is compacted while we read, its records are already in the table file.
+            List<String> journalRecords = TableJournal.readRecords(journal.getPath());
             List<T> newRawLines = new ArrayList<>();
             if (Files.exists(path)) {
                 try (BufferedReader br = new BufferedReader(new FileReader(path.toFile()))) {
@@ -280,6 +339,15 @@ public class TableEntries<T extends BucketableTableEntry> implements ITableEntri
                     }
                 }
             }
+            if (!journalRecords.isEmpty()) {
+                log.debug("Applying {} journal records to {}", journalRecords.size(), tableName);
+                LinkedHashMap<String, T> entriesByKey = new LinkedHashMap<>(newRawLines.size() * 2);
+                for (T entry : newRawLines) {
+                    entriesByKey.put(entry.getKey(), entry);
+                }
+                TableJournal.apply(journalRecords, entriesByKey, this::parseEntry, TableEntry::getKey);
+                newRawLines = new ArrayList<>(entriesByKey.values());
+            }
             return newRawLines;
 
         } catch (IOException ex) {
@@ -287,6 +355,14 @@ public class TableEntries<T extends BucketableTableEntry> implements ITableEntri
         }
     }
 
+    private T parseEntry(String line) {
+        try {
+            return (T) clazzOfT.getMethod("parseEntry", String.class, URI.class).invoke(null, line, rootUri);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            throw new GorSystemException("Error Initializing Query, can not create entry of type: " + clazzOfT.getName(), ex);
+        }
+    }
+
     @Override
     public T findLine(T line) {
         // Using contentHashMap
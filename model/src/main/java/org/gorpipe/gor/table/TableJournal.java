@@ -0,0 +1,304 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.table;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.gorpipe.exceptions.GorResourceException;
+import org.gorpipe.exceptions.GorSystemException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Journal of changes to the entries of a table, kept in the table folder next to the table file.
+ * <p>
+ * Instead of rewriting the whole table file on each save, the changed entries are appended to the journal.  Each
+ * record is a put (the entry replaces the entry with the same key, or is added if there is none) or a remove of the
+ * entry with the same key:
+ * <p>
+ * {@literal +\t<entry line>}
+ * {@literal -\t<entry line>}
+ * <p>
+ * The content of the table is the table file with the journal records applied in order.  Applying records that are
+ * already part of the table file gives the same entries, so the table file can be replaced before the journal is
+ * truncated when they are compacted, and readers should read the journal before the table file.
+ * <p>
+ * The journal is created empty when the table file is written, and is only appended to while it exists, so tables
+ * written by older versions are compacted on their first save.
+ */
+public class TableJournal {
+    private static final Logger log = LoggerFactory.getLogger(TableJournal.class);
+
+    public static final String JOURNAL_FILE = "journal";
+    private static final char PUT = '+';
+    private static final char REMOVE = '-';
+
+    private final Path journalPath;
+    private final List<String> uncommittedRecords = new ArrayList<>();
+
+    /**
+     * Constructor
+     * @param tablePath path to the table file the journal belongs to.
+     */
+    public TableJournal(Path tablePath) {
+        this.journalPath = journalPath(tablePath);
+    }
+
+    /**
+     * @return path of the journal for the given table file, in the table folder.
+     */
+    public static Path journalPath(Path tablePath) {
+        Path absolutePath = tablePath.toAbsolutePath();
+        String name = FilenameUtils.removeExtension(absolutePath.getFileName().toString());
+        return absolutePath.resolveSibling("." + name).resolve(JOURNAL_FILE);
+    }
+
+    public Path getPath() {
+        return journalPath;
+    }
+
+    /**
+     * Signature of the journal of a table, to add to the signature of the table file.  Committing records only bumps
+     * the modification time of the table file, which the resolution of file times can round away, so the length of the
+     * journal, and the file it is in, tell readers that records have been committed.
+     *
+     * @param tablePath the table file.
+     * @return the signature, empty if the table has no journal.
+     */
+    public static String signature(Path tablePath) {
+        Path path = journalPath(tablePath);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return "&journal=" + attributes.size() + (attributes.fileKey() != null ? "&" + attributes.fileKey() : "");
+        } catch (NoSuchFileException e) {
+            return "";
+        } catch (IOException e) {
+            log.warn("Could not read attributes of journal " + path, e);
+            return "";
+        }
+    }
+
+    /**
+     * Record that the entry was added or changed.
+     */
+    public void put(TableEntry entry) {
+        uncommittedRecords.add(PUT + "\t" + entry.formatEntryNoNewLine() + "\n");
+    }
+
+    /**
+     * Record that the entry was removed.
+     */
+    public void remove(TableEntry entry) {
+        uncommittedRecords.add(REMOVE + "\t" + entry.formatEntryNoNewLine() + "\n");
+    }
+
+    /**
+     * Forget the uncommitted records, they are dropped when the entries are reloaded.
+     */
+    public void clear() {
+        uncommittedRecords.clear();
+    }
+
+    /**
+     * Check if the uncommitted records can be appended to the journal, that is the journal exists and will not
+     * become larger than {@code maxRatio} of the table file.
+     *
+     * @param tablePath the table file.
+     * @param maxRatio  maximum size of the journal relative to the table file, before they are compacted.
+     * @return true if the records can be appended, false if the table file should be rewritten.
+     */
+    public boolean canAppend(Path tablePath, double maxRatio) {
+        try {
+            if (!Files.exists(tablePath) || !Files.exists(journalPath)) {
+                return false;
+            }
+            long uncommittedSize = 0;
+            for (String record : uncommittedRecords) {
+                uncommittedSize += record.length();
+            }
+            return Files.size(journalPath) + uncommittedSize <= maxRatio * Files.size(tablePath);
+        } catch (IOException e) {
+            log.warn("Could not check journal " + journalPath, e);
+            return false;
+        }
+    }
+
+    /**
+     * Append the uncommitted records to the journal and touch the table file, so readers see it has changed.
+     *
+     * @param tablePath the table file.
+     */
+    public void commit(Path tablePath) {
+        log.debug("Committing {} records to journal {}", uncommittedRecords.size(), journalPath);
+        try {
+            try (Writer destination = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.APPEND, StandardOpenOption.SYNC)) {
+                for (String record : uncommittedRecords) {
+                    destination.write(record);
+                }
+            }
+            Files.setLastModifiedTime(tablePath, FileTime.fromMillis(Math.max(System.currentTimeMillis(),
+                    Files.getLastModifiedTime(tablePath).toMillis() + 1)));
+            uncommittedRecords.clear();
+        } catch (IOException e) {
+            throw new GorSystemException(String.format("Could not append to table journal %s", journalPath), e);
+        }
+    }
+
+    /**
+     * Start a new empty journal, done after the table file has been rewritten with all the entries.
+     */
+    public void reset() {
+        try {
+            Path tempJournal = Files.createTempFile(journalPath.getParent(), JOURNAL_FILE, ".tmp");
+            Files.move(tempJournal, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            uncommittedRecords.clear();
+        } catch (IOException e) {
+            throw new GorSystemException(String.format("Could not reset table journal %s", journalPath), e);
+        }
+    }
+
+    /**
+     * Read the committed records of the journal.  A last record without line ending is still being written, and is
+     * ignored.
+     *
+     * @param journalPath path of the journal.
+     * @return the records, empty if there is no journal.
+     */
+    public static List<String> readRecords(Path journalPath) {
+        return readRecords(journalPath, 0, null).records;
+    }
+
+    /**
+     * Read the committed records of the journal from the given byte offset.
+     *
+     * @param journalPath path of the journal.
+     * @param offset      length of the journal already read.
+     * @param fileKey     file key of the journal already read, or null to read from the start.
+     * @return the records, empty if there is no journal, or null if the journal is not the one read before or has
+     * become shorter, in which case it must be read from the start.
+     */
+    public static Records readRecords(Path journalPath, long offset, Object fileKey) {
+        try {
+            final BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(journalPath, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                return fileKey == null && offset == 0 ? new Records(Collections.emptyList(), 0, null) : null;
+            }
+            if ((fileKey != null && !fileKey.equals(attributes.fileKey())) || attributes.size() < offset) {
+                return null;
+            }
+            final byte[] content;
+            try (SeekableByteChannel channel = Files.newByteChannel(journalPath)) {
+                channel.position(offset);
+                content = IOUtils.toByteArray(Channels.newInputStream(channel));
+            }
+            final List<String> records = new ArrayList<>();
+            int start = 0;
+            for (int end = 0; end < content.length; end++) {
+                if (content[end] == '\n') {
+                    if (end > start + 2) {
+                        records.add(new String(content, start, end - start, StandardCharsets.UTF_8));
+                    }
+                    start = end + 1;
+                }
+            }
+            return new Records(records, offset + start, attributes.fileKey());
+        } catch (IOException e) {
+            throw new GorResourceException("Could not read table journal " + journalPath, journalPath.toString(), e);
+        }
+    }
+
+    /**
+     * Records read from a journal, with the length of the journal they were read up to and the file key of the journal.
+     */
+    public static class Records {
+        public final List<String> records;
+        public final long length;
+        public final Object fileKey;
+
+        Records(List<String> records, long length, Object fileKey) {
+            this.records = records;
+            this.length = length;
+            this.fileKey = fileKey;
+        }
+    }
+
+    /**
+     * @return true if the record puts its entry, false if it removes it.
+     */
+    public static boolean isPut(String record) {
+        if (record.charAt(0) == PUT) {
+            return true;
+        } else if (record.charAt(0) == REMOVE) {
+            return false;
+        }
+        throw new GorSystemException("Invalid table journal record: " + record, null);
+    }
+
+    /**
+     * @return the entry line of the record.
+     */
+    public static String entryLine(String record) {
+        return record.substring(2).trim();
+    }
+
+    /**
+     * Apply the journal records to the entries.
+     *
+     * @param records records read from the journal.
+     * @param entries entries by key, in table order.  Put records replace entries in place or add them at the end.
+     * @param parse   parser for entry lines.
+     * @param keyOf   key of an entry.
+     */
+    public static <E> void apply(List<String> records, LinkedHashMap<String, E> entries, Function<String, E> parse,
+                                 Function<E, String> keyOf) {
+        for (String record : records) {
+            E entry = parse.apply(entryLine(record));
+            if (entry == null) {
+                continue;
+            }
+            if (isPut(record)) {
+                entries.put(keyOf.apply(entry), entry);
+            } else {
+                entries.remove(keyOf.apply(entry));
+            }
+        }
+    }
+}
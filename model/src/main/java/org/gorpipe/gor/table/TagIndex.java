@@ -0,0 +1,273 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.table;
+
+import org.gorpipe.util.collection.IntArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Inverted index from tags to the entries of a table.
+ * <p>
+ * Entries are identified by their position in the table.  The index holds, for each alias, the sorted ids of the
+ * active entries with that alias, the active entries without alias (which match any tag filter), and for each bucket
+ * the sorted ids of all the entries in it (including deleted ones).  Selecting the entries for a set of tags is then a
+ * union of id lists, and the bucket usage of a selection is counted over the selected ids only.
+ * <p>
+ * The index can be saved next to the table, together with the size and modification time of the table file it was
+ * built from and the signature of its journal, so it can be read instead of built as long as the table is unchanged.
+ */
+public class TagIndex {
+    private static final Logger log = LoggerFactory.getLogger(TagIndex.class);
+
+    public static final String INDEX_FILE = "tagindex";
+    private static final int MAGIC = 0x47544958;  // GTIX
+    private static final int VERSION = 2;
+
+    private final int entryCount;
+    private final BitSet active;    // Entries that are not deleted.
+    private final BitSet untagged;  // Active entries without alias, they are included for any tags.
+    private final Map<String, int[]> tagToEntries;
+    private final String[] buckets;
+    private final int[][] bucketEntries;
+    private final int[] entryBucket;  // The bucket of each entry, or -1.
+
+    private TagIndex(int entryCount, BitSet active, BitSet untagged, Map<String, int[]> tagToEntries, String[] buckets, int[][] bucketEntries) {
+        this.entryCount = entryCount;
+        this.active = active;
+        this.untagged = untagged;
+        this.tagToEntries = tagToEntries;
+        this.buckets = buckets;
+        this.bucketEntries = bucketEntries;
+        this.entryBucket = new int[entryCount];
+        Arrays.fill(this.entryBucket, -1);
+        for (int bucket = 0; bucket < bucketEntries.length; bucket++) {
+            for (int id : bucketEntries[bucket]) {
+                this.entryBucket[id] = bucket;
+            }
+        }
+    }
+
+    /**
+     * Build index for the given entries.
+     *
+     * @param entries all the entries of the table, including the deleted ones.
+     * @return index for the entries.
+     */
+    public static TagIndex build(List<? extends BucketableTableEntry> entries) {
+        final BitSet active = new BitSet(entries.size());
+        final BitSet untagged = new BitSet(entries.size());
+        final Map<String, IntArray> tagToEntries = new HashMap<>();
+        final Map<String, IntArray> bucketEntries = new LinkedHashMap<>();
+        for (int id = 0; id < entries.size(); id++) {
+            final BucketableTableEntry entry = entries.get(id);
+            final String alias = entry.getAliasTag();
+            if (entry.hasBucket()) {
+                bucketEntries.computeIfAbsent(entry.getBucket(), b -> new IntArray()).add(id);
+            }
+            if (!entry.isDeleted()) {
+                active.set(id);
+                if (alias == null) {
+                    untagged.set(id);
+                } else {
+                    tagToEntries.computeIfAbsent(alias, t -> new IntArray()).add(id);
+                }
+            }
+        }
+        final Map<String, int[]> tagArrays = new HashMap<>(tagToEntries.size() * 2);
+        tagToEntries.forEach((tag, ids) -> tagArrays.put(tag, ids.toArray()));
+        final String[] buckets = bucketEntries.keySet().toArray(new String[0]);
+        final int[][] bucketArrays = new int[buckets.length][];
+        for (int i = 0; i < buckets.length; i++) {
+            bucketArrays[i] = bucketEntries.get(buckets[i]).toArray();
+        }
+        return new TagIndex(entries.size(), active, untagged, tagArrays, buckets, bucketArrays);
+    }
+
+    /**
+     * Select the active entries matching the given tags.  Entries without alias match any tags.  If no entry matches,
+     * the first active entry is selected, so the query has at least one file to read.
+     *
+     * @param tags tags to filter by, or null to select all active entries.
+     * @return the ids of the selected entries.
+     */
+    public BitSet select(Set<String> tags) {
+        if (tags == null) {
+            return (BitSet) this.active.clone();
+        }
+        final BitSet selected = (BitSet) this.untagged.clone();
+        for (String tag : tags) {
+            final int[] ids = this.tagToEntries.get(tag);
+            if (ids != null) {
+                for (int id : ids) {
+                    selected.set(id);
+                }
+            }
+        }
+        if (selected.isEmpty()) {
+            final int first = this.active.nextSetBit(0);
+            if (first >= 0) {
+                selected.set(first);
+            }
+        }
+        return selected;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public int getBucketCount() {
+        return buckets.length;
+    }
+
+    public String getBucket(int bucket) {
+        return buckets[bucket];
+    }
+
+    /**
+     * @return the sorted ids of all the entries in the bucket, including deleted ones.
+     */
+    public int[] getBucketEntries(int bucket) {
+        return bucketEntries[bucket];
+    }
+
+    /**
+     * @return the bucket of the entry, or -1 if it is not in a bucket.
+     */
+    public int getEntryBucket(int id) {
+        return entryBucket[id];
+    }
+
+    /**
+     * Save the index for the given table file.
+     *
+     * @param indexPath path to save the index to.
+     * @param tablePath the table file the index was built from.
+     */
+    public void write(Path indexPath, Path tablePath) throws IOException {
+        final Path tempIndex = Files.createTempFile(indexPath.getParent(), INDEX_FILE, ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempIndex)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(Files.size(tablePath));
+            out.writeLong(Files.getLastModifiedTime(tablePath).toMillis());
+            out.writeUTF(TableJournal.signature(tablePath));
+            out.writeInt(entryCount);
+            writeBitSet(out, active);
+            writeBitSet(out, untagged);
+            out.writeInt(tagToEntries.size());
+            for (Map.Entry<String, int[]> e : tagToEntries.entrySet()) {
+                out.writeUTF(e.getKey());
+                writeInts(out, e.getValue());
+            }
+            out.writeInt(buckets.length);
+            for (int i = 0; i < buckets.length; i++) {
+                out.writeUTF(buckets[i]);
+                writeInts(out, bucketEntries[i]);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempIndex);
+            throw e;
+        }
+        Files.move(tempIndex, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the index saved for the given table file.
+     *
+     * @param indexPath path the index was saved to.
+     * @param tablePath the table file.
+     * @return the index, or null if there is no index or it was not built from the current table file.
+     */
+    public static TagIndex read(Path indexPath, Path tablePath) {
+        if (!Files.exists(indexPath) || !Files.exists(tablePath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != Files.size(tablePath)
+                    || in.readLong() != Files.getLastModifiedTime(tablePath).toMillis()
+                    || !in.readUTF().equals(TableJournal.signature(tablePath))) {
+                log.debug("Tag index {} is not for the current {}", indexPath, tablePath);
+                return null;
+            }
+            final int entryCount = in.readInt();
+            final BitSet active = readBitSet(in);
+            final BitSet untagged = readBitSet(in);
+            final int tagCount = in.readInt();
+            final Map<String, int[]> tagToEntries = new HashMap<>(tagCount * 2);
+            for (int i = 0; i < tagCount; i++) {
+                tagToEntries.put(in.readUTF(), readInts(in));
+            }
+            final int bucketCount = in.readInt();
+            final String[] buckets = new String[bucketCount];
+            final int[][] bucketEntries = new int[bucketCount][];
+            for (int i = 0; i < bucketCount; i++) {
+                buckets[i] = in.readUTF();
+                bucketEntries[i] = readInts(in);
+            }
+            return new TagIndex(entryCount, active, untagged, tagToEntries, buckets, bucketEntries);
+        } catch (IOException e) {
+            log.warn("Could not read tag index " + indexPath, e);
+            return null;
+        }
+    }
+
+    private static void writeBitSet(DataOutputStream out, BitSet bits) throws IOException {
+        final long[] words = bits.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static BitSet readBitSet(DataInputStream in) throws IOException {
+        final long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        final int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
@@ -103,6 +103,10 @@ public class DictionaryTable extends BaseTable<DictionaryEntry> {
 
     private static final Logger log = LoggerFactory.getLogger(DictionaryTable.class);
 
+    // Maximum size of the journal relative to the dictionary file, before the dictionary file is rewritten.
+    public static final String JOURNAL_MAX_RATIO_KEY = "gor.table.journal.maxratio";
+    private static final String DEFAULT_JOURNAL_MAX_RATIO = "0.25";
+
     private boolean useEmbeddedHeader = false;  // Should the header be embeded in the table file stored in header file the table data dir.
 
     public DictionaryTable(Path path) {
@@ -116,7 +120,7 @@ public class DictionaryTable extends BaseTable<DictionaryEntry> {
 
     @Override
     protected ITableEntries<DictionaryEntry> createTableEntries(Path path) {
-        return new TableEntries<>(path, DictionaryEntry.class);
+        return new TableEntries<>(path, DictionaryEntry.class, getFolderPath().resolve(TagIndex.INDEX_FILE));
         // Leave this in here for easy try out.
         //return new TableEntries<>(path, DictionaryRawEntry.class);
     }
@@ -124,7 +128,7 @@ public class DictionaryTable extends BaseTable<DictionaryEntry> {
     @Override
     public List<? extends DictionaryEntry> getOptimizedLines(Map<Integer, Set<String>> columnTags, boolean allowBucketAccess) {
         final TableAccessOptimizer optimizer = new TableAccessOptimizer(this);
-        optimizer.update(this.selectAll(), columnTags, allowBucketAccess);
+        optimizer.update(getEntries(), tableEntries.getTagIndex(), columnTags, allowBucketAccess);
         return optimizer.getLines();
     }
 
@@ -153,36 +157,59 @@ public class DictionaryTable extends BaseTable<DictionaryEntry> {
         String oldSerial = this.header.getProperty(TableHeader.HEADER_SERIAL_KEY);
         this.header.setProperty(TableHeader.HEADER_SERIAL_KEY, oldSerial != null ? String.valueOf(Long.parseLong(oldSerial) + 1) : "1");
         this.header.setProperty(TableHeader.HEADER_LINE_COUNT_KEY, String.valueOf(tableEntries.size()));
+        TableJournal journal = tableEntries.getJournal();
+        double maxJournalRatio = Double.parseDouble(getConfigTableProperty(JOURNAL_MAX_RATIO_KEY, DEFAULT_JOURNAL_MAX_RATIO));
         try {
             Path tempFolder = getFolderPath();
 
-            Path tempDict = Files.createTempFile(tempFolder, getName(), ".gord");
-            try (BufferedWriter writer = Files.newBufferedWriter(tempDict)) {
-                if (useEmbeddedHeader) {
-                    writer.write(this.header.formatHeader());
-                }
-                Iterator<DictionaryEntry> it = tableEntries.iterator();
-                while (it.hasNext()) {
-                    writer.write(it.next().formatEntryNoNewLine());
-                    writer.newLine();
+            if (!useEmbeddedHeader && journal.canAppend(getPath(), maxJournalRatio)) {
+                // Only the changes are written.  The header is written last, as readers reload when the serial changes.
+                journal.commit(getPath());
+                saveHeader(tempFolder);
+            } else {
+                Path tempDict = Files.createTempFile(tempFolder, getName(), ".gord");
+                try (BufferedWriter writer = Files.newBufferedWriter(tempDict)) {
+                    if (useEmbeddedHeader) {
+                        writer.write(this.header.formatHeader());
+                    }
+                    Iterator<DictionaryEntry> it = tableEntries.iterator();
+                    while (it.hasNext()) {
+                        writer.write(it.next().formatEntryNoNewLine());
+                        writer.newLine();
+                    }
                 }
-            }
 
-            if (!useEmbeddedHeader) {
-                Path tempHeader = Files.createTempFile(tempFolder, "header", ".tmp");
-                try (BufferedWriter writer = Files.newBufferedWriter(tempHeader)) {
-                    writer.write(this.header.formatHeader());
+                if (!useEmbeddedHeader) {
+                    saveHeader(tempFolder);
                 }
-                updateFromTempFile(getFolderPath().resolve("header"), tempHeader);
-            }
 
-            updateFromTempFile(getPath(), tempDict);
+                updateFromTempFile(getPath(), tempDict);
+                journal.reset();
+            }
         } catch (IOException e) {
             throw new GorSystemException(e);
         }
+        saveTagIndex();
         log.debug("Done saving {} entries for table {}", tableEntries.size(), getName());
     }
 
+    private void saveHeader(Path tempFolder) throws IOException {
+        Path tempHeader = Files.createTempFile(tempFolder, "header", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempHeader)) {
+            writer.write(this.header.formatHeader());
+        }
+        updateFromTempFile(getFolderPath().resolve("header"), tempHeader);
+    }
+
+    private void saveTagIndex() {
+        // The index is only an optimization, the table is usable without it.
+        try {
+            tableEntries.getTagIndex().write(getFolderPath().resolve(TagIndex.INDEX_FILE), getPath());
+        } catch (IOException e) {
+            log.warn("Could not save tag index for table " + getName(), e);
+        }
+    }
+
     /**
      * Create or update dictionary.
      *
@@ -22,10 +22,48 @@
 
 package gorsat.Commands
 
+import java.util.function.IntConsumer
+import java.util.stream.IntStream
+
 import org.gorpipe.exceptions.GorParsingException
+import org.gorpipe.gor.jfr.GorEvent
 import org.gorpipe.gor.model.Row
 
+import scala.collection.mutable.ArrayBuffer
+
+object BinAggregator {
+  /** Number of rows handed to a bin state at a time. */
+  val BATCH_SIZE = 256
+  val PARALLEL_FLUSH_KEY = "gor.binaggregator.parallel.flush"
+
+  /** Whether completed bins whose states allow it are sent in parallel. */
+  def parallelFlush: Boolean = java.lang.Boolean.parseBoolean(System.getProperty(PARALLEL_FLUSH_KEY, "true"))
+
+  /**
+   * Collects the rows of a bin sent in parallel, until they are passed on in bin order.
+   */
+  private class RowCollector(next: Processor) extends Analysis {
+    val rows = new java.util.ArrayList[Row]()
+    wantsNoMore = next.wantsNoMore
+    pipeFrom = next.pipeFrom
+
+    override def process(r: Row): Unit = rows.add(r)
+  }
+}
+
 
+/**
+ * Routes rows to a ring of bin states by bin id and key, and flushes the bins to the next processor in bin order when
+ * the key changes or the bins fall out of the window.  The bin states are created once and reused for later bins.
+ *
+ * Keys are compared as integer ids, a row handler that knows when its key changes can get an id for the key with
+ * [[keyId]] once per row and pass it to [[update]] for each bin the row goes to.
+ *
+ * The rows of a bin are handed to states that accept it in batches, without copying them, other states process each
+ * row as it is routed.  When several completed bins are sent at
+ * once, as when the key changes or a sliding window moves past several bins, and all their states allow it, the bins
+ * are sent in parallel and their rows passed on in bin order.
+ */
 case class BinAggregator(binFactory: BinFactory, numBins: Int, window: Int, useKeyForChrom: Boolean = false) {
   if (numBins < window) {
     throw new GorParsingException(s"Error in BinAggregator setup - numBins ($numBins) must be larger than window ($window): ")
@@ -34,8 +72,14 @@ case class BinAggregator(binFactory: BinFactory, numBins: Int, window: Int, useK
   private val binInfo: Array[BinInfo] = Array.fill(numBins) { new BinInfo }
   private var sBinID = 0
   private var eBinID = 0
-  private var currentKey: String = _
+  private var currentKeyId = -1
+  private var lastKey: String = _
+  private var lastKeyId = -1
   private var nextProcessor: Processor = _
+  private val batches: Array[Array[Row]] = new Array[Array[Row]](numBins)
+  private val batchSizes: Array[Int] = new Array[Int](numBins)
+  private val parallelFlush = BinAggregator.parallelFlush
+  private val toSend = new ArrayBuffer[Int]
 
   def setNextProcessor(p: Processor) {
     nextProcessor = p
@@ -47,10 +91,25 @@ case class BinAggregator(binFactory: BinFactory, numBins: Int, window: Int, useK
     else cand
   }
 
+  /**
+   * Id of the key, a new id is given each time the key differs from the key of the previous call.
+   */
+  def keyId(key: String): Int = {
+    if (key != lastKey) {
+      lastKey = key
+      lastKeyId += 1
+    }
+    lastKeyId
+  }
+
   def update(r: Row, binID: Int, key: String, sta: Int, sto: Int) {
+    update(r, binID, keyId(key), key, sta, sto)
+  }
+
+  def update(r: Row, binID: Int, keyId: Int, key: String, sta: Int, sto: Int) {
     val mID = mInd(binID)
-    if (currentKey != key || binID - sBinID >= numBins) {
-      flush(key, binID)
+    if (currentKeyId != keyId || binID - sBinID >= numBins) {
+      flush(keyId, binID)
     }
 
     val currentBinInfo = binInfo(mID)
@@ -63,7 +122,7 @@ case class BinAggregator(binFactory: BinFactory, numBins: Int, window: Int, useK
       currentBin.initialize(currentBinInfo)
     }
     currentBinInfo.used = true
-    currentBin.process(r)
+    add(mID, r)
 
     if (eBinID < binID) {
       eBinID = binID
@@ -75,38 +134,27 @@ case class BinAggregator(binFactory: BinFactory, numBins: Int, window: Int, useK
     }
   }
 
-  def flush(newKey: String, curBinID: Int): Unit = {
+  def flush(newKeyId: Int, curBinID: Int): Unit = {
+    val keyChanged = newKeyId != currentKeyId
     var mEnd = 0
-    if (curBinID - sBinID >= numBins + window || newKey != currentKey) {
+    if (curBinID - sBinID >= numBins + window || keyChanged) {
       // We must flush everything
       mEnd = eBinID - sBinID
     } else {
       mEnd = curBinID - window - sBinID // This number must be positive because of the condition on binID-sBinID on flush-call
     }
-    for (i <- 0 to mEnd) {
-      val mID = mInd(sBinID + i)
-      if (binInfo(mID).used) {
-        bins(mID).sendToNextProcessor(binInfo(mID), nextProcessor)
-        binInfo(mID).used = false
-      }
-    }
+    send(mEnd)
     eBinID = curBinID
-    if (curBinID - sBinID >= numBins + window || newKey != currentKey) {
+    if (curBinID - sBinID >= numBins + window || keyChanged) {
       sBinID = curBinID
-      currentKey = newKey
+      currentKeyId = newKeyId
     } else sBinID += mEnd
   }
 
   def finalFlush(): Unit = {
     val mEnd = eBinID - sBinID
     try {
-      for (i <- 0 to mEnd) {
-        val mID = mInd(sBinID + i)
-        if (binInfo(mID).used) {
-          bins(mID).sendToNextProcessor(binInfo(mID), nextProcessor)
-          binInfo(mID).used = false
-        }
-      }
+      send(mEnd)
     } finally {
       for (i <- 0 to mEnd) {
         try {
@@ -118,7 +166,69 @@ case class BinAggregator(binFactory: BinFactory, numBins: Int, window: Int, useK
         }
       }
     }
-    currentKey = null
+    currentKeyId = -1
+    lastKey = null
   }
-}
 
+  private def add(mID: Int, r: Row): Unit = {
+    if (!bins(mID).acceptsBatches) {
+      bins(mID).process(r)
+      return
+    }
+    var batch = batches(mID)
+    if (batch == null) {
+      batch = new Array[Row](BinAggregator.BATCH_SIZE)
+      batches(mID) = batch
+    }
+    batch(batchSizes(mID)) = r
+    batchSizes(mID) += 1
+    if (batchSizes(mID) == batch.length) drain(mID)
+  }
+
+  private def drain(mID: Int): Unit = {
+    val count = batchSizes(mID)
+    if (count > 0) {
+      batchSizes(mID) = 0
+      bins(mID).processBatch(batches(mID), count)
+      java.util.Arrays.fill(batches(mID).asInstanceOf[Array[AnyRef]], 0, count, null)
+    }
+  }
+
+  /**
+   * Send the used bins from sBinID to sBinID + mEnd to the next processor, in bin order.
+   */
+  private def send(mEnd: Int): Unit = {
+    toSend.clear()
+    var inParallel = parallelFlush
+    for (i <- 0 to mEnd) {
+      val mID = mInd(sBinID + i)
+      if (binInfo(mID).used) {
+        drain(mID)
+        binInfo(mID).used = false
+        toSend += mID
+        inParallel &&= bins(mID).flushesInParallel
+      }
+    }
+    if (inParallel && toSend.size > 1) {
+      val collectors = Array.fill(toSend.size)(new BinAggregator.RowCollector(nextProcessor))
+      // The bins are sent on the common pool, its threads are tagged with the query id while sending them
+      val queryId = GorEvent.getQueryId
+      IntStream.range(0, toSend.size).parallel().forEach(new IntConsumer {
+        override def accept(j: Int): Unit = {
+          val previous = GorEvent.swapQueryId(queryId)
+          try {
+            bins(toSend(j)).sendToNextProcessor(binInfo(toSend(j)), collectors(j))
+          } finally {
+            GorEvent.swapQueryId(previous)
+          }
+        }
+      })
+      for (collector <- collectors) {
+        val it = collector.rows.iterator()
+        while (it.hasNext && !nextProcessor.wantsNoMore) nextProcessor.process(it.next())
+      }
+    } else {
+      for (mID <- toSend) bins(mID).sendToNextProcessor(binInfo(mID), nextProcessor)
+    }
+  }
+}
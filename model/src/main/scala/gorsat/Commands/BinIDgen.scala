@@ -26,4 +26,8 @@ abstract class BinIDgen {
   def ID(pos: Int): Int
 
   def StartAndStop(id: Int): (Int, Int)
+
+  def start(id: Int): Int
+
+  def stop(id: Int): Int
 }
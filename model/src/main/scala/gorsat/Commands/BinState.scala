@@ -29,6 +29,31 @@ abstract class BinState {
 
   def process(r: Row)
 
+  /**
+   * True if the rows are handed to this state in batches, through [[processBatch]], rather than one at a time as they
+   * are routed to the bin.  Only states whose row handler does not change a row, or what it refers to, after routing
+   * it should accept batches.
+   */
+  def acceptsBatches: Boolean = false
+
+  /**
+   * Process a batch of rows of the bin, in order.  The array is reused for the next batch, the rows may be kept but
+   * not the array.
+   */
+  def processBatch(rows: Array[Row], count: Int): Unit = {
+    var i = 0
+    while (i < count) {
+      process(rows(i))
+      i += 1
+    }
+  }
+
+  /**
+   * True if sending the bin only uses the state of this bin, and its output rows fit in memory, so completed bins can
+   * be sent in parallel.  Their rows are still passed on in bin order.
+   */
+  def flushesInParallel: Boolean = false
+
   def sendToNextProcessor(binInfo: BinInfo, nextProcessor: Processor)
 
   def close(): Unit = {}
@@ -27,17 +27,22 @@ import org.gorpipe.gor.session.GorSession
 
 case class ChromRowHandler(session: GorSession) extends RowHandler {
   val binIDgen = RegularBinIDgen(1)
+  val binID: Int = binIDgen.ID(1)
+  private var lastChrId = -1
+  private var chrSize = 0
 
   def process(r: Row, BA: BinAggregator) {
     val chr = r.chr
-    val binID = binIDgen.ID(1)
-    try {
-      val (sta, sto) = (0, session.getProjectContext.getReferenceBuild.getBuildSize.get(r.chr))
-      BA.update(r, binID, chr, sta, sto)
-    } catch {
-      case _: Exception =>
-        val (sta, sto) = (0, 1000000000)
-        BA.update(r, binID, chr, sta, sto)
+    val chrId = BA.keyId(chr)
+    if (chrId != lastChrId) {
+      // The chromosome size is only looked up when the chromosome changes
+      lastChrId = chrId
+      chrSize = try {
+        session.getProjectContext.getReferenceBuild.getBuildSize.get(chr).intValue
+      } catch {
+        case _: Exception => 1000000000
+      }
     }
+    BA.update(r, binID, chrId, chr, 0, chrSize)
   } // One ouput row per input row
 }
@@ -26,10 +26,10 @@ import org.gorpipe.gor.model.Row
 
 case class GenomeRowHandler() extends RowHandler {
   val binIDgen = RegularBinIDgen(1)
+  // All rows go to the same bin with the same key
+  val binID: Int = binIDgen.ID(1)
 
   def process(r: Row, BA: BinAggregator) {
-    val binID = binIDgen.ID(1)
-    binIDgen.StartAndStop(binID)
-    BA.update(r, binID, "chrA", 0, 1000000000)
+    BA.update(r, binID, 0, "chrA", 0, 1000000000)
   } // One ouput row per input row
 }
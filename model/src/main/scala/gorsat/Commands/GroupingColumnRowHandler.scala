@@ -31,7 +31,6 @@ case class GroupingColumnRowHandler(binsize: Int, groupCols: Array[Int]) extends
     val chr = r.selectedColumns(groupCols)
     val pos = r.pos
     val binID = binIDgen.ID(pos)
-    val (sta, sto) = binIDgen.StartAndStop(binID)
-    BA.update(r, binID, chr, sta, sto)
+    BA.update(r, binID, chr, binIDgen.start(binID), binIDgen.stop(binID))
   } // One ouput row per input row
 }
\ No newline at end of file
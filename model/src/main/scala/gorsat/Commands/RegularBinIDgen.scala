@@ -26,4 +26,8 @@ case class RegularBinIDgen(var binSize: Int) extends BinIDgen {
   def ID(pos: Int): Int = (pos - 1) / binSize
 
   def StartAndStop(id: Int): (Int, Int) = (id * binSize, (id + 1) * binSize)
+
+  def start(id: Int): Int = id * binSize
+
+  def stop(id: Int): Int = (id + 1) * binSize
 }
@@ -31,7 +31,6 @@ case class RegularRowHandler(binsize: Int) extends RowHandler {
     val chr = r.chr
     val pos = r.pos
     val binID = binIDgen.ID(pos)
-    val (sta, sto) = binIDgen.StartAndStop(binID)
-    BA.update(r, binID, chr, sta, sto)
+    BA.update(r, binID, chr, binIDgen.start(binID), binIDgen.stop(binID))
   } // One ouput row per input row
 }
\ No newline at end of file
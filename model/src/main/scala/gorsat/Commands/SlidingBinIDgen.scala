@@ -36,4 +36,8 @@ case class SlidingBinIDgen(var binSize: Int, slideSteps: Int) extends BinIDgen {
     val temp = id.toDouble / slideSteps
     ((temp * binSize).toInt, ((temp + 1) * binSize).toInt)
   }
+
+  def start(id: Int): Int = ((id.toDouble / slideSteps) * binSize).toInt
+
+  def stop(id: Int): Int = ((id.toDouble / slideSteps + 1) * binSize).toInt
 }
@@ -29,12 +29,14 @@ case class SlidingRowHandler(binsize: Int, slideSteps: Int) extends RowHandler {
 
   def process(r: Row, BA: BinAggregator) {
     val chr = r.chr
+    val chrId = BA.keyId(chr)
     val pos = r.pos
     var i = -slideSteps
     val binID = binIDgen.ID(pos)
     while (i < slideSteps) {
-      val (sta, sto) = binIDgen.StartAndStop(binID + i)
-      if (sta < r.pos && r.pos <= sto && sta >= 0) BA.update(r, binID + i, chr, sta, sto)
+      val sta = binIDgen.start(binID + i)
+      val sto = binIDgen.stop(binID + i)
+      if (sta < pos && pos <= sto && sta >= 0) BA.update(r, binID + i, chrId, chr, sta, sto)
       i += 1
     }
   } // One ouput row per input row
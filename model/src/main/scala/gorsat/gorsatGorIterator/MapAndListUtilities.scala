@@ -25,8 +25,9 @@ package gorsat.gorsatGorIterator
 import java.nio.file.Files
 import java.util.stream.Collectors
 
+import org.gorpipe.exceptions.custom.GorLowMemoryException
 import org.gorpipe.gor.model.{DriverBackedFileReader, FileReader}
-import org.gorpipe.gor.session.GorSession
+import org.gorpipe.gor.session.{GorSession, MemoryReservation}
 import org.gorpipe.model.gor.iterators.LineIterator
 
 import scala.collection.JavaConverters._
@@ -90,6 +91,17 @@ object MapAndListUtilities {
     }
   }
 
+  /**
+    * Reserve the line from the memory budget of the session, the maps and lists are held by the session cache until
+    * the session is closed.  They can not be spilled, so the query fails if they do not fit in its budget.
+    */
+  private def reserveLine(memory: MemoryReservation, filename: String, line: String): Unit = {
+    if (!memory.tryReserve(MemoryReservation.stringBytes(line.length))) {
+      throw new GorLowMemoryException("Not enough memory left in the query memory budget to read " + filename +
+        " into memory, " + (memory.getUsed >> 20) + " MB read")
+    }
+  }
+
   def getStringArray(filename: String, iterator: LineIterator, session: GorSession) : Array[String] = {
     val extFilename = "listmap" + filename
     syncGetStringArray(extFilename, session) match {
@@ -99,9 +111,12 @@ object MapAndListUtilities {
       case None =>
         try {
           var theList : List[String] = Nil
+          val memory = new MemoryReservation(session.getMemoryBudget)
 
           while (iterator.hasNext) {
-            theList ::= iterator.nextLine
+            val x = iterator.nextLine
+            reserveLine(memory, filename, x)
+            theList ::= x
           }
           theList = theList.reverse
           val theArray = theList.toArray
@@ -126,11 +141,13 @@ object MapAndListUtilities {
           val colMap = new java.util.HashMap[String, String]()
 
           val mmu: MemoryMonitorUtil =  new MemoryMonitorUtil(MemoryMonitorUtil.basicOutOfMemoryHandler)
+          val memory = new MemoryReservation(session.getMemoryBudget)
 
           while (iterator.hasNext) {
             val x = iterator.nextLine
             val cols = x.split("\t", -1)
             mmu.check("getSingleHashMap", mmu.lineNum, x)
+            reserveLine(memory, filename, x)
             if (asSet) {
               val lookupString =
                 if (caseInsensitive) cols.slice(0, 1.max(ic)).mkString("\t").toUpperCase
@@ -172,11 +189,13 @@ object MapAndListUtilities {
         try {
           val multiMap = new java.util.HashMap[String, Array[String]]()
           val mmu: MemoryMonitorUtil =  new MemoryMonitorUtil(MemoryMonitorUtil.basicOutOfMemoryHandler)
+          val memory = new MemoryReservation(session.getMemoryBudget)
 
           while (iterator.hasNext) {
             val x = iterator.nextLine
             val cols = x.split("\t", -1)
             mmu.check("getMultiHashMap", mmu.lineNum, x)
+            reserveLine(memory, filename, x)
             if (cols.length >= ic + ocl) {
               val (a, b) = (cols.slice(0, ic).mkString("\t"), (cols(oc.head) /: oc.tail.map(c => cols(c)))(_ + "\t" + _))
               val cisa = if (caseInsensitive) a.toUpperCase else a
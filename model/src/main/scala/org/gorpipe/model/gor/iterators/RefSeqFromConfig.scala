@@ -23,13 +23,16 @@
 package org.gorpipe.model.gor.iterators
 
 import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.file.{Files, Path, Paths}
 import java.util
 import java.util.Optional
 
 import org.gorpipe.exceptions.GorResourceException
 import org.gorpipe.gor.driver.adapters.StreamSourceRacFile
 import org.gorpipe.gor.driver.providers.stream.sources.StreamSource
-import org.gorpipe.gor.model.{DriverBackedFileReader, FileReader, RacFile}
+import org.gorpipe.gor.driver.providers.stream.sources.file.FileSource
+import org.gorpipe.gor.model.{DefaultFileReader, DriverBackedFileReader, FileReader, RacFile, ReferenceStore}
 import org.slf4j.{Logger, LoggerFactory}
 
 class RefSeqFromConfig(ipath : String, fileReader : FileReader) extends RefSeq {
@@ -43,10 +46,13 @@ class RefSeqFromConfig(ipath : String, fileReader : FileReader) extends RefSeq {
   var lastBuff: Array[Byte] = _
   var noReferenceBuildFound = false
   val filemap = new util.HashMap[String, Optional[RacFile]]
+  // Sequences read from the shared reference store, null for sequences which are not local files
+  val mappedSequences = new util.HashMap[String, ByteBuffer]
 
   override def close(): Unit = {
     filemap.entrySet().stream().forEach( f => f.getValue.ifPresent(f => f.close()) )
     filemap.clear()
+    mappedSequences.clear()
   }
 
   override def finalize(): Unit = {
@@ -60,6 +66,9 @@ class RefSeqFromConfig(ipath : String, fileReader : FileReader) extends RefSeq {
   def getBase(chr: String, pos: Int): Char = {
     if (noReferenceBuildFound) return 'N'
     try {
+      val sequence = mappedSequence(chr)
+      if (sequence != null) return mappedBase(sequence, pos)
+
       val (buffKey, offset) = getKeyAndOffset(chr, pos)
 
       if (buffKey == lastKey) return refByteToChar(lastBuff(pos - offset - 1))
@@ -108,6 +117,16 @@ class RefSeqFromConfig(ipath : String, fileReader : FileReader) extends RefSeq {
 
   def getBases(chr: String, pos1: Int, pos2: Int): String = {
     if (pos1 == pos2) return getBase(chr, pos1).toString
+    val sequence = if (noReferenceBuildFound) null else mappedSequence(chr)
+    if (sequence != null) {
+      val strbuff = new StringBuilder(pos2 - pos1 + 1)
+      var i = pos1
+      while (i <= pos2) {
+        strbuff.append(mappedBase(sequence, i))
+        i += 1
+      }
+      return strbuff.toString
+    }
     if ((pos1 - 1) / buffLength == (pos2 - 1) / buffLength) {
       val (buffKey, offset) = getKeyAndOffset(chr, pos1)
 
@@ -115,14 +134,16 @@ class RefSeqFromConfig(ipath : String, fileReader : FileReader) extends RefSeq {
         val temp = getBase(chr, pos1)
         val temp2 = getBase(chr, pos1)
       }
-      val strbuff = new StringBuilder(pos2 - pos1 + 1)
-      var i = pos1
-      while (i <= pos2) {
-        strbuff.append(refByteToChar(lastBuff(i - offset - 1)))
-        i += 1
+      // The buffer is not loaded if the reference is missing, the bases are then read one by one below
+      if (buffKey == lastKey) {
+        val strbuff = new StringBuilder(pos2 - pos1 + 1)
+        var i = pos1
+        while (i <= pos2) {
+          strbuff.append(refByteToChar(lastBuff(i - offset - 1)))
+          i += 1
+        }
+        return strbuff.toString
       }
-      return strbuff.toString
-      // return lastBuff.slice(pos1-offset-1,pos2-offset-1).toString
     }
     val strbuff = new StringBuilder(pos2 - pos1 + 1)
     var i = pos1
@@ -133,6 +154,41 @@ class RefSeqFromConfig(ipath : String, fileReader : FileReader) extends RefSeq {
     strbuff.toString
   }
 
+  /**
+    * Get the sequence of a chromosome from the shared reference store, if the reference file is a local file.
+    * @param chr  chromosome name.
+    * @return the sequence or null if it has to be read through the file reader.
+    */
+  private def mappedSequence(chr: String): ByteBuffer = {
+    if (mappedSequences.containsKey(chr)) return mappedSequences.get(chr)
+    val chrFileName = chr + ".txt"
+    val chrFilePath = path + "/" + chrFileName
+    val sequence = try {
+      val file: Path = fileReader match {
+        case dbfr: DriverBackedFileReader =>
+          dbfr.resolveUrl(chrFilePath) match {
+            case fs: FileSource => fs.getFile.toPath
+            case _ => null
+          }
+        case _: DefaultFileReader => Paths.get(chrFilePath)
+        case _ => null
+      }
+      if (file != null && file.getFileName.toString == chrFileName && Files.exists(file)) {
+        ReferenceStore.chromSeq(file.toAbsolutePath.getParent).getSequence(chr)
+      } else null
+    } catch {
+      case ex: Exception =>
+        log.debug("Reading reference file " + chrFilePath + " without the reference store", ex)
+        null
+    }
+    mappedSequences.put(chr, sequence)
+    sequence
+  }
+
+  private def mappedBase(sequence: ByteBuffer, pos: Int): Char = {
+    if (pos > 0 && pos <= sequence.limit()) refByteToChar(sequence.get(pos - 1)) else 'N'
+  }
+
   /**
     * Convert reference byte to reference char.
     * @param b  byte to convert.
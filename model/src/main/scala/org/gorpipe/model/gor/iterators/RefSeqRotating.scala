@@ -48,7 +48,7 @@ class RefSeqRotating extends RefSeq{
 
       val builder = new StringBuilder()
 
-      for (i <- startPosition until endPosition) {
+      for (i <- startPosition to endPosition) {
         builder.append(getBase(chromosome, i))
       }
 
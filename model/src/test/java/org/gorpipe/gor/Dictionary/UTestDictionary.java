@@ -25,6 +25,9 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -260,6 +263,40 @@ public class UTestDictionary {
         Assert.assertEquals(2, lines2.length);
     }
 
+    @Test
+    public void testAppendedLinesAreRead() throws IOException {
+        final String dictionaryFile = this.workDir.newFile("dict_appended.gord").getAbsolutePath();
+        Files.write(Paths.get(dictionaryFile), "gorfile1.gor|bucket1.gorz\ttag1\ngorfile2.gor\ttag2\n".getBytes());
+
+        final Dictionary dict1 = Dictionary.getDictionary(dictionaryFile, "id1", this.workDir.getRoot().getAbsolutePath());
+        Assert.assertEquals(2, dict1.getSources(null, false, false).length);
+
+        Files.write(Paths.get(dictionaryFile), "gorfile3.gor|bucket1.gorz\ttag3\ngorfile4.gor\ttag1\n".getBytes(), StandardOpenOption.APPEND);
+
+        final Dictionary dict2 = Dictionary.getDictionary(dictionaryFile, "id2", this.workDir.getRoot().getAbsolutePath());
+        Assert.assertEquals(4, dict2.getSources(null, false, false).length);
+        Assert.assertEquals(2, dict2.getSources(new HashSet<>(Collections.singletonList("tag1")), false, false).length);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("tag1", "tag2", "tag3")), dict2.getValidTags());
+
+        // The dictionary read before the append is unchanged
+        Assert.assertEquals(2, dict1.getSources(null, false, false).length);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("tag1", "tag2")), dict1.getValidTags());
+    }
+
+    @Test
+    public void testRewrittenDictionaryIsReadAgain() throws IOException {
+        final String dictionaryFile = this.workDir.newFile("dict_rewritten.gord").getAbsolutePath();
+        Files.write(Paths.get(dictionaryFile), "gorfile1.gor\ttag1\ngorfile2.gor\ttag2\n".getBytes());
+
+        final Dictionary dict1 = Dictionary.getDictionary(dictionaryFile, "id1", this.workDir.getRoot().getAbsolutePath());
+        Assert.assertEquals(2, dict1.getSources(null, false, false).length);
+
+        Files.write(Paths.get(dictionaryFile), "gorfile3.gor\ttag3\ngorfile4.gor\ttag4\ngorfile5.gor\ttag5\n".getBytes());
+
+        final Dictionary dict2 = Dictionary.getDictionary(dictionaryFile, "id2", this.workDir.getRoot().getAbsolutePath());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("tag3", "tag4", "tag5")), dict2.getValidTags());
+    }
+
     @Test
     public void testEmptyDictionary() throws IOException {
         final File dict = workDir.newFile("dict_with_deleted_entry.gord");
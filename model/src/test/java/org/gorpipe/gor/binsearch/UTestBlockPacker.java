@@ -297,6 +297,45 @@ public class UTestBlockPacker extends TestCase {
                 size, zipped.length, (input.length() / (zipped.length * 1.0f)));
     }
 
+    /**
+     * Test decoding only some of the columns, the others are decoded empty
+     *
+     * @throws Exception
+     */
+    public void testProjectedDecode() throws Exception {
+        long seed = new Random().nextLong();
+        Random rand = new Random(seed);
+        final String input = mergeColumns(
+                generateColumnData("string", 23, 150, false, null),
+                generateColumnData("integer", 4000, 1, false, null),
+                generateColumnData("string", 50, 1, false, rand),
+                generateColumnData("integer", 50, 1, true, rand),
+                generateColumnData("string", 500, 1, false, rand),
+                generateColumnData("integer", 500, 1, false, rand));
+
+        final byte[] buf = new byte[input.length()];
+        BlockPacker.encode(input, buf);
+        final boolean[] projection = {true, true, false, true, false};
+
+        final byte[] bytes = new byte[input.length() + 1];
+        final int len = BlockPacker.decode(buf, 0, bytes, 0, new HashMap<>(), projection);
+
+        final StringBuilder expected = new StringBuilder();
+        for (String line : input.split("\n")) {
+            final String[] cols = line.split("\t", -1);
+            for (int i = 0; i < cols.length; i++) {
+                if (i > 0) {
+                    expected.append('\t');
+                }
+                if (i < projection.length && projection[i]) {
+                    expected.append(cols[i]);
+                }
+            }
+            expected.append('\n');
+        }
+        assertEquals("seed = " + seed, expected.toString(), new String(bytes, 0, len));
+    }
+
     /**
      * Test simple rounds of encode and decode with some fields empty
      *
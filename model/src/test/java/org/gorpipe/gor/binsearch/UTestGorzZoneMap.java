@@ -0,0 +1,170 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.binsearch;
+
+import org.gorpipe.gor.driver.adapters.StreamSourceSeekableFile;
+import org.gorpipe.gor.driver.meta.SourceReference;
+import org.gorpipe.gor.driver.providers.stream.sources.file.FileSource;
+import org.gorpipe.gor.model.Row;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class UTestGorzZoneMap {
+
+    private static final int ROWS = 20000;
+
+    @Rule
+    public TemporaryFolder workDir = new TemporaryFolder();
+
+    private File writeGorz(boolean columnCompressed, boolean zoneMap) throws IOException {
+        final File gorz = new File(workDir.getRoot(), "zones" + (columnCompressed ? "c" : "") + ".gorz");
+        try (GorZipLexOutputStream out = new GorZipLexOutputStream(gorz.getPath(), columnCompressed)) {
+            out.setHeader("Chrom\tPos\tAF\tGene\tInfo");
+            if (zoneMap) {
+                out.setZoneMap(gorz.getPath(), new int[]{3});
+            }
+            for (int pos = 1; pos <= ROWS; pos++) {
+                out.write("chr1\t" + pos + "\t" + ((double) pos / ROWS) + "\tGENE" + (pos / 1000) + "\tinfo" + (pos % 7));
+            }
+        }
+        return gorz;
+    }
+
+    private GorzZoneMap readZoneMap(File gorz) throws IOException {
+        try (InputStream in = Files.newInputStream(new File(gorz.getPath() + GorzZoneMap.SUFFIX).toPath())) {
+            return GorzZoneMap.read(in);
+        }
+    }
+
+    private List<String> readAll(File gorz, String where) {
+        final GorzSeekableIterator iterator = new GorzSeekableIterator(new StreamSourceSeekableFile(new FileSource(new SourceReference(gorz.getPath()))));
+        iterator.setZoneMapSource(() -> new FileSource(new SourceReference(gorz.getPath() + GorzZoneMap.SUFFIX)));
+        Assert.assertFalse("The where step must still be run", iterator.pushdownFilter(where));
+        final List<String> rows = new ArrayList<>();
+        while (iterator.hasNext()) {
+            final Row row = iterator.next();
+            rows.add(row.getAllCols().toString());
+        }
+        iterator.close();
+        return rows;
+    }
+
+    @Test
+    public void testZoneMapIsWrittenForEachBlock() throws IOException {
+        final File gorz = writeGorz(false, true);
+        final GorzZoneMap zoneMap = readZoneMap(gorz);
+        Assert.assertNotNull(zoneMap);
+        Assert.assertEquals(gorz.length(), zoneMap.getGorzLength());
+        Assert.assertTrue(zoneMap.getBlockCount() > 10);
+    }
+
+    @Test
+    public void testRangeFilterSkipsBlocks() throws IOException {
+        for (boolean columnCompressed : new boolean[]{false, true}) {
+            final File gorz = writeGorz(columnCompressed, true);
+            final List<String> rows = readAll(gorz, "AF < 0.01");
+            Assert.assertTrue("Blocks should be skipped", rows.size() < ROWS / 2);
+            long matching = rows.stream().filter(r -> Double.parseDouble(r.split("\t")[2]) < 0.01).count();
+            Assert.assertEquals(ROWS / 100 - 1, matching);
+            Assert.assertEquals("chr1\t1", rows.get(0).substring(0, 6));
+        }
+    }
+
+    @Test
+    public void testBloomFilterSkipsBlocks() throws IOException {
+        final File gorz = writeGorz(true, true);
+        final List<String> rows = readAll(gorz, "Gene = 'GENE15' and Info != 'x'");
+        Assert.assertTrue("Blocks should be skipped", rows.size() < ROWS / 2);
+        Assert.assertEquals(1000, rows.stream().filter(r -> r.split("\t")[3].equals("GENE15")).count());
+    }
+
+    @Test
+    public void testNoRowsMatch() throws IOException {
+        final File gorz = writeGorz(false, true);
+        Assert.assertTrue(readAll(gorz, "AF > 2").isEmpty());
+    }
+
+    @Test
+    public void testUnusableFilterReadsAllRows() throws IOException {
+        final File gorz = writeGorz(false, true);
+        Assert.assertEquals(ROWS, readAll(gorz, "AF < 0.01 or Gene = 'GENE15'").size());
+        Assert.assertEquals(ROWS, readAll(gorz, "not AF < 0.01").size());
+        Assert.assertEquals(ROWS, readAll(gorz, "Info = 'info1'").size());
+        Assert.assertEquals(ROWS, readAll(gorz, "AF < Pos").size());
+    }
+
+    @Test
+    public void testStaleZoneMapIsIgnored() throws IOException {
+        final File gorz = writeGorz(false, true);
+        // Rewrite the file without zone map, the last block has the same key as in the zone map left behind
+        try (GorZipLexOutputStream out = new GorZipLexOutputStream(gorz.getPath(), false)) {
+            out.setHeader("Chrom\tPos\tAF\tGene\tInfo");
+            out.write("chr1\t" + ROWS + "\t5\tGENE0\tinfo1");
+        }
+        Assert.assertFalse(new File(gorz.getPath() + GorzZoneMap.SUFFIX).exists());
+        Assert.assertEquals(1, readAll(gorz, "AF > 2").size());
+    }
+
+    @Test
+    public void testZoneMapOfChangedFileWithSameLengthIsIgnored() throws IOException {
+        final File gorz = writeGorz(false, true);
+        // Change the header in place, the length of the file is unchanged
+        try (RandomAccessFile file = new RandomAccessFile(gorz, "rw")) {
+            final byte[] head = new byte[64];
+            file.readFully(head);
+            final int idx = new String(head, StandardCharsets.ISO_8859_1).indexOf("Info");
+            file.seek(idx + 3);
+            file.write('x');
+        }
+        Assert.assertEquals(gorz.length(), readZoneMap(gorz).getGorzLength());
+        Assert.assertEquals(ROWS, readAll(gorz, "AF > 2").size());
+    }
+
+    @Test
+    public void testSplitConjuncts() {
+        Assert.assertEquals(3, GorzZoneMap.splitConjuncts("a < 1 and b = 'x and y' AND (c = 1 or d = 2)").size());
+        Assert.assertEquals(1, GorzZoneMap.splitConjuncts("band = 1").size());
+        Assert.assertNull(GorzZoneMap.splitConjuncts("a < 1 or b = 2"));
+    }
+
+    @Test
+    public void testParseNumber() {
+        final String[] values = {"12", "-3", "0.25", "1e-3", "+4", "-", "", "chr1", "1-2", "12345678901234567890"};
+        final double[] expected = {12, -3, 0.25, 1e-3, 4, Double.NaN, Double.NaN, Double.NaN, Double.NaN, 12345678901234567890.0};
+        for (int i = 0; i < values.length; i++) {
+            final byte[] bytes = values[i].getBytes();
+            Assert.assertEquals(values[i], expected[i], GorzZoneMap.parseNumber(bytes, 0, bytes.length), 0.0);
+        }
+    }
+}
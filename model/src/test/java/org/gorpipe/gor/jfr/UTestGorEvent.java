@@ -0,0 +1,51 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+package org.gorpipe.gor.jfr;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class UTestGorEvent {
+
+    @Test
+    public void pooledTaskRunsWithQueryIdOfSubmitter() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            GorEvent.setQueryId("query1");
+            // The pool thread is started by query1 and inherits its id
+            Assert.assertEquals("query1", pool.submit(GorEvent::getQueryId).get());
+            GorEvent.clearQueryId("query1");
+
+            GorEvent.setQueryId("query2");
+            Assert.assertEquals("query1", pool.submit(GorEvent::getQueryId).get());
+            Assert.assertEquals("query2", pool.submit(GorEvent.withQueryId(GorEvent::getQueryId)).get());
+            // The id is restored when the task is done
+            Assert.assertEquals("query1", pool.submit(GorEvent::getQueryId).get());
+        } finally {
+            GorEvent.clearQueryId(GorEvent.getQueryId());
+            pool.shutdownNow();
+        }
+    }
+}
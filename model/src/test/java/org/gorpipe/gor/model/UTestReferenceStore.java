@@ -0,0 +1,173 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.model;
+
+import htsjdk.samtools.SAMSequenceRecord;
+import org.gorpipe.model.gor.iterators.RefSeq;
+import org.gorpipe.model.gor.iterators.RefSeqFromConfig;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class UTestReferenceStore {
+
+    @Rule
+    public TemporaryFolder workDir = new TemporaryFolder();
+
+    private static final String CHR1 = "ACGTNACGTTGCA";
+    private static final String CHR2 = "GGGCCCAAATTT";
+
+    @Test
+    public void chromSeqSequences() throws IOException {
+        final ReferenceStore store = ReferenceStore.chromSeq(createChromSeq());
+
+        final ByteBuffer sequence = store.getSequence("chr1");
+        Assert.assertEquals(CHR1.length(), sequence.remaining());
+        Assert.assertTrue(sequence.isReadOnly());
+        Assert.assertEquals('A', sequence.get(0));
+        Assert.assertNull(store.getSequence("chr3"));
+        Assert.assertNull(store.getSequence("../chr1"));
+    }
+
+    @Test
+    public void chromSeqIsShared() throws IOException {
+        final Path dir = createChromSeq();
+        Assert.assertSame(ReferenceStore.chromSeq(dir), ReferenceStore.chromSeq(dir.resolve(".")));
+    }
+
+    @Test
+    public void getBases() throws IOException {
+        final ReferenceStore store = ReferenceStore.chromSeq(createChromSeq());
+
+        Assert.assertEquals("ACGTN", new String(store.getBases("chr1", 1, 5), StandardCharsets.US_ASCII));
+        Assert.assertEquals("TTT", new String(store.getBases("chr2", 10, 12), StandardCharsets.US_ASCII));
+        Assert.assertEquals("TTT", new String(store.getBases("chr2", 10, 20), StandardCharsets.US_ASCII));
+        Assert.assertEquals(0, store.getBases("chr2", 20, 30).length);
+        Assert.assertNull(store.getBases("chr3", 1, 2));
+    }
+
+    @Test
+    public void fastaIsUnpacked() throws IOException {
+        final File fasta = workDir.newFile("ref.fa");
+        Files.write(fasta.toPath(), (">chr1\n" + CHR1.substring(0, 7).toLowerCase() + "\n" + CHR1.substring(7) + "\n>chr2\n" + CHR2 + "\n").getBytes());
+        final Path storeDir = workDir.newFolder("store").toPath();
+
+        final String oldStoreDir = System.getProperty("gor.reference.store.dir");
+        System.setProperty("gor.reference.store.dir", storeDir.toString());
+        try {
+            final ReferenceStore store = ReferenceStore.fasta(fasta.toPath());
+
+            Assert.assertEquals(CHR2, new String(store.getBases("chr2", 1, CHR2.length()), StandardCharsets.US_ASCII));
+            Assert.assertEquals(CHR1, new String(store.getBases("chr1", 1, CHR1.length()), StandardCharsets.US_ASCII));
+            Assert.assertNull(store.getSequence("chr3"));
+            try (SharedFastaReferenceSource source = new SharedFastaReferenceSource(null, "ref-" + storeDir.hashCode(), store)) {
+                Assert.assertEquals(CHR2, new String(source.getReferenceBases(new SAMSequenceRecord("chr2", CHR2.length()), false), StandardCharsets.US_ASCII));
+            }
+        } finally {
+            if (oldStoreDir != null) {
+                System.setProperty("gor.reference.store.dir", oldStoreDir);
+            } else {
+                System.clearProperty("gor.reference.store.dir");
+            }
+        }
+
+        try (java.util.stream.Stream<Path> files = Files.walk(storeDir)) {
+            Assert.assertEquals(2, files.filter(p -> p.toString().endsWith(".txt")).count());
+        }
+    }
+
+    @Test
+    public void fastaIsReadWhenStoreCanNotBeWritten() throws IOException {
+        final File fasta = workDir.newFile("readonly.fa");
+        Files.write(fasta.toPath(), (">chr1\n" + CHR1 + "\n>chr2\n" + CHR2.toLowerCase() + "\n").getBytes());
+        // The store directory can not be created under a file
+        final Path storeDir = workDir.newFile("notadir").toPath().resolve("store");
+
+        final String oldStoreDir = System.getProperty("gor.reference.store.dir");
+        System.setProperty("gor.reference.store.dir", storeDir.toString());
+        try {
+            final ReferenceStore store = ReferenceStore.fasta(fasta.toPath());
+
+            Assert.assertEquals(CHR2, new String(store.getBases("chr2", 1, CHR2.length()), StandardCharsets.US_ASCII));
+            Assert.assertEquals(CHR1, new String(store.getBases("chr1", 1, CHR1.length()), StandardCharsets.US_ASCII));
+            Assert.assertTrue(store.getSequence("chr1").isReadOnly());
+            Assert.assertNull(store.getSequence("chr3"));
+        } finally {
+            if (oldStoreDir != null) {
+                System.setProperty("gor.reference.store.dir", oldStoreDir);
+            } else {
+                System.clearProperty("gor.reference.store.dir");
+            }
+        }
+    }
+
+    @Test
+    public void fastaIsReadWithoutStoreDir() throws IOException {
+        final File fasta = workDir.newFile("nostore.fa");
+        Files.write(fasta.toPath(), (">chr1\n" + CHR1 + "\n>chr2\n" + CHR2 + "\n").getBytes());
+
+        final String oldStoreDir = System.getProperty("gor.reference.store.dir");
+        System.clearProperty("gor.reference.store.dir");
+        try {
+            final ReferenceStore store = ReferenceStore.fasta(fasta.toPath());
+
+            Assert.assertEquals(CHR2, new String(store.getBases("chr2", 1, CHR2.length()), StandardCharsets.US_ASCII));
+            Assert.assertEquals(CHR1, new String(store.getBases("chr1", 1, CHR1.length()), StandardCharsets.US_ASCII));
+            Assert.assertFalse(store.getSequence("chr1").isDirect());
+            Assert.assertNull(store.getSequence("chr3"));
+        } finally {
+            if (oldStoreDir != null) {
+                System.setProperty("gor.reference.store.dir", oldStoreDir);
+            }
+        }
+    }
+
+    @Test
+    public void refSeqReadsFromStore() throws IOException {
+        final Path dir = createChromSeq();
+        final RefSeq refSeq = new RefSeqFromConfig(dir.toString(), new DefaultFileReader(""));
+        try {
+            Assert.assertEquals('C', refSeq.getBase("chr1", 2));
+            Assert.assertEquals('N', refSeq.getBase("chr1", 100));
+            Assert.assertEquals("CGTNA", refSeq.getBases("chr1", 2, 6));
+            Assert.assertEquals("ATTT", refSeq.getBases("chr2", 9, 12));
+        } finally {
+            refSeq.close();
+        }
+    }
+
+    private Path createChromSeq() throws IOException {
+        final File dir = workDir.newFolder("chromSeq");
+        Files.write(dir.toPath().resolve("chr1.txt"), CHR1.getBytes());
+        Files.write(dir.toPath().resolve("chr2.txt"), CHR2.getBytes());
+        return dir.toPath();
+    }
+}
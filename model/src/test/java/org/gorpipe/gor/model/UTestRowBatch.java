@@ -0,0 +1,195 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.model;
+
+import org.gorpipe.exceptions.GorDataException;
+import org.gorpipe.gor.binsearch.StringIntKey;
+import org.gorpipe.model.gor.RowObj;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class UTestRowBatch {
+    private static final String HEADER = "Chrom\tPos\tRef\tInfo";
+    private static final String[] CHROMOSOMES = {"chr1", "chr10", "chr2"};
+
+    private static List<Row> createRows() {
+        final List<Row> rows = new ArrayList<>();
+        for (String chr : CHROMOSOMES) {
+            for (int pos = 1; pos <= 1000; pos++) {
+                rows.add(RowObj.apply(chr + "\t" + pos + "\t" + "ACGT".charAt(pos % 4) + "\tinfo" + pos + (pos % 3 == 0 ? "" : "þ")));
+            }
+        }
+        return rows;
+    }
+
+    private static byte[] write(List<Row> rows, int batchRows) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (RowBatchWriter writer = new RowBatchWriter(bytes, HEADER, batchRows, 1)) {
+            for (Row r : rows) {
+                writer.write(r);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final List<Row> rows = createRows();
+        try (RowBatchReader reader = new RowBatchReader(new ByteArrayInputStream(write(rows, 100)))) {
+            Assert.assertEquals(HEADER, reader.getHeader());
+            for (Row expected : rows) {
+                Assert.assertTrue(reader.hasNext());
+                final Row r = reader.next();
+                Assert.assertEquals(expected.toString(), r.toString());
+                Assert.assertEquals(expected.chr, r.chr);
+                Assert.assertEquals(expected.pos, r.pos);
+                Assert.assertEquals(expected.colAsString(3).toString(), r.colAsString(3).toString());
+            }
+            Assert.assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    public void testNorRows() throws IOException {
+        final List<Row> rows = new ArrayList<>();
+        rows.add(RowObj.apply("chrN\t0\ta\t\tb"));
+        rows.add(RowObj.apply("chrN\t0\t\t"));
+        try (RowBatchReader reader = new RowBatchReader(new ByteArrayInputStream(write(rows, 1)))) {
+            Assert.assertEquals("chrN\t0\ta\t\tb", reader.next().toString());
+            final Row r = reader.next();
+            Assert.assertEquals(4, r.numCols());
+            Assert.assertEquals("", r.colAsString(3).toString());
+            Assert.assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    public void testSkipTo() throws IOException {
+        try (RowBatchReader reader = new RowBatchReader(new ByteArrayInputStream(write(createRows(), 100)))) {
+            Assert.assertTrue(reader.skipTo("chr10", 555));
+            Assert.assertEquals(555, reader.next().pos);
+            // Rows that have been passed are not returned again
+            Assert.assertTrue(reader.skipTo("chr10", 100));
+            Assert.assertEquals(556, reader.next().pos);
+            Assert.assertTrue(reader.skipTo("chr2", 1000));
+            Assert.assertEquals("chr2", reader.next().chr);
+            Assert.assertFalse(reader.skipTo("chr3", 1));
+        }
+    }
+
+    @Test(expected = GorDataException.class)
+    public void testNotRowBatchStream() throws IOException {
+        new RowBatchReader(new ByteArrayInputStream("Chrom\tPos\n".getBytes()));
+    }
+
+    @Test
+    public void testIteratorSeekAndResume() throws IOException {
+        final List<Row> rows = createRows();
+        final byte[] stream = write(rows, 64);
+        final List<String> opened = new ArrayList<>();
+        final RowBatchIterator iterator = new RowBatchIterator((chr, pos) -> {
+            opened.add(chr + ":" + pos);
+            return new ByteArrayInputStream(stream);
+        });
+        Assert.assertEquals(HEADER, iterator.getHeader());
+
+        iterator.seek("chr10", 10);
+        for (int pos = 10; pos < 20; pos++) {
+            Assert.assertTrue(iterator.next().toString().startsWith("chr10\t" + pos + "\t"));
+        }
+        // The stream fails, reading continues after the last row returned
+        iterator.resume();
+        Assert.assertEquals(20, iterator.next().pos);
+
+        // Seeking backwards opens a new stream
+        iterator.seek("chr1", 5);
+        Assert.assertEquals(5, iterator.next().pos);
+        Assert.assertEquals("[null:0, chr10:19, chr1:5]", opened.toString());
+
+        int count = 1;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        Assert.assertEquals(rows.size() - 4, count);
+        iterator.close();
+    }
+
+    @Test
+    public void testIteratorResumeWithDuplicatePositions() throws IOException {
+        final List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(RowObj.apply("chr1\t1\t" + i));
+        }
+        final byte[] stream = write(rows, 3);
+        final RowBatchIterator iterator = new RowBatchIterator((chr, pos) -> new ByteArrayInputStream(stream));
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals("chr1\t1\t" + i, iterator.next().toString());
+        }
+        iterator.resume();
+        for (int i = 4; i < 10; i++) {
+            Assert.assertEquals("chr1\t1\t" + i, iterator.next().toString());
+        }
+        Assert.assertFalse(iterator.hasNext());
+        iterator.close();
+    }
+
+    @Test
+    public void testStreamedThroughPipe() throws Exception {
+        final List<Row> rows = createRows();
+        final RowBatchIterator iterator = new RowBatchIterator((chr, pos) -> {
+            try {
+                final PipedInputStream in = new PipedInputStream(64 * 1024);
+                final PipedOutputStream out = new PipedOutputStream(in);
+                final Thread server = new Thread(() -> {
+                    try (RowBatchWriter writer = new RowBatchWriter(out, HEADER, 128, 1)) {
+                        for (Row r : rows) {
+                            if (chr == null || new StringIntKey(r.chr, r.pos).compareTo(new StringIntKey(chr, pos)) >= 0) {
+                                writer.write(r);
+                            }
+                        }
+                    } catch (IOException e) {
+                        // The reader closed the stream
+                    }
+                });
+                server.setDaemon(true);
+                server.start();
+                return in;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Assert.assertTrue(iterator.seek("chr2", 1));
+        int count = 0;
+        while (iterator.hasNext()) {
+            Assert.assertEquals("chr2", iterator.next().chr);
+            count++;
+        }
+        Assert.assertEquals(1000, count);
+        iterator.close();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+
+package org.gorpipe.gor.model;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.tribble.index.IndexFactory;
+import htsjdk.tribble.index.tabix.TabixIndex;
+import htsjdk.variant.vcf.VCFCodec;
+import org.gorpipe.gor.driver.adapters.ParallelBgzfInputStream;
+import org.gorpipe.gor.driver.providers.stream.datatypes.tabix.BgzfIndex;
+import org.gorpipe.gor.driver.providers.stream.sources.file.FileSource;
+import org.gorpipe.gor.util.ByteTextBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public class UTestVcfBgzfIterators {
+    private static final String[] CHROMOSOMES = {"chr1", "chr2", "chr10", "chrX"};
+    private static final int VARIANTS_PER_CHROMOSOME = 2000;
+    private static final int SAMPLES = 20;
+
+    @Rule
+    public TemporaryFolder workDir = new TemporaryFolder();
+
+    private File vcf;
+    private File tbi;
+    private final List<String> lines = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        vcf = workDir.newFile("test.vcf.gz");
+        try (Writer writer = new OutputStreamWriter(new BlockCompressedOutputStream(vcf), StandardCharsets.UTF_8)) {
+            writer.write("##fileformat=VCFv4.2\n");
+            for (String chr : CHROMOSOMES) {
+                writer.write("##contig=<ID=" + chr + ",length=100000000>\n");
+            }
+            writer.write("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">\n");
+            StringBuilder header = new StringBuilder("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT");
+            for (int s = 0; s < SAMPLES; s++) {
+                header.append("\tS").append(s);
+            }
+            writer.write(header.append('\n').toString());
+            // The file order of the chromosomes differs from the lexicographic order used by gor
+            for (String chr : CHROMOSOMES) {
+                for (int i = 0; i < VARIANTS_PER_CHROMOSOME; i++) {
+                    StringBuilder line = new StringBuilder();
+                    line.append(chr).append('\t').append(1000 + 50 * i).append("\trs").append(i).append("\tA\tC\t.\tPASS\t.\tGT");
+                    for (int s = 0; s < SAMPLES; s++) {
+                        line.append('\t').append((i + s) % 3 == 0 ? "0/1" : "0/0");
+                    }
+                    lines.add(line.toString());
+                    writer.write(line.append('\n').toString());
+                }
+            }
+        }
+        tbi = workDir.getRoot().toPath().resolve("test.vcf.gz.tbi").toFile();
+        TabixIndex index = IndexFactory.createTabixIndex(vcf, new VCFCodec(), null);
+        index.write(tbi.toPath());
+    }
+
+    @Test
+    public void testSequentialReadMatchesGzipReader() throws IOException {
+        List<String> expected = new ArrayList<>();
+        BufferedReader gzipReader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(vcf))));
+        try (VcfGzGenomicIterator it = new VcfGzGenomicIterator(new DefaultChromoLookup(), vcf.getName(), gzipReader)) {
+            it.forEachRemaining(r -> expected.add(r.toString()));
+        }
+
+        List<String> actual = new ArrayList<>();
+        String header;
+        try (VcfGzGenomicIterator it = new VcfGzGenomicIterator(new DefaultChromoLookup(), vcf.getName(), new FileSource(vcf.getPath(), null), true)) {
+            header = it.getHeader();
+            it.forEachRemaining(r -> actual.add(r.toString()));
+        }
+        Assert.assertEquals(lines.size(), actual.size());
+        Assert.assertEquals(expected, actual);
+        Assert.assertTrue(header.startsWith("CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS0"));
+    }
+
+    @Test
+    public void testRowColumnsAreAccessible() throws IOException {
+        try (VcfGzGenomicIterator it = new VcfGzGenomicIterator(new DefaultChromoLookup(), vcf.getName(), new FileSource(vcf.getPath(), null), true)) {
+            Row row = it.next();
+            Assert.assertEquals("chr1", row.chr);
+            Assert.assertEquals(1000, row.pos);
+            Assert.assertEquals(9 + SAMPLES, row.numCols());
+            Assert.assertEquals("rs0", row.colAsString(2).toString());
+            Assert.assertEquals("0/1", row.colAsString(9).toString());
+            Assert.assertEquals("0/0", row.colAsString(10).toString());
+        }
+    }
+
+    @Test
+    public void testVirtualOffsetSeek() throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        List<String> read = new ArrayList<>();
+        ByteTextBuilder line = new ByteTextBuilder();
+        try (ParallelBgzfInputStream in = new ParallelBgzfInputStream(new FileSource(vcf.getPath(), null))) {
+            long offset = in.getFilePointer();
+            while (in.readLine(line)) {
+                offsets.add(offset);
+                read.add(line.toString());
+                offset = in.getFilePointer();
+            }
+            for (int i = read.size() - 1; i >= 0; i -= 97) {
+                in.seek(offsets.get(i));
+                Assert.assertTrue(in.readLine(line));
+                Assert.assertEquals(read.get(i), line.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testIndexStartOffset() throws IOException {
+        BgzfIndex index = BgzfIndex.read(new FileInputStream(tbi));
+        Assert.assertEquals(List.of(CHROMOSOMES), index.getSequenceNames());
+        Assert.assertEquals(-1, index.startOffset("chr3", 1));
+        Assert.assertEquals(-1, index.startOffset("chr1", 200000000));
+        Assert.assertTrue(index.startOffset("chr2", 1) >= 0);
+    }
+
+    @Test
+    public void testTabixIteratorReadsAllInGorOrder() throws IOException {
+        List<String> actual = new ArrayList<>();
+        try (VcfGzTabixGenomicIterator it = new VcfGzTabixGenomicIterator(new DefaultChromoLookup(), new FileSource(vcf.getPath(), null), new FileSource(tbi.getPath(), null))) {
+            it.forEachRemaining(r -> actual.add(r.toString()));
+        }
+        List<String> expected = new ArrayList<>();
+        for (String chr : new String[]{"chr1", "chr10", "chr2", "chrX"}) {
+            lines.stream().filter(l -> l.startsWith(chr + "\t")).forEach(expected::add);
+        }
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testTabixIteratorSeek() throws IOException {
+        try (VcfGzTabixGenomicIterator it = new VcfGzTabixGenomicIterator(new DefaultChromoLookup(), new FileSource(vcf.getPath(), null), new FileSource(tbi.getPath(), null))) {
+            Assert.assertTrue(it.seek("chr2", 51020));
+            Row row = it.next();
+            Assert.assertEquals("chr2", row.chr);
+            Assert.assertEquals(51050, row.pos);
+
+            // Seeking backwards and past the end of a chromosome
+            Assert.assertTrue(it.seek("chr10", 1));
+            Assert.assertEquals(1000, it.next().pos);
+            Assert.assertFalse(it.seek("chr1", 500000));
+            Row next = it.next();
+            Assert.assertEquals("chr10", next.chr);
+            Assert.assertEquals(1000, next.pos);
+
+            // A chromosome not in the file continues with the next one
+            Assert.assertFalse(it.seek("chr3", 1));
+            Assert.assertEquals("chrX", it.next().chr);
+        }
+    }
+}
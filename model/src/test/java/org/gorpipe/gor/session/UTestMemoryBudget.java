@@ -0,0 +1,168 @@
+/*
+ *  BEGIN_COPYRIGHT
+ *
+ *  Copyright (C) 2011-2013 deCODE genetics Inc.
+ *  Copyright (C) 2013-2019 WuXi NextCode Inc.
+ *  All Rights Reserved.
+ *
+ *  GORpipe is free software: you can redistribute it and/or modify
+ *  it under the terms of the AFFERO GNU General Public License as published by
+ *  the Free Software Foundation.
+ *
+ *  GORpipe is distributed "AS-IS" AND WITHOUT ANY WARRANTY OF ANY KIND,
+ *  INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ *  NON-INFRINGEMENT, OR FITNESS FOR A PARTICULAR PURPOSE. See
+ *  the AFFERO GNU General Public License for the complete license terms.
+ *
+ *  You should have received a copy of the AFFERO GNU General Public License
+ *  along with GORpipe.  If not, see <http://www.gnu.org/licenses/agpl-3.0.html>
+ *
+ *  END_COPYRIGHT
+ */
+package org.gorpipe.gor.session;
+
+import org.gorpipe.exceptions.custom.GorLowMemoryException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UTestMemoryBudget {
+
+    @Test
+    public void reservationIsRefusedOverQueryBudget() {
+        MemoryBudget global = new MemoryBudget("global", 1000, null);
+        MemoryBudget query = new MemoryBudget("query", 600, global);
+
+        Assert.assertTrue(query.tryReserve(500));
+        Assert.assertFalse(query.tryReserve(200));
+        Assert.assertEquals(500, query.getReserved());
+        Assert.assertEquals(500, global.getReserved());
+
+        query.release(300);
+        Assert.assertTrue(query.tryReserve(200));
+        Assert.assertEquals(400, global.getReserved());
+    }
+
+    @Test
+    public void reservationIsRefusedOverGlobalBudget() {
+        MemoryBudget global = new MemoryBudget("global", 1000, null);
+        MemoryBudget query1 = new MemoryBudget("query1", 800, global);
+        MemoryBudget query2 = new MemoryBudget("query2", 800, global);
+
+        Assert.assertTrue(query1.tryReserve(700));
+        Assert.assertFalse(query2.tryReserve(400));
+        Assert.assertEquals(0, query2.getReserved());
+        Assert.assertTrue(query2.tryReserve(300));
+
+        query2.forceReserve(100);
+        Assert.assertEquals(1100, global.getReserved());
+        Assert.assertFalse(query1.tryReserve(1));
+    }
+
+    @Test
+    public void closeReleasesToGlobalBudget() {
+        MemoryBudget global = new MemoryBudget("global", 1000, null);
+        MemoryBudget query = new MemoryBudget("query", 1000, global);
+
+        Assert.assertTrue(query.tryReserve(700));
+        query.close();
+        Assert.assertEquals(0, global.getReserved());
+
+        // Releases after the query is closed are ignored
+        query.release(700);
+        Assert.assertEquals(0, global.getReserved());
+        Assert.assertEquals(700, query.getPeak());
+    }
+
+    @Test
+    public void reservationIsTakenInChunks() {
+        MemoryBudget global = new MemoryBudget("global", 10 * MemoryReservation.CHUNK, null);
+        MemoryReservation reservation = new MemoryReservation(global);
+
+        Assert.assertTrue(reservation.tryReserve(100));
+        Assert.assertEquals(MemoryReservation.CHUNK, global.getReserved());
+        Assert.assertTrue(reservation.tryReserve(MemoryReservation.CHUNK));
+        Assert.assertEquals(2 * MemoryReservation.CHUNK, global.getReserved());
+        Assert.assertFalse(reservation.tryReserve(9 * MemoryReservation.CHUNK));
+        Assert.assertEquals(MemoryReservation.CHUNK + 100, reservation.getUsed());
+
+        reservation.close();
+        Assert.assertEquals(0, global.getReserved());
+    }
+
+    @Test
+    public void admissionWaitsForRelease() throws InterruptedException {
+        MemoryBudget global = new MemoryBudget("global", 1000, null);
+        MemoryBudget running = new MemoryBudget("running", 1000, global);
+        MemoryBudget waiting = new MemoryBudget("waiting", 1000, global);
+        Assert.assertTrue(running.tryReserve(800));
+
+        System.setProperty(MemoryBudget.QUERY_ESTIMATE_KEY, "500");
+        try {
+            Thread releaser = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.close();
+            });
+            releaser.start();
+            long start = System.currentTimeMillis();
+            Assert.assertTrue(waiting.admit(null));
+            Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+            releaser.join();
+
+            // The estimate is reserved up front, reservations within it are not taken again from the global budget
+            Assert.assertEquals(500, global.getReserved());
+            Assert.assertTrue(waiting.tryReserve(400));
+            Assert.assertEquals(500, global.getReserved());
+            Assert.assertTrue(waiting.tryReserve(200));
+            Assert.assertEquals(600, global.getReserved());
+            waiting.close();
+            Assert.assertEquals(0, global.getReserved());
+        } finally {
+            System.clearProperty(MemoryBudget.QUERY_ESTIMATE_KEY);
+        }
+    }
+
+    @Test(expected = GorLowMemoryException.class)
+    public void admissionTimesOut() {
+        MemoryBudget global = new MemoryBudget("global", 1000, null);
+        MemoryBudget running = new MemoryBudget("running", 1000, global);
+        MemoryBudget waiting = new MemoryBudget("waiting", 1000, global);
+        Assert.assertTrue(running.tryReserve(800));
+
+        System.setProperty(MemoryBudget.QUERY_ESTIMATE_KEY, "500");
+        System.setProperty(MemoryBudget.ADMISSION_TIMEOUT_KEY, "100");
+        try {
+            waiting.admit(null);
+        } finally {
+            System.clearProperty(MemoryBudget.QUERY_ESTIMATE_KEY);
+            System.clearProperty(MemoryBudget.ADMISSION_TIMEOUT_KEY);
+        }
+    }
+
+    @Test
+    public void currentBudgetIsDroppedWhenQueryEnds() throws InterruptedException {
+        MemoryBudget query = MemoryBudget.forQuery("query");
+        MemoryBudget.setCurrent(query);
+        MemoryBudget[] inherited = new MemoryBudget[1];
+        try {
+            Assert.assertSame(query, MemoryBudget.current());
+            query.close();
+            // Threads that inherited the budget outlive the query, they fall back to the global budget
+            Thread thread = new Thread(() -> inherited[0] = MemoryBudget.current());
+            thread.start();
+            thread.join();
+            Assert.assertSame(MemoryBudget.global(), inherited[0]);
+
+            MemoryBudget.clearCurrent(query);
+            MemoryBudget.setCurrent(MemoryBudget.forQuery("other"));
+            MemoryBudget.clearCurrent(query);
+            Assert.assertEquals("other", MemoryBudget.current().getName());
+        } finally {
+            MemoryBudget.clearCurrent(MemoryBudget.current());
+        }
+        Assert.assertSame(MemoryBudget.global(), MemoryBudget.current());
+    }
+}
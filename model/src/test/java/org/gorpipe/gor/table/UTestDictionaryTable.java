@@ -39,7 +39,11 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 
@@ -118,6 +122,120 @@ public class UTestDictionaryTable {
         Assert.assertEquals("Content not loaded or saved correctly", gort1, savedContent);
     }
 
+    @Test
+    public void testOptimizedLinesFromTagIndex() throws IOException {
+        String tableName = "gortable_tag_index";
+        Path gordFile = new File(tableWorkDir.toFile(), tableName + ".gord").toPath();
+        FileUtils.write(gordFile.toFile(), gort1, (String) null);
+
+        DictionaryTable dict = new DictionaryTable.Builder<>(gordFile).build();
+        dict.save();
+        Assert.assertTrue("Tag index not saved", Files.exists(dict.getFolderPath().resolve(TagIndex.INDEX_FILE)));
+
+        dict = new DictionaryTable.Builder<>(gordFile).build();
+        for (String tag : new String[]{null, "tagA", "tagG", "tagH", "tagI", "tagL", "tagX"}) {
+            for (boolean allowBucketAccess : new boolean[]{true, false}) {
+                Map<Integer, Set<String>> tags = tag != null ? DictionaryTable.tagmap(tag) : new HashMap<>();
+                TableAccessOptimizer optimizer = new TableAccessOptimizer(dict);
+                optimizer.update(dict.selectAll(), tags, allowBucketAccess);
+                Assert.assertEquals("Optimized lines differ for " + tag,
+                        optimizer.getLines().stream().map(DictionaryEntry::formatEntryNoNewLine).collect(Collectors.toList()),
+                        dict.getOptimizedLines(tags, allowBucketAccess).stream().map(DictionaryEntry::formatEntryNoNewLine).collect(Collectors.toList()));
+            }
+        }
+    }
+
+    @Test
+    public void testSaveAppendsToJournal() throws IOException {
+        String tableName = "gortable_journal";
+        Path gordFile = new File(tableWorkDir.toFile(), tableName + ".gord").toPath();
+        FileUtils.write(gordFile.toFile(), gort1, (String) null);
+
+        DictionaryTable dict = new DictionaryTable.Builder<>(gordFile).validateFiles(false).build();
+        dict.save();
+        Path journalPath = TableJournal.journalPath(gordFile);
+        Assert.assertEquals("Journal should be empty after the dictionary is written", 0, Files.size(journalPath));
+
+        dict.insert(new DictionaryEntry.Builder<>("filepath20.gor", dict.getRootUri()).alias("tagN").build());
+        dict.delete(dict.filter().tags("tagB").get());
+        dict.removeFromBucket(dict.filter().tags("tagG").get());
+        dict.save();
+
+        Assert.assertEquals("Dictionary file should not be rewritten", gort1, FileUtils.readFileToString(gordFile.toFile(), Charset.defaultCharset()));
+        Assert.assertTrue("Changes not written to the journal", Files.size(journalPath) > 0);
+
+        DictionaryTable reloaded = new DictionaryTable.Builder<>(gordFile).build();
+        Assert.assertEquals("Entries differ after reload",
+                dict.selectAll().stream().map(DictionaryEntry::formatEntryNoNewLine).collect(Collectors.toList()),
+                reloaded.selectAll().stream().map(DictionaryEntry::formatEntryNoNewLine).collect(Collectors.toList()));
+        Assert.assertEquals("Dictionary tags differ from table", reloaded.getAllActiveTags(),
+                Dictionary.getDictionary(gordFile.toString(), "journal", null).getValidTags());
+
+        // Compact
+        reloaded.setProperty(DictionaryTable.JOURNAL_MAX_RATIO_KEY, "0");
+        reloaded.save();
+        Assert.assertEquals("Journal should be empty after compaction", 0, Files.size(journalPath));
+        Assert.assertEquals("Dictionary file not rewritten on compaction",
+                dict.selectAll().stream().map(e -> e.formatEntryNoNewLine() + "\n").collect(Collectors.joining()),
+                FileUtils.readFileToString(gordFile.toFile(), Charset.defaultCharset()));
+    }
+
+    @Test
+    public void testCachedDictionarySeesJournalCommits() throws IOException {
+        String tableName = "gortable_journal_cache";
+        Path gordFile = new File(tableWorkDir.toFile(), tableName + ".gord").toPath();
+        FileUtils.write(gordFile.toFile(), gort1, (String) null);
+
+        DictionaryTable dict = new DictionaryTable.Builder<>(gordFile).validateFiles(false).build();
+        dict.save();
+        Assert.assertFalse(Dictionary.getDictionary(gordFile.toString(), "unchanged", null).getValidTags().contains("tagN"));
+
+        // The signature passed in stays the same, as it would when the modification time is rounded
+        dict.insert(new DictionaryEntry.Builder<>("filepath20.gor", dict.getRootUri()).alias("tagN").build());
+        dict.save();
+        Assert.assertTrue("Cached dictionary should be reloaded after a journal commit",
+                Dictionary.getDictionary(gordFile.toString(), "unchanged", null).getValidTags().contains("tagN"));
+
+        // Added entries are applied to the cached dictionary, changed ones make it read its lines again
+        dict.insert(new DictionaryEntry.Builder<>("filepath21.gor", dict.getRootUri()).alias("tagM").build());
+        dict.save();
+        assertSameAsUncached(gordFile, "tagM");
+        dict.delete(dict.filter().tags("tagN").get());
+        dict.save();
+        assertSameAsUncached(gordFile, "tagM");
+        Assert.assertFalse(Dictionary.getDictionary(gordFile.toString(), "unchanged", null).getValidTags().contains("tagN"));
+    }
+
+    private static void assertSameAsUncached(Path gordFile, String tag) {
+        Dictionary cached = Dictionary.getDictionary(gordFile.toString(), "unchanged", null);
+        Dictionary uncached = Dictionary.getDictionary(gordFile.toString(), "unchanged", null, false);
+        Assert.assertTrue(cached.getValidTags().contains(tag));
+        Assert.assertEquals(uncached.getValidTags(), cached.getValidTags());
+        Assert.assertEquals(
+                Arrays.stream(uncached.getSources(null, false, true)).map(l -> l.fileRef.physical + "\t" + l.tags).collect(Collectors.toList()),
+                Arrays.stream(cached.getSources(null, false, true)).map(l -> l.fileRef.physical + "\t" + l.tags).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testTagIndexIsNotReadAfterJournalCommit() throws IOException {
+        String tableName = "gortable_tag_index_journal";
+        Path gordFile = new File(tableWorkDir.toFile(), tableName + ".gord").toPath();
+        FileUtils.write(gordFile.toFile(), gort1, (String) null);
+
+        DictionaryTable dict = new DictionaryTable.Builder<>(gordFile).build();
+        dict.save();
+        Path indexPath = dict.getFolderPath().resolve(TagIndex.INDEX_FILE);
+        Assert.assertNotNull("Tag index should be read for an unchanged table", TagIndex.read(indexPath, gordFile));
+
+        // Another writer commits to the journal, and the modification time of the table file is rounded away
+        FileTime modified = Files.getLastModifiedTime(gordFile);
+        TableJournal journal = new TableJournal(gordFile);
+        journal.put(new DictionaryEntry.Builder<>("filepath20.gor", dict.getRootUri()).alias("tagN").build());
+        journal.commit(gordFile);
+        Files.setLastModifiedTime(gordFile, modified);
+        Assert.assertNull("Tag index should not be read after a journal commit", TagIndex.read(indexPath, gordFile));
+    }
+
     @Test
     public void testTableInternallHeader() {
         String tableName = "gortable_internal_header";
@@ -0,0 +1,114 @@
+package gorsat.Commands
+
+import org.gorpipe.gor.model.Row
+import org.gorpipe.model.gor.RowObj
+import org.junit.runner.RunWith
+import org.scalatest.FlatSpec
+import org.scalatest.junit.JUnitRunner
+
+import scala.collection.mutable.ArrayBuffer
+
+@RunWith(classOf[JUnitRunner])
+class UTestBinAggregator extends FlatSpec {
+
+  case class CountState(parallel: Boolean, batches: Boolean) extends BinState {
+    var count = 0
+
+    override def acceptsBatches: Boolean = batches
+
+    override def flushesInParallel: Boolean = parallel
+
+    def initialize(binInfo: BinInfo): Unit = count = 0
+
+    def process(r: Row): Unit = count += 1
+
+    def sendToNextProcessor(binInfo: BinInfo, nextProcessor: Processor): Unit =
+      nextProcessor.process(RowObj(binInfo.chr + "\t" + binInfo.sta + "\t" + count))
+  }
+
+  case class CountFactory(parallel: Boolean = false, batches: Boolean = false) extends BinFactory {
+    def create: BinState = CountState(parallel, batches)
+  }
+
+  /** Records a value the row handler changes after routing each row, as SELFJOIN does with the row's bH. */
+  class MarkState(marks: () => Int) extends BinState {
+    val seen = new ArrayBuffer[Int]
+
+    def initialize(binInfo: BinInfo): Unit = seen.clear()
+
+    def process(r: Row): Unit = seen += marks()
+
+    def sendToNextProcessor(binInfo: BinInfo, nextProcessor: Processor): Unit =
+      nextProcessor.process(RowObj(binInfo.chr + "\t" + binInfo.sta + "\t" + seen.mkString(",")))
+  }
+
+  class Collector extends Analysis {
+    val lines = new ArrayBuffer[String]
+
+    override def process(r: Row): Unit = lines += r.toString
+  }
+
+  "keyId" should "give a new id when the key changes" in {
+    val aggregator = BinAggregator(CountFactory(), 2, 1)
+    val chr1 = aggregator.keyId("chr1")
+    assert(aggregator.keyId(new String("chr1")) == chr1)
+    val chr2 = aggregator.keyId("chr2")
+    assert(chr2 != chr1)
+    assert(aggregator.keyId("chr1") != chr2)
+    assert(aggregator.keyId("chr1") != chr1)
+  }
+
+  "update" should "flush the bins in order when the key changes" in {
+    val aggregator = BinAggregator(CountFactory(), 2, 1)
+    val collector = new Collector
+    aggregator.setNextProcessor(collector)
+    val handler = RegularRowHandler(10)
+    for (line <- List("chr1\t1", "chr1\t5", "chr1\t15", "chr1\t35", "chr2\t3", "chr2\t4")) {
+      handler.process(RowObj(line), aggregator)
+    }
+    aggregator.finalFlush()
+    assert(collector.lines == List("chr1\t0\t2", "chr1\t10\t1", "chr1\t30\t1", "chr2\t0\t2"))
+  }
+
+  it should "hand the rows of a bin to its state in batches" in {
+    val aggregator = BinAggregator(CountFactory(batches = true), 2, 1)
+    val collector = new Collector
+    aggregator.setNextProcessor(collector)
+    val handler = RegularRowHandler(1000)
+    for (pos <- 1 to 1500) {
+      handler.process(RowObj("chr1\t" + pos), aggregator)
+    }
+    aggregator.finalFlush()
+    assert(collector.lines == List("chr1\t0\t1000", "chr1\t1000\t500"))
+  }
+
+  it should "process each row as it is routed to states that do not accept batches" in {
+    var mark = 0
+    val aggregator = BinAggregator(new BinFactory {
+      def create: BinState = new MarkState(() => mark)
+    }, 2, 1)
+    val collector = new Collector
+    aggregator.setNextProcessor(collector)
+    for (pos <- 1 to 3) {
+      mark = pos
+      aggregator.update(RowObj("chr1\t" + pos), 0, "chr1", 0, 10)
+      mark = -pos
+    }
+    aggregator.finalFlush()
+    assert(collector.lines == List("chr1\t0\t1,2,3"))
+  }
+
+  it should "pass on bins sent in parallel in bin order" in {
+    val aggregator = BinAggregator(CountFactory(parallel = true), 8, 1)
+    val collector = new Collector
+    aggregator.setNextProcessor(collector)
+    val handler = RegularRowHandler(10)
+    val lines = (1 to 75).map(pos => "chr1\t" + pos) ++ List("chr2\t1", "chr2\t2")
+    for (line <- lines) {
+      handler.process(RowObj(line), aggregator)
+    }
+    aggregator.finalFlush()
+    assert(collector.lines == List("chr1\t0\t10", "chr1\t10\t10", "chr1\t20\t10", "chr1\t30\t10", "chr1\t40\t10",
+      "chr1\t50\t10", "chr1\t60\t10", "chr1\t70\t5", "chr2\t0\t2"))
+  }
+}